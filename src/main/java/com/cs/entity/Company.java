@@ -12,11 +12,13 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "company")
+@Table(name = "company",
+		uniqueConstraints = @UniqueConstraint(name = "uk_company_email", columnNames = "email"))
 public class Company {
 
 	@Id
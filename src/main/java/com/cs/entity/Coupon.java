@@ -11,16 +11,23 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "coupon")
+@Table(name = "coupon",
+		indexes = {
+				@Index(name = "idx_coupon_end_date", columnList = "end_date"),
+				@Index(name = "idx_coupon_price", columnList = "price")
+		},
+		uniqueConstraints = @UniqueConstraint(name = "uk_coupon_title", columnNames = "title"))
 public class Coupon {
 
 	@Id
@@ -57,7 +64,8 @@ public class Coupon {
 			})
 	@JoinTable(name = "customer_coupon",
 			joinColumns = @JoinColumn(name = "coupon_id"),
-			inverseJoinColumns = @JoinColumn(name = "customer_id"))
+			inverseJoinColumns = @JoinColumn(name = "customer_id"),
+			uniqueConstraints = @UniqueConstraint(name = "uk_customer_coupon", columnNames = { "customer_id", "coupon_id" }))
 	private List<Customer> customers;
 
 	public Coupon() {
@@ -14,11 +14,13 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "customer")
+@Table(name = "customer",
+		uniqueConstraints = @UniqueConstraint(name = "uk_customer_email", columnNames = "email"))
 public class Customer {
 
 	@Id
@@ -41,7 +43,8 @@ public class Customer {
 			})
 	@JoinTable(name = "customer_coupon",
 			joinColumns = @JoinColumn(name = "customer_id"),
-			inverseJoinColumns = @JoinColumn(name = "coupon_id"))
+			inverseJoinColumns = @JoinColumn(name = "coupon_id"),
+			uniqueConstraints = @UniqueConstraint(name = "uk_customer_coupon", columnNames = { "customer_id", "coupon_id" }))
 	private List<Coupon> coupons;
 
 	public Customer() {
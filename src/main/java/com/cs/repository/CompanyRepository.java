@@ -1,13 +1,27 @@
 package com.cs.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.cs.entity.Company;
+import com.cs.repository.view.CompanyView;
 
 @Repository
 public interface CompanyRepository extends JpaRepository<Company, Long> {
 
 	Company findCompanyByEmailAndPassword(String email, String password);
 
+	boolean existsByEmail(String email);
+
+	@Query("SELECT c.email FROM Company c WHERE c.email IS NOT NULL")
+	List<String> findAllEmails();
+
+	@Query("SELECT new com.cs.repository.view.CompanyView(c.id, c.name, c.email, c.password) FROM Company c"
+			+ " WHERE c.id > :afterId ORDER BY c.id")
+	List<CompanyView> findPageById(long afterId, Pageable pageable);
+
 }
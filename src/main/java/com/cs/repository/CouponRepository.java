@@ -1,13 +1,17 @@
 package com.cs.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.cs.entity.Coupon;
+import com.cs.repository.view.CouponView;
 
 @Repository
 public interface CouponRepository extends JpaRepository<Coupon, Long> {
@@ -17,5 +21,153 @@ public interface CouponRepository extends JpaRepository<Coupon, Long> {
 	@Query("SELECT c FROM Customer cust JOIN cust.coupons c WHERE cust.id = :customerId")
 	List<Coupon> findAllCouponsByCustomerId(long customerId);
 
-	List<Coupon> findAllByEndDateBefore(Date date);
+	@Query("SELECT c.id FROM Customer cust JOIN cust.coupons c WHERE cust.id = :customerId")
+	List<Long> findCouponIdsByCustomerId(long customerId);
+
+	/*
+	 * The pages of the coupons (see KeysetPager), of all the companies, of one
+	 * company and of one customer. the pages are read as 'CouponView' and not as
+	 * entities. the coupons without an end date come first in the 'endDate'
+	 * sort, they are read by their own query since NULL does not compare.
+	 */
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE c.id > :afterId"
+			+ " ORDER BY c.id")
+	List<CouponView> findPageById(long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE c.endDate IS NULL AND c.id > :afterId"
+			+ " ORDER BY c.id")
+	List<CouponView> findPageByNullEndDate(long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE (c.endDate > :afterEndDate OR (c.endDate = :afterEndDate AND c.id > :afterId))"
+			+ " ORDER BY c.endDate, c.id")
+	List<CouponView> findPageByEndDate(Date afterEndDate, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE (c.price > :afterPrice OR (c.price = :afterPrice AND c.id > :afterId))"
+			+ " ORDER BY c.price, c.id")
+	List<CouponView> findPageByPrice(double afterPrice, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE c.company.id = :companyId AND c.id > :afterId"
+			+ " ORDER BY c.id")
+	List<CouponView> findCompanyPageById(long companyId, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE c.company.id = :companyId AND c.endDate IS NULL AND c.id > :afterId"
+			+ " ORDER BY c.id")
+	List<CouponView> findCompanyPageByNullEndDate(long companyId, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE c.company.id = :companyId"
+			+ " AND (c.endDate > :afterEndDate OR (c.endDate = :afterEndDate AND c.id > :afterId))"
+			+ " ORDER BY c.endDate, c.id")
+	List<CouponView> findCompanyPageByEndDate(long companyId, Date afterEndDate, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Coupon c WHERE c.company.id = :companyId"
+			+ " AND (c.price > :afterPrice OR (c.price = :afterPrice AND c.id > :afterId))"
+			+ " ORDER BY c.price, c.id")
+	List<CouponView> findCompanyPageByPrice(long companyId, double afterPrice, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Customer cust JOIN cust.coupons c WHERE cust.id = :customerId AND c.id > :afterId"
+			+ " ORDER BY c.id")
+	List<CouponView> findCustomerPageById(long customerId, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Customer cust JOIN cust.coupons c WHERE cust.id = :customerId"
+			+ " AND c.endDate IS NULL AND c.id > :afterId"
+			+ " ORDER BY c.id")
+	List<CouponView> findCustomerPageByNullEndDate(long customerId, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Customer cust JOIN cust.coupons c WHERE cust.id = :customerId"
+			+ " AND (c.endDate > :afterEndDate OR (c.endDate = :afterEndDate AND c.id > :afterId))"
+			+ " ORDER BY c.endDate, c.id")
+	List<CouponView> findCustomerPageByEndDate(long customerId, Date afterEndDate, long afterId, Pageable pageable);
+
+	@Query("SELECT new com.cs.repository.view.CouponView(c.id, c.title, c.description, c.startDate, c.endDate,"
+			+ " c.price, c.amount, c.category, c.imageURL, c.company.id)"
+			+ " FROM Customer cust JOIN cust.coupons c WHERE cust.id = :customerId"
+			+ " AND (c.price > :afterPrice OR (c.price = :afterPrice AND c.id > :afterId))"
+			+ " ORDER BY c.price, c.id")
+	List<CouponView> findCustomerPageByPrice(long customerId, double afterPrice, long afterId, Pageable pageable);
+
+	@Query("SELECT c.id, c.endDate FROM Coupon c")
+	List<Object[]> findAllEndDates();
+
+	@Query("SELECT c.id, c.category, c.price, c.endDate FROM Coupon c")
+	List<Object[]> findAllSearchFields();
+
+	@Query("SELECT c.id, c.title, c.description FROM Coupon c")
+	List<Object[]> findAllTexts();
+
+	@Query("SELECT c.id, c.title FROM Coupon c WHERE c.title IS NOT NULL")
+	List<Object[]> findAllTitles();
+
+	@Query("SELECT c.id, c.company.id, c.title, c.category, c.price, c.amount FROM Coupon c")
+	List<Object[]> findAllSalesFields();
+
+	@Query("SELECT c.id, COUNT(cust) FROM Coupon c JOIN c.customers cust GROUP BY c.id")
+	List<Object[]> countAllSoldUnits();
+
+	@Query("SELECT c.id, c.company.id FROM Coupon c")
+	List<Object[]> findAllCompanyIds();
+
+	@Query("SELECT c.id FROM Coupon c WHERE c.endDate < :date ORDER BY c.id")
+	List<Long> findExpiredCouponIds(Date date, Pageable pageable);
+
+	@Query("SELECT MIN(c.endDate) FROM Coupon c WHERE c.endDate < :date")
+	Date findOldestEndDateBefore(Date date);
+
+	@Modifying
+	@Query("UPDATE Coupon c SET c.amount = c.amount - :count WHERE c.id = :couponId AND c.amount >= :count")
+	int decrementAmountBy(long couponId, int count);
+
+	@Query("SELECT c.amount FROM Coupon c WHERE c.id = :couponId")
+	Integer findAmount(long couponId);
+
+	/**
+	 * This function will add the coupon to the customer with a plain insert, so
+	 * a customer or a coupon that was deleted (or a pair that already exists)
+	 * fails the statement instead of being ignored.
+	 *
+	 * @param customerId - the id of the customer.
+	 * @param couponId   - the id of the coupon.
+	 * @return the number of rows inserted.
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO customer_coupon (customer_id, coupon_id) VALUES (:customerId, :couponId)",
+			nativeQuery = true)
+	int insertCustomerLink(long customerId, long couponId);
+
+	@Query(value = "SELECT customer_id, coupon_id FROM customer_coupon"
+			+ " WHERE customer_id IN :customerIds AND coupon_id IN :couponIds", nativeQuery = true)
+	List<Object[]> findCustomerLinks(Collection<Long> customerIds, Collection<Long> couponIds);
+
+	@Query(value = "SELECT coupon_id, customer_id FROM customer_coupon WHERE coupon_id IN :couponIds", nativeQuery = true)
+	List<Object[]> findCustomerLinksByCouponIds(Collection<Long> couponIds);
+
+	@Modifying
+	@Query(value = "DELETE FROM customer_coupon WHERE coupon_id IN :couponIds", nativeQuery = true)
+	int deleteCustomerLinksByCouponIds(Collection<Long> couponIds);
+
+	@Modifying
+	@Query("DELETE FROM Coupon c WHERE c.id IN :couponIds")
+	int deleteAllByIdIn(Collection<Long> couponIds);
 }
@@ -1,13 +1,27 @@
 package com.cs.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.cs.entity.Customer;
+import com.cs.repository.view.CustomerView;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
 	Customer findCustomerByEmailAndPassword(String email, String password);
 
+	boolean existsByEmail(String email);
+
+	@Query("SELECT c.email FROM Customer c WHERE c.email IS NOT NULL")
+	List<String> findAllEmails();
+
+	@Query("SELECT new com.cs.repository.view.CustomerView(c.id, c.name, c.email, c.password) FROM Customer c"
+			+ " WHERE c.id > :afterId ORDER BY c.id")
+	List<CustomerView> findPageById(long afterId, Pageable pageable);
+
 }
@@ -0,0 +1,101 @@
+package com.cs.repository.view;
+
+import java.sql.Date;
+
+import com.cs.entity.Coupon;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A read-only view of a coupon for the listings, with the same fields that a
+ * 'Coupon' is serialized with. it is made directly by the queries of the
+ * 'CouponRepository', so a listing does not load the company of every coupon
+ * and does not add the coupons to the persistence context. the id of the
+ * company is kept (and not serialized) for the checks of the company that
+ * owns the coupon.
+ */
+public class CouponView {
+
+	private final long id;
+	private final String title;
+	private final String description;
+	private final Date startDate;
+	private final Date endDate;
+	private final double price;
+	private final int amount;
+	private final int category;
+	private final String imageURL;
+	private final long companyId;
+
+	/**
+	 * the dates are taken as 'java.util.Date', since that is the type the
+	 * queries give for the dates of a coupon.
+	 */
+	public CouponView(long id, String title, String description, java.util.Date startDate, java.util.Date endDate,
+			double price, int amount, int category, String imageURL, long companyId) {
+		this.id = id;
+		this.title = title;
+		this.description = description;
+		this.startDate = toSqlDate(startDate);
+		this.endDate = toSqlDate(endDate);
+		this.price = price;
+		this.amount = amount;
+		this.category = category;
+		this.imageURL = imageURL;
+		this.companyId = companyId;
+	}
+
+	/**
+	 * @param coupon - the coupon to view.
+	 * @return the view of the coupon given.
+	 */
+	public static CouponView of(Coupon coupon) {
+		return new CouponView(coupon.getId(), coupon.getTitle(), coupon.getDescription(), coupon.getStartDate(),
+				coupon.getEndDate(), coupon.getPrice(), coupon.getAmount(), coupon.getCategory(), coupon.getImageURL(),
+				coupon.getCompany() == null ? 0 : coupon.getCompany().getId());
+	}
+
+	private static Date toSqlDate(java.util.Date date) {
+		return date == null || date instanceof Date ? (Date) date : new Date(date.getTime());
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	public Date getEndDate() {
+		return endDate;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public int getAmount() {
+		return amount;
+	}
+
+	public int getCategory() {
+		return category;
+	}
+
+	public String getImageURL() {
+		return imageURL;
+	}
+
+	@JsonIgnore
+	public long getCompanyId() {
+		return companyId;
+	}
+}
@@ -0,0 +1,37 @@
+package com.cs.repository.view;
+
+/**
+ * A read-only view of a customer for the listings, with the same fields that a
+ * 'Customer' is serialized with, made directly by the queries of the
+ * 'CustomerRepository'.
+ */
+public class CustomerView {
+
+	private final long id;
+	private final String name;
+	private final String email;
+	private final String password;
+
+	public CustomerView(long id, String name, String email, String password) {
+		this.id = id;
+		this.name = name;
+		this.email = email;
+		this.password = password;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+}
@@ -1,35 +1,56 @@
 package com.cs.rest;
 
-import org.springframework.beans.factory.config.ConfigurableBeanFactory;
-import org.springframework.context.annotation.Scope;
-import org.springframework.stereotype.Component;
-
-import com.cs.rest.service.AbsService;
-
-@Component
-@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class ClientSession {
 
 	/**
-	 * This Class is describing a client session that contains: 
-	 * service - in order to perform all actions for the user. 
+	 * This Class is describing a client session that contains:
+	 * clientType and clientId - in order to know who is the user of the session,
+	 * the services get the session in order to act on behalf of that user.
+	 * createdMillis - the time of the login.
 	 * lastAccessedMillis - in order to perform auto logout after same time.
+	 * journaledMillis - the last access that was written to the 'SessionJournal'.
 	 */
-	private AbsService service;
-	private long lastAccessedMillis;
+	private final ClientType clientType;
+	private final long clientId;
+	private final long createdMillis;
+	private volatile long lastAccessedMillis;
+	private volatile long journaledMillis;
+
+	public ClientSession(ClientType clientType, long clientId) {
+		this.clientType = clientType;
+		this.clientId = clientId;
+		this.createdMillis = System.currentTimeMillis();
+		this.lastAccessedMillis = createdMillis;
+	}
 
-	public AbsService getService() {
-		return service;
+	public ClientType getClientType() {
+		return clientType;
 	}
 
-	public void setService(AbsService service) {
-		this.service = service;
+	public long getClientId() {
+		return clientId;
+	}
+
+	public long getCreatedMillis() {
+		return createdMillis;
 	}
 
 	public long getLastAccessedMillis() {
 		return lastAccessedMillis;
 	}
 
+	public void setLastAccessedMillis(long lastAccessedMillis) {
+		this.lastAccessedMillis = lastAccessedMillis;
+	}
+
+	public long getJournaledMillis() {
+		return journaledMillis;
+	}
+
+	public void setJournaledMillis(long journaledMillis) {
+		this.journaledMillis = journaledMillis;
+	}
+
 	public void accessed() {
 		this.lastAccessedMillis = System.currentTimeMillis();
 	}
@@ -0,0 +1,34 @@
+package com.cs.rest;
+
+/**
+ * This enum is describing the types of users that are able to login to the
+ * system.
+ */
+public enum ClientType {
+
+	ADMIN("admin"), COMPANY("company"), CUSTOMER("customer");
+
+	private final String name;
+
+	private ClientType(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name - the name of the type as sent by the client side.
+	 * @return the type that matches the name given or null if there is no such
+	 *         type.
+	 */
+	public static ClientType of(String name) {
+		for (ClientType type : values()) {
+			if (type.name.equals(name)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
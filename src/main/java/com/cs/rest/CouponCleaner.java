@@ -1,55 +1,236 @@
 package com.cs.rest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.cs.entity.Coupon;
 import com.cs.repository.CouponRepository;
+import com.cs.rest.archive.CouponArchive;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.index.CouponExpiryIndex;
 
 @Service
-public class CouponCleaner implements Runnable {
+public class CouponCleaner {
 
-	private static final long DAY_LENGTH_MILLIS = 86_400_000;
+	private static final Logger LOGGER = LoggerFactory.getLogger(CouponCleaner.class);
 
-	private boolean isWorking;
-	private long lastCleanedMillis = 0;
 	private CouponRepository couponRepository;
+	private CouponExpiryIndex couponExpiryIndex;
+	private CouponArchive couponArchive;
+	private ApplicationEventPublisher eventPublisher;
+	private TransactionTemplate transactionTemplate;
+
+	private final int chunkSize;
+	private final long pauseMillis;
+
+	private volatile PurgeStats stats = new PurgeStats(0, 0, 0, 0, 0);
+
+	/**
+	 * The purges run on their own thread, so the pauses between the chunks do not
+	 * hold a thread of the scheduler from the frequent jobs (the sessions
+	 * eviction and the flush of the hot coupons).
+	 */
+	private final ExecutorService purger = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "coupon-purge");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean dueQueued = new AtomicBoolean();
+	private final AtomicBoolean allQueued = new AtomicBoolean();
 
 	@Autowired
-	public CouponCleaner(CouponRepository couponRepository) {
+	public CouponCleaner(CouponRepository couponRepository, CouponExpiryIndex couponExpiryIndex,
+			CouponArchive couponArchive, ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+			@Value("${cs.coupon.purge.chunk-size:500}") int chunkSize,
+			@Value("${cs.coupon.purge.pause-millis:50}") long pauseMillis) {
 		this.couponRepository = couponRepository;
+		this.couponExpiryIndex = couponExpiryIndex;
+		this.couponArchive = couponArchive;
+		this.eventPublisher = eventPublisher;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.chunkSize = chunkSize;
+		this.pauseMillis = pauseMillis;
+	}
+
+	@PreDestroy
+	public void onPreDestroy() {
+		purger.shutdownNow();
+	}
+
+	@Scheduled(fixedDelayString = "${cs.coupon.purge.due-interval-millis:60000}")
+	public void scheduledPurgeDue() {
+		submit(dueQueued, this::purgeDue);
+	}
+
+	@Scheduled(fixedDelayString = "${cs.coupon.purge.interval-millis:86400000}")
+	public void scheduledPurgeAll() {
+		submit(allQueued, this::purgeAll);
 	}
 
 	/**
-	 * This function will run every day and get all the coupons that the 'endDate'
-	 * of them is expired, and delete if it finds such coupons.
+	 * This function will run on the purge thread every
+	 * 'cs.coupon.purge.due-interval-millis' (a minute by default) and delete the
+	 * coupons that the 'CouponExpiryIndex' found as expired, so the coupons are
+	 * deleted just in time without scanning the 'coupon' table. when no coupon is
+	 * due the function does not touch the database at all.
 	 */
-	@Override
-	public void run() {
+	public synchronized void purgeDue() {
+		long start = System.currentTimeMillis();
+		long nextEndMillis = couponExpiryIndex.findNextEndMillis();
 
-		isWorking = true;
+		if (nextEndMillis >= start) {
+			return;
+		}
 
-		while (isWorking) {
+		purge(start, nextEndMillis, () -> couponExpiryIndex.findExpiredIds(start, chunkSize));
+	}
 
-			if (System.currentTimeMillis() - lastCleanedMillis >= DAY_LENGTH_MILLIS) {
+	/**
+	 * This function will run on the purge thread every
+	 * 'cs.coupon.purge.interval-millis' (a day by default) and delete all the
+	 * coupons that the 'endDate' of them is expired by the database, in order to
+	 * delete also the coupons that were not seen by the 'CouponExpiryIndex' of
+	 * that node.
+	 */
+	public synchronized void purgeAll() {
+		long start = System.currentTimeMillis();
+		Date now = new Date(start);
 
-				lastCleanedMillis = System.currentTimeMillis();
+		Date oldestEndDate = couponRepository.findOldestEndDateBefore(now);
 
-				List<Coupon> coupons = couponRepository.findAllByEndDateBefore(new Date());
+		if (oldestEndDate == null) {
+			return;
+		}
 
-				if (!coupons.isEmpty()) {
-					couponRepository.deleteAll(coupons);
+		purge(start, oldestEndDate.getTime(),
+				() -> couponRepository.findExpiredCouponIds(now, PageRequest.of(0, chunkSize)));
+	}
+
+	public PurgeStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * This function will queue the purge given on the purge thread, unless it is
+	 * already queued, so a long purge does not pile up runs behind it.
+	 *
+	 * @param queued - the flag of the purge given.
+	 * @param purge  - the purge to run.
+	 */
+	private void submit(AtomicBoolean queued, Runnable purge) {
+		if (queued.compareAndSet(false, true)) {
+			purger.execute(() -> {
+				queued.set(false);
+
+				try {
+					purge.run();
+				} catch (RuntimeException e) {
+					LOGGER.error("Unable to purge the expired coupons.", e);
 				}
+			});
+		}
+	}
+
+	/**
+	 * This function will delete the coupons of the chunks given until there are
+	 * no more coupons to delete.
+	 *
+	 * the coupons are deleted in chunks of 'cs.coupon.purge.chunk-size', each
+	 * chunk in its own transaction with two set based statements (the
+	 * 'customer_coupon' rows first and then the coupons), and the function pause
+	 * 'cs.coupon.purge.pause-millis' between the chunks so the purge will not
+	 * hold the tables from the requests of the users.
+	 *
+	 * before a chunk is deleted its coupons and their 'customer_coupon' rows are
+	 * written to the 'CouponArchive', if the archive fails the chunk is not
+	 * deleted and the purge stops until the next run.
+	 *
+	 * @param start           - the time the purge started in milliseconds.
+	 * @param oldestEndMillis - the end date of the oldest expired coupon.
+	 * @param chunks          - the supplier of the next chunk of coupon ids.
+	 */
+	private void purge(long start, long oldestEndMillis, Supplier<List<Long>> chunks) {
+		int purged = 0;
+		int chunkPurged;
+
+		do {
+			List<Long> couponIds = chunks.get();
+
+			try {
+				chunkPurged = purgeChunk(couponIds);
+			} catch (UncheckedIOException e) {
+				LOGGER.error("Unable to archive the expired coupons, the purge is stopped.", e);
+				break;
+			}
+
+			purged += chunkPurged;
+
+			for (Long couponId : couponIds) {
+				eventPublisher.publishEvent(CouponChangedEvent.expired(couponId));
+			}
+
+			if (chunkPurged == chunkSize && !pause()) {
+				break;
 			}
+		} while (chunkPurged == chunkSize);
+
+		long duration = System.currentTimeMillis() - start;
+		stats = new PurgeStats(start, duration, purged, stats.getTotalPurged() + purged, start - oldestEndMillis);
+
+		LOGGER.info("Purged {} expired coupons in {} ms.", purged, duration);
+	}
+
+	private int purgeChunk(List<Long> couponIds) {
+		if (couponIds.isEmpty()) {
+			return 0;
 		}
 
+		return transactionTemplate.execute(status -> {
+			if (couponArchive.isEnabled()) {
+				archive(couponIds);
+			}
+
+			couponRepository.deleteCustomerLinksByCouponIds(couponIds);
+			couponRepository.deleteAllByIdIn(couponIds);
+			return couponIds.size();
+		});
 	}
 
-	public void stop() {
-		isWorking = false;
+	private void archive(List<Long> couponIds) {
+		try {
+			couponArchive.archive(couponRepository.findAllById(couponIds),
+					couponRepository.findCustomerLinksByCouponIds(couponIds));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean pause() {
+		try {
+			Thread.sleep(pauseMillis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
 	}
 
 }
@@ -1,10 +1,6 @@
 package com.cs.rest;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import com.cs.entity.Company;
@@ -12,24 +8,15 @@ import com.cs.entity.Customer;
 import com.cs.repository.CompanyRepository;
 import com.cs.repository.CustomerRepository;
 import com.cs.rest.ex.InvalidLoginException;
-import com.cs.rest.service.AdminServiceImpl;
-import com.cs.rest.service.CompanyServiceImpl;
-import com.cs.rest.service.CustomerServiceImpl;
 
 @Service
 public class CouponSystem {
 
-	private ApplicationContext context;
 	private CustomerRepository customerRepository;
 	private CompanyRepository companyRepository;
 
-	private CouponCleaner couponCleaner;
-	private SessionCleaner sessionCleaner;
-
 	@Autowired
-	public CouponSystem(ApplicationContext context, CustomerRepository customerRepository,
-			CompanyRepository companyRepository) {
-		this.context = context;
+	public CouponSystem(CustomerRepository customerRepository, CompanyRepository companyRepository) {
 		this.customerRepository = customerRepository;
 		this.companyRepository = companyRepository;
 	}
@@ -41,61 +28,35 @@ public class CouponSystem {
 	 * @param email    - the email of the user that want to login.
 	 * @param password - the password of the user that want to login.
 	 * @param type     - the type of the user that want to login.
-	 * @return 'ClientSession' contains the correct service.
+	 * @return 'ClientSession' of the user that logged in.
 	 * @throws InvalidLoginException - in case the email, password or type are not a
 	 *                               match.
 	 */
 	public ClientSession login(String email, String password, String type) throws InvalidLoginException {
-		switch (type) {
-			case "admin":
+		ClientType clientType = ClientType.of(type);
+
+		if (clientType == null) {
+			throw new InvalidLoginException("The email or password are invalid!");
+		}
+
+		switch (clientType) {
+			case ADMIN:
 				return adminLogin(email, password);
-			case "company":
+			case COMPANY:
 				return companyLogin(email, password);
-			case "customer":
-				return customerLogin(email, password);
 			default:
-				throw new InvalidLoginException("The email or password are invalid!");
+				return customerLogin(email, password);
 		}
 	}
 
-	@Autowired
-	public void setCouponCleaner(CouponCleaner couponCleaner) {
-		this.couponCleaner = couponCleaner;
-	}
-
-	@Autowired
-	public void setSessionCleaner(SessionCleaner sessionCleaner) {
-		this.sessionCleaner = sessionCleaner;
-	}
-
-	/**
-	 * Activate the 'CouponCleaner' to delete expired coupons and the
-	 * 'SessionCleaner' to delete session after some time that .
-	 */
-	@PostConstruct
-	public void onPostConstruct() {
-		new Thread(couponCleaner).start();
-		new Thread(sessionCleaner).start();
-	}
-
-	/**
-	 * Shutdown the 'CouponCleaner' and 'SessionCleaner' if active.
-	 */
-	@PreDestroy
-	public void onPreDestroy() {
-		couponCleaner.stop();
-		sessionCleaner.stop();
-	}
-
 	/**
 	 * This method will check if the system contains customer with the email and
-	 * password given and return a 'ClientSession' contains service with the id of
-	 * the specific customer that matches those.
+	 * password given and return a 'ClientSession' with the id of the specific
+	 * customer that matches those.
 	 * 
 	 * @param email    - the email of the customer that want to login.
 	 * @param password - the password of the customer that want to login.
-	 * @return 'ClientSession' contains the customer service
-	 *         (see @CustomerServiceImpl in setCustomerId()).
+	 * @return 'ClientSession' of the customer.
 	 * @throws InvalidLoginException- in case the email, password or type are not a
 	 *                                match.
 	 */
@@ -106,23 +67,17 @@ public class CouponSystem {
 			throw new InvalidLoginException("The email or password are invalid!");
 		}
 
-		CustomerServiceImpl servise = context.getBean(CustomerServiceImpl.class);
-		servise.setCustomerId(customer.getId());
-		ClientSession session = context.getBean(ClientSession.class);
-		session.setService(servise);
-		session.accessed();
-		return session;
+		return new ClientSession(ClientType.CUSTOMER, customer.getId());
 	}
 
 	/**
 	 * This method will check if the system contains company with the email and
-	 * password given and return a 'ClientSession' contains service with the id of
-	 * the specific company that matches those.
+	 * password given and return a 'ClientSession' with the id of the specific
+	 * company that matches those.
 	 * 
 	 * @param email    - the email of the company that want to login.
 	 * @param password - the password of the company that want to login.
-	 * @return 'ClientSession' contains the customer service
-	 *         (see @CompanyServiceImpl in setCompanyId()).
+	 * @return 'ClientSession' of the company.
 	 * @throws InvalidLoginException- in case the email, password or type are not a
 	 *                                match.
 	 */
@@ -133,31 +88,22 @@ public class CouponSystem {
 			throw new InvalidLoginException("The email or password are invalid!");
 		}
 
-		CompanyServiceImpl servise = context.getBean(CompanyServiceImpl.class);
-		servise.setCompanyId(company.getId());
-		ClientSession session = context.getBean(ClientSession.class);
-		session.setService(servise);
-		session.accessed();
-		return session;
+		return new ClientSession(ClientType.COMPANY, company.getId());
 	}
 
 	/**
 	 * This method will check if the admin in the application is match with the
-	 * email and password given and return a 'ClientSession' contains admin service.
+	 * email and password given and return a 'ClientSession' of the admin.
 	 * 
 	 * @param email    - the email of the admin that want to login.
 	 * @param password - the password of the admin that want to login.
-	 * @return 'ClientSession' contains the admin service (see @AdminServiceImpl).
+	 * @return 'ClientSession' of the admin.
 	 * @throws InvalidLoginException- in case the email, password or type are not a
 	 *                                match.
 	 */
 	private ClientSession adminLogin(String email, String password) throws InvalidLoginException {
 		if ("admin".equals(email) && "1234".equals(password)) {
-			AdminServiceImpl service = context.getBean(AdminServiceImpl.class);
-			ClientSession session = context.getBean(ClientSession.class);
-			session.setService(service);
-			session.accessed();
-			return session;
+			return new ClientSession(ClientType.ADMIN, 0);
 		}
 		throw new InvalidLoginException("The email or password are invalid!");
 	}
@@ -0,0 +1,48 @@
+package com.cs.rest;
+
+/**
+ * This class is a snapshot of the 'CouponCleaner' statistics, for use in the
+ * admin side in order to monitor the purge of the expired coupons.
+ */
+public class PurgeStats {
+
+	private long lastRunMillis;
+	private long lastDurationMillis;
+	private int lastPurged;
+	private long totalPurged;
+	private long lagMillis;
+
+	public PurgeStats(long lastRunMillis, long lastDurationMillis, int lastPurged, long totalPurged,
+			long lagMillis) {
+		this.lastRunMillis = lastRunMillis;
+		this.lastDurationMillis = lastDurationMillis;
+		this.lastPurged = lastPurged;
+		this.totalPurged = totalPurged;
+		this.lagMillis = lagMillis;
+	}
+
+	public long getLastRunMillis() {
+		return lastRunMillis;
+	}
+
+	public long getLastDurationMillis() {
+		return lastDurationMillis;
+	}
+
+	public int getLastPurged() {
+		return lastPurged;
+	}
+
+	public long getTotalPurged() {
+		return totalPurged;
+	}
+
+	/**
+	 * @return how long the oldest coupon purged in the last run was expired
+	 *         before it was purged.
+	 */
+	public long getLagMillis() {
+		return lagMillis;
+	}
+
+}
@@ -1,24 +1,15 @@
 package com.cs.rest;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+/**
+ * This configuration enables the scheduler that runs the background jobs of the
+ * application (see @SessionCleaner and @CouponCleaner), the size of its pool is
+ * 'spring.task.scheduling.pool.size' so a slow job does not delay the others.
+ */
 @Configuration
+@EnableScheduling
 public class RestConfiguration {
 
-	/**
-	 * This map defined here in order to to access the same map from everywhere in
-	 * the application.
-	 * 
-	 * @return HashMap to store all 'ClientSession'-token pairs for the token based
-	 *         login system.
-	 */
-	@Bean(name = "tokens")
-	public Map<String, ClientSession> tokensMap() {
-		return new HashMap<>();
-	}
-
 }
@@ -0,0 +1,452 @@
+package com.cs.rest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class is an optional persistence of the 'SessionStore', enabled by
+ * 'cs.session.journal.enabled'. every session that is opened, accessed or
+ * closed is appended as a small record to a memory-mapped file, so the write
+ * cost of a request is a copy into the page cache. on startup the journal is
+ * replayed and the sessions that are not expired are put back in the
+ * 'SessionStore', so a restarted node does not log out its users.
+ *
+ * an access is journaled only when the session was not journaled for
+ * 'cs.session.journal.touch-interval-millis', so a reloaded session may expire
+ * up to that interval earlier than it would have.
+ *
+ * the journal is compacted periodically (and when it is getting full) on a
+ * background thread, by writing the live sessions to a new file and then
+ * copying the records that were appended in the meantime to its end.
+ *
+ * the file starts with a magic number, and the format of a record is: op(1)
+ * tokenLength(1) token clientType(1) clientId(8) millis(8) crc(4), a zero op
+ * marks the end of the journal. the replay stops at the first record that is
+ * cut or does not match its CRC, so a torn write is never read as a session.
+ */
+@Component
+public class SessionJournal {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionJournal.class);
+
+	private static final int MAGIC = 0x43534A32;
+
+	private static final byte OP_END = 0;
+	private static final byte OP_OPEN = 1;
+	private static final byte OP_TOUCH = 2;
+	private static final byte OP_CLOSE = 3;
+
+	private static final ClientType[] CLIENT_TYPES = ClientType.values();
+	private static final int HEADER_LENGTH = 4;
+	private static final int RECORD_OVERHEAD = 1 + 1 + 1 + 8 + 8 + 4;
+
+	private final boolean enabled;
+	private final Path path;
+	private final long touchIntervalMillis;
+	private long capacity;
+
+	private SessionStore sessionStore;
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+
+	private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "session-journal-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean compactQueued = new AtomicBoolean();
+	private final AtomicLong compactions = new AtomicLong();
+
+	private final LongAdder appends = new LongAdder();
+	private final LongAdder appendNanos = new LongAdder();
+	private final LongAdder droppedTouches = new LongAdder();
+
+	@Autowired
+	public SessionJournal(SessionStore sessionStore,
+			@Value("${cs.session.journal.enabled:false}") boolean enabled,
+			@Value("${cs.session.journal.path:sessions.journal}") String path,
+			@Value("${cs.session.journal.size-bytes:67108864}") long capacity,
+			@Value("${cs.session.journal.touch-interval-millis:60000}") long touchIntervalMillis) {
+		this.sessionStore = sessionStore;
+		this.enabled = enabled;
+		this.path = Paths.get(path).toAbsolutePath();
+		this.capacity = capacity;
+		this.touchIntervalMillis = touchIntervalMillis;
+	}
+
+	/**
+	 * Replay the journal into the 'SessionStore' and compact it.
+	 */
+	@PostConstruct
+	public void onPostConstruct() throws IOException {
+		if (!enabled) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		int reloaded = 0;
+
+		if (Files.exists(path)) {
+			for (Map.Entry<String, Record> entry : replay(path).entrySet()) {
+				if (restore(entry.getKey(), entry.getValue())) {
+					reloaded++;
+				}
+			}
+		}
+
+		LOGGER.info("Reloaded {} sessions from '{}' in {} ms.", reloaded, path, System.currentTimeMillis() - start);
+
+		compact();
+	}
+
+	/**
+	 * Flush the journal to the disk.
+	 */
+	@PreDestroy
+	public void onPreDestroy() throws IOException {
+		compactor.shutdownNow();
+
+		synchronized (this) {
+			if (buffer != null) {
+				buffer.force();
+				channel.close();
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void opened(String token, ClientSession session) {
+		append(OP_OPEN, token, session);
+	}
+
+	/**
+	 * This function will journal the access to the session given, unless the
+	 * session was journaled less than 'cs.session.journal.touch-interval-millis'
+	 * ago.
+	 *
+	 * @param token   - the token of the session.
+	 * @param session - the session that was accessed.
+	 */
+	public void touched(String token, ClientSession session) {
+		if (session.getLastAccessedMillis() - session.getJournaledMillis() >= touchIntervalMillis) {
+			append(OP_TOUCH, token, session);
+		}
+	}
+
+	public void closed(String token) {
+		append(OP_CLOSE, token, null);
+	}
+
+	/**
+	 * This function will request a rewrite of the journal with the live sessions
+	 * only, it runs by the scheduler every
+	 * 'cs.session.journal.compact-interval-millis'.
+	 */
+	@Scheduled(fixedDelayString = "${cs.session.journal.compact-interval-millis:600000}")
+	public void scheduledCompact() {
+		if (enabled) {
+			requestCompact();
+		}
+	}
+
+	private void append(byte op, String token, ClientSession session) {
+		if (!enabled) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+		int length = RECORD_OVERHEAD + tokenBytes.length;
+
+		synchronized (this) {
+			try {
+				if (buffer.remaining() < length + 1) {
+					if (op == OP_TOUCH) {
+						// the session is still journaled by its older record.
+						droppedTouches.increment();
+						requestCompact();
+						return;
+					}
+
+					compact();
+				}
+
+				write(buffer, op, tokenBytes, session);
+
+				if (buffer.remaining() < buffer.capacity() / 4) {
+					requestCompact();
+				}
+			} catch (IOException e) {
+				LOGGER.error("Unable to write to the session journal.", e);
+			}
+		}
+
+		appendNanos.add(System.nanoTime() - start);
+		appends.increment();
+	}
+
+	private void requestCompact() {
+		if (compactQueued.compareAndSet(false, true)) {
+			compactor.execute(() -> {
+				compactQueued.set(false);
+
+				try {
+					compact();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.error("Unable to compact the session journal.", e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * This function will write the live sessions to a new file without holding
+	 * the lock of the journal, and then under the lock copy the records that
+	 * were appended since the sessions were read to its end, and replace the
+	 * journal with it. the records copied are replayed after the sessions, so a
+	 * session that was opened or closed during the compaction is not lost.
+	 */
+	private void compact() throws IOException {
+		MappedByteBuffer source;
+		int mark;
+
+		synchronized (this) {
+			source = buffer;
+			mark = source == null ? HEADER_LENGTH : source.position();
+		}
+
+		Path compactPath = Paths.get(path.toString() + ".compact." + compactions.incrementAndGet());
+		int live = sessionStore.size();
+		long needed = HEADER_LENGTH + (long) live * (RECORD_OVERHEAD + 64) + 1;
+		long compactCapacity = capacity;
+
+		while (compactCapacity < needed * 2) {
+			compactCapacity *= 2;
+		}
+
+		FileChannel compactChannel = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		boolean replaced = false;
+
+		try {
+			MappedByteBuffer compactBuffer = compactChannel.map(MapMode.READ_WRITE, 0, compactCapacity);
+			compactBuffer.putInt(MAGIC);
+
+			sessionStore.forEach((token, session) -> write(compactBuffer,
+					OP_OPEN, token.getBytes(StandardCharsets.UTF_8), session));
+
+			synchronized (this) {
+				if (buffer != source) {
+					// the journal was compacted by a writer that found it full.
+					return;
+				}
+
+				int tailLength = source == null ? 0 : source.position() - mark;
+
+				while (compactCapacity - compactBuffer.position() < tailLength + compactCapacity / 4) {
+					compactCapacity *= 2;
+				}
+
+				MappedByteBuffer target = compactBuffer;
+
+				if (compactCapacity > compactBuffer.capacity()) {
+					target = compactChannel.map(MapMode.READ_WRITE, 0, compactCapacity);
+					target.position(compactBuffer.position());
+				}
+
+				if (tailLength > 0) {
+					ByteBuffer tail = source.duplicate();
+					tail.position(mark);
+					tail.limit(mark + tailLength);
+					target.put(tail);
+				}
+
+				target.force();
+				Files.move(compactPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				if (channel != null) {
+					channel.close();
+				}
+
+				channel = compactChannel;
+				buffer = target;
+				capacity = compactCapacity;
+				replaced = true;
+			}
+		} finally {
+			if (!replaced) {
+				compactChannel.close();
+				Files.deleteIfExists(compactPath);
+			}
+		}
+
+		long count = appends.sum();
+		LOGGER.info("Compacted the session journal to {} sessions, average append {} ns, {} touches dropped.", live,
+				count == 0 ? 0 : appendNanos.sum() / count, droppedTouches.sum());
+	}
+
+	/**
+	 * This function will read the journal at the path given into the last
+	 * record of every session that was not closed. a file without the magic
+	 * number is not a journal and nothing is read from it.
+	 *
+	 * @param journalPath - the path of the journal.
+	 * @return the records by the token of the session.
+	 */
+	static Map<String, Record> replay(Path journalPath) throws IOException {
+		Map<String, Record> records = new LinkedHashMap<>();
+
+		try (FileChannel replayChannel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+			MappedByteBuffer replayBuffer = replayChannel.map(MapMode.READ_ONLY, 0, replayChannel.size());
+			if (replayBuffer.remaining() < HEADER_LENGTH || replayBuffer.getInt(0) != MAGIC) {
+				LOGGER.warn("Ignoring '{}', it is not a session journal.", journalPath);
+				return records;
+			}
+
+			CRC32 crc = new CRC32();
+			replayBuffer.position(HEADER_LENGTH);
+
+			while (replayBuffer.remaining() >= RECORD_OVERHEAD) {
+				int start = replayBuffer.position();
+				byte op = replayBuffer.get();
+
+				if (op == OP_END) {
+					break;
+				}
+
+				int tokenLength = replayBuffer.get() & 0xFF;
+
+				if (op > OP_CLOSE || replayBuffer.remaining() < tokenLength + RECORD_OVERHEAD - 2) {
+					LOGGER.warn("Ignoring a torn session journal record at {}.", start);
+					break;
+				}
+
+				byte[] tokenBytes = new byte[tokenLength];
+				replayBuffer.get(tokenBytes);
+				byte clientType = replayBuffer.get();
+				long clientId = replayBuffer.getLong();
+				long millis = replayBuffer.getLong();
+
+				ByteBuffer record = replayBuffer.duplicate();
+				record.position(start);
+				record.limit(replayBuffer.position());
+				crc.reset();
+				crc.update(record);
+
+				if (replayBuffer.getInt() != (int) crc.getValue()) {
+					LOGGER.warn("Ignoring a torn session journal record at {}.", start);
+					break;
+				}
+
+				String token = new String(tokenBytes, StandardCharsets.UTF_8);
+
+				if (op == OP_CLOSE) {
+					records.remove(token);
+				} else if (op == OP_OPEN || records.containsKey(token)) {
+					records.put(token, new Record(clientType, clientId, millis));
+				}
+			}
+		}
+
+		return records;
+	}
+
+	private boolean restore(String token, Record record) {
+		if (System.currentTimeMillis() - record.millis >= SessionStore.SESSION_LENGTH_MILLIS
+				|| record.clientType < 0 || record.clientType >= CLIENT_TYPES.length) {
+			return false;
+		}
+
+		ClientSession session = new ClientSession(CLIENT_TYPES[record.clientType], record.clientId);
+		session.setLastAccessedMillis(record.millis);
+		session.setJournaledMillis(record.millis);
+		sessionStore.put(token, session);
+		return true;
+	}
+
+	private static void write(MappedByteBuffer target, byte op, byte[] tokenBytes, ClientSession session) {
+		int start = target.position();
+
+		target.put(op);
+		target.put((byte) tokenBytes.length);
+		target.put(tokenBytes);
+
+		if (session == null) {
+			target.put((byte) -1);
+			target.putLong(0);
+			target.putLong(0);
+		} else {
+			long millis = session.getLastAccessedMillis();
+
+			target.put((byte) session.getClientType().ordinal());
+			target.putLong(session.getClientId());
+			target.putLong(millis);
+			session.setJournaledMillis(millis);
+		}
+
+		ByteBuffer record = target.duplicate();
+		record.position(start);
+		record.limit(target.position());
+
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		target.putInt((int) crc.getValue());
+	}
+
+	static class Record {
+
+		private final byte clientType;
+		private final long clientId;
+		private final long millis;
+
+		private Record(byte clientType, long clientId, long millis) {
+			this.clientType = clientType;
+			this.clientId = clientId;
+			this.millis = millis;
+		}
+
+		byte getClientType() {
+			return clientType;
+		}
+
+		long getClientId() {
+			return clientId;
+		}
+
+		long getMillis() {
+			return millis;
+		}
+	}
+
+}
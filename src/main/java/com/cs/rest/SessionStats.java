@@ -0,0 +1,44 @@
+package com.cs.rest;
+
+/**
+ * This class is a snapshot of the 'SessionStore' statistics, for use in the
+ * admin side in order to monitor the login system.
+ */
+public class SessionStats {
+
+	private int size;
+	private long evictions;
+	private double evictionsPerSecond;
+	private long lookups;
+	private double averageLookupNanos;
+
+	public SessionStats(int size, long evictions, double evictionsPerSecond, long lookups,
+			double averageLookupNanos) {
+		this.size = size;
+		this.evictions = evictions;
+		this.evictionsPerSecond = evictionsPerSecond;
+		this.lookups = lookups;
+		this.averageLookupNanos = averageLookupNanos;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public double getEvictionsPerSecond() {
+		return evictionsPerSecond;
+	}
+
+	public long getLookups() {
+		return lookups;
+	}
+
+	public double getAverageLookupNanos() {
+		return averageLookupNanos;
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.cs.rest;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * This class is the store of all the 'ClientSession'-token pairs for the token
+ * based login system, it replaces the plain 'HashMap' that was shared between
+ * the controllers and the 'SessionCleaner'.
+ *
+ * The sessions are kept in a 'ConcurrentHashMap' so lookups never lock, and
+ * every token is also registered in a time-ordered bucket (one bucket per
+ * 'TICK_MILLIS') of the moment it may expire. the 'SessionCleaner' only visits
+ * the buckets that are due, so an eviction run costs O(expired) and not
+ * O(sessions). a session that was accessed since it was registered is simply
+ * moved to the bucket of its new deadline.
+ */
+@Component
+public class SessionStore {
+
+	private static final long SESSION_LENGTH_MIN = 30;
+	private static final long MIN_LENGTH_MILLIS = 60_000;
+	public static final long SESSION_LENGTH_MILLIS = SESSION_LENGTH_MIN * MIN_LENGTH_MILLIS;
+	private static final long TICK_MILLIS = 1_000;
+
+	private final Map<String, ClientSession> sessions = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, Queue<String>> expiryBuckets = new ConcurrentSkipListMap<>();
+
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder lookupNanos = new LongAdder();
+
+	private volatile double evictionsPerSecond;
+	private long lastRateMillis = System.currentTimeMillis();
+	private long lastRateEvictions;
+
+	/**
+	 * This function will store the session given under the token given and
+	 * register it for expiry.
+	 *
+	 * @param token   - the key of the session.
+	 * @param session - the session to store.
+	 */
+	public void put(String token, ClientSession session) {
+		sessions.put(token, session);
+		schedule(token, session.getLastAccessedMillis());
+	}
+
+	/**
+	 * This function will return the session of the token given and notify the
+	 * session that it been accessed.
+	 *
+	 * @param token - the key of the session.
+	 * @return the session stored under the token or null if there is no such
+	 *         session or it was expired.
+	 */
+	public ClientSession get(String token) {
+		long start = System.nanoTime();
+
+		ClientSession session = sessions.get(token);
+
+		if (session != null) {
+			if (isExpired(session, System.currentTimeMillis())) {
+				session = null;
+			} else {
+				session.accessed();
+			}
+		}
+
+		lookupNanos.add(System.nanoTime() - start);
+		lookups.increment();
+		return session;
+	}
+
+	public void remove(String token) {
+		sessions.remove(token);
+	}
+
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * This function will run the action given on every session in the store.
+	 *
+	 * @param action - the action to run with the token and the session.
+	 */
+	public void forEach(BiConsumer<String, ClientSession> action) {
+		sessions.forEach(action);
+	}
+
+	/**
+	 * This function will evict all the sessions that their time passed, it visits
+	 * only the buckets that are due until the time given.
+	 *
+	 * @param nowMillis - the current time in milliseconds.
+	 * @return the number of sessions evicted.
+	 */
+	public int evictExpired(long nowMillis) {
+		int evicted = 0;
+		long currentTick = nowMillis / TICK_MILLIS;
+
+		Map.Entry<Long, Queue<String>> bucket;
+
+		while ((bucket = expiryBuckets.firstEntry()) != null && bucket.getKey() <= currentTick) {
+			expiryBuckets.remove(bucket.getKey());
+
+			for (String token : bucket.getValue()) {
+				ClientSession session = sessions.get(token);
+
+				if (session == null) {
+					continue;
+				}
+
+				if (isExpired(session, nowMillis)) {
+					if (sessions.remove(token, session)) {
+						evicted++;
+					}
+				} else {
+					schedule(token, session.getLastAccessedMillis());
+				}
+			}
+		}
+
+		evictions.add(evicted);
+		updateEvictionRate(nowMillis);
+		return evicted;
+	}
+
+	/**
+	 * @return a snapshot of the store statistics.
+	 */
+	public SessionStats getStats() {
+		long lookupCount = lookups.sum();
+		double averageLookupNanos = lookupCount == 0 ? 0 : (double) lookupNanos.sum() / lookupCount;
+
+		return new SessionStats(sessions.size(), evictions.sum(), evictionsPerSecond, lookupCount,
+				averageLookupNanos);
+	}
+
+	private void schedule(String token, long lastAccessedMillis) {
+		long tick = (lastAccessedMillis + SESSION_LENGTH_MILLIS) / TICK_MILLIS + 1;
+		expiryBuckets.computeIfAbsent(tick, t -> new ConcurrentLinkedQueue<>()).add(token);
+	}
+
+	private boolean isExpired(ClientSession session, long nowMillis) {
+		return nowMillis - session.getLastAccessedMillis() >= SESSION_LENGTH_MILLIS;
+	}
+
+	private synchronized void updateEvictionRate(long nowMillis) {
+		long elapsed = nowMillis - lastRateMillis;
+
+		if (elapsed >= TICK_MILLIS) {
+			long total = evictions.sum();
+			evictionsPerSecond = (total - lastRateEvictions) * 1000.0 / elapsed;
+			lastRateEvictions = total;
+			lastRateMillis = nowMillis;
+		}
+	}
+
+}
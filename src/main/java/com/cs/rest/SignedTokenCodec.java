@@ -0,0 +1,150 @@
+package com.cs.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class is encoding and verifying the stateless tokens of the login
+ * system. a token is built from the type of the client, the id of the client
+ * and the expiry time, signed with HMAC-SHA256 by the secret in
+ * 'cs.session.token-secret', so every node that shares the secret is able to
+ * verify it without the 'SessionStore'.
+ *
+ * the format of the token is: base64url(type:id:expiryMillis).base64url(mac)
+ */
+@Component
+public class SignedTokenCodec {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SignedTokenCodec.class);
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final SecretKeySpec key;
+	private final ThreadLocal<Mac> macs;
+
+	public SignedTokenCodec(@Value("${cs.session.token-secret:}") String secret) {
+		byte[] secretBytes;
+
+		if (secret.isEmpty()) {
+			LOGGER.warn("No 'cs.session.token-secret' was set, signed tokens will be valid on this node only.");
+			secretBytes = new byte[32];
+			new SecureRandom().nextBytes(secretBytes);
+		} else {
+			secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+		}
+
+		this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+		this.macs = ThreadLocal.withInitial(this::newMac);
+	}
+
+	/**
+	 * This function will build a signed token for the client given.
+	 *
+	 * @param clientType   - the type of the client (admin, company or customer).
+	 * @param clientId     - the id of the client.
+	 * @param expiryMillis - the time the token is no longer valid.
+	 * @return the signed token.
+	 */
+	public String encode(String clientType, long clientId, long expiryMillis) {
+		byte[] payload = String.format("%s:%d:%d", clientType, clientId, expiryMillis)
+				.getBytes(StandardCharsets.UTF_8);
+
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+	}
+
+	/**
+	 * This function will verify the signature of the token given in constant time
+	 * and return its content.
+	 *
+	 * @param token - the token to verify.
+	 * @return the content of the token or null if the token is not valid.
+	 */
+	public Claims decode(String token) {
+		int dot = token.indexOf('.');
+
+		if (dot <= 0 || dot == token.length() - 1) {
+			return null;
+		}
+
+		byte[] payload;
+		byte[] signature;
+
+		try {
+			Base64.Decoder decoder = Base64.getUrlDecoder();
+			payload = decoder.decode(token.substring(0, dot));
+			signature = decoder.decode(token.substring(dot + 1));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+
+		if (!MessageDigest.isEqual(sign(payload), signature)) {
+			return null;
+		}
+
+		String[] parts = new String(payload, StandardCharsets.UTF_8).split(":");
+
+		if (parts.length != 3) {
+			return null;
+		}
+
+		try {
+			return new Claims(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private byte[] sign(byte[] payload) {
+		return macs.get().doFinal(payload);
+	}
+
+	private Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to initialize the token signature.", e);
+		}
+	}
+
+	/**
+	 * This class is the content of a verified token.
+	 */
+	public static class Claims {
+
+		private final String clientType;
+		private final long clientId;
+		private final long expiryMillis;
+
+		public Claims(String clientType, long clientId, long expiryMillis) {
+			this.clientType = clientType;
+			this.clientId = clientId;
+			this.expiryMillis = expiryMillis;
+		}
+
+		public String getClientType() {
+			return clientType;
+		}
+
+		public long getClientId() {
+			return clientId;
+		}
+
+		public long getExpiryMillis() {
+			return expiryMillis;
+		}
+	}
+
+}
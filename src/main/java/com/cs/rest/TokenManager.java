@@ -0,0 +1,158 @@
+package com.cs.rest;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.cs.rest.SignedTokenCodec.Claims;
+import com.cs.rest.ex.InvalidLoginException;
+
+/**
+ * This class is the entry point of the token based login system, it opens,
+ * resolves and closes the tokens of the users by the mode that was set in
+ * 'cs.session.token-mode':
+ *
+ * map - the token is a random key of the session stored in the
+ * 'SessionStore', so it is valid only on the node that created it.
+ *
+ * signed - the type, id and expiry of the user are signed inside the token
+ * (see @SignedTokenCodec), so any node is able to resolve it without a shared
+ * store. a token that was logged out is kept in a small revocation list until
+ * its expiry.
+ *
+ * in 'map' mode the sessions may also be written to the 'SessionJournal' in
+ * order to survive a restart.
+ */
+@Service
+public class TokenManager {
+
+	private static final int LENGTH_TOKEN = 15;
+
+	public static final String MODE_MAP = "map";
+	public static final String MODE_SIGNED = "signed";
+
+	private final boolean signed;
+
+	private SessionStore sessionStore;
+	private SessionJournal sessionJournal;
+	private SignedTokenCodec tokenCodec;
+
+	/**
+	 * The signed tokens that were logged out before their expiry, mapped to their
+	 * expiry time so they can be dropped from here once they expire anyway.
+	 */
+	private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+	@Autowired
+	public TokenManager(SessionStore sessionStore, SessionJournal sessionJournal, SignedTokenCodec tokenCodec,
+			@Value("${cs.session.token-mode:map}") String mode) {
+		this.sessionStore = sessionStore;
+		this.sessionJournal = sessionJournal;
+		this.tokenCodec = tokenCodec;
+		this.signed = MODE_SIGNED.equals(mode);
+	}
+
+	/**
+	 * This function will generate a token for the session given, and store the
+	 * session in the 'SessionStore' when the mode is 'map'.
+	 *
+	 * @param session - the session of the user that logged in.
+	 * @return the token of the session.
+	 */
+	public String open(ClientSession session) {
+		if (signed) {
+			return tokenCodec.encode(session.getClientType().getName(), session.getClientId(),
+					session.getLastAccessedMillis() + SessionStore.SESSION_LENGTH_MILLIS);
+		}
+
+		String token = generateToken();
+		sessionStore.put(token, session);
+		sessionJournal.opened(token, session);
+		return token;
+	}
+
+	/**
+	 * This function will return the session of the token given.
+	 *
+	 * @param token - the token of the user.
+	 * @return the session of the token.
+	 * @throws InvalidLoginException - if the token given is not valid, expired or
+	 *                               was logged out.
+	 */
+	public ClientSession resolve(String token) throws InvalidLoginException {
+		ClientSession session = signed ? resolveSigned(token) : sessionStore.get(token);
+
+		if (session == null) {
+			throw new InvalidLoginException("The login timed out, please login again.");
+		}
+
+		if (!signed) {
+			sessionJournal.touched(token, session);
+		}
+
+		return session;
+	}
+
+	/**
+	 * This function will close the token given so it can not be used anymore.
+	 *
+	 * @param token - the token of the user that logged out.
+	 */
+	public void close(String token) {
+		if (!signed) {
+			sessionStore.remove(token);
+			sessionJournal.closed(token);
+			return;
+		}
+
+		Claims claims = tokenCodec.decode(token);
+
+		if (claims != null && claims.getExpiryMillis() > System.currentTimeMillis()) {
+			revokedTokens.put(token, claims.getExpiryMillis());
+		}
+	}
+
+	/**
+	 * This function will drop the revoked tokens that are expired anyway.
+	 *
+	 * @param nowMillis - the current time in milliseconds.
+	 */
+	public void purgeRevoked(long nowMillis) {
+		revokedTokens.values().removeIf(expiryMillis -> expiryMillis <= nowMillis);
+	}
+
+	public boolean isSigned() {
+		return signed;
+	}
+
+	private ClientSession resolveSigned(String token) {
+		Claims claims = tokenCodec.decode(token);
+
+		if (claims == null || claims.getExpiryMillis() <= System.currentTimeMillis()
+				|| revokedTokens.containsKey(token)) {
+			return null;
+		}
+
+		ClientType clientType = ClientType.of(claims.getClientType());
+
+		if (clientType == null) {
+			return null;
+		}
+
+		ClientSession session = new ClientSession(clientType, claims.getClientId());
+		session.setLastAccessedMillis(claims.getExpiryMillis() - SessionStore.SESSION_LENGTH_MILLIS);
+		return session;
+	}
+
+	private String generateToken() {
+		return UUID.randomUUID()
+				.toString()
+				.replaceAll("-", "")
+				.substring(0, LENGTH_TOKEN);
+	}
+
+}
@@ -0,0 +1,271 @@
+package com.cs.rest.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+
+/**
+ * This class is the cold storage of the expired coupons, the 'CouponCleaner'
+ * writes every chunk of expired coupons and their 'customer_coupon' rows here
+ * before it deletes them, so the live tables stay small without losing the
+ * purchase history.
+ *
+ * every chunk is written once to its own gzip segment file in the directory
+ * 'cs.coupon.archive.path' and never changed after that. inside a segment the
+ * values are written column by column (all the ids, then all the company ids
+ * and so on) so similar values are close to each other and compress well.
+ */
+@Component
+public class CouponArchive {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CouponArchive.class);
+
+	private static final int SEGMENT_VERSION = 1;
+	private static final String SEGMENT_SUFFIX = ".seg.gz";
+
+	private final boolean enabled;
+	private final Path directory;
+	private final AtomicLong sequence = new AtomicLong();
+
+	public CouponArchive(@Value("${cs.coupon.archive.enabled:true}") boolean enabled,
+			@Value("${cs.coupon.archive.path:archive}") String directory) {
+		this.enabled = enabled;
+		this.directory = Paths.get(directory);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * This function will write the coupons given and their customers to a new
+	 * segment of the archive.
+	 *
+	 * @param coupons - the coupons to archive.
+	 * @param links   - the 'customer_coupon' rows of the coupons, as pairs of
+	 *                coupon id and customer id.
+	 * @throws IOException - in case the segment could not be written, the coupons
+	 *                     must not be deleted in that case.
+	 */
+	public void archive(List<Coupon> coupons, List<Object[]> links) throws IOException {
+		if (!enabled || coupons.isEmpty()) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		Files.createDirectories(directory);
+
+		String name = String.format("coupons-%d-%d", start, sequence.incrementAndGet());
+		Path temp = directory.resolve(name + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(
+				new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), 1 << 16))) {
+
+			out.writeInt(SEGMENT_VERSION);
+			out.writeInt(coupons.size());
+
+			for (Coupon coupon : coupons) {
+				out.writeLong(coupon.getId());
+			}
+			for (Coupon coupon : coupons) {
+				out.writeLong(coupon.getCompany() == null ? 0 : coupon.getCompany().getId());
+			}
+			for (Coupon coupon : coupons) {
+				out.writeLong(coupon.getStartDate() == null ? Long.MIN_VALUE : coupon.getStartDate().getTime());
+			}
+			for (Coupon coupon : coupons) {
+				out.writeLong(coupon.getEndDate() == null ? Long.MIN_VALUE : coupon.getEndDate().getTime());
+			}
+			for (Coupon coupon : coupons) {
+				out.writeDouble(coupon.getPrice());
+			}
+			for (Coupon coupon : coupons) {
+				out.writeInt(coupon.getAmount());
+			}
+			for (Coupon coupon : coupons) {
+				out.writeInt(coupon.getCategory());
+			}
+			for (Coupon coupon : coupons) {
+				writeString(out, coupon.getTitle());
+			}
+			for (Coupon coupon : coupons) {
+				writeString(out, coupon.getDescription());
+			}
+			for (Coupon coupon : coupons) {
+				writeString(out, coupon.getImageURL());
+			}
+
+			out.writeInt(links.size());
+
+			for (Object[] link : links) {
+				out.writeLong(((Number) link[0]).longValue());
+			}
+			for (Object[] link : links) {
+				out.writeLong(((Number) link[1]).longValue());
+			}
+		}
+
+		Files.move(temp, directory.resolve(name + SEGMENT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+
+		LOGGER.info("Archived {} coupons and {} purchases in {} ms.", coupons.size(), links.size(),
+				System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * @param companyId - the id of the company.
+	 * @return all the archived coupons of the company given.
+	 * @throws IOException - in case the archive could not be read.
+	 */
+	public List<ArchivedCoupon> findByCompany(long companyId) throws IOException {
+		return find(coupon -> coupon.getCompanyId() == companyId);
+	}
+
+	/**
+	 * @param customerId - the id of the customer.
+	 * @return all the archived coupons that the customer given purchased.
+	 * @throws IOException - in case the archive could not be read.
+	 */
+	public List<ArchivedCoupon> findByCustomer(long customerId) throws IOException {
+		return find(coupon -> coupon.getCustomerIds().contains(customerId));
+	}
+
+	/**
+	 * This function will read the segments of the archive one at a time and keep
+	 * only the coupons that match the filter given, so the memory of a query is
+	 * one segment and its result and not the whole archive. a coupon that was
+	 * archived twice (in case the delete after the archive failed) is returned
+	 * once.
+	 */
+	private List<ArchivedCoupon> find(Predicate<ArchivedCoupon> filter) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return Collections.emptyList();
+		}
+
+		List<Path> segments = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			stream.forEach(segments::add);
+		}
+
+		Collections.sort(segments);
+		Map<Long, ArchivedCoupon> coupons = new LinkedHashMap<>();
+
+		for (Path segment : segments) {
+			for (ArchivedCoupon coupon : readSegment(segment)) {
+				if (filter.test(coupon)) {
+					coupons.put(coupon.getId(), coupon);
+				} else {
+					coupons.remove(coupon.getId());
+				}
+			}
+		}
+		return new ArrayList<>(coupons.values());
+	}
+
+	private List<ArchivedCoupon> readSegment(Path segment) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new GZIPInputStream(new BufferedInputStream(Files.newInputStream(segment)), 1 << 16))) {
+
+			if (in.readInt() != SEGMENT_VERSION) {
+				throw new IOException(String.format("Unknown version of the archive segment '%s'.", segment));
+			}
+
+			int size = in.readInt();
+			List<ArchivedCoupon> coupons = new ArrayList<>(size);
+			Map<Long, ArchivedCoupon> couponsById = new LinkedHashMap<>();
+
+			for (int i = 0; i < size; i++) {
+				ArchivedCoupon coupon = new ArchivedCoupon();
+				coupon.setId(in.readLong());
+				coupons.add(coupon);
+				couponsById.put(coupon.getId(), coupon);
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setCompanyId(in.readLong());
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setStartDate(readDate(in));
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setEndDate(readDate(in));
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setPrice(in.readDouble());
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setAmount(in.readInt());
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setCategory(in.readInt());
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setTitle(readString(in));
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setDescription(readString(in));
+			}
+			for (ArchivedCoupon coupon : coupons) {
+				coupon.setImageURL(readString(in));
+			}
+
+			int linkCount = in.readInt();
+			long[] linkCouponIds = new long[linkCount];
+
+			for (int i = 0; i < linkCount; i++) {
+				linkCouponIds[i] = in.readLong();
+			}
+			for (int i = 0; i < linkCount; i++) {
+				long customerId = in.readLong();
+				ArchivedCoupon coupon = couponsById.get(linkCouponIds[i]);
+
+				if (coupon != null) {
+					coupon.addCustomerId(customerId);
+				}
+			}
+
+			return coupons;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static Date readDate(DataInputStream in) throws IOException {
+		long millis = in.readLong();
+		return millis == Long.MIN_VALUE ? null : new Date(millis);
+	}
+
+}
@@ -1,11 +1,12 @@
 package com.cs.rest.controller;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,20 +16,40 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.cs.entity.Company;
 import com.cs.entity.Coupon;
 import com.cs.entity.Customer;
+import com.cs.repository.view.CompanyView;
+import com.cs.repository.view.CouponView;
+import com.cs.repository.view.CustomerView;
 import com.cs.rest.ClientSession;
+import com.cs.rest.ClientType;
+import com.cs.rest.PurgeStats;
+import com.cs.rest.SessionStats;
+import com.cs.rest.TokenManager;
+import com.cs.rest.archive.ArchivedCoupon;
 import com.cs.rest.ex.EmailAlreadyExistsException;
 import com.cs.rest.ex.IllegalChangeException;
 import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidExportException;
 import com.cs.rest.ex.InvalidLoginException;
+import com.cs.rest.ex.InvalidPageException;
 import com.cs.rest.ex.InvalidUserException;
 import com.cs.rest.ex.NoCompanyFoundException;
 import com.cs.rest.ex.NoCouponFoundException;
 import com.cs.rest.ex.NoCustomerFoundException;
+import com.cs.rest.export.ExportFormat;
+import com.cs.rest.export.ExportTable;
+import com.cs.rest.index.CacheStats;
+import com.cs.rest.index.LookupStats;
+import com.cs.rest.index.OwnedCouponStats;
+import com.cs.rest.index.WalletStats;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.purchase.PipelineStats;
 import com.cs.rest.service.AdminService;
 
 @CrossOrigin("http://localhost:4200")
@@ -37,41 +58,40 @@ import com.cs.rest.service.AdminService;
 public class AdminController {
 
 	/**
-	 * This map defined in 'RestConfiguration' in order to to access the same map
-	 * from everywhere in the application.
+	 * This manager is shared by all the controllers in order to access the same
+	 * sessions from everywhere in the application.
 	 */
-	private Map<String, ClientSession> tokensMap;
+	private TokenManager tokenManager;
+	private AdminService adminService;
 
 	@Autowired
-	public AdminController(@Qualifier("tokens") Map<String, ClientSession> tokensMap) {
-		this.tokensMap = tokensMap;
+	public AdminController(TokenManager tokenManager, AdminService adminService) {
+		this.tokenManager = tokenManager;
+		this.adminService = adminService;
 	}
 
 	/**
-	 * This function is getting the service of the admin that stored in the
-	 * 'tokensMap' inside the 'ClientSession' by the key 'token' given, or throws
-	 * exception if the session expired or the token not exist. the function also
-	 * notify the session that it been accessed.
+	 * This function is getting the service of the admin after checking that the
+	 * 'ClientSession' of the token given (see @TokenManager) is of the admin, or
+	 * throws exception if the session expired, the token not valid or the session
+	 * is not of the admin. the function also notify the session that it been
+	 * accessed.
 	 * 
-	 * @param token - the key of the value 'ClientSession' that stored in
-	 *              'tokensMap'.
-	 * @return AdminService - the service of the admin that matches the token that
-	 *         was given.
+	 * @param token - the token of the 'ClientSession'.
+	 * @return AdminService - the service of the admin.
 	 * @throws InvalidLoginException - if the token given not match to any
-	 *                               'ClientSession' in the 'tokensMap' or the
-	 *                               session was expired.
+	 *                               'ClientSession' of the admin or the session
+	 *                               was expired.
 	 */
 	private AdminService getService(String token)
 			throws InvalidLoginException {
-		ClientSession clientSession = tokensMap.get(token);
+		ClientSession clientSession = tokenManager.resolve(token);
 
-		if (clientSession == null) {
-			throw new InvalidLoginException("The login timed out, please login again.");
+		if (clientSession.getClientType() != ClientType.ADMIN) {
+			throw new InvalidLoginException("The login is not valid for that action, please login again.");
 		}
 
-		clientSession.accessed();
-
-		return (AdminService) clientSession.getService();
+		return adminService;
 	}
 
 	// ------------------------------------------Customer--------------------------------------------//
@@ -84,8 +104,7 @@ public class AdminController {
 
 		checkIfCustomerEmailExists(customer, token);
 
-		customer.setId(0);
-		getService(token).saveCustomer(customer);
+		getService(token).addCustomer(customer);
 		return ResponseEntity.ok(customer);
 	}
 
@@ -110,11 +129,34 @@ public class AdminController {
 		getService(token).deleteCustomer(id);
 	}
 
+	/**
+	 * This function will return one page of the customers of the system.
+	 * 
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of customers in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the customers and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/admin/customers/page/{token}")
+	public ResponseEntity<KeysetPage<CustomerView>> findCustomerPage(@RequestParam(required = false) String next,
+			@RequestParam(defaultValue = "50") int size, @PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(getService(token).findCustomerPage(next, size));
+	}
+
+	/**
+	 * This function will return the customers of the system, up to the maximum
+	 * size of a page (see the 'page' endpoint for the rest).
+	 */
 	@GetMapping("/admin/customers/{token}")
-	public ResponseEntity<Collection<Customer>> findAllCustomers(@PathVariable String token)
-			throws InvalidLoginException {
+	public ResponseEntity<Collection<CustomerView>> findAllCustomers(@PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
 
-		List<Customer> allCustomers = getService(token).findAllCustomers();
+		List<CustomerView> allCustomers = getService(token).findCustomerPage(null, Integer.MAX_VALUE).getItems();
 
 		if (allCustomers.isEmpty()) {
 			return ResponseEntity.noContent().build();
@@ -134,13 +176,40 @@ public class AdminController {
 		return ResponseEntity.ok(customer);
 	}
 
+	/**
+	 * This function will return one page of the coupons of the customer.
+	 * 
+	 * @param id    - the id of the customer.
+	 * @param sort  - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of coupons in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the coupons and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/admin/customers/{id}/coupons/page/{token}")
+	public ResponseEntity<KeysetPage<CouponView>> findCustomerCouponPage(@PathVariable long id,
+			@RequestParam(defaultValue = "id") String sort, @RequestParam(required = false) String next,
+			@RequestParam(defaultValue = "50") int size, @PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(getService(token).findCustomerCouponPage(id, sort, next, size));
+	}
+
+	/**
+	 * This function will return the coupons of the customer, up to the maximum
+	 * size of a page (see the 'page' endpoint for the rest).
+	 */
 	@GetMapping("/admin/customers/{id}/coupons/{token}")
-	public ResponseEntity<Collection<Coupon>> findCustomerCoupons(@PathVariable long id, @PathVariable String token)
-			throws InvalidLoginException, NoCustomerFoundException {
+	public ResponseEntity<Collection<CouponView>> findCustomerCoupons(@PathVariable long id, @PathVariable String token)
+			throws InvalidLoginException, NoCustomerFoundException, InvalidPageException {
 
 		checkIfCustomerExists(id, token);
 
-		List<Coupon> customerCoupons = getService(token).findCustomerCoupons(id);
+		List<CouponView> customerCoupons = getService(token).findCustomerCouponPage(id, "id", null, Integer.MAX_VALUE)
+				.getItems();
 
 		if (customerCoupons.isEmpty()) {
 			return ResponseEntity.noContent().build();
@@ -159,8 +228,7 @@ public class AdminController {
 
 		checkIfCompanyEmailExists(company, token);
 
-		company.setId(0);
-		getService(token).saveCompany(company);
+		getService(token).addCompany(company);
 		return ResponseEntity.ok(company);
 	}
 
@@ -185,11 +253,34 @@ public class AdminController {
 		getService(token).deleteCompany(id);
 	}
 
+	/**
+	 * This function will return one page of the companies of the system.
+	 * 
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of companies in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the companies and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/admin/companies/page/{token}")
+	public ResponseEntity<KeysetPage<CompanyView>> findCompanyPage(@RequestParam(required = false) String next,
+			@RequestParam(defaultValue = "50") int size, @PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(getService(token).findCompanyPage(next, size));
+	}
+
+	/**
+	 * This function will return the companies of the system, up to the maximum
+	 * size of a page (see the 'page' endpoint for the rest).
+	 */
 	@GetMapping("/admin/companies/{token}")
-	public ResponseEntity<Collection<Company>> findAllCompanies(@PathVariable String token)
-			throws InvalidLoginException {
+	public ResponseEntity<Collection<CompanyView>> findAllCompanies(@PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
 
-		List<Company> allCompanies = getService(token).findAllCompanies();
+		List<CompanyView> allCompanies = getService(token).findCompanyPage(null, Integer.MAX_VALUE).getItems();
 
 		if (allCompanies.isEmpty()) {
 			return ResponseEntity.noContent().build();
@@ -209,13 +300,40 @@ public class AdminController {
 		return ResponseEntity.ok(company);
 	}
 
+	/**
+	 * This function will return one page of the coupons of the company.
+	 * 
+	 * @param id    - the id of the company.
+	 * @param sort  - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of coupons in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the coupons and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/admin/companies/{id}/coupons/page/{token}")
+	public ResponseEntity<KeysetPage<CouponView>> findCompanyCouponPage(@PathVariable long id,
+			@RequestParam(defaultValue = "id") String sort, @RequestParam(required = false) String next,
+			@RequestParam(defaultValue = "50") int size, @PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(getService(token).findCompanyCouponPage(id, sort, next, size));
+	}
+
+	/**
+	 * This function will return the coupons of the company, up to the maximum
+	 * size of a page (see the 'page' endpoint for the rest).
+	 */
 	@GetMapping("/admin/companies/{id}/coupons/{token}")
-	public ResponseEntity<Collection<Coupon>> findCompanyCoupons(@PathVariable long id, @PathVariable String token)
-			throws InvalidLoginException, NoCompanyFoundException {
+	public ResponseEntity<Collection<CouponView>> findCompanyCoupons(@PathVariable long id, @PathVariable String token)
+			throws InvalidLoginException, NoCompanyFoundException, InvalidPageException {
 
 		checkIfCompanyExists(id, token);
 
-		List<Coupon> companyCoupons = getService(token).findCompanyCoupons(id);
+		List<CouponView> companyCoupons = getService(token).findCompanyCouponPage(id, "id", null, Integer.MAX_VALUE)
+				.getItems();
 
 		if (companyCoupons.isEmpty()) {
 			return ResponseEntity.noContent().build();
@@ -262,11 +380,35 @@ public class AdminController {
 		getService(token).deleteCoupon(id);
 	}
 
+	/**
+	 * This function will return one page of the coupons of the system that are not expired.
+	 * 
+	 * @param sort  - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of coupons in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the coupons and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/admin/coupons/page/{token}")
+	public ResponseEntity<KeysetPage<CouponView>> findAllCouponPage(@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(required = false) String next, @RequestParam(defaultValue = "50") int size,
+			@PathVariable String token) throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(getService(token).findAllCouponPage(sort, next, size));
+	}
+
+	/**
+	 * This function will return the coupons of the system that are not expired,
+	 * up to the maximum size of a page (see the 'page' endpoint for the rest).
+	 */
 	@GetMapping("/admin/coupons/{token}")
-	public ResponseEntity<Collection<Coupon>> findAllCoupons(@PathVariable String token)
-			throws InvalidLoginException {
+	public ResponseEntity<Collection<CouponView>> findAllCoupons(@PathVariable String token)
+			throws InvalidLoginException, InvalidPageException {
 
-		List<Coupon> allCoupons = getService(token).findAllCoupons();
+		List<CouponView> allCoupons = getService(token).findAllCouponPage("id", null, Integer.MAX_VALUE).getItems();
 
 		if (allCoupons.isEmpty()) {
 			return ResponseEntity.noContent().build();
@@ -276,12 +418,12 @@ public class AdminController {
 	}
 
 	@GetMapping("/admin/coupons/{id}/{token}")
-	public ResponseEntity<Coupon> findCouponById(@PathVariable long id, @PathVariable String token)
+	public ResponseEntity<CouponView> findCouponById(@PathVariable long id, @PathVariable String token)
 			throws InvalidLoginException, NoCouponFoundException {
 
 		checkIfCouponExists(id, token);
 
-		Coupon coupon = getService(token).findCouponById(id);
+		CouponView coupon = getService(token).findCouponById(id);
 
 		return ResponseEntity.ok(coupon);
 	}
@@ -311,6 +453,211 @@ public class AdminController {
 		return ResponseEntity.ok(companyId);
 	}
 
+	/**
+	 * This function will return the statistics of the purge of the expired
+	 * coupons, for use in the admin side in order to monitor the 'CouponCleaner'.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the statistics of the last purge.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/coupons/purge/stats/{token}")
+	public ResponseEntity<PurgeStats> getPurgeStats(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getPurgeStats());
+	}
+
+	/**
+	 * This function will mark the coupon as hot, so its purchases are admitted in
+	 * memory (see @HotCouponInventory), for use before a flash sale.
+	 * 
+	 * @param id    - the id of the coupon.
+	 * @param token - the token key to get the service from.
+	 * @throws InvalidLoginException  - if the token is invalid or expired.
+	 * @throws NoCouponFoundException - if the coupon does not exist.
+	 */
+	@PutMapping("/admin/coupons/hot/{id}/{token}")
+	public void markHotCoupon(@PathVariable long id, @PathVariable String token)
+			throws InvalidLoginException, NoCouponFoundException {
+
+		getService(token).markHotCoupon(id);
+	}
+
+	/**
+	 * This function will return the coupon to the regular purchase after its
+	 * purchases in memory are written to the database.
+	 * 
+	 * @param id    - the id of the coupon.
+	 * @param token - the token key to get the service from.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@DeleteMapping("/admin/coupons/hot/{id}/{token}")
+	public void unmarkHotCoupon(@PathVariable long id, @PathVariable String token)
+			throws InvalidLoginException {
+
+		getService(token).unmarkHotCoupon(id);
+	}
+
+	/**
+	 * This function will return the statistics of the purchase pipeline, for use
+	 * in the admin side in order to tune the window and the size of the batches.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the histograms of the batch sizes and the queueing delays.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/purchases/pipeline/stats/{token}")
+	public ResponseEntity<PipelineStats> getPipelineStats(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getPipelineStats());
+	}
+
+	/**
+	 * This function will return the expired coupons of the company from the
+	 * archive (see @CouponArchive).
+	 * 
+	 * @param id    - the id of the company.
+	 * @param token - the token key to get the service from.
+	 * @return the archived coupons of the company.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws IOException           - if the archive could not be read.
+	 */
+	@GetMapping("/admin/archive/companies/{id}/coupons/{token}")
+	public ResponseEntity<List<ArchivedCoupon>> getArchivedCompanyCoupons(@PathVariable long id,
+			@PathVariable String token) throws InvalidLoginException, IOException {
+
+		return ResponseEntity.ok(getService(token).findArchivedCompanyCoupons(id));
+	}
+
+	/**
+	 * This function will return the expired coupons that the customer purchased
+	 * from the archive (see @CouponArchive).
+	 * 
+	 * @param id    - the id of the customer.
+	 * @param token - the token key to get the service from.
+	 * @return the archived coupons of the customer.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws IOException           - if the archive could not be read.
+	 */
+	@GetMapping("/admin/archive/customers/{id}/coupons/{token}")
+	public ResponseEntity<List<ArchivedCoupon>> getArchivedCustomerCoupons(@PathVariable long id,
+			@PathVariable String token) throws InvalidLoginException, IOException {
+
+		return ResponseEntity.ok(getService(token).findArchivedCustomerCoupons(id));
+	}
+
+	// ------------------------------------------Export----------------------------------------------//
+
+	/**
+	 * This function will export all the rows of the table given, the rows are
+	 * written to the response while they are read from the database (see
+	 * @BulkExporter), so the export takes the same memory for any size of table.
+	 * 
+	 * @param table  - the table to export, 'coupons', 'customers' or 'companies'.
+	 * @param format - the format of the export, 'json', 'ndjson' or 'csv'.
+	 * @param token  - the token key to get the service from.
+	 * @return the stream of the rows, as an attachment.
+	 * @throws InvalidLoginException  - if the token is invalid or expired.
+	 * @throws InvalidExportException - if the table or the format is not valid.
+	 */
+	@GetMapping("/admin/export/{table}/{token}")
+	public ResponseEntity<StreamingResponseBody> exportTable(@PathVariable String table,
+			@RequestParam(defaultValue = "json") String format, @PathVariable String token)
+			throws InvalidLoginException, InvalidExportException {
+
+		AdminService service = getService(token);
+
+		ExportTable exportTable = ExportTable.of(table);
+		ExportFormat exportFormat = ExportFormat.of(format);
+
+		if (exportTable == null) {
+			throw new InvalidExportException(String.format("Unable to export '%s', the tables that can be exported"
+					+ " are 'coupons', 'customers' and 'companies'.", table));
+		} else if (exportFormat == null) {
+			throw new InvalidExportException(String.format("Unable to export as '%s', the formats are"
+					+ " 'json', 'ndjson' and 'csv'.", format));
+		}
+
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+				.header(HttpHeaders.CONTENT_DISPOSITION, String.format("attachment; filename=\"%s.%s\"",
+						exportTable.getName(), exportFormat.getName()))
+				.body(out -> service.exportTable(exportTable, exportFormat, out));
+	}
+
+	// ------------------------------------------Sessions--------------------------------------------//
+
+	/**
+	 * This function will return the statistics of the login system, for use in
+	 * the admin side in order to monitor the sessions.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the current statistics of the 'SessionStore'.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/sessions/stats/{token}")
+	public ResponseEntity<SessionStats> getSessionStats(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getSessionStats());
+	}
+
+	/**
+	 * This function will return the statistics of the index of the owned
+	 * coupons, in order to monitor its memory per customer.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the current statistics of the 'OwnedCouponIndex'.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/customers/owned/stats/{token}")
+	public ResponseEntity<OwnedCouponStats> getOwnedCouponStats(@PathVariable String token)
+			throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getOwnedCouponStats());
+	}
+
+	/**
+	 * This function will return the statistics of the near-cache of the coupons,
+	 * in order to tune its size and its time to live.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the current statistics of the 'CouponCache'.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/coupons/cache/stats/{token}")
+	public ResponseEntity<CacheStats> getCouponCacheStats(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getCouponCacheStats());
+	}
+
+	/**
+	 * This function will return the statistics of the lookups that the requests
+	 * did not read again, since the entity was already found in the same request.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the current statistics of the 'RequestLookups'.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/lookups/stats/{token}")
+	public ResponseEntity<LookupStats> getLookupStats(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getLookupStats());
+	}
+
+	/**
+	 * This function will return the statistics of the cache of the wallets of the
+	 * customers, with the estimated memory that the wallets take.
+	 * 
+	 * @param token - the token key to get the service from.
+	 * @return the current statistics of the 'WalletCache'.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/admin/wallets/stats/{token}")
+	public ResponseEntity<WalletStats> getWalletStats(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(getService(token).getWalletStats());
+	}
+
 	// -----------------------------------Customer-Utils--------------------------------------------//
 
 	/**
@@ -327,14 +674,10 @@ public class AdminController {
 	private void checkIfCustomerEmailExists(Customer customer, String token)
 			throws InvalidLoginException, EmailAlreadyExistsException {
 
-		List<Customer> allCustomers = getService(token).findAllCustomers();
-
-		for (Customer cust : allCustomers) {
-			if (customer.getEmail().equals(cust.getEmail())) {
-				throw new EmailAlreadyExistsException(
-						String.format("Unable to create new customer, the email '%s' already exists in the system.",
-								customer.getEmail()));
-			}
+		if (getService(token).customerEmailExists(customer.getEmail())) {
+			throw new EmailAlreadyExistsException(
+					String.format("Unable to create new customer, the email '%s' already exists in the system.",
+							customer.getEmail()));
 		}
 	}
 
@@ -423,14 +766,10 @@ public class AdminController {
 	private void checkIfCompanyEmailExists(Company company, String token)
 			throws InvalidLoginException, EmailAlreadyExistsException {
 
-		List<Company> allCompanies = getService(token).findAllCompanies();
-
-		for (Company comp : allCompanies) {
-			if (company.getEmail().equals(comp.getEmail())) {
-				throw new EmailAlreadyExistsException(
-						String.format("Unable to create new company, the email '%s' already exists in the system.",
-								company.getEmail()));
-			}
+		if (getService(token).companyEmailExists(company.getEmail())) {
+			throw new EmailAlreadyExistsException(
+					String.format("Unable to create new company, the email '%s' already exists in the system.",
+							company.getEmail()));
 		}
 	}
 
@@ -519,15 +858,11 @@ public class AdminController {
 	private void checkIfCouponTitleExists(Coupon coupon, String token)
 			throws InvalidLoginException, IllegalCouponException {
 
-		List<Coupon> allCoupons = getService(token).findAllCoupons();
-
-		for (Coupon coup : allCoupons) {
-			if (coup.getTitle().equals(coupon.getTitle())) {
-				throw new IllegalCouponException(String.format(
-						"The title '%s' is alredy exist. "
-								+ "you need to change the title in order to create that coupon.",
-						coup.getTitle()));
-			}
+		if (getService(token).couponTitleExists(coupon.getTitle())) {
+			throw new IllegalCouponException(String.format(
+					"The title '%s' is alredy exist. "
+							+ "you need to change the title in order to create that coupon.",
+					coupon.getTitle()));
 		}
 	}
 
@@ -576,13 +911,13 @@ public class AdminController {
 
 		checkIfCouponIsValid(coupon, token);
 
-		Coupon originalCoupon = getService(token).findCouponById(coupon.getId());
+		CouponView originalCoupon = getService(token).findCouponById(coupon.getId());
 
 		checkIfCompanyExists(companyId, token);
 
 		checkIfCouponExists(coupon.getId(), token);
 
-		if (originalCoupon.getCompany().getId() != companyId) {
+		if (originalCoupon.getCompanyId() != companyId) {
 			throw new IllegalChangeException(
 					"Unable to update coupon, coupon not associated with the company given.");
 		} else if (!originalCoupon.getTitle().equals(coupon.getTitle())) {
@@ -605,7 +940,7 @@ public class AdminController {
 	 *                                to any coupon in the system.
 	 */
 	private void checkIfCouponExists(long id, String token) throws InvalidLoginException, NoCouponFoundException {
-		Coupon coupon = getService(token).findCouponById(id);
+		CouponView coupon = getService(token).findCouponById(id);
 
 		if (coupon == null) {
 			throw new NoCouponFoundException("Coupon not found. Unable to find coupon with the data given.");
@@ -2,10 +2,10 @@ package com.cs.rest.controller;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,18 +13,27 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.cs.entity.Company;
 import com.cs.entity.Coupon;
+import com.cs.repository.view.CouponView;
 import com.cs.rest.ClientSession;
+import com.cs.rest.ClientType;
+import com.cs.rest.TokenManager;
+import com.cs.rest.dashboard.CompanyDashboard;
 import com.cs.rest.ex.IllegalChangeException;
 import com.cs.rest.ex.IllegalCouponException;
 import com.cs.rest.ex.InvalidLoginException;
+import com.cs.rest.ex.InvalidPageException;
 import com.cs.rest.ex.InvalidUserException;
 import com.cs.rest.ex.NoCompanyFoundException;
 import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.page.KeysetPage;
 import com.cs.rest.service.CompanyService;
 
 @CrossOrigin("http://localhost:4200")
@@ -33,40 +42,39 @@ import com.cs.rest.service.CompanyService;
 public class CompanyController {
 
 	/**
-	 * This map defined in 'RestConfiguration' in order to to access the same map
-	 * from everywhere in the application.
+	 * This manager is shared by all the controllers in order to access the same
+	 * sessions from everywhere in the application.
 	 */
-	private Map<String, ClientSession> tokensMap;
+	private TokenManager tokenManager;
+	private CompanyService companyService;
 
 	@Autowired
-	public CompanyController(@Qualifier("tokens") Map<String, ClientSession> tokensMap) {
-		this.tokensMap = tokensMap;
+	public CompanyController(TokenManager tokenManager, CompanyService companyService) {
+		this.tokenManager = tokenManager;
+		this.companyService = companyService;
 	}
 
 	/**
-	 * This function is getting the service of the company that stored in the
-	 * 'tokensMap' inside the 'ClientSession' by the key 'token' given, or throws
-	 * exception if the session expired or the token not exist. the function also
-	 * notify the session that it been accessed.
+	 * This function is getting the 'ClientSession' of the company of the token given
+	 * (see @TokenManager), or throws exception if the session expired, the token
+	 * not valid or the session is not of a company. the function also notify the
+	 * session that it been accessed.
 	 * 
-	 * @param token - the key of the value 'ClientSession' that stored in
-	 *              'tokensMap'.
-	 * @return CompanyService - the service of the company that matches with the
-	 *         token that was given.
+	 * @param token - the token of the 'ClientSession'.
+	 * @return ClientSession - the session of the company that matches the token that
+	 *         was given, to pass to the 'CompanyService'.
 	 * @throws InvalidLoginException - if the token given not match to any
-	 *                               'ClientSession' in the 'tokensMap' or the
-	 *                               session was expired.
+	 *                               'ClientSession' of a company or the session was
+	 *                               expired.
 	 */
-	private CompanyService getService(String token) throws InvalidLoginException {
-		ClientSession clientSession = tokensMap.get(token);
+	private ClientSession getSession(String token) throws InvalidLoginException {
+		ClientSession clientSession = tokenManager.resolve(token);
 
-		if (clientSession == null) {
-			throw new InvalidLoginException("The login timed out, please login again.");
+		if (clientSession.getClientType() != ClientType.COMPANY) {
+			throw new InvalidLoginException("The login is not valid for that action, please login again.");
 		}
 
-		clientSession.accessed();
-
-		return (CompanyService) clientSession.getService();
+		return clientSession;
 	}
 
 	@GetMapping("/companies/{token}")
@@ -75,7 +83,7 @@ public class CompanyController {
 
 		checkIfCompanyExists(token);
 
-		Company company = getService(token).findCurrentCompany();
+		Company company = companyService.findCurrentCompany(getSession(token));
 
 		return ResponseEntity.ok(company);
 	}
@@ -86,7 +94,7 @@ public class CompanyController {
 
 		checkIfCompanyValidToUpdate(company, token);
 
-		getService(token).save(company);
+		companyService.save(getSession(token), company);
 		return ResponseEntity.ok(company);
 	}
 
@@ -99,7 +107,7 @@ public class CompanyController {
 		checkIfCouponTitleExists(coupon, token);
 
 		coupon.setId(0);
-		getService(token).save(coupon);
+		companyService.save(getSession(token), coupon);
 		return ResponseEntity.ok(coupon);
 	}
 
@@ -112,36 +120,90 @@ public class CompanyController {
 
 		checkIfCouponValidToUpdate(coupon, token);
 
-		getService(token).save(coupon);
+		companyService.save(getSession(token), coupon);
 		return ResponseEntity.ok(coupon);
 	}
 
+	/**
+	 * This function will return one page of the coupons of the company.
+	 * 
+	 * @param sort  - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of coupons in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the coupons and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/companies/coupons/page/{token}")
+	public ResponseEntity<KeysetPage<CouponView>> findCompanyCouponPage(@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(required = false) String next, @RequestParam(defaultValue = "50") int size,
+			@PathVariable String token) throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(companyService.findCompanyCouponPage(getSession(token), sort, next, size));
+	}
+
+	/**
+	 * This function will return the coupons of the company, up to the maximum
+	 * size of a page (see the 'page' endpoint for the rest).
+	 * 
+	 * the response has the ETag of the coupons of the company, and a request with
+	 * the same ETag in 'If-None-Match' is answered with 304 Not Modified without
+	 * reading the coupons.
+	 */
 	@GetMapping("/companies/coupons/{token}")
-	public ResponseEntity<Collection<Coupon>> findCompanyCoupons(@PathVariable String token)
-			throws InvalidLoginException {
+	public ResponseEntity<Collection<CouponView>> findCompanyCoupons(@PathVariable String token,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+			throws InvalidLoginException, InvalidPageException {
+
+		String eTag = companyService.findCompanyCouponsETag(getSession(token));
 
-		List<Coupon> companyCoupons = getService(token).findCompanyCoupons();
+		if (CouponVersions.matches(ifNoneMatch, eTag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+		}
+
+		List<CouponView> companyCoupons = companyService
+				.findCompanyCouponPage(getSession(token), "id", null, Integer.MAX_VALUE).getItems();
 
 		if (companyCoupons.isEmpty()) {
-			return ResponseEntity.noContent().build();
+			return ResponseEntity.noContent().eTag(eTag).build();
 		}
 
-		return ResponseEntity.ok(companyCoupons);
+		return ResponseEntity.ok().eTag(eTag).body(companyCoupons);
 	}
 
 	@GetMapping("/companies/coupons/{couponId}/{token}")
-	public ResponseEntity<Coupon> findCouponById(@PathVariable long couponId, @PathVariable String token)
+	public ResponseEntity<CouponView> findCouponById(@PathVariable long couponId, @PathVariable String token)
 			throws InvalidLoginException, NoCouponFoundException, IllegalChangeException {
 
 		checkIfCouponExists(couponId, token);
 
-		Coupon coupon = getService(token).findCouponById(couponId);
+		CouponView coupon = companyService.findCouponById(getSession(token), couponId);
 
 		checkIfCouponAssociatedToCurrentCompany(token, coupon);
 
 		return ResponseEntity.ok(coupon);
 	}
 
+	/**
+	 * This function will return the sales of the company: the units sold, the
+	 * remaining stock and the revenue of every coupon of the company, of every
+	 * category and in total. the sales are kept in memory by the
+	 * 'SalesAggregates', so the dashboard does not read the customers of the
+	 * coupons.
+	 * 
+	 * @param token - the token of the company that send the request.
+	 * @return the dashboard of the company.
+	 * @throws InvalidLoginException - in case that the token is invalid or
+	 *                               expired.
+	 */
+	@GetMapping("/companies/dashboard/{token}")
+	public ResponseEntity<CompanyDashboard> findDashboard(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(companyService.findDashboard(getSession(token)));
+	}
+
 	// --------------------------------------------Utils-----------------------------------------------//
 
 	/**
@@ -155,7 +217,7 @@ public class CompanyController {
 	 */
 	private void checkIfCompanyExists(String token) throws InvalidLoginException, NoCompanyFoundException {
 
-		Company company = getService(token).findCurrentCompany();
+		Company company = companyService.findCurrentCompany(getSession(token));
 
 		if (company == null) {
 			throw new NoCompanyFoundException("Unable to find company.");
@@ -175,7 +237,7 @@ public class CompanyController {
 	private void checkIfCouponIsValid(Coupon coupon, String token)
 			throws IllegalCouponException, InvalidLoginException {
 
-		getService(token);
+		getSession(token);
 
 		if (coupon.getTitle() == null || coupon.getEndDate() == null) {
 			throw new IllegalCouponException("Unable to proceed. The coupon received have no title or end date.");
@@ -194,7 +256,7 @@ public class CompanyController {
 	private void checkIfCompanyIsValid(Company company, String token)
 			throws InvalidUserException, InvalidLoginException {
 
-		getService(token);
+		getSession(token);
 
 		if (company.getEmail() == null || company.getPassword() == null) {
 			throw new InvalidUserException(
@@ -222,7 +284,7 @@ public class CompanyController {
 
 		checkIfCompanyIsValid(company, token);
 
-		Company originalCompany = getService(token).findCurrentCompany();
+		Company originalCompany = companyService.findCurrentCompany(getSession(token));
 
 		if (originalCompany.getId() != company.getId()) {
 			throw new IllegalChangeException(
@@ -249,15 +311,11 @@ public class CompanyController {
 	private void checkIfCouponTitleExists(Coupon coupon, String token)
 			throws InvalidLoginException, IllegalCouponException {
 
-		List<Coupon> allCoupons = getService(token).findAllCoupons();
-
-		for (Coupon coup : allCoupons) {
-			if (coup.getTitle().equals(coupon.getTitle())) {
-				throw new IllegalCouponException(String.format(
-						"The title '%s' is alredy exist. "
-								+ "you need to change the title in order to create that coupon.",
-						coup.getTitle()));
-			}
+		if (companyService.couponTitleExists(getSession(token), coupon.getTitle())) {
+			throw new IllegalCouponException(String.format(
+					"The title '%s' is alredy exist. "
+							+ "you need to change the title in order to create that coupon.",
+					coupon.getTitle()));
 		}
 	}
 
@@ -285,7 +343,7 @@ public class CompanyController {
 
 		checkIfCouponIsValid(coupon, token);
 
-		Coupon originalCoupon = getService(token).findCouponById(coupon.getId());
+		CouponView originalCoupon = companyService.findCouponById(getSession(token), coupon.getId());
 
 		checkIfCouponAssociatedToCurrentCompany(token, originalCoupon);
 
@@ -309,10 +367,10 @@ public class CompanyController {
 	 * @throws IllegalChangeException - in case the coupon given is not match to the
 	 *                                company asking for it.
 	 */
-	private void checkIfCouponAssociatedToCurrentCompany(String token, Coupon coupon)
+	private void checkIfCouponAssociatedToCurrentCompany(String token, CouponView coupon)
 			throws InvalidLoginException, IllegalChangeException {
 
-		if (coupon.getCompany().getId() != getService(token).findCurrentCompany().getId()) {
+		if (coupon.getCompanyId() != companyService.findCurrentCompany(getSession(token)).getId()) {
 			throw new IllegalChangeException(
 					"Unable to continue! "
 							+ "id of the company that created that coupon is not match to the one currently log in.");
@@ -332,7 +390,7 @@ public class CompanyController {
 	 */
 	private void checkIfCouponExists(long couponId, String token) throws InvalidLoginException, NoCouponFoundException {
 
-		Coupon coupon = getService(token).findCouponById(couponId);
+		CouponView coupon = companyService.findCouponById(getSession(token), couponId);
 
 		if (coupon == null) {
 			throw new NoCouponFoundException("Coupon not found. Unable to find coupon with the data given");
@@ -1,11 +1,18 @@
 package com.cs.rest.controller;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,19 +20,32 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.cs.entity.Coupon;
 import com.cs.entity.Customer;
+import com.cs.repository.view.CouponView;
 import com.cs.rest.ClientSession;
+import com.cs.rest.ClientType;
+import com.cs.rest.TokenManager;
 import com.cs.rest.ex.IllegalChangeException;
 import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidCartException;
 import com.cs.rest.ex.InvalidLoginException;
+import com.cs.rest.ex.InvalidPageException;
 import com.cs.rest.ex.InvalidUserException;
 import com.cs.rest.ex.NoCouponFoundException;
 import com.cs.rest.ex.NoCustomerFoundException;
+import com.cs.rest.index.CouponSearch;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.page.KeysetPager;
+import com.cs.rest.purchase.PurchaseResult;
 import com.cs.rest.service.CustomerService;
+import com.cs.rest.snapshot.CatalogSnapshot;
 
 @CrossOrigin("http://localhost:4200")
 @RestController
@@ -33,41 +53,43 @@ import com.cs.rest.service.CustomerService;
 public class CustomerController {
 
 	/**
-	 * This map defined in 'RestConfiguration' in order to to access the same map
-	 * from everywhere in the application.
+	 * This manager is shared by all the controllers in order to access the same
+	 * sessions from everywhere in the application.
 	 */
-	private Map<String, ClientSession> tokensMap;
+	private TokenManager tokenManager;
+	private CustomerService customerService;
+
+	private final int maxCartSize;
 
 	@Autowired
-	public CustomerController(@Qualifier("tokens") Map<String, ClientSession> tokensMap) {
-		this.tokensMap = tokensMap;
+	public CustomerController(TokenManager tokenManager, CustomerService customerService,
+			@Value("${cs.purchase.checkout.max-coupons:100}") int maxCartSize) {
+		this.tokenManager = tokenManager;
+		this.customerService = customerService;
+		this.maxCartSize = maxCartSize;
 	}
 
 	/**
-	 * This function is getting the service of the customer that stored in the
-	 * 'tokensMap' inside the 'ClientSession' by the key 'token' given, or throws
-	 * exception if the session expired or the token not exist. the function also
-	 * notify the session that it been accessed.
+	 * This function is getting the 'ClientSession' of the customer of the token given
+	 * (see @TokenManager), or throws exception if the session expired, the token
+	 * not valid or the session is not of a customer. the function also notify the
+	 * session that it been accessed.
 	 * 
-	 * @param token - the key of the value 'ClientSession' that stored in
-	 *              'tokensMap'.
-	 * @return CustomerService - the service of the customer that matches the token
-	 *         that was given.
+	 * @param token - the token of the 'ClientSession'.
+	 * @return ClientSession - the session of the customer that matches the token that
+	 *         was given, to pass to the 'CustomerService'.
 	 * @throws InvalidLoginException - if the token given not match to any
-	 *                               'ClientSession' in the 'tokensMap' or the
-	 *                               session was expired.
+	 *                               'ClientSession' of a customer or the session was
+	 *                               expired.
 	 */
-	private CustomerService getService(String token)
-			throws InvalidLoginException {
-		ClientSession clientSession = tokensMap.get(token);
+	private ClientSession getSession(String token) throws InvalidLoginException {
+		ClientSession clientSession = tokenManager.resolve(token);
 
-		if (clientSession == null) {
-			throw new InvalidLoginException("The login timed out, please login again.");
+		if (clientSession.getClientType() != ClientType.CUSTOMER) {
+			throw new InvalidLoginException("The login is not valid for that action, please login again.");
 		}
 
-		clientSession.accessed();
-
-		return (CustomerService) clientSession.getService();
+		return clientSession;
 	}
 
 	@GetMapping("/customers/{token}")
@@ -76,7 +98,7 @@ public class CustomerController {
 
 		checkIfCustomerExists(token);
 
-		Customer customer = getService(token).findCurrentCustomer();
+		Customer customer = customerService.findCurrentCustomer(getSession(token));
 
 		return ResponseEntity.ok(customer);
 	}
@@ -87,57 +109,246 @@ public class CustomerController {
 
 		checkIfCustomerValidToUpdate(customer, token);
 
-		getService(token).save(customer);
+		customerService.save(getSession(token), customer);
 		return ResponseEntity.ok(customer);
 	}
 
+	/**
+	 * This function will return one page of the coupons that the customer purchased.
+	 * 
+	 * @param sort  - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of coupons in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the coupons and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/customers/customerCoupons/page/{token}")
+	public ResponseEntity<KeysetPage<CouponView>> findCustomerCouponPage(@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(required = false) String next, @RequestParam(defaultValue = "50") int size,
+			@PathVariable String token) throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(customerService.findCustomerCouponPage(getSession(token), sort, next, size));
+	}
+
+	/**
+	 * This function will return the coupons that the customer purchased, up to
+	 * the maximum size of a page (see the 'page' endpoint for the rest).
+	 * 
+	 * the response has the ETag of the coupons of the customer, and a request with
+	 * the same ETag in 'If-None-Match' is answered with 304 Not Modified without
+	 * reading the coupons. the coupons are read from the 'WalletCache'.
+	 */
 	@GetMapping("/customers/customerCoupons/{token}")
-	public ResponseEntity<Collection<Coupon>> findCustomerCoupons(@PathVariable String token)
+	public ResponseEntity<Collection<CouponView>> findCustomerCoupons(@PathVariable String token,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
 			throws InvalidLoginException {
 
-		List<Coupon> customerCoupons = getService(token).findCustomerCoupons();
+		String eTag = customerService.findCustomerCouponsETag(getSession(token));
+
+		if (CouponVersions.matches(ifNoneMatch, eTag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+		}
+
+		List<CouponView> customerCoupons = customerService.findWallet(getSession(token));
 
 		if (customerCoupons.isEmpty()) {
-			return ResponseEntity.noContent().build();
+			return ResponseEntity.noContent().eTag(eTag).build();
 		}
-		return ResponseEntity.ok(customerCoupons);
+		return ResponseEntity.ok().eTag(eTag).body(customerCoupons);
 	}
 
 	@PostMapping("/customers/purchaseCoupon/{couponId}/{token}")
 	public ResponseEntity<Coupon> purchaseCoupon(@PathVariable long couponId, @PathVariable String token)
 			throws InvalidLoginException, IllegalCouponException, NoCouponFoundException {
 
-		checkIfCouponExists(couponId, token);
+		Coupon couponPurchased = customerService.purchaseCoupon(getSession(token), couponId);
+
+		return ResponseEntity.ok(couponPurchased);
+	}
 
-		checkIfCouponInStack(couponId, token);
+	/**
+	 * This function will purchase all the coupons of the cart in one request,
+	 * every coupon gets its own result so a coupon that is out of stock does not
+	 * fail the rest of the cart.
+	 * 
+	 * @param couponIds - the ids of the coupons in the cart.
+	 * @param token     - the token of the customer.
+	 * @return the result of every coupon, in the order of the cart.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidCartException  - if the cart is bigger than
+	 *                               'cs.purchase.checkout.max-coupons' or has a
+	 *                               null or a duplicate id.
+	 */
+	@PostMapping("/customers/checkout/{token}")
+	public ResponseEntity<List<PurchaseResult>> checkout(@RequestBody List<Long> couponIds,
+			@PathVariable String token) throws InvalidLoginException, InvalidCartException {
 
-		checkIfCouponPurchased(couponId, token);
+		checkIfCartIsValid(couponIds);
 
-		Coupon couponPurchased = getService(token).purchaseCoupon(couponId);
+		List<PurchaseResult> results = customerService.checkout(getSession(token), couponIds);
 
-		return ResponseEntity.ok(couponPurchased);
+		return ResponseEntity.ok(results);
+	}
+
+	/**
+	 * This function will return the ids of the coupons that the customer owns,
+	 * in order to mark them in the catalog without loading the coupons.
+	 * 
+	 * @param token - the token of the customer.
+	 * @return the ids of the coupons of the customer.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/customers/coupons/owned/{token}")
+	public ResponseEntity<List<Long>> findOwnedCouponIds(@PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(customerService.findOwnedCouponIds(getSession(token)));
 	}
 
+	/**
+	 * This function will return one page of the coupons of the system that are not expired.
+	 * 
+	 * @param sort  - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param next  - the token of the page, from the page before it, or none for
+	 *              the first page.
+	 * @param size  - the number of coupons in the page.
+	 * @param token - the token key of the session.
+	 * @return the page of the coupons and the token of the next page.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort or the page token is not valid.
+	 */
+	@GetMapping("/customers/coupons/page/{token}")
+	public ResponseEntity<KeysetPage<CouponView>> findAllCouponPage(@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(required = false) String next, @RequestParam(defaultValue = "50") int size,
+			@PathVariable String token) throws InvalidLoginException, InvalidPageException {
+
+		return ResponseEntity.ok(customerService.findAllCouponPage(getSession(token), sort, next, size));
+	}
+
+	/**
+	 * This function will return the coupons of the system that are not expired,
+	 * up to the maximum size of a page (see the 'page' endpoint for the rest).
+	 * 
+	 * the coupons are written from the 'CatalogSnapshot', already serialized,
+	 * and already compressed when the client accepts gzip. the response has the
+	 * ETag of the catalog, and a request with the same ETag in 'If-None-Match' is
+	 * answered with 304 Not Modified.
+	 */
 	@GetMapping("/customers/coupons/{token}")
-	public ResponseEntity<Collection<Coupon>> findAllCoupons(@PathVariable String token)
+	public ResponseEntity<byte[]> findAllCoupons(@PathVariable String token,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
 			throws InvalidLoginException {
 
-		List<Coupon> allCoupons = getService(token).findAllCoupons();
+		CatalogSnapshot snapshot = customerService.findAllCouponsSnapshot(getSession(token));
+		boolean gzipped = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+		String eTag = snapshot.getETag(gzipped);
+
+		if (CouponVersions.matches(ifNoneMatch, eTag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).header(HttpHeaders.VARY,
+					HttpHeaders.ACCEPT_ENCODING).build();
+		}
+
+		if (snapshot.isEmpty()) {
+			return ResponseEntity.noContent().eTag(eTag).build();
+		}
+
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+		if (gzipped) {
+			return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzip());
+		}
+		return response.body(snapshot.getJson());
+	}
+
+	/**
+	 * This function will search the coupons of the system that are not expired
+	 * by the filters given, every filter is optional and all of them have to
+	 * match.
+	 * 
+	 * @param category  - the category of the coupons.
+	 * @param minPrice  - the lowest price, included.
+	 * @param maxPrice  - the highest price, included.
+	 * @param endAfter  - the earliest end date, included (yyyy-MM-dd).
+	 * @param endBefore - the latest end date, included (yyyy-MM-dd).
+	 * @param sort      - the sort of the coupons, 'id', 'endDate' or 'price'.
+	 * @param limit     - the maximum number of coupons to return.
+	 * @param token     - the token key of the session.
+	 * @return the coupons found, or no content if none of the coupons match.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 * @throws InvalidPageException  - if the sort is not valid.
+	 */
+	@GetMapping("/customers/coupons/search/{token}")
+	public ResponseEntity<Collection<CouponView>> searchCoupons(@RequestParam(required = false) Integer category,
+			@RequestParam(required = false) Double minPrice, @RequestParam(required = false) Double maxPrice,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) Date endAfter,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) Date endBefore,
+			@RequestParam(defaultValue = "id") String sort, @RequestParam(defaultValue = "50") int limit,
+			@PathVariable String token) throws InvalidLoginException, InvalidPageException {
+
+		CouponSearch search = new CouponSearch(category, minPrice, maxPrice, endAfter, endBefore,
+				KeysetPager.parseSort(sort), limit);
+
+		List<CouponView> coupons = customerService.searchCoupons(getSession(token), search);
+
+		if (coupons.isEmpty()) {
+			return ResponseEntity.noContent().build();
+		}
+
+		return ResponseEntity.ok(coupons);
+	}
+
+	/**
+	 * This function will search the coupons of the system that are not expired
+	 * by the words of their title and description.
+	 * 
+	 * @param q     - the words to search, the last one may be the start of a word.
+	 * @param limit - the maximum number of coupons to return.
+	 * @param token - the token key of the session.
+	 * @return the coupons found, the best match first, or no content if none of
+	 *         the coupons match.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/customers/coupons/text/{token}")
+	public ResponseEntity<Collection<CouponView>> searchCouponText(@RequestParam String q,
+			@RequestParam(defaultValue = "20") int limit, @PathVariable String token) throws InvalidLoginException {
+
+		List<CouponView> coupons = customerService.searchCouponText(getSession(token), q, limit);
 
-		if (allCoupons.isEmpty()) {
+		if (coupons.isEmpty()) {
 			return ResponseEntity.noContent().build();
 		}
 
-		return ResponseEntity.ok(allCoupons);
+		return ResponseEntity.ok(coupons);
+	}
+
+	/**
+	 * This function will return the titles of the coupons that are not expired
+	 * and have a word that starts with the prefix given, for the search box.
+	 * 
+	 * @param prefix - the start of the word.
+	 * @param limit  - the maximum number of titles to return.
+	 * @param token  - the token key of the session.
+	 * @return the titles found, the titles that start with the prefix first.
+	 * @throws InvalidLoginException - if the token is invalid or expired.
+	 */
+	@GetMapping("/customers/coupons/autocomplete/{token}")
+	public ResponseEntity<List<String>> autocompleteTitles(@RequestParam String prefix,
+			@RequestParam(defaultValue = "10") int limit, @PathVariable String token) throws InvalidLoginException {
+
+		return ResponseEntity.ok(customerService.autocompleteTitles(getSession(token), prefix, limit));
 	}
 
 	@GetMapping("/customers/coupons/{couponId}/{token}")
-	public ResponseEntity<Coupon> findCouponById(@PathVariable long couponId, @PathVariable String token)
+	public ResponseEntity<CouponView> findCouponById(@PathVariable long couponId, @PathVariable String token)
 			throws InvalidLoginException, NoCouponFoundException {
 
 		checkIfCouponExists(couponId, token);
 
-		Coupon coupon = getService(token).findCouponById(couponId);
+		CouponView coupon = customerService.findCouponById(getSession(token), couponId);
 
 		return ResponseEntity.ok(coupon);
 	}
@@ -154,7 +365,7 @@ public class CustomerController {
 	 */
 	private void checkIfCustomerExists(String token) throws InvalidLoginException, NoCustomerFoundException {
 
-		Customer customer = getService(token).findCurrentCustomer();
+		Customer customer = customerService.findCurrentCustomer(getSession(token));
 
 		if (customer == null) {
 			throw new NoCustomerFoundException("Unable to find customer.");
@@ -180,7 +391,7 @@ public class CustomerController {
 
 		checkIfCustomerIsValid(customer, token);
 
-		Customer originalCustomer = getService(token).findCurrentCustomer();
+		Customer originalCustomer = customerService.findCurrentCustomer(getSession(token));
 
 		if (originalCustomer.getId() != customer.getId()) {
 			throw new IllegalChangeException(
@@ -205,7 +416,7 @@ public class CustomerController {
 	private void checkIfCustomerIsValid(Customer customer, String token)
 			throws InvalidUserException, InvalidLoginException {
 
-		getService(token);
+		getSession(token);
 
 		if (customer.getEmail() == null || customer.getPassword() == null) {
 			throw new InvalidUserException(
@@ -215,66 +426,51 @@ public class CustomerController {
 	}
 
 	/**
-	 * This is a check method to verify that will be no duplicate purchases of
-	 * coupons.
+	 * This is a check method that checks by id if the coupon is exists in the
+	 * system.
 	 * 
 	 * @param couponId - the id of the coupon to by checked.
 	 * @param token    - the token of the company that send the request.
-	 * @throws InvalidLoginException  - in case that the token is invalid or
-	 *                                expired.
 	 * @throws NoCouponFoundException - in case of the coupon id given is no match
 	 *                                to any coupon in the system.
-	 * @throws IllegalCouponException - in case that coupon already purchased.
+	 * @throws InvalidLoginException  - in case that the token is invalid or
+	 *                                expired.
 	 */
-	private void checkIfCouponPurchased(long couponId, String token)
-			throws InvalidLoginException, IllegalCouponException {
+	private void checkIfCouponExists(long couponId, String token) throws NoCouponFoundException, InvalidLoginException {
 
-		List<Coupon> customerCoupons = getService(token).findCustomerCoupons();
+		CouponView coupon = customerService.findCouponById(getSession(token), couponId);
 
-		for (Coupon coup : customerCoupons) {
-			if (couponId == coup.getId()) {
-				throw new IllegalCouponException(String.format("Unable to purchase coupon '%s'."
-						+ " coupon already purchased, duplicate are not allowed.", coup.getTitle()));
-			}
+		if (coupon == null) {
+			throw new NoCouponFoundException("Coupon not found. Unable to find coupon with the data given");
 		}
 	}
 
 	/**
-	 * This is a check method that will check if the amount of coupon in above 0.
+	 * This is a check method to verify that the cart can be checked out in one
+	 * request, every coupon of the cart is written in the same transaction.
 	 * 
-	 * @param couponId - the id of the coupon to by checked.
-	 * @param token    - the token of the company that send the request.
-	 * @throws IllegalCouponException - in case that coupon amount is 0.
-	 * @throws InvalidLoginException  - in case that the token is invalid or
-	 *                                expired.
+	 * @param couponIds - the ids of the coupons in the cart.
+	 * @throws InvalidCartException - in case that the cart is bigger than
+	 *                              'cs.purchase.checkout.max-coupons' or has a
+	 *                              null or a duplicate id.
 	 */
-	private void checkIfCouponInStack(long couponId, String token)
-			throws IllegalCouponException, InvalidLoginException {
-		Coupon coupon = getService(token).findCouponById(couponId);
+	private void checkIfCartIsValid(List<Long> couponIds) throws InvalidCartException {
 
-		if (coupon.getAmount() <= 0) {
-			throw new IllegalCouponException(String.format("Unable to purchase coupon '%s'."
-					+ " coupon out of stack.", coupon.getTitle()));
+		if (couponIds.size() > maxCartSize) {
+			throw new InvalidCartException(
+					String.format("The cart has %d coupons, the maximum is %d.", couponIds.size(), maxCartSize));
 		}
-	}
 
-	/**
-	 * This is a check method that checks by id if the coupon is exists in the
-	 * system.
-	 * 
-	 * @param couponId - the id of the coupon to by checked.
-	 * @param token    - the token of the company that send the request.
-	 * @throws NoCouponFoundException - in case of the coupon id given is no match
-	 *                                to any coupon in the system.
-	 * @throws InvalidLoginException  - in case that the token is invalid or
-	 *                                expired.
-	 */
-	private void checkIfCouponExists(long couponId, String token) throws NoCouponFoundException, InvalidLoginException {
+		Set<Long> distinctIds = new HashSet<>();
 
-		Coupon coupon = getService(token).findCouponById(couponId);
+		for (Long couponId : couponIds) {
+			if (couponId == null) {
+				throw new InvalidCartException("The cart has a coupon without an id.");
+			}
 
-		if (coupon == null) {
-			throw new NoCouponFoundException("Coupon not found. Unable to find coupon with the data given");
+			if (!distinctIds.add(couponId)) {
+				throw new InvalidCartException(String.format("The coupon %d is in the cart more than once.", couponId));
+			}
 		}
 	}
 
@@ -1,10 +1,6 @@
 package com.cs.rest.controller;
 
-import java.util.Map;
-import java.util.UUID;
-
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,6 +13,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.cs.rest.ClientSession;
 import com.cs.rest.CouponSystem;
+import com.cs.rest.TokenManager;
 import com.cs.rest.ex.InvalidLoginException;
 
 @CrossOrigin("*")
@@ -24,26 +21,23 @@ import com.cs.rest.ex.InvalidLoginException;
 @RequestMapping("/api")
 public class LoginController {
 
-	private static final int LENGTH_TOKEN = 15;
-
 	/**
-	 * This map defined in 'RestConfiguration' in order to to access the same map
-	 * from everywhere in the application.
+	 * This manager is shared by all the controllers in order to access the same
+	 * sessions from everywhere in the application.
 	 */
-	private Map<String, ClientSession> tokensMap;
+	private TokenManager tokenManager;
 	private CouponSystem couponSystem;
 
 	@Autowired
-	public LoginController(CouponSystem couponSystem, @Qualifier("tokens") Map<String, ClientSession> tokensMap) {
+	public LoginController(CouponSystem couponSystem, TokenManager tokenManager) {
 		this.couponSystem = couponSystem;
-		this.tokensMap = tokensMap;
+		this.tokenManager = tokenManager;
 	}
 
 	/**
 	 * This method will login a user via 'CouponSystem' if the method 'login' of
-	 * 'CouponSystem' will return a 'ClientSession' this method will store it in the
-	 * 'tokensMap' and generate token in order to become the key for the session in
-	 * the 'tokensMap'.
+	 * 'CouponSystem' will return a 'ClientSession' this method will open a token
+	 * for it via 'TokenManager'.
 	 * 
 	 * @param email    - the email of the user that want to login.
 	 * @param password - the password of the user that want to login.
@@ -57,16 +51,14 @@ public class LoginController {
 		
 		ClientSession session = couponSystem.login(email, password, type);
 		
-		String token = generateToken();
-
-		tokensMap.put(token, session);
+		String token = tokenManager.open(session);
 
 		return ResponseEntity.ok(token);
 	}
 
 	@DeleteMapping("/logout/{token}")
 	public void logout(@PathVariable String token) {
-		tokensMap.remove(token);
+		tokenManager.close(token);
 	}
 
 	/**
@@ -79,21 +71,8 @@ public class LoginController {
 	 */
 	@GetMapping("/login/getLastAccessed/{token}")
 	public long getlastAccessed(@PathVariable String token) throws InvalidLoginException {
-		ClientSession session = tokensMap.get(token);
-
-		if (session == null) {
-			throw new InvalidLoginException("The login timed out, please login again.");
-		}
-
-		session.accessed();
+		ClientSession session = tokenManager.resolve(token);
 
 		return session.getLastAccessedMillis();
 	}
-
-	private String generateToken() {
-		return UUID.randomUUID()
-				.toString()
-				.replaceAll("-", "")
-				.substring(0, LENGTH_TOKEN);
-	}
-}
\ No newline at end of file
+}
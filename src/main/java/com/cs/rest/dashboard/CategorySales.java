@@ -0,0 +1,44 @@
+package com.cs.rest.dashboard;
+
+/**
+ * The sales of all the coupons of one category in the 'CompanyDashboard'.
+ */
+public class CategorySales {
+
+	private final int category;
+	private int coupons;
+	private long unitsSold;
+	private long remaining;
+	private double revenue;
+
+	public CategorySales(int category) {
+		this.category = category;
+	}
+
+	void add(CouponSales sales) {
+		coupons++;
+		unitsSold += sales.getUnitsSold();
+		remaining += sales.getRemaining();
+		revenue += sales.getRevenue();
+	}
+
+	public int getCategory() {
+		return category;
+	}
+
+	public int getCoupons() {
+		return coupons;
+	}
+
+	public long getUnitsSold() {
+		return unitsSold;
+	}
+
+	public long getRemaining() {
+		return remaining;
+	}
+
+	public double getRevenue() {
+		return revenue;
+	}
+}
@@ -0,0 +1,68 @@
+package com.cs.rest.dashboard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The sales of a company: the units sold, the remaining stock and the revenue
+ * of every coupon of the company, of every category and of the whole company.
+ * the revenue is the sum of the prices that the units were sold at (see
+ * 'SalesAggregates').
+ */
+public class CompanyDashboard {
+
+	private final long companyId;
+	private final long unitsSold;
+	private final long remaining;
+	private final double revenue;
+	private final List<CouponSales> coupons;
+	private final Collection<CategorySales> categories;
+
+	public CompanyDashboard(long companyId, List<CouponSales> coupons) {
+		Map<Integer, CategorySales> byCategory = new TreeMap<>();
+		long totalUnitsSold = 0;
+		long totalRemaining = 0;
+		double totalRevenue = 0;
+
+		for (CouponSales sales : coupons) {
+			byCategory.computeIfAbsent(sales.getCategory(), CategorySales::new).add(sales);
+			totalUnitsSold += sales.getUnitsSold();
+			totalRemaining += sales.getRemaining();
+			totalRevenue += sales.getRevenue();
+		}
+
+		this.companyId = companyId;
+		this.unitsSold = totalUnitsSold;
+		this.remaining = totalRemaining;
+		this.revenue = totalRevenue;
+		this.coupons = coupons;
+		this.categories = new ArrayList<>(byCategory.values());
+	}
+
+	public long getCompanyId() {
+		return companyId;
+	}
+
+	public long getUnitsSold() {
+		return unitsSold;
+	}
+
+	public long getRemaining() {
+		return remaining;
+	}
+
+	public double getRevenue() {
+		return revenue;
+	}
+
+	public List<CouponSales> getCoupons() {
+		return coupons;
+	}
+
+	public Collection<CategorySales> getCategories() {
+		return categories;
+	}
+}
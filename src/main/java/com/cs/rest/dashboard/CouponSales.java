@@ -0,0 +1,54 @@
+package com.cs.rest.dashboard;
+
+/**
+ * The sales of one coupon in the 'CompanyDashboard'.
+ */
+public class CouponSales {
+
+	private final long id;
+	private final String title;
+	private final int category;
+	private final double price;
+	private final long unitsSold;
+	private final int remaining;
+	private final double revenue;
+
+	public CouponSales(long id, String title, int category, double price, long unitsSold, int remaining,
+			double revenue) {
+		this.id = id;
+		this.title = title;
+		this.category = category;
+		this.price = price;
+		this.unitsSold = unitsSold;
+		this.remaining = remaining;
+		this.revenue = revenue;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public int getCategory() {
+		return category;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public long getUnitsSold() {
+		return unitsSold;
+	}
+
+	public int getRemaining() {
+		return remaining;
+	}
+
+	public double getRevenue() {
+		return revenue;
+	}
+}
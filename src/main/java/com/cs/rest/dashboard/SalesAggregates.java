@@ -0,0 +1,288 @@
+package com.cs.rest.dashboard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.purchase.HotCouponInventory;
+
+/**
+ * This class keeps the sales of every coupon (the units sold, the revenue, the
+ * remaining stock, the price and the category) grouped by company, for the
+ * dashboard of the companies. the sales are loaded once on startup and then
+ * kept up to date by the 'CouponChangedEvent' of the services: a save sets the
+ * fields of the coupon, a purchase adds one unit sold at the current price and
+ * takes one from the stock, a delete or a purge removes the coupon. a dashboard
+ * reads only the coupons of its company.
+ *
+ * the database does not keep the price of a purchase, so the units that are
+ * loaded on startup, or found by a reconciliation, are counted at the price of
+ * the coupon at that time.
+ *
+ * the sales are reconciled every 'cs.dashboard.reconcile-interval-millis' with
+ * 'customer_coupon' and the stock in the database, in order to fix the changes
+ * that had no event on this node. the sales are compared without the lock, and
+ * only the fixes are applied under it. a coupon that had an event since the
+ * start of the reconciliation is not touched by it, since the event is newer
+ * than what the reconciliation read.
+ */
+@Component
+public class SalesAggregates {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SalesAggregates.class);
+
+	private CouponRepository couponRepository;
+	private HotCouponInventory hotCouponInventory;
+
+	/**
+	 * The sales are never changed, a change puts new sales in the map inside the
+	 * lock of this object, so the reconciliation reads the map without the lock.
+	 */
+	private final Map<Long, Sales> salesByCouponId = new ConcurrentHashMap<>();
+	private final Map<Long, Set<Long>> couponIdsByCompanyId = new HashMap<>();
+	private final Map<Long, Long> lastEventByCouponId = new HashMap<>();
+	private long eventSequence;
+
+	@Autowired
+	public SalesAggregates(CouponRepository couponRepository, HotCouponInventory hotCouponInventory) {
+		this.couponRepository = couponRepository;
+		this.hotCouponInventory = hotCouponInventory;
+	}
+
+	/**
+	 * Load the sales of all the coupons in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		Map<Long, Sales> loaded = load();
+
+		synchronized (this) {
+			for (Sales sales : loaded.values()) {
+				put(sales);
+			}
+		}
+	}
+
+	@EventListener
+	public synchronized void onCouponChanged(CouponChangedEvent event) {
+		long couponId = event.getCouponId();
+		lastEventByCouponId.put(couponId, ++eventSequence);
+
+		if (event.isRemoved()) {
+			remove(couponId);
+			return;
+		}
+
+		Coupon coupon = event.getCoupon();
+		Sales sales = salesByCouponId.get(couponId);
+
+		if (event.getType() == CouponChangedEvent.Type.PURCHASED) {
+			if (sales != null) {
+				put(new Sales(couponId, sales.companyId, sales.title, sales.category, sales.price,
+						Math.max(sales.remaining - 1, 0), sales.unitsSold + 1, sales.revenue + sales.price));
+			}
+		} else if (event.getType() == CouponChangedEvent.Type.SAVED && coupon.getCompany() != null) {
+			put(new Sales(couponId, coupon.getCompany().getId(), coupon.getTitle(), coupon.getCategory(),
+					coupon.getPrice(), coupon.getAmount(), sales == null ? 0 : sales.unitsSold,
+					sales == null ? 0 : sales.revenue));
+		}
+	}
+
+	/**
+	 * This function will return the sales of all the coupons of the company, it
+	 * reads only the coupons of the company.
+	 *
+	 * @param companyId - the id of the company.
+	 * @return the dashboard of the company.
+	 */
+	public CompanyDashboard findDashboard(long companyId) {
+		List<CouponSales> coupons = new ArrayList<>();
+
+		synchronized (this) {
+			for (Long couponId : couponIdsByCompanyId.getOrDefault(companyId, Collections.emptySet())) {
+				Sales sales = salesByCouponId.get(couponId);
+				coupons.add(new CouponSales(sales.couponId, sales.title, sales.category, sales.price,
+						sales.unitsSold, sales.remaining, sales.revenue));
+			}
+		}
+		return new CompanyDashboard(companyId, coupons);
+	}
+
+	/**
+	 * This function will run by the scheduler every
+	 * 'cs.dashboard.reconcile-interval-millis' (ten minutes by default) and fix
+	 * the sales that differ from the database. the hot purchases are written
+	 * first, so 'customer_coupon' and the stock hold every purchase that had an
+	 * event before the reconciliation started.
+	 */
+	@Scheduled(fixedDelayString = "${cs.dashboard.reconcile-interval-millis:600000}")
+	public void reconcile() {
+		long start = System.currentTimeMillis();
+		long startSequence;
+
+		synchronized (this) {
+			startSequence = eventSequence;
+		}
+
+		hotCouponInventory.flush();
+		Map<Long, Sales> loaded = load();
+
+		// the ids of the coupons that differ from the database, without the lock.
+		Set<Long> differentIds = new HashSet<>();
+
+		for (Map.Entry<Long, Sales> current : salesByCouponId.entrySet()) {
+			if (!loaded.containsKey(current.getKey())) {
+				differentIds.add(current.getKey());
+			}
+		}
+
+		for (Sales actual : loaded.values()) {
+			if (!actual.hasSameFields(salesByCouponId.get(actual.couponId))) {
+				differentIds.add(actual.couponId);
+			}
+		}
+
+		int fixed = 0;
+
+		synchronized (this) {
+			for (Long couponId : differentIds) {
+				if (lastEventByCouponId.getOrDefault(couponId, 0L) > startSequence) {
+					continue;
+				}
+
+				Sales current = salesByCouponId.get(couponId);
+				Sales actual = loaded.get(couponId);
+
+				if (actual == null) {
+					remove(couponId);
+				} else {
+					put(actual.withRevenueOf(current));
+				}
+				fixed++;
+			}
+
+			lastEventByCouponId.values().removeIf(sequence -> sequence <= startSequence);
+		}
+
+		if (fixed > 0) {
+			LOGGER.info("Reconciled the sales of {} coupons in {} ms.", fixed, System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * @return the sales of all the coupons in the database, by the id of the
+	 *         coupon.
+	 */
+	private Map<Long, Sales> load() {
+		Map<Long, Long> soldUnits = new HashMap<>();
+
+		for (Object[] row : couponRepository.countAllSoldUnits()) {
+			soldUnits.put((Long) row[0], (Long) row[1]);
+		}
+
+		Map<Long, Sales> loaded = new HashMap<>();
+
+		for (Object[] row : couponRepository.findAllSalesFields()) {
+			long couponId = (Long) row[0];
+			long unitsSold = soldUnits.getOrDefault(couponId, 0L);
+			double price = (Double) row[4];
+			loaded.put(couponId, new Sales(couponId, (Long) row[1], (String) row[2], (Integer) row[3], price,
+					(Integer) row[5], unitsSold, unitsSold * price));
+		}
+		return loaded;
+	}
+
+	private void put(Sales sales) {
+		Sales old = salesByCouponId.put(sales.couponId, sales);
+
+		if (old != null && old.companyId != sales.companyId) {
+			unlink(old);
+		}
+		couponIdsByCompanyId.computeIfAbsent(sales.companyId, companyId -> new TreeSet<>()).add(sales.couponId);
+	}
+
+	private void remove(long couponId) {
+		Sales old = salesByCouponId.remove(couponId);
+
+		if (old != null) {
+			unlink(old);
+		}
+	}
+
+	private void unlink(Sales sales) {
+		Set<Long> couponIds = couponIdsByCompanyId.get(sales.companyId);
+
+		if (couponIds != null && couponIds.remove(sales.couponId) && couponIds.isEmpty()) {
+			couponIdsByCompanyId.remove(sales.companyId);
+		}
+	}
+
+	private static class Sales {
+
+		private final long couponId;
+		private final long companyId;
+		private final String title;
+		private final int category;
+		private final double price;
+		private final int remaining;
+		private final long unitsSold;
+		private final double revenue;
+
+		private Sales(long couponId, long companyId, String title, int category, double price, int remaining,
+				long unitsSold, double revenue) {
+			this.couponId = couponId;
+			this.companyId = companyId;
+			this.title = title;
+			this.category = category;
+			this.price = price;
+			this.remaining = remaining;
+			this.unitsSold = unitsSold;
+			this.revenue = revenue;
+		}
+
+		/**
+		 * @param current - the sales kept before the reconciliation, or null.
+		 * @return these sales (read from the database) with the revenue of the
+		 *         sales given, and the units that the sales given missed at the
+		 *         current price.
+		 */
+		private Sales withRevenueOf(Sales current) {
+			if (current == null) {
+				return this;
+			}
+			return new Sales(couponId, companyId, title, category, price, remaining, unitsSold,
+					Math.max(current.revenue + (unitsSold - current.unitsSold) * price, 0));
+		}
+
+		/**
+		 * @return true if the sales given have the same fields as the database,
+		 *         the revenue is not in the database so it is not compared.
+		 */
+		private boolean hasSameFields(Sales sales) {
+			return sales != null && couponId == sales.couponId && companyId == sales.companyId
+					&& category == sales.category && Double.compare(price, sales.price) == 0
+					&& remaining == sales.remaining && unitsSold == sales.unitsSold
+					&& Objects.equals(title, sales.title);
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.cs.rest.event;
+
+import com.cs.entity.Coupon;
+
+/**
+ * This event is published by the services every time a coupon is changed, in
+ * order to keep the in-memory indexes and caches of the coupons up to date
+ * without reading the database.
+ */
+public class CouponChangedEvent {
+
+	public enum Type {
+		SAVED, DELETED, EXPIRED, PURCHASED
+	}
+
+	private final Type type;
+	private final long couponId;
+	private final Coupon coupon;
+	private final long customerId;
+
+	private CouponChangedEvent(Type type, long couponId, Coupon coupon, long customerId) {
+		this.type = type;
+		this.couponId = couponId;
+		this.coupon = coupon;
+		this.customerId = customerId;
+	}
+
+	public static CouponChangedEvent saved(Coupon coupon) {
+		return new CouponChangedEvent(Type.SAVED, coupon.getId(), coupon, 0);
+	}
+
+	public static CouponChangedEvent deleted(long couponId) {
+		return new CouponChangedEvent(Type.DELETED, couponId, null, 0);
+	}
+
+	public static CouponChangedEvent expired(long couponId) {
+		return new CouponChangedEvent(Type.EXPIRED, couponId, null, 0);
+	}
+
+	public static CouponChangedEvent purchased(Coupon coupon, long customerId) {
+		return new CouponChangedEvent(Type.PURCHASED, coupon.getId(), coupon, customerId);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public long getCouponId() {
+		return couponId;
+	}
+
+	/**
+	 * @return the coupon after the change, or null if the coupon was deleted or
+	 *         expired.
+	 */
+	public Coupon getCoupon() {
+		return coupon;
+	}
+
+	/**
+	 * @return the id of the customer that purchased the coupon, or 0 if the event
+	 *         is not a purchase.
+	 */
+	public long getCustomerId() {
+		return customerId;
+	}
+
+	/**
+	 * @return true if the coupon is no longer in the system.
+	 */
+	public boolean isRemoved() {
+		return type == Type.DELETED || type == Type.EXPIRED;
+	}
+
+}
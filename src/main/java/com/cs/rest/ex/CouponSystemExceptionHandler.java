@@ -52,6 +52,30 @@ public class CouponSystemExceptionHandler {
 				String.format("Not Acceptable: %s", ex.getMessage()));
 	}
 	
+	@ExceptionHandler(InvalidPageException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ResponseBody
+	public CouponSystemErrorResponse handelBadRequest(InvalidPageException ex) {
+		return CouponSystemErrorResponse.now(HttpStatus.BAD_REQUEST,
+				String.format("Bad Request: %s", ex.getMessage()));
+	}
+	
+	@ExceptionHandler(InvalidExportException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ResponseBody
+	public CouponSystemErrorResponse handelBadRequest(InvalidExportException ex) {
+		return CouponSystemErrorResponse.now(HttpStatus.BAD_REQUEST,
+				String.format("Bad Request: %s", ex.getMessage()));
+	}
+	
+	@ExceptionHandler(InvalidCartException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ResponseBody
+	public CouponSystemErrorResponse handelBadRequest(InvalidCartException ex) {
+		return CouponSystemErrorResponse.now(HttpStatus.BAD_REQUEST,
+				String.format("Bad Request: %s", ex.getMessage()));
+	}
+	
 	@ExceptionHandler(InvalidUserException.class)
 	@ResponseStatus(HttpStatus.NOT_ACCEPTABLE)
 	@ResponseBody
@@ -0,0 +1,9 @@
+package com.cs.rest.ex;
+
+@SuppressWarnings("serial")
+public class InvalidCartException extends Exception {
+
+	public InvalidCartException(String msg) {
+		super(msg);
+	}
+}
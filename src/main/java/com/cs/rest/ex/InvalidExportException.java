@@ -0,0 +1,9 @@
+package com.cs.rest.ex;
+
+@SuppressWarnings("serial")
+public class InvalidExportException extends Exception {
+
+	public InvalidExportException(String msg) {
+		super(msg);
+	}
+}
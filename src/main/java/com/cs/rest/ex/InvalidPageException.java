@@ -0,0 +1,9 @@
+package com.cs.rest.ex;
+
+@SuppressWarnings("serial")
+public class InvalidPageException extends Exception {
+
+	public InvalidPageException(String msg) {
+		super(msg);
+	}
+}
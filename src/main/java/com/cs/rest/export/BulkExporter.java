@@ -0,0 +1,229 @@
+package com.cs.rest.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class writes a whole table to an output stream with constant memory,
+ * for the exports of the admin.
+ *
+ * the rows are read with a forward-only, read-only JDBC cursor that fetches
+ * 'cs.export.fetch-size' rows at a time (with MySQL it needs
+ * 'useCursorFetch=true' in the url of the datasource), and every row is written
+ * to the stream as soon as it is read, the stream is flushed after every
+ * fetch. no entity is made, so there is nothing to detach or clear.
+ */
+@Component
+public class BulkExporter {
+
+	private JdbcTemplate jdbcTemplate;
+	private ObjectMapper objectMapper;
+
+	private final int fetchSize;
+
+	@Autowired
+	public BulkExporter(DataSource dataSource, ObjectMapper objectMapper,
+			@Value("${cs.export.fetch-size:1000}") int fetchSize) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+		this.objectMapper = objectMapper;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * This function will write all the rows of the table given to the stream, in
+	 * the format given. the stream is not closed.
+	 *
+	 * @param table  - the table to export.
+	 * @param format - the format to write the rows in.
+	 * @param out    - the stream to write to.
+	 * @throws IOException - in case the stream cannot be written, for example when
+	 *                     the client closed the connection.
+	 */
+	public void export(ExportTable table, ExportFormat format, OutputStream out) throws IOException {
+		RowWriter writer = format == ExportFormat.CSV ? new CsvRowWriter(table.getFields(), out)
+				: new JsonRowWriter(table.getFields(), format == ExportFormat.NDJSON, out);
+
+		writer.start();
+
+		try {
+			jdbcTemplate.query(table.getQuery(), new RowCallbackHandler() {
+
+				private int rows;
+
+				@Override
+				public void processRow(ResultSet resultSet) throws SQLException {
+					try {
+						writer.write(resultSet);
+
+						if (++rows % fetchSize == 0) {
+							writer.flush();
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		writer.finish();
+	}
+
+	private interface RowWriter {
+
+		void start() throws IOException;
+
+		void write(ResultSet resultSet) throws IOException, SQLException;
+
+		void flush() throws IOException;
+
+		void finish() throws IOException;
+	}
+
+	/**
+	 * Writes the rows as one JSON array, or as one JSON object per line
+	 * (NDJSON), with the same field names and values as the listings.
+	 */
+	private class JsonRowWriter implements RowWriter {
+
+		private final String[] fields;
+		private final boolean lines;
+		private final JsonGenerator generator;
+
+		private JsonRowWriter(String[] fields, boolean lines, OutputStream out) throws IOException {
+			this.fields = fields;
+			this.lines = lines;
+			this.generator = objectMapper.getFactory().createGenerator(out);
+			this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			// the lines are separated by the new line only, not by the default space.
+			this.generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		public void start() throws IOException {
+			if (!lines) {
+				generator.writeStartArray();
+			}
+		}
+
+		@Override
+		public void write(ResultSet resultSet) throws IOException, SQLException {
+			generator.writeStartObject();
+
+			for (int i = 0; i < fields.length; i++) {
+				Object value = resultSet.getObject(i + 1);
+				generator.writeFieldName(fields[i]);
+
+				if (value == null) {
+					generator.writeNull();
+				} else if (value instanceof Number) {
+					writeNumber((Number) value);
+				} else {
+					generator.writeString(value.toString());
+				}
+			}
+
+			generator.writeEndObject();
+
+			if (lines) {
+				generator.writeRaw('\n');
+			}
+		}
+
+		private void writeNumber(Number value) throws IOException {
+			if (value instanceof Double || value instanceof Float) {
+				generator.writeNumber(value.doubleValue());
+			} else {
+				generator.writeNumber(value.longValue());
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			generator.flush();
+		}
+
+		@Override
+		public void finish() throws IOException {
+			if (!lines) {
+				generator.writeEndArray();
+			}
+			generator.close();
+		}
+	}
+
+	/**
+	 * Writes the rows as CSV (RFC 4180), with a header line of the field names.
+	 */
+	private static class CsvRowWriter implements RowWriter {
+
+		private final String[] fields;
+		private final Writer writer;
+
+		private CsvRowWriter(String[] fields, OutputStream out) {
+			this.fields = fields;
+			this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void start() throws IOException {
+			writer.write(String.join(",", fields));
+			writer.write("\r\n");
+		}
+
+		@Override
+		public void write(ResultSet resultSet) throws IOException, SQLException {
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+
+				Object value = resultSet.getObject(i + 1);
+
+				if (value != null) {
+					writer.write(escape(value.toString()));
+				}
+			}
+			writer.write("\r\n");
+		}
+
+		private static String escape(String value) {
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+					&& value.indexOf('\r') < 0) {
+				return value;
+			}
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public void finish() throws IOException {
+			writer.flush();
+		}
+	}
+
+}
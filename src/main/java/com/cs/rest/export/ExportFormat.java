@@ -0,0 +1,38 @@
+package com.cs.rest.export;
+
+/**
+ * The formats that a table can be exported in.
+ */
+public enum ExportFormat {
+
+	JSON("json", "application/json"), NDJSON("ndjson", "application/x-ndjson"), CSV("csv", "text/csv");
+
+	private final String name;
+	private final String contentType;
+
+	private ExportFormat(String name, String contentType) {
+		this.name = name;
+		this.contentType = contentType;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @param name - the name of the format as given in the request.
+	 * @return the format of the name given, or null if there is no such format.
+	 */
+	public static ExportFormat of(String name) {
+		for (ExportFormat format : values()) {
+			if (format.name.equalsIgnoreCase(name)) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,62 @@
+package com.cs.rest.export;
+
+/**
+ * The tables that can be exported, every table with the fields of its
+ * listing (see 'CouponView', 'CustomerView' and 'CompanyView') and the columns
+ * that they are read from.
+ */
+public enum ExportTable {
+
+	COUPONS("coupons", "coupon",
+			new String[] { "id", "title", "description", "startDate", "endDate", "price", "amount", "category",
+					"imageURL" },
+			new String[] { "id", "title", "description", "start_date", "end_date", "price", "amount", "category",
+					"image_url" }),
+	CUSTOMERS("customers", "customer",
+			new String[] { "id", "name", "email", "password" },
+			new String[] { "id", "name", "email", "password" }),
+	COMPANIES("companies", "company",
+			new String[] { "id", "name", "email", "password" },
+			new String[] { "id", "name", "email", "password" });
+
+	private final String name;
+	private final String tableName;
+	private final String[] fields;
+	private final String[] columns;
+
+	private ExportTable(String name, String tableName, String[] fields, String[] columns) {
+		this.name = name;
+		this.tableName = tableName;
+		this.fields = fields;
+		this.columns = columns;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String[] getFields() {
+		return fields.clone();
+	}
+
+	/**
+	 * @return the query that reads all the rows of the table, by the order of
+	 *         their id.
+	 */
+	public String getQuery() {
+		return "SELECT " + String.join(", ", columns) + " FROM " + tableName + " ORDER BY id";
+	}
+
+	/**
+	 * @param name - the name of the table as given in the request.
+	 * @return the table of the name given, or null if there is no such table.
+	 */
+	public static ExportTable of(String name) {
+		for (ExportTable table : values()) {
+			if (table.name.equalsIgnoreCase(name)) {
+				return table;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,94 @@
+package com.cs.rest.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a Bloom filter of strings: it answers for sure that a string
+ * was never put in it, or that it might have been put in it, with the false
+ * positive rate that it was made for as long as no more than its capacity of
+ * strings were put in it. a string cannot be removed.
+ *
+ * the bits of a string are found by double hashing of one 64 bit FNV-1a hash.
+ * one thread at a time may put strings in the filter, while any number of
+ * threads read it.
+ */
+public class BloomFilter {
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final int capacity;
+
+	private volatile int size;
+
+	/**
+	 * @param capacity          - the number of strings that the filter is made for.
+	 * @param falsePositiveRate - the rate of the strings that were not put in the
+	 *                          filter but it might contain, between 0 and 1.
+	 */
+	public BloomFilter(int capacity, double falsePositiveRate) {
+		int strings = Math.max(capacity, 1);
+		long optimalBits = (long) Math.ceil(-strings * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+		this.bits = new AtomicLongArray((int) Math.max((optimalBits + 63) / 64, 1));
+		this.bitCount = bits.length() * 64L;
+		this.hashCount = Math.max((int) Math.round((double) bitCount / strings * Math.log(2)), 1);
+		this.capacity = strings;
+	}
+
+	public void put(String value) {
+		long hash = hash(value);
+		int first = (int) hash;
+		int second = (int) (hash >>> 32);
+
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(first + (long) i * second, bitCount);
+			int index = (int) (bit >>> 6);
+
+			bits.set(index, bits.get(index) | (1L << bit));
+		}
+		size++;
+	}
+
+	/**
+	 * @param value - the string to check.
+	 * @return false if the string was never put in the filter, true if it might
+	 *         have been.
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash(value);
+		int first = (int) hash;
+		int second = (int) (hash >>> 32);
+
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(first + (long) i * second, bitCount);
+
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of strings put in the filter.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+}
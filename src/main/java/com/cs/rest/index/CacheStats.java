@@ -0,0 +1,47 @@
+package com.cs.rest.index;
+
+/**
+ * The statistics of a cache of the system since the application started.
+ */
+public class CacheStats {
+
+	private final int size;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long invalidations;
+	private final double hitRatio;
+
+	public CacheStats(int size, long hits, long misses, long evictions, long invalidations) {
+		this.size = size;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+		this.hitRatio = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public double getHitRatio() {
+		return hitRatio;
+	}
+}
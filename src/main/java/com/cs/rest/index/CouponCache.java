@@ -0,0 +1,213 @@
+package com.cs.rest.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class is a near-cache of the coupons in front of the
+ * 'CouponRepository', for the catalog that every customer reads and that
+ * changes only a few times an hour.
+ *
+ * the cache keeps the coupons by id as 'CouponView', so the requests share
+ * values that cannot be changed and that do not hold the lazy collections of
+ * the entity. the coupons are kept in a concurrent map, so the reads take no
+ * lock, and above 'cs.coupon.cache.max-size' the expired coupons and then a
+ * tenth of the coupons (in the order of the map) are evicted together. every
+ * entry expires after 'cs.coupon.cache.ttl-millis', and is invalidated at once
+ * by the 'CouponChangedEvent' of every save, delete, purchase and purge of a
+ * coupon.
+ *
+ * a load that started before an invalidation of its coupon (by the stripe of
+ * the coupon id) is not put in the cache, so a reader can never put back a
+ * coupon that was changed while it was loading.
+ */
+@Component
+public class CouponCache {
+
+	private static final int VERSION_STRIPES = 64;
+
+	private CouponRepository couponRepository;
+
+	private final int maxSize;
+	private final long ttlMillis;
+
+	private final Map<Long, CachedValue<CouponView>> coupons = new ConcurrentHashMap<>();
+
+	/**
+	 * The versions of the invalidations, by the stripe of the coupon id.
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	@Autowired
+	public CouponCache(CouponRepository couponRepository, @Value("${cs.coupon.cache.max-size:10000}") int maxSize,
+			@Value("${cs.coupon.cache.ttl-millis:60000}") long ttlMillis) {
+		this.couponRepository = couponRepository;
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * @param couponId - the id of the coupon.
+	 * @return the coupon of the id given, or null if there is no such coupon.
+	 */
+	public CouponView findById(long couponId) {
+		long now = System.currentTimeMillis();
+		CachedValue<CouponView> cached = coupons.get(couponId);
+
+		if (cached != null && cached.isFresh(now)) {
+			hits.increment();
+			return cached.value;
+		}
+
+		misses.increment();
+		long loadVersion = versions.get(stripe(couponId));
+		Coupon coupon = couponRepository.findById(couponId).orElse(null);
+
+		if (coupon == null) {
+			return null;
+		}
+
+		CouponView view = CouponView.of(coupon);
+		put(view, loadVersion, now);
+		return view;
+	}
+
+	/**
+	 * This function will return the coupons of the ids given, the coupons that
+	 * are not in the cache are loaded together in one query.
+	 *
+	 * @param couponIds - the ids of the coupons.
+	 * @return the coupons in the order of the ids, without the ids that do not
+	 *         exist.
+	 */
+	public List<CouponView> findAllById(List<Long> couponIds) {
+		long now = System.currentTimeMillis();
+		Map<Long, CouponView> found = new HashMap<>();
+		Map<Long, Long> loadVersions = new HashMap<>();
+
+		for (Long couponId : couponIds) {
+			CachedValue<CouponView> cached = coupons.get(couponId);
+
+			if (cached != null && cached.isFresh(now)) {
+				found.put(couponId, cached.value);
+			} else {
+				loadVersions.put(couponId, versions.get(stripe(couponId)));
+			}
+		}
+
+		hits.add(couponIds.size() - loadVersions.size());
+		misses.add(loadVersions.size());
+
+		if (!loadVersions.isEmpty()) {
+			for (Coupon coupon : couponRepository.findAllById(loadVersions.keySet())) {
+				CouponView view = CouponView.of(coupon);
+				found.put(view.getId(), view);
+				put(view, loadVersions.get(view.getId()), now);
+			}
+		}
+
+		List<CouponView> ordered = new ArrayList<>(couponIds.size());
+
+		for (Long couponId : couponIds) {
+			CouponView coupon = found.get(couponId);
+
+			if (coupon != null) {
+				ordered.add(coupon);
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * This function will invalidate the coupon of the event. the version of its
+	 * stripe is changed before the coupon is removed, so a load that checks the
+	 * version after the change does not put the coupon back, and a load that
+	 * put it before the change is removed.
+	 */
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		versions.incrementAndGet(stripe(event.getCouponId()));
+		coupons.remove(event.getCouponId());
+		invalidations.increment();
+	}
+
+	public CacheStats getStats() {
+		return new CacheStats(coupons.size(), hits.sum(), misses.sum(), evictions.sum(), invalidations.sum());
+	}
+
+	/**
+	 * This function will put the coupon loaded in the cache, in case no
+	 * invalidation of its stripe happened since the load started, and evict
+	 * coupons above the maximum size.
+	 */
+	private void put(CouponView coupon, long loadVersion, long nowMillis) {
+		int stripe = stripe(coupon.getId());
+
+		// the check and the put are done under the lock of the key in the map.
+		coupons.compute(coupon.getId(), (couponId, cached) -> versions.get(stripe) == loadVersion
+				? new CachedValue<>(coupon, nowMillis + ttlMillis)
+				: cached);
+
+		if (coupons.size() > maxSize) {
+			evict(nowMillis);
+		}
+	}
+
+	/**
+	 * This function will remove the expired coupons, and in case the cache is
+	 * still above nine tenths of the maximum size the coupons first in the order
+	 * of the map, so the next puts do not evict again.
+	 */
+	private void evict(long nowMillis) {
+		coupons.values().removeIf(cached -> !cached.isFresh(nowMillis));
+		int targetSize = Math.min(maxSize - 1, maxSize - maxSize / 10);
+		Iterator<Long> couponIds = coupons.keySet().iterator();
+
+		while (coupons.size() > targetSize && couponIds.hasNext()) {
+			couponIds.next();
+			couponIds.remove();
+			evictions.increment();
+		}
+	}
+
+	private static int stripe(long couponId) {
+		return (int) (couponId & (VERSION_STRIPES - 1));
+	}
+
+	private static class CachedValue<T> {
+
+		private final T value;
+		private final long expiresMillis;
+
+		private CachedValue(T value, long expiresMillis) {
+			this.value = value;
+			this.expiresMillis = expiresMillis;
+		}
+
+		private boolean isFresh(long nowMillis) {
+			return nowMillis < expiresMillis;
+		}
+	}
+
+}
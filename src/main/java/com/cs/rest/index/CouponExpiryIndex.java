@@ -0,0 +1,177 @@
+package com.cs.rest.index;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class is an in-memory index of the end date of all the coupons in the
+ * system, it is loaded once on startup and then kept up to date by the
+ * 'CouponChangedEvent' of the services.
+ *
+ * the index keeps the end date of every coupon by its id, so the read paths
+ * are able to check if a coupon is expired in O(1) without the database, and
+ * the coupon ids ordered by their end date, so the 'CouponCleaner' is able to
+ * delete exactly the coupons that are due without scanning the 'coupon' table.
+ */
+@Component
+public class CouponExpiryIndex {
+
+	private CouponRepository couponRepository;
+
+	private final Map<Long, Long> endMillisById = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, Set<Long>> idsByEndMillis = new ConcurrentSkipListMap<>();
+
+	@Autowired
+	public CouponExpiryIndex(CouponRepository couponRepository) {
+		this.couponRepository = couponRepository;
+	}
+
+	/**
+	 * Load the end date of all the coupons in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		for (Object[] row : couponRepository.findAllEndDates()) {
+			put((Long) row[0], (Date) row[1]);
+		}
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		if (event.isRemoved()) {
+			remove(event.getCouponId());
+		} else if (event.getType() == CouponChangedEvent.Type.SAVED) {
+			Coupon coupon = event.getCoupon();
+			put(coupon.getId(), coupon.getEndDate());
+		}
+	}
+
+	/**
+	 * @param couponId  - the id of the coupon to check.
+	 * @param nowMillis - the current time in milliseconds.
+	 * @return true if the end date of the coupon is before the time given.
+	 */
+	public boolean isExpired(long couponId, long nowMillis) {
+		Long endMillis = endMillisById.get(couponId);
+		return endMillis != null && endMillis < nowMillis;
+	}
+
+	/**
+	 * This function will remove the expired coupons from the list given.
+	 *
+	 * @param coupons - the coupons to filter.
+	 * @return the coupons of the list given that are not expired.
+	 */
+	public List<Coupon> filterExpired(List<Coupon> coupons) {
+		return filterExpired(coupons, Coupon::getId);
+	}
+
+	/**
+	 * This function will remove the expired coupons from the list given, for a
+	 * list of any type of coupon (see 'CouponView').
+	 *
+	 * @param coupons - the coupons to filter.
+	 * @param idOf    - the function that returns the id of a coupon.
+	 * @return the coupons of the list given that are not expired.
+	 */
+	public <T> List<T> filterExpired(List<T> coupons, ToLongFunction<T> idOf) {
+		long nowMillis = System.currentTimeMillis();
+		List<T> live = new ArrayList<>(coupons.size());
+
+		for (T coupon : coupons) {
+			if (!isExpired(idOf.applyAsLong(coupon), nowMillis)) {
+				live.add(coupon);
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * @param nowMillis - the current time in milliseconds.
+	 * @param limit     - the maximum number of ids to return.
+	 * @return the ids of the coupons that their end date is before the time
+	 *         given, the earliest first.
+	 */
+	public List<Long> findExpiredIds(long nowMillis, int limit) {
+		List<Long> expiredIds = new ArrayList<>();
+
+		for (Set<Long> ids : idsByEndMillis.headMap(nowMillis).values()) {
+			for (Long id : ids) {
+				if (expiredIds.size() == limit) {
+					return expiredIds;
+				}
+				expiredIds.add(id);
+			}
+		}
+		return expiredIds;
+	}
+
+	/**
+	 * @return the earliest end date in the index in milliseconds, or
+	 *         Long.MAX_VALUE if the index is empty.
+	 */
+	public long findNextEndMillis() {
+		Map.Entry<Long, Set<Long>> first = idsByEndMillis.firstEntry();
+		return first == null ? Long.MAX_VALUE : first.getKey();
+	}
+
+	/**
+	 * @param nowMillis - the current time in milliseconds.
+	 * @return the earliest end date in the index that is after the time given in
+	 *         milliseconds, or Long.MAX_VALUE if there is no such end date.
+	 */
+	public long findNextEndMillisAfter(long nowMillis) {
+		Long endMillis = idsByEndMillis.higherKey(nowMillis);
+		return endMillis == null ? Long.MAX_VALUE : endMillis;
+	}
+
+	/**
+	 * @param nowMillis - the current time in milliseconds.
+	 * @return the latest end date in the index that is before the time given in
+	 *         milliseconds, or 0 if there is no such end date.
+	 */
+	public long findLastEndMillisBefore(long nowMillis) {
+		Long endMillis = idsByEndMillis.lowerKey(nowMillis);
+		return endMillis == null ? 0 : endMillis;
+	}
+
+	private synchronized void put(long couponId, Date endDate) {
+		remove(couponId);
+
+		if (endDate == null) {
+			return;
+		}
+
+		long endMillis = endDate.getTime();
+		endMillisById.put(couponId, endMillis);
+		idsByEndMillis.computeIfAbsent(endMillis, millis -> ConcurrentHashMap.newKeySet()).add(couponId);
+	}
+
+	private synchronized void remove(long couponId) {
+		Long endMillis = endMillisById.remove(couponId);
+
+		if (endMillis != null) {
+			idsByEndMillis.computeIfPresent(endMillis, (millis, ids) -> {
+				ids.remove(couponId);
+				return ids.isEmpty() ? null : ids;
+			});
+		}
+	}
+
+}
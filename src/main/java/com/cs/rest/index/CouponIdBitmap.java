@@ -0,0 +1,160 @@
+package com.cs.rest.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * This class is a compressed set of coupon ids in the way of a roaring bitmap,
+ * the ids are split by their high bits to chunks of 65536 ids, and every chunk
+ * keeps its low 16 bits either in a sorted array (when it has up to 4096 ids)
+ * or in a bitset of 8 KB (when it has more). a customer with a few coupons
+ * costs a few bytes per coupon, and a customer with many coupons in the same
+ * range costs at most one bit per id.
+ *
+ * the functions are synchronized, the bitmap is read by the requests and
+ * written by the events of the purchases.
+ */
+class CouponIdBitmap {
+
+	private static final int ARRAY_MAX = 4096;
+	private static final int BITSET_WORDS = 65536 / 64;
+
+	private final TreeMap<Long, Object> chunks = new TreeMap<>();
+
+	synchronized boolean contains(long id) {
+		Object chunk = chunks.get(id >>> 16);
+
+		if (chunk == null) {
+			return false;
+		}
+
+		int low = (int) (id & 0xFFFF);
+
+		if (chunk instanceof long[]) {
+			return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+		}
+		return indexOf((char[]) chunk, low) >= 0;
+	}
+
+	synchronized void add(long id) {
+		long high = id >>> 16;
+		int low = (int) (id & 0xFFFF);
+		Object chunk = chunks.get(high);
+
+		if (chunk == null) {
+			chunks.put(high, new char[] { (char) low });
+		} else if (chunk instanceof long[]) {
+			((long[]) chunk)[low >>> 6] |= 1L << low;
+		} else {
+			char[] values = (char[]) chunk;
+			int index = indexOf(values, low);
+
+			if (index >= 0) {
+				return;
+			}
+
+			if (values.length == ARRAY_MAX) {
+				long[] words = new long[BITSET_WORDS];
+
+				for (char value : values) {
+					words[value >>> 6] |= 1L << value;
+				}
+				words[low >>> 6] |= 1L << low;
+				chunks.put(high, words);
+				return;
+			}
+
+			int insertAt = -index - 1;
+			char[] grown = new char[values.length + 1];
+			System.arraycopy(values, 0, grown, 0, insertAt);
+			grown[insertAt] = (char) low;
+			System.arraycopy(values, insertAt, grown, insertAt + 1, values.length - insertAt);
+			chunks.put(high, grown);
+		}
+	}
+
+	synchronized void remove(long id) {
+		long high = id >>> 16;
+		int low = (int) (id & 0xFFFF);
+		Object chunk = chunks.get(high);
+
+		if (chunk instanceof long[]) {
+			((long[]) chunk)[low >>> 6] &= ~(1L << low);
+		} else if (chunk != null) {
+			char[] values = (char[]) chunk;
+			int index = indexOf(values, low);
+
+			if (index < 0) {
+				return;
+			}
+
+			if (values.length == 1) {
+				chunks.remove(high);
+				return;
+			}
+
+			char[] shrunk = new char[values.length - 1];
+			System.arraycopy(values, 0, shrunk, 0, index);
+			System.arraycopy(values, index + 1, shrunk, index, values.length - index - 1);
+			chunks.put(high, shrunk);
+		}
+	}
+
+	synchronized void forEach(LongConsumer action) {
+		for (Map.Entry<Long, Object> entry : chunks.entrySet()) {
+			long base = entry.getKey() << 16;
+
+			if (entry.getValue() instanceof long[]) {
+				long[] words = (long[]) entry.getValue();
+
+				for (int i = 0; i < words.length; i++) {
+					long word = words[i];
+
+					while (word != 0) {
+						action.accept(base + i * 64 + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			} else {
+				for (char value : (char[]) entry.getValue()) {
+					action.accept(base + value);
+				}
+			}
+		}
+	}
+
+	synchronized long getCardinality() {
+		long cardinality = 0;
+
+		for (Object chunk : chunks.values()) {
+			if (chunk instanceof long[]) {
+				for (long word : (long[]) chunk) {
+					cardinality += Long.bitCount(word);
+				}
+			} else {
+				cardinality += ((char[]) chunk).length;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return an estimate of the memory of the bitmap in bytes, the entries of
+	 *         the map and the headers of the arrays included.
+	 */
+	synchronized long getSizeInBytes() {
+		long size = 48;
+
+		for (Object chunk : chunks.values()) {
+			size += 40 + 16 + 16;
+			size += chunk instanceof long[] ? BITSET_WORDS * 8 : ((char[]) chunk).length * 2;
+		}
+		return size;
+	}
+
+	private static int indexOf(char[] values, int low) {
+		return Arrays.binarySearch(values, (char) low);
+	}
+}
@@ -0,0 +1,58 @@
+package com.cs.rest.index;
+
+import java.util.Date;
+
+import com.cs.rest.page.CouponSort;
+
+/**
+ * The filters of a coupon search, a filter that is null is not applied.
+ */
+public class CouponSearch {
+
+	private final Integer category;
+	private final Double minPrice;
+	private final Double maxPrice;
+	private final Date endAfter;
+	private final Date endBefore;
+	private final CouponSort sort;
+	private final int limit;
+
+	public CouponSearch(Integer category, Double minPrice, Double maxPrice, Date endAfter, Date endBefore,
+			CouponSort sort, int limit) {
+		this.category = category;
+		this.minPrice = minPrice;
+		this.maxPrice = maxPrice;
+		this.endAfter = endAfter;
+		this.endBefore = endBefore;
+		this.sort = sort;
+		this.limit = limit;
+	}
+
+	public Integer getCategory() {
+		return category;
+	}
+
+	public Double getMinPrice() {
+		return minPrice;
+	}
+
+	public Double getMaxPrice() {
+		return maxPrice;
+	}
+
+	public Date getEndAfter() {
+		return endAfter;
+	}
+
+	public Date getEndBefore() {
+		return endBefore;
+	}
+
+	public CouponSort getSort() {
+		return sort;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+}
@@ -0,0 +1,319 @@
+package com.cs.rest.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class is an in-memory index of the fields that the customers search the
+ * coupons by: the ids of the coupons by their category (a posting list per
+ * category), and the coupons ordered by their price and by their end date. it
+ * is loaded once on startup and then kept up to date by the
+ * 'CouponChangedEvent' of the services, like the 'CouponExpiryIndex'.
+ *
+ * a search walks the index of its most selective filter (the category, the
+ * price range or the end date range), and skips the coupons that do not match
+ * the other filters. the size of every category is kept, and a range is
+ * counted only up to the size of the smallest candidates so far and at most up
+ * to 'COUNT_FACTOR' times the limit (a wider range is not walked but filtered),
+ * so choosing the index does not walk the whole catalog. the end date range is
+ * counted only when the search has a date filter, otherwise it only drops the
+ * expired coupons, that are a few. when that index is also the index of the
+ * sort (or the filters are so wide that walking the index of the sort is
+ * cheaper) the search stops after 'limit' ids, otherwise it keeps the first
+ * 'limit' ids in the order of the sort in a bounded heap. the index returns ids
+ * only, the coupons themselves are read from the 'CouponCache'.
+ */
+@Component
+public class CouponSearchIndex {
+
+	/**
+	 * The ranges are counted up to this many times the limit of the search.
+	 */
+	private static final int COUNT_FACTOR = 64;
+
+	private static final Comparator<Entry> BY_ID = Comparator.comparingLong(entry -> entry.id);
+	private static final Comparator<Entry> BY_PRICE = Comparator.<Entry>comparingDouble(entry -> entry.price)
+			.thenComparingLong(entry -> entry.id);
+	private static final Comparator<Entry> BY_END_DATE = Comparator.<Entry>comparingLong(entry -> entry.endMillis)
+			.thenComparingLong(entry -> entry.id);
+
+	private CouponRepository couponRepository;
+
+	private final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+	private final Map<Integer, NavigableSet<Long>> idsByCategory = new ConcurrentHashMap<>();
+	private final Map<Integer, AtomicInteger> categorySizes = new ConcurrentHashMap<>();
+	private final NavigableSet<Entry> byPrice = new ConcurrentSkipListSet<>(BY_PRICE);
+	private final NavigableSet<Entry> byEndDate = new ConcurrentSkipListSet<>(BY_END_DATE);
+	private final AtomicInteger size = new AtomicInteger();
+
+	@Autowired
+	public CouponSearchIndex(CouponRepository couponRepository) {
+		this.couponRepository = couponRepository;
+	}
+
+	/**
+	 * Load the searched fields of all the coupons in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		for (Object[] row : couponRepository.findAllSearchFields()) {
+			put(new Entry((Long) row[0], (Integer) row[1], (Double) row[2], (Date) row[3]));
+		}
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		if (event.isRemoved()) {
+			remove(event.getCouponId());
+		} else if (event.getType() == CouponChangedEvent.Type.SAVED) {
+			Coupon coupon = event.getCoupon();
+			put(new Entry(coupon.getId(), coupon.getCategory(), coupon.getPrice(), coupon.getEndDate()));
+		}
+	}
+
+	/**
+	 * This function will find the coupons that are not expired and match all the
+	 * filters of the search given.
+	 *
+	 * @param search    - the filters, the sort and the limit of the search.
+	 * @param nowMillis - the current time in milliseconds.
+	 * @return the ids of the coupons found, in the order of the search.
+	 */
+	public List<Long> search(CouponSearch search, long nowMillis) {
+		long fromMillis = Math.max(nowMillis, search.getEndAfter() == null ? 0 : search.getEndAfter().getTime());
+		long toMillis = search.getEndBefore() == null ? Long.MAX_VALUE : search.getEndBefore().getTime();
+		double minPrice = search.getMinPrice() == null ? -Double.MAX_VALUE : search.getMinPrice();
+		double maxPrice = search.getMaxPrice() == null ? Double.MAX_VALUE : search.getMaxPrice();
+
+		List<Long> ids = new ArrayList<>();
+
+		if (search.getLimit() <= 0 || fromMillis > toMillis || minPrice > maxPrice) {
+			return ids;
+		}
+
+		Iterable<Entry> candidates = entries.values();
+		Comparator<Entry> candidatesOrder = BY_ID;
+		int candidatesSize = size.get();
+		int maxCount = (int) Math.min(Integer.MAX_VALUE, (long) search.getLimit() * COUNT_FACTOR);
+
+		if (search.getCategory() != null) {
+			AtomicInteger categorySize = categorySizes.get(search.getCategory());
+			candidates = () -> categoryEntries(search.getCategory());
+			candidatesSize = categorySize == null ? 0 : categorySize.get();
+		}
+
+		Iterable<Entry> priceRange = byPrice.subSet(new Entry(Long.MIN_VALUE, minPrice, 0), true,
+				new Entry(Long.MAX_VALUE, maxPrice, 0), true);
+
+		if (search.getMinPrice() != null || search.getMaxPrice() != null) {
+			int count = countUpTo(priceRange, Math.min(candidatesSize, maxCount));
+
+			if (count < candidatesSize && count < maxCount) {
+				candidates = priceRange;
+				candidatesOrder = BY_PRICE;
+				candidatesSize = count;
+			}
+		}
+
+		// the end date range always applies, the expired coupons are out of it.
+		Iterable<Entry> endDateRange = byEndDate.subSet(new Entry(Long.MIN_VALUE, 0, fromMillis), true,
+				new Entry(Long.MAX_VALUE, 0, toMillis), true);
+
+		if (search.getEndAfter() != null || search.getEndBefore() != null) {
+			int count = countUpTo(endDateRange, Math.min(candidatesSize, maxCount));
+
+			if (count < candidatesSize && count < maxCount) {
+				candidates = endDateRange;
+				candidatesOrder = BY_END_DATE;
+				candidatesSize = count;
+			}
+		}
+
+		Comparator<Entry> order;
+		Iterable<Entry> ordered;
+
+		switch (search.getSort()) {
+		case PRICE:
+			order = BY_PRICE;
+			ordered = priceRange;
+			break;
+		case END_DATE:
+			order = BY_END_DATE;
+			ordered = endDateRange;
+			break;
+		default:
+			order = BY_ID;
+			ordered = entries.values();
+		}
+
+		/*
+		 * walking the index of the sort finds 'limit' matches after about limit *
+		 * size / candidatesSize entries, so it is still used when that is less than
+		 * reading all the candidates.
+		 */
+		if (candidatesOrder != order && (long) search.getLimit() * size.get() < (long) candidatesSize * candidatesSize) {
+			candidates = ordered;
+			candidatesOrder = order;
+		}
+
+		boolean sorted = candidatesOrder == order;
+		PriorityQueue<Entry> top = new PriorityQueue<>(search.getLimit() + 1, order.reversed());
+
+		for (Entry entry : candidates) {
+			if (entry != null && entries.get(entry.id) == entry
+					&& (search.getCategory() == null || entry.category == search.getCategory())
+					&& entry.price >= minPrice && entry.price <= maxPrice
+					&& entry.endMillis >= fromMillis && entry.endMillis <= toMillis) {
+
+				if (sorted) {
+					ids.add(entry.id);
+
+					if (ids.size() == search.getLimit()) {
+						break;
+					}
+				} else {
+					top.add(entry);
+
+					if (top.size() > search.getLimit()) {
+						top.poll();
+					}
+				}
+			}
+		}
+
+		while (!top.isEmpty()) {
+			ids.add(top.poll().id);
+		}
+
+		if (!sorted) {
+			Collections.reverse(ids);
+		}
+		return ids;
+	}
+
+	/**
+	 * @return the number of the entries given, counted only up to the maximum
+	 *         given.
+	 */
+	private static int countUpTo(Iterable<Entry> candidates, int max) {
+		int count = 0;
+		Iterator<Entry> iterator = candidates.iterator();
+
+		while (count < max && iterator.hasNext()) {
+			iterator.next();
+			count++;
+		}
+		return count;
+	}
+
+	private Iterator<Entry> categoryEntries(int category) {
+		NavigableSet<Long> ids = idsByCategory.get(category);
+
+		if (ids == null) {
+			return new ArrayList<Entry>().iterator();
+		}
+
+		Iterator<Long> iterator = ids.iterator();
+
+		return new Iterator<Entry>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Entry next() {
+				return entries.get(iterator.next());
+			}
+		};
+	}
+
+	/**
+	 * This function will replace the entry of the coupon, the new entry is put in
+	 * 'entries' first, so a search that meets the old entry in the other indexes
+	 * skips it.
+	 */
+	private synchronized void put(Entry entry) {
+		Entry old = entries.put(entry.id, entry);
+
+		if (old != null) {
+			unlink(old);
+		} else {
+			size.incrementAndGet();
+		}
+
+		if (idsByCategory.computeIfAbsent(entry.category, category -> new ConcurrentSkipListSet<>()).add(entry.id)) {
+			categorySizes.computeIfAbsent(entry.category, category -> new AtomicInteger()).incrementAndGet();
+		}
+		byPrice.add(entry);
+		byEndDate.add(entry);
+	}
+
+	private synchronized void remove(long couponId) {
+		Entry old = entries.remove(couponId);
+
+		if (old != null) {
+			unlink(old);
+			size.decrementAndGet();
+		}
+	}
+
+	private void unlink(Entry entry) {
+		idsByCategory.computeIfPresent(entry.category, (category, ids) -> {
+			if (ids.remove(entry.id)) {
+				categorySizes.get(category).decrementAndGet();
+			}
+			return ids.isEmpty() ? null : ids;
+		});
+		byPrice.remove(entry);
+		byEndDate.remove(entry);
+	}
+
+	private static class Entry {
+
+		private final long id;
+		private final int category;
+		private final double price;
+		private final long endMillis;
+
+		private Entry(long id, int category, double price, Date endDate) {
+			this.id = id;
+			this.category = category;
+			this.price = price;
+			this.endMillis = endDate == null ? Long.MAX_VALUE : endDate.getTime();
+		}
+
+		/**
+		 * A bound of a range of the price or the end date indexes.
+		 */
+		private Entry(long id, double price, long endMillis) {
+			this.id = id;
+			this.category = 0;
+			this.price = price;
+			this.endMillis = endMillis;
+		}
+	}
+
+}
@@ -0,0 +1,428 @@
+package com.cs.rest.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class is an in-memory inverted index of the words of the title and the
+ * description of all the coupons, it is loaded once on startup and then kept
+ * up to date by the 'CouponChangedEvent' of the services.
+ *
+ * the words are split on every character that is not a letter or a digit and
+ * kept in lower case, every word maps to the coupons that contain it with its
+ * weight in the coupon (a word of the title counts 'TITLE_WEIGHT' times). the
+ * words are kept sorted, so the last word of a search and the autocomplete
+ * match every word that starts with them. the last word of a search matches
+ * other words only when it has 'MIN_PREFIX_LENGTH' letters, and then only the
+ * 'MAX_PREFIX_TERMS' words that are in the most coupons. when the last word is
+ * the rarest of the search its postings are merged, the most frequent first,
+ * only up to 'MAX_PREFIX_CANDIDATES' coupons, otherwise the words of every
+ * coupon of the rarest word are checked for the prefix.
+ */
+@Component
+public class CouponTextIndex {
+
+	private static final int TITLE_WEIGHT = 3;
+	private static final int MIN_PREFIX_LENGTH = 2;
+	private static final int MAX_PREFIX_TERMS = 64;
+	private static final int MAX_PREFIX_CANDIDATES = 10_000;
+
+	private CouponRepository couponRepository;
+
+	private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<String, Set<Long>> titleTerms = new ConcurrentSkipListMap<>();
+	private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+
+	@Autowired
+	public CouponTextIndex(CouponRepository couponRepository) {
+		this.couponRepository = couponRepository;
+	}
+
+	/**
+	 * Load the title and the description of all the coupons in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		for (Object[] row : couponRepository.findAllTexts()) {
+			put((Long) row[0], (String) row[1], (String) row[2]);
+		}
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		if (event.isRemoved()) {
+			remove(event.getCouponId());
+		} else if (event.getType() == CouponChangedEvent.Type.SAVED) {
+			Coupon coupon = event.getCoupon();
+			put(coupon.getId(), coupon.getTitle(), coupon.getDescription());
+		}
+	}
+
+	/**
+	 * This function will find the coupons that contain all the words of the
+	 * query, the last word may also be the start of a word. the coupons are
+	 * ranked by the sum of the weight of every word in the coupon, multiplied by
+	 * how rare the word is in the system (tf-idf).
+	 *
+	 * @param query  - the words to search.
+	 * @param limit  - the maximum number of ids to return.
+	 * @param filter - the ids that are allowed to be returned.
+	 * @return the ids of the coupons found, the best match first.
+	 */
+	public List<Long> search(String query, int limit, LongPredicate filter) {
+		List<String> words = tokenize(query);
+
+		if (words.isEmpty() || limit <= 0) {
+			return new ArrayList<>();
+		}
+
+		List<Term> terms = new ArrayList<>(words.size());
+
+		for (int i = 0; i < words.size(); i++) {
+			Term term = i == words.size() - 1 ? prefixTerm(words.get(i)) : exactTerm(words.get(i));
+
+			if (term == null) {
+				return new ArrayList<>();
+			}
+			terms.add(term);
+		}
+
+		terms.sort(Comparator.comparingInt(Term::getSize));
+		double documentCount = Math.max(documents.size(), 1);
+		double[] idf = new double[terms.size()];
+
+		for (int i = 0; i < terms.size(); i++) {
+			idf[i] = Math.log(1 + documentCount / terms.get(i).getSize());
+		}
+
+		PriorityQueue<ScoredId> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(ScoredId::getScore));
+
+		candidates: for (Map.Entry<Long, Integer> candidate : terms.get(0).merge(MAX_PREFIX_CANDIDATES).entrySet()) {
+			long id = candidate.getKey();
+			double score = candidate.getValue() * idf[0];
+
+			for (int i = 1; i < terms.size(); i++) {
+				Term term = terms.get(i);
+				Integer weight = term.prefix == null ? term.getWeight(id) : getPrefixWeight(id, term.prefix);
+
+				if (weight == null) {
+					continue candidates;
+				}
+				score += weight * idf[i];
+			}
+
+			if (!filter.test(id)) {
+				continue;
+			}
+
+			top.add(new ScoredId(id, score));
+
+			if (top.size() > limit) {
+				top.poll();
+			}
+		}
+
+		List<Long> ids = new ArrayList<>(top.size());
+
+		while (!top.isEmpty()) {
+			ids.add(top.poll().getId());
+		}
+		Collections.reverse(ids);
+		return ids;
+	}
+
+	/**
+	 * This function will find the titles that have a word that starts with the
+	 * prefix given, the titles that start with the prefix first.
+	 *
+	 * @param prefix - the start of the word.
+	 * @param limit  - the maximum number of titles to return.
+	 * @param filter - the ids of the coupons that their title is allowed to be
+	 *               returned.
+	 * @return the titles found.
+	 */
+	public List<String> autocomplete(String prefix, int limit, LongPredicate filter) {
+		List<String> words = tokenize(prefix);
+		List<String> titles = new ArrayList<>();
+
+		if (words.isEmpty() || limit <= 0) {
+			return titles;
+		}
+
+		String word = words.get(words.size() - 1);
+		Set<String> found = new LinkedHashSet<>();
+
+		terms: for (Set<Long> ids : titleTerms.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+			for (Long id : ids) {
+				Document document = documents.get(id);
+
+				if (document != null && document.title != null && filter.test(id)) {
+					found.add(document.title);
+
+					if (found.size() >= limit) {
+						break terms;
+					}
+				}
+			}
+		}
+
+		titles.addAll(found);
+		String lowerPrefix = prefix.trim().toLowerCase(Locale.ROOT);
+		titles.sort(Comparator.comparing((String title) -> !title.toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+				.thenComparing(String.CASE_INSENSITIVE_ORDER));
+		return titles.size() > limit ? new ArrayList<>(titles.subList(0, limit)) : titles;
+	}
+
+	private Term exactTerm(String word) {
+		Map<Long, Integer> exact = postings.get(word);
+		return exact == null || exact.isEmpty() ? null : new Term(Collections.singletonList(exact), null);
+	}
+
+	/**
+	 * This function will find the postings of the word given and of the words
+	 * that start with it, without copying them. a prefix shorter than
+	 * 'MIN_PREFIX_LENGTH' matches only itself, and of the longer words only the
+	 * 'MAX_PREFIX_TERMS' that are in the most coupons are kept, the most
+	 * frequent first.
+	 *
+	 * @param prefix - the start of the word.
+	 * @return the term of the postings found, or null if there are none.
+	 */
+	private Term prefixTerm(String prefix) {
+		if (prefix.length() < MIN_PREFIX_LENGTH) {
+			return exactTerm(prefix);
+		}
+
+		PriorityQueue<Map<Long, Integer>> frequent = new PriorityQueue<>(MAX_PREFIX_TERMS + 1,
+				Comparator.comparingInt(Map::size));
+
+		for (Map<Long, Integer> term : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+			if (term.isEmpty()) {
+				continue;
+			}
+
+			frequent.add(term);
+
+			if (frequent.size() > MAX_PREFIX_TERMS) {
+				frequent.poll();
+			}
+		}
+		List<Map<Long, Integer>> terms = new ArrayList<>(frequent);
+		terms.sort(Comparator.comparingInt((Map<Long, Integer> term) -> term.size()).reversed());
+		return terms.isEmpty() ? null : new Term(terms, prefix);
+	}
+
+	/**
+	 * @return the highest weight in the coupon of the words that start with the
+	 *         prefix given, or null if the coupon has no such word.
+	 */
+	private Integer getPrefixWeight(long couponId, String prefix) {
+		Document document = documents.get(couponId);
+		Integer best = null;
+
+		if (document == null) {
+			return null;
+		}
+
+		for (Map.Entry<String, Integer> entry : document.weights.entrySet()) {
+			if (entry.getKey().startsWith(prefix) && (best == null || entry.getValue() > best)) {
+				best = entry.getValue();
+			}
+		}
+		return best;
+	}
+
+	private synchronized void put(long couponId, String title, String description) {
+		remove(couponId);
+
+		Map<String, Integer> weights = new HashMap<>();
+		List<String> titleWords = tokenize(title);
+
+		for (String word : titleWords) {
+			weights.merge(word, TITLE_WEIGHT, Integer::sum);
+		}
+
+		for (String word : tokenize(description)) {
+			weights.merge(word, 1, Integer::sum);
+		}
+
+		documents.put(couponId, new Document(title, weights, new LinkedHashSet<>(titleWords)));
+
+		for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+			postings.computeIfAbsent(entry.getKey(), word -> new ConcurrentHashMap<>()).put(couponId,
+					entry.getValue());
+		}
+
+		for (String word : titleWords) {
+			titleTerms.computeIfAbsent(word, key -> ConcurrentHashMap.newKeySet()).add(couponId);
+		}
+	}
+
+	private synchronized void remove(long couponId) {
+		Document document = documents.remove(couponId);
+
+		if (document == null) {
+			return;
+		}
+
+		for (String word : document.weights.keySet()) {
+			postings.computeIfPresent(word, (key, ids) -> {
+				ids.remove(couponId);
+				return ids.isEmpty() ? null : ids;
+			});
+		}
+
+		for (String word : document.titleWords) {
+			titleTerms.computeIfPresent(word, (key, ids) -> {
+				ids.remove(couponId);
+				return ids.isEmpty() ? null : ids;
+			});
+		}
+	}
+
+	/**
+	 * @return the words of the text in lower case, in the order of the text.
+	 */
+	private static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<>();
+
+		if (text == null) {
+			return words;
+		}
+
+		int start = -1;
+
+		for (int i = 0; i <= text.length(); i++) {
+			boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+			if (letter && start < 0) {
+				start = i;
+			} else if (!letter && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	private static class Document {
+
+		private final String title;
+		private final Map<String, Integer> weights;
+		private final Set<String> titleWords;
+
+		private Document(String title, Map<String, Integer> weights, Set<String> titleWords) {
+			this.title = title;
+			this.weights = weights;
+			this.titleWords = titleWords;
+		}
+	}
+
+	/**
+	 * The postings of a word of the query, the last word may have the postings of
+	 * some words (and then the prefix they start with). the size is the sum of
+	 * the sizes of the postings, which is the size of their union or more.
+	 */
+	private static class Term {
+
+		private final List<Map<Long, Integer>> postings;
+		private final String prefix;
+		private final int size;
+
+		private Term(List<Map<Long, Integer>> postings, String prefix) {
+			this.postings = postings;
+			this.prefix = prefix;
+			this.size = postings.stream().mapToInt(Map::size).sum();
+		}
+
+		private int getSize() {
+			return size;
+		}
+
+		/**
+		 * @return the highest weight of the coupon in the postings, or null if no
+		 *         postings has the coupon.
+		 */
+		private Integer getWeight(long id) {
+			Integer best = null;
+
+			for (Map<Long, Integer> posting : postings) {
+				Integer weight = posting.get(id);
+
+				if (weight != null && (best == null || weight > best)) {
+					best = weight;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * This function will merge the postings to the highest weight of every
+		 * coupon, the postings are merged in their order until the coupons merged
+		 * reach the budget given. the postings of a single word are returned as
+		 * they are.
+		 *
+		 * @param budget - the most coupons to merge.
+		 * @return the weights of the coupons by their id.
+		 */
+		private Map<Long, Integer> merge(int budget) {
+			if (postings.size() == 1) {
+				return postings.get(0);
+			}
+
+			Map<Long, Integer> merged = new HashMap<>();
+
+			for (Map<Long, Integer> posting : postings) {
+				for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+					merged.merge(entry.getKey(), entry.getValue(), Math::max);
+
+					if (merged.size() >= budget) {
+						return merged;
+					}
+				}
+			}
+			return merged;
+		}
+	}
+
+	private static class ScoredId {
+
+		private final long id;
+		private final double score;
+
+		private ScoredId(long id, double score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		private long getId() {
+			return id;
+		}
+
+		private double getScore() {
+			return score;
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.cs.rest.index;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class is an in-memory hash index of the titles of all the coupons, in
+ * order to check that a title is not taken without reading all the coupons. it
+ * is loaded once on startup and then kept up to date by the
+ * 'CouponChangedEvent' of the services, like the other coupon indexes.
+ *
+ * the titles are normalized (trimmed, the spaces inside joined to one, and in
+ * lower case), so titles that differ only by the case or the spaces are the
+ * same title, like in the unique index of the title in MySQL. that unique index
+ * is still the guard of two coupons that are saved with the same title at once.
+ */
+@Component
+public class CouponTitleIndex {
+
+	private CouponRepository couponRepository;
+
+	private final Map<String, Long> idByTitle = new ConcurrentHashMap<>();
+	private final Map<Long, String> titleById = new ConcurrentHashMap<>();
+
+	@Autowired
+	public CouponTitleIndex(CouponRepository couponRepository) {
+		this.couponRepository = couponRepository;
+	}
+
+	/**
+	 * Load the titles of all the coupons in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		for (Object[] row : couponRepository.findAllTitles()) {
+			put((Long) row[0], (String) row[1]);
+		}
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		if (event.isRemoved()) {
+			remove(event.getCouponId());
+		} else if (event.getType() == CouponChangedEvent.Type.SAVED) {
+			Coupon coupon = event.getCoupon();
+			put(coupon.getId(), coupon.getTitle());
+		}
+	}
+
+	/**
+	 * @param title    - the title to check.
+	 * @param couponId - the id of the coupon that the title is given to, or 0 for
+	 *                 a new coupon.
+	 * @return true if another coupon already has the title.
+	 */
+	public boolean isTaken(String title, long couponId) {
+		if (title == null) {
+			return false;
+		}
+
+		Long id = idByTitle.get(normalize(title));
+		return id != null && id != couponId;
+	}
+
+	private synchronized void put(long couponId, String title) {
+		remove(couponId);
+
+		if (title != null) {
+			String normalized = normalize(title);
+			idByTitle.put(normalized, couponId);
+			titleById.put(couponId, normalized);
+		}
+	}
+
+	private synchronized void remove(long couponId) {
+		String title = titleById.remove(couponId);
+
+		if (title != null) {
+			idByTitle.remove(title, couponId);
+		}
+	}
+
+	private static String normalize(String title) {
+		return title.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.cs.rest.index;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class keeps the versions of the coupon listings, in order to answer a
+ * listing that did not change with 304 Not Modified (see the ETags of the
+ * listings).
+ *
+ * every 'CouponChangedEvent' increases the version of the catalog, and gives
+ * that version to its company. the version of the coupons of a customer is the
+ * version of the last purchase of the customer, together with the version of
+ * the last coupon that was saved or removed, since the owners of a changed
+ * coupon are not looked up. the purchases of the other customers change only
+ * the stock of the coupon, so they do not change the version of its owners.
+ * the versions start again on every startup, so every ETag also holds the time
+ * of the startup.
+ *
+ * the events are published after the change is written, and the ETag is made
+ * before the listing is read, so a listing can be newer than its ETag but
+ * never older.
+ */
+@Component
+public class CouponVersions {
+
+	private CouponRepository couponRepository;
+	private CouponExpiryIndex couponExpiryIndex;
+
+	private final long startMillis = System.currentTimeMillis();
+	private final AtomicLong catalogVersion = new AtomicLong();
+	private final AtomicLong ownedChangeVersion = new AtomicLong();
+
+	private final Map<Long, Long> customerVersions = new ConcurrentHashMap<>();
+	private final Map<Long, Long> companyVersions = new ConcurrentHashMap<>();
+	private final Map<Long, Long> companyIdByCouponId = new ConcurrentHashMap<>();
+
+	@Autowired
+	public CouponVersions(CouponRepository couponRepository, CouponExpiryIndex couponExpiryIndex) {
+		this.couponRepository = couponRepository;
+		this.couponExpiryIndex = couponExpiryIndex;
+	}
+
+	/**
+	 * Load the company of all the coupons in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		for (Object[] row : couponRepository.findAllCompanyIds()) {
+			if (row[1] != null) {
+				companyIdByCouponId.put((Long) row[0], (Long) row[1]);
+			}
+		}
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		long couponId = event.getCouponId();
+		Coupon coupon = event.getCoupon();
+		Long companyId = coupon != null && coupon.getCompany() != null ? coupon.getCompany().getId()
+				: companyIdByCouponId.get(couponId);
+
+		long version = catalogVersion.incrementAndGet();
+
+		if (event.isRemoved()) {
+			companyIdByCouponId.remove(couponId);
+		} else if (companyId != null) {
+			companyIdByCouponId.put(couponId, companyId);
+		}
+
+		if (event.getType() == CouponChangedEvent.Type.PURCHASED) {
+			customerVersions.merge(event.getCustomerId(), version, Math::max);
+		} else {
+			ownedChangeVersion.accumulateAndGet(version, Math::max);
+		}
+
+		if (companyId != null) {
+			companyVersions.merge(companyId, version, Math::max);
+		}
+	}
+
+	/**
+	 * @return the ETag of the catalog, it also changes when a coupon expires
+	 *         since the catalog holds only the coupons that are not expired.
+	 */
+	public String getCatalogETag() {
+		long lastExpiredMillis = couponExpiryIndex.findLastEndMillisBefore(System.currentTimeMillis());
+		return String.format("\"%d-%d-%d\"", startMillis, catalogVersion.get(), lastExpiredMillis);
+	}
+
+	/**
+	 * @param companyId - the id of the company.
+	 * @return the ETag of the coupons of the company.
+	 */
+	public String getCompanyETag(long companyId) {
+		return String.format("\"%d-c%d-%d\"", startMillis, companyId, companyVersions.getOrDefault(companyId, 0L));
+	}
+
+	/**
+	 * @param customerId - the id of the customer.
+	 * @return the ETag of the coupons that the customer owns.
+	 */
+	public String getCustomerETag(long customerId) {
+		return String.format("\"%d-u%d-%d-%d\"", startMillis, customerId, customerVersions.getOrDefault(customerId, 0L),
+				ownedChangeVersion.get());
+	}
+
+	/**
+	 * @param ifNoneMatch - the 'If-None-Match' header of the request, or null.
+	 * @param eTag        - the current ETag of the listing.
+	 * @return true if the client already has the current version of the
+	 *         listing.
+	 */
+	public static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		for (String tag : ifNoneMatch.split(",")) {
+			String trimmed = tag.trim();
+
+			if (trimmed.startsWith("W/")) {
+				trimmed = trimmed.substring(2);
+			}
+
+			if (trimmed.equals("*") || trimmed.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.cs.rest.index;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cs.repository.CompanyRepository;
+import com.cs.repository.CustomerRepository;
+
+/**
+ * This class checks if an email of a customer or of a company already exists
+ * in the system without reading the whole table: a 'BloomFilter' of all the
+ * known emails answers the new emails (the common case) in memory, and only an
+ * email that the filter might contain is checked by a query on the unique
+ * index of the email.
+ *
+ * the filters are loaded once on startup, and the admin service puts the email
+ * of every new client in them before it saves the client (the email of a
+ * client cannot be changed), so the filters never miss an email of the system.
+ * an email of a deleted client stays in the filter, it only costs one query.
+ * when a filter holds more emails than it was made for it is loaded again with
+ * twice the capacity, so its false positive rate stays as configured. the
+ * unique index is still the guard of two saves of the same email at once.
+ */
+@Component
+public class EmailIndex {
+
+	private final Emails customerEmails;
+	private final Emails companyEmails;
+
+	private final int expectedEmails;
+	private final double falsePositiveRate;
+
+	@Autowired
+	public EmailIndex(CustomerRepository customerRepository, CompanyRepository companyRepository,
+			@Value("${cs.email.bloom.expected-emails:100000}") int expectedEmails,
+			@Value("${cs.email.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+		this.customerEmails = new Emails(customerRepository::findAllEmails, customerRepository::existsByEmail);
+		this.companyEmails = new Emails(companyRepository::findAllEmails, companyRepository::existsByEmail);
+		this.expectedEmails = expectedEmails;
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
+	/**
+	 * Load the emails of all the customers and the companies in the system.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		customerEmails.load(expectedEmails);
+		companyEmails.load(expectedEmails);
+	}
+
+	/**
+	 * @param email - the email to check.
+	 * @return true if a customer with the email given exists in the system.
+	 */
+	public boolean customerEmailExists(String email) {
+		return customerEmails.exists(email);
+	}
+
+	/**
+	 * @param email - the email to check.
+	 * @return true if a company with the email given exists in the system.
+	 */
+	public boolean companyEmailExists(String email) {
+		return companyEmails.exists(email);
+	}
+
+	/**
+	 * This function will add the email to the known emails of the customers, it
+	 * must be called before the customer is saved.
+	 * 
+	 * @param email - the email of the customer.
+	 */
+	public void addCustomerEmail(String email) {
+		customerEmails.add(email);
+	}
+
+	/**
+	 * This function will add the email to the known emails of the companies, it
+	 * must be called before the company is saved.
+	 * 
+	 * @param email - the email of the company.
+	 */
+	public void addCompanyEmail(String email) {
+		companyEmails.add(email);
+	}
+
+	/**
+	 * The emails are kept in lower case, since the unique index of MySQL ignores
+	 * the case of the emails by default.
+	 */
+	private static String normalize(String email) {
+		return email.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private class Emails {
+
+		private final Supplier<List<String>> loader;
+		private final Predicate<String> exists;
+
+		private volatile BloomFilter filter;
+
+		private Emails(Supplier<List<String>> loader, Predicate<String> exists) {
+			this.loader = loader;
+			this.exists = exists;
+		}
+
+		private synchronized void load(int capacity) {
+			List<String> emails = loader.get();
+			BloomFilter loaded = new BloomFilter(Math.max(capacity, emails.size() * 2), falsePositiveRate);
+
+			for (String email : emails) {
+				loaded.put(normalize(email));
+			}
+			filter = loaded;
+		}
+
+		private boolean exists(String email) {
+			return email != null && filter.mightContain(normalize(email)) && exists.test(email);
+		}
+
+		private synchronized void add(String email) {
+			if (email == null) {
+				return;
+			}
+
+			if (filter.getSize() >= filter.getCapacity()) {
+				load(filter.getCapacity() * 2);
+			}
+
+			filter.put(normalize(email));
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.cs.rest.index;
+
+import java.util.Map;
+
+/**
+ * The statistics of the 'RequestLookups' since the application started, of
+ * the requests that made at least one lookup. the histogram counts the requests
+ * that avoided at least one lookup by the number of lookups they avoided.
+ */
+public class LookupStats {
+
+	private final long requests;
+	private final long lookups;
+	private final long avoided;
+	private final double avoidedRatio;
+	private final long meanAvoidedPerRequest;
+	private final Map<Long, Long> avoidedPerRequest;
+
+	public LookupStats(long requests, long lookups, long avoided, long meanAvoidedPerRequest,
+			Map<Long, Long> avoidedPerRequest) {
+		this.requests = requests;
+		this.lookups = lookups;
+		this.avoided = avoided;
+		this.avoidedRatio = lookups == 0 ? 0 : (double) avoided / lookups;
+		this.meanAvoidedPerRequest = meanAvoidedPerRequest;
+		this.avoidedPerRequest = avoidedPerRequest;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public long getLookups() {
+		return lookups;
+	}
+
+	public long getAvoided() {
+		return avoided;
+	}
+
+	public double getAvoidedRatio() {
+		return avoidedRatio;
+	}
+
+	public long getMeanAvoidedPerRequest() {
+		return meanAvoidedPerRequest;
+	}
+
+	public Map<Long, Long> getAvoidedPerRequest() {
+		return avoidedPerRequest;
+	}
+}
@@ -0,0 +1,187 @@
+package com.cs.rest.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+/**
+ * This class is an in-memory index of the coupons that every customer owns,
+ * kept as a 'CouponIdBitmap' per customer. the bitmap of a customer is loaded
+ * from 'customer_coupon' the first time it is needed, and then kept up to date
+ * by the 'CouponChangedEvent' of the purchases, so checking if a customer owns
+ * a coupon does not read the database.
+ *
+ * the bitmaps of the least recently used customers are evicted above
+ * 'cs.coupon.owned.max-customers'. the ids of deleted and expired coupons are
+ * kept in one bitmap of removed ids that every lookup checks, so a removal
+ * costs the same for any number of customers, and a removed id is dropped
+ * from the bitmap of a customer the next time its ids are listed (the coupon
+ * ids are not reused). a load that started before a purchase of the customer
+ * is not kept, so a purchase is never lost. the unique
+ * key of 'customer_coupon' stays the authority, the index only saves the
+ * purchases that would fail anyway from reaching the database.
+ */
+@Component
+public class OwnedCouponIndex {
+
+	private static final int VERSION_STRIPES = 64;
+
+	private CouponRepository couponRepository;
+
+	private final int maxCustomers;
+	private final Map<Long, CouponIdBitmap> bitmaps;
+
+	/**
+	 * The versions of the purchases, by the stripe of the customer, changed under
+	 * the lock of the bitmaps.
+	 */
+	private final AtomicLongArray purchaseVersions = new AtomicLongArray(VERSION_STRIPES);
+	private final CouponIdBitmap removedIds = new CouponIdBitmap();
+
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+
+	@Autowired
+	public OwnedCouponIndex(CouponRepository couponRepository,
+			@Value("${cs.coupon.owned.max-customers:100000}") int maxCustomers) {
+		this.couponRepository = couponRepository;
+		this.maxCustomers = maxCustomers;
+		this.bitmaps = new LinkedHashMap<Long, CouponIdBitmap>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CouponIdBitmap> eldest) {
+				return size() > OwnedCouponIndex.this.maxCustomers;
+			}
+		};
+	}
+
+	/**
+	 * @param customerId - the id of the customer.
+	 * @param couponId   - the id of the coupon.
+	 * @return true if the customer owns the coupon.
+	 */
+	public boolean isOwned(long customerId, long couponId) {
+		return !removedIds.contains(couponId) && getBitmap(customerId).contains(couponId);
+	}
+
+	/**
+	 * @param customerId - the id of the customer.
+	 * @return the ids of all the coupons that the customer owns, ordered.
+	 */
+	public List<Long> findOwnedIds(long customerId) {
+		CouponIdBitmap bitmap = getBitmap(customerId);
+		List<Long> ids = new ArrayList<>();
+		List<Long> removed = new ArrayList<>();
+
+		bitmap.forEach(id -> (removedIds.contains(id) ? removed : ids).add(id));
+
+		for (long id : removed) {
+			bitmap.remove(id);
+		}
+		return ids;
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		if (event.getType() == CouponChangedEvent.Type.PURCHASED) {
+			synchronized (bitmaps) {
+				purchaseVersions.incrementAndGet(stripe(event.getCustomerId()));
+				CouponIdBitmap bitmap = bitmaps.get(event.getCustomerId());
+
+				if (bitmap != null) {
+					bitmap.add(event.getCouponId());
+				}
+			}
+		} else if (event.isRemoved()) {
+			removedIds.add(event.getCouponId());
+		}
+	}
+
+	/**
+	 * This function will drop the bitmap of the customer, for use when the
+	 * customer is deleted.
+	 *
+	 * @param customerId - the id of the customer.
+	 */
+	public void evict(long customerId) {
+		synchronized (bitmaps) {
+			purchaseVersions.incrementAndGet(stripe(customerId));
+			bitmaps.remove(customerId);
+		}
+	}
+
+	public OwnedCouponStats getStats() {
+		List<CouponIdBitmap> all;
+
+		synchronized (bitmaps) {
+			all = new ArrayList<>(bitmaps.values());
+		}
+
+		long ownedCoupons = 0;
+		long sizeInBytes = 0;
+
+		// the removed ids that were not listed since their removal are counted too.
+		for (CouponIdBitmap bitmap : all) {
+			ownedCoupons += bitmap.getCardinality();
+			sizeInBytes += bitmap.getSizeInBytes();
+		}
+		return new OwnedCouponStats(all.size(), ownedCoupons, sizeInBytes, loads.sum(), hits.sum());
+	}
+
+	/**
+	 * This function will return the bitmap of the customer, and load it in case
+	 * it is not loaded. the load is done without the lock, and the bitmap loaded
+	 * is kept only if no purchase of the customers of its stripe happened while
+	 * it was loading.
+	 */
+	private CouponIdBitmap getBitmap(long customerId) {
+		synchronized (bitmaps) {
+			CouponIdBitmap bitmap = bitmaps.get(customerId);
+
+			if (bitmap != null) {
+				hits.increment();
+				return bitmap;
+			}
+		}
+
+		loads.increment();
+		int stripe = stripe(customerId);
+		long purchaseVersion = purchaseVersions.get(stripe);
+		CouponIdBitmap loaded = new CouponIdBitmap();
+
+		for (Long couponId : couponRepository.findCouponIdsByCustomerId(customerId)) {
+			if (!removedIds.contains(couponId)) {
+				loaded.add(couponId);
+			}
+		}
+
+		synchronized (bitmaps) {
+			CouponIdBitmap current;
+
+			if (purchaseVersions.get(stripe) == purchaseVersion) {
+				current = bitmaps.putIfAbsent(customerId, loaded);
+			} else {
+				current = bitmaps.get(customerId);
+			}
+			return current == null ? loaded : current;
+		}
+	}
+
+	private static int stripe(long customerId) {
+		return (int) (customerId & (VERSION_STRIPES - 1));
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.cs.rest.index;
+
+/**
+ * The statistics of the 'OwnedCouponIndex', the memory is an estimate in
+ * bytes.
+ */
+public class OwnedCouponStats {
+
+	private final int customers;
+	private final long ownedCoupons;
+	private final long sizeInBytes;
+	private final long bytesPerCustomer;
+	private final long loads;
+	private final long hits;
+
+	public OwnedCouponStats(int customers, long ownedCoupons, long sizeInBytes, long loads, long hits) {
+		this.customers = customers;
+		this.ownedCoupons = ownedCoupons;
+		this.sizeInBytes = sizeInBytes;
+		this.bytesPerCustomer = customers == 0 ? 0 : sizeInBytes / customers;
+		this.loads = loads;
+		this.hits = hits;
+	}
+
+	public int getCustomers() {
+		return customers;
+	}
+
+	public long getOwnedCoupons() {
+		return ownedCoupons;
+	}
+
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	public long getBytesPerCustomer() {
+		return bytesPerCustomer;
+	}
+
+	public long getLoads() {
+		return loads;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+}
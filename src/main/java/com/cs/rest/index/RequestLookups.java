@@ -0,0 +1,149 @@
+package com.cs.rest.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.purchase.Histogram;
+
+/**
+ * This class remembers the entities that the services found during the current
+ * HTTP request, so every coupon, company and customer is read at most once per
+ * request (the controllers check that an entity exists and then read it again
+ * for the response).
+ *
+ * the entities are kept in an attribute of the request and are dropped with it,
+ * a lookup that is not made in a request (a scheduled job) is not remembered.
+ * the services forget an entity when they save or delete it, and a
+ * 'CouponChangedEvent' forgets its coupon (and the customer of a purchase),
+ * since the events are published on the thread of the request.
+ */
+@Component
+public class RequestLookups {
+
+	public static final String COUPON = "coupon";
+	public static final String COMPANY = "company";
+	public static final String CUSTOMER = "customer";
+
+	private static final String ATTRIBUTE = RequestLookups.class.getName();
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder avoided = new LongAdder();
+	private final Histogram avoidedPerRequest = new Histogram();
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		forget(COUPON, event.getCouponId());
+
+		if (event.getType() == CouponChangedEvent.Type.PURCHASED) {
+			forget(CUSTOMER, event.getCustomerId());
+		}
+	}
+
+	/**
+	 * This function will return the entity that was already found in the current
+	 * request, or find it with the loader given and remember it (also when it was
+	 * not found).
+	 *
+	 * @param type   - the type of the entity, one of the constants of this class.
+	 * @param id     - the id of the entity.
+	 * @param loader - finds the entity, or returns null if it does not exist.
+	 * @return the entity, or null if it does not exist.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T find(String type, long id, Supplier<T> loader) {
+		lookups.increment();
+		Memo memo = currentMemo();
+
+		if (memo == null) {
+			return loader.get();
+		}
+
+		String key = type + ':' + id;
+
+		if (memo.entities.containsKey(key)) {
+			memo.avoided++;
+			avoided.increment();
+			return (T) memo.entities.get(key);
+		}
+
+		T entity = loader.get();
+		memo.entities.put(key, entity);
+		return entity;
+	}
+
+	/**
+	 * This function will forget the entity in the current request, so the next
+	 * lookup of the request reads it again.
+	 *
+	 * @param type - the type of the entity, one of the constants of this class.
+	 * @param id   - the id of the entity.
+	 */
+	public void forget(String type, long id) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+		if (attributes == null) {
+			return;
+		}
+
+		Memo memo = (Memo) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+		if (memo != null) {
+			memo.entities.remove(type + ':' + id);
+		}
+	}
+
+	/**
+	 * @return the statistics of the lookups since the application started.
+	 */
+	public LookupStats getStats() {
+		return new LookupStats(requests.sum(), lookups.sum(), avoided.sum(), avoidedPerRequest.getMean(),
+				avoidedPerRequest.getBuckets());
+	}
+
+	/**
+	 * @return the memo of the current request, made on the first lookup of the
+	 *         request, or null if there is no request on this thread.
+	 */
+	private Memo currentMemo() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+		if (attributes == null) {
+			return null;
+		}
+
+		Memo memo = (Memo) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+		if (memo == null) {
+			Memo created = new Memo();
+			attributes.setAttribute(ATTRIBUTE, created, RequestAttributes.SCOPE_REQUEST);
+			attributes.registerDestructionCallback(ATTRIBUTE, () -> onRequestCompleted(created),
+					RequestAttributes.SCOPE_REQUEST);
+			memo = created;
+		}
+		return memo;
+	}
+
+	private void onRequestCompleted(Memo memo) {
+		requests.increment();
+
+		if (memo.avoided > 0) {
+			avoidedPerRequest.record(memo.avoided);
+		}
+	}
+
+	private static class Memo {
+
+		private final Map<String, Object> entities = new HashMap<>();
+		private int avoided;
+	}
+
+}
@@ -0,0 +1,320 @@
+package com.cs.rest.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.cs.repository.CouponRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.page.KeysetPager;
+
+/**
+ * This class is a cache of the wallets of the customers (the coupons that a
+ * customer purchased, as 'CouponView' ordered by id), so opening the wallet
+ * does not join 'customer_coupon' with the coupons on every request.
+ *
+ * the least recently used wallets are evicted above
+ * 'cs.coupon.wallet.max-customers', and a wallet bigger than the maximum size
+ * of a page is not kept. the wallets are updated in place by the
+ * 'CouponChangedEvent': a purchase adds the coupon to the wallet of its
+ * customer, and a save of a coupon replaces it (or a delete or purge removes
+ * it) in all the wallets that hold it. a purchase changes only the stock of
+ * the coupon for the other holders, so their wallets are not rewritten. every
+ * wallet also expires after 'cs.coupon.wallet.ttl-millis', for the stock and
+ * for the changes that have no event (the amount of a hot coupon is written
+ * later in a batch).
+ *
+ * a load that started before an event of its customer, or of one of the
+ * coupons that it loaded, is not put in the cache (by the stripes of the ids,
+ * like in the 'CouponCache').
+ */
+@Component
+public class WalletCache {
+
+	private static final int VERSION_STRIPES = 64;
+
+	private CouponRepository couponRepository;
+	private KeysetPager keysetPager;
+
+	private final int maxCustomers;
+	private final long ttlMillis;
+
+	private final Map<Long, Wallet> wallets;
+	private final Map<Long, Set<Long>> holdersByCouponId = new HashMap<>();
+	private long sizeInBytes;
+
+	/**
+	 * The versions of the events, by the stripe of the customer id and by the
+	 * stripe of the coupon id, changed and read inside the lock of 'wallets'.
+	 */
+	private final long[] customerVersions = new long[VERSION_STRIPES];
+	private final long[] couponVersions = new long[VERSION_STRIPES];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder updates = new LongAdder();
+
+	@Autowired
+	public WalletCache(CouponRepository couponRepository, KeysetPager keysetPager,
+			@Value("${cs.coupon.wallet.max-customers:10000}") int maxCustomers,
+			@Value("${cs.coupon.wallet.ttl-millis:300000}") long ttlMillis) {
+		this.couponRepository = couponRepository;
+		this.keysetPager = keysetPager;
+		this.maxCustomers = maxCustomers;
+		this.ttlMillis = ttlMillis;
+		this.wallets = new LinkedHashMap<Long, Wallet>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Wallet> eldest) {
+				if (size() > WalletCache.this.maxCustomers) {
+					evictions.increment();
+					unlink(eldest.getKey(), eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param customerId - the id of the customer.
+	 * @return the coupons that the customer purchased ordered by id, up to the
+	 *         maximum size of a page.
+	 */
+	public List<CouponView> findWallet(long customerId) {
+		long now = System.currentTimeMillis();
+
+		synchronized (wallets) {
+			Wallet wallet = wallets.get(customerId);
+
+			if (wallet != null && now < wallet.expiresMillis) {
+				hits.increment();
+				return wallet.coupons;
+			}
+		}
+
+		misses.increment();
+		long customerVersion;
+		long[] loadVersions;
+
+		synchronized (wallets) {
+			customerVersion = customerVersions[stripe(customerId)];
+			loadVersions = couponVersions.clone();
+		}
+
+		int maxSize = keysetPager.getMaxSize();
+		List<CouponView> coupons = couponRepository.findCustomerPageById(customerId, 0,
+				PageRequest.of(0, maxSize + 1));
+
+		if (coupons.size() > maxSize) {
+			return new ArrayList<>(coupons.subList(0, maxSize));
+		}
+
+		List<CouponView> loaded = Collections.unmodifiableList(coupons);
+
+		synchronized (wallets) {
+			if (customerVersions[stripe(customerId)] == customerVersion && isCurrent(loaded, loadVersions)) {
+				put(customerId, new Wallet(loaded, now + ttlMillis));
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * This function will drop the wallet of the customer, for use when the
+	 * customer is deleted.
+	 *
+	 * @param customerId - the id of the customer.
+	 */
+	public void evict(long customerId) {
+		synchronized (wallets) {
+			customerVersions[stripe(customerId)]++;
+			Wallet wallet = wallets.remove(customerId);
+
+			if (wallet != null) {
+				unlink(customerId, wallet);
+			}
+		}
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		long couponId = event.getCouponId();
+		CouponView coupon = event.getCoupon() == null ? null : CouponView.of(event.getCoupon());
+
+		synchronized (wallets) {
+			if (event.getType() == CouponChangedEvent.Type.PURCHASED) {
+				long customerId = event.getCustomerId();
+				customerVersions[stripe(customerId)]++;
+				Wallet wallet = wallets.get(customerId);
+
+				if (wallet != null) {
+					update(customerId, wallet, couponId, coupon);
+				}
+				return;
+			}
+
+			couponVersions[stripe(couponId)]++;
+			Set<Long> holders = holdersByCouponId.get(couponId);
+
+			if (holders != null) {
+				for (Long customerId : new ArrayList<>(holders)) {
+					update(customerId, wallets.get(customerId), couponId, event.isRemoved() ? null : coupon);
+				}
+			}
+		}
+	}
+
+	public WalletStats getStats() {
+		synchronized (wallets) {
+			long coupons = 0;
+
+			for (Wallet wallet : wallets.values()) {
+				coupons += wallet.coupons.size();
+			}
+			return new WalletStats(wallets.size(), coupons, sizeInBytes, hits.sum(), misses.sum(), evictions.sum(),
+					updates.sum());
+		}
+	}
+
+	/**
+	 * This function will put the coupon in the wallet in the place of its id, or
+	 * remove it from the wallet if the coupon given is null. a wallet that grows
+	 * above the maximum size of a page is dropped. called inside the lock of
+	 * 'wallets'.
+	 */
+	private void update(long customerId, Wallet wallet, long couponId, CouponView coupon) {
+		List<CouponView> coupons = new ArrayList<>(wallet.coupons);
+		int index = indexOf(coupons, couponId);
+
+		if (index >= 0 && coupon != null) {
+			coupons.set(index, coupon);
+		} else if (index >= 0) {
+			coupons.remove(index);
+		} else if (coupon != null) {
+			coupons.add(-index - 1, coupon);
+		}
+
+		updates.increment();
+		unlink(customerId, wallet);
+		wallets.remove(customerId);
+
+		if (coupons.size() <= keysetPager.getMaxSize()) {
+			put(customerId, new Wallet(Collections.unmodifiableList(coupons), wallet.expiresMillis));
+		}
+	}
+
+	private void put(long customerId, Wallet wallet) {
+		Wallet old = wallets.put(customerId, wallet);
+
+		if (old != null) {
+			unlink(customerId, old);
+		}
+
+		for (CouponView coupon : wallet.coupons) {
+			holdersByCouponId.computeIfAbsent(coupon.getId(), id -> new HashSet<>()).add(customerId);
+		}
+		sizeInBytes += wallet.sizeInBytes;
+	}
+
+	private void unlink(long customerId, Wallet wallet) {
+		for (CouponView coupon : wallet.coupons) {
+			Set<Long> holders = holdersByCouponId.get(coupon.getId());
+
+			if (holders != null && holders.remove(customerId) && holders.isEmpty()) {
+				holdersByCouponId.remove(coupon.getId());
+			}
+		}
+		sizeInBytes -= wallet.sizeInBytes;
+	}
+
+	/**
+	 * @return true if no coupon of the list given was changed since the versions
+	 *         given were read. called inside the lock of 'wallets'.
+	 */
+	private boolean isCurrent(List<CouponView> coupons, long[] loadVersions) {
+		for (CouponView coupon : coupons) {
+			int stripe = stripe(coupon.getId());
+
+			if (couponVersions[stripe] != loadVersions[stripe]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int stripe(long id) {
+		return (int) (id & (VERSION_STRIPES - 1));
+	}
+
+	/**
+	 * @return the index of the coupon in the coupons ordered by id, or
+	 *         (-(insertion point) - 1) if it is not there.
+	 */
+	private static int indexOf(List<CouponView> coupons, long couponId) {
+		int low = 0;
+		int high = coupons.size() - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long id = coupons.get(middle).getId();
+
+			if (id < couponId) {
+				low = middle + 1;
+			} else if (id > couponId) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private static class Wallet {
+
+		/**
+		 * The estimated size of a view without its strings, and of a string
+		 * without its characters.
+		 */
+		private static final int VIEW_BYTES = 96;
+		private static final int STRING_BYTES = 40;
+
+		private final List<CouponView> coupons;
+		private final long expiresMillis;
+		private final long sizeInBytes;
+
+		private Wallet(List<CouponView> coupons, long expiresMillis) {
+			this.coupons = coupons;
+			this.expiresMillis = expiresMillis;
+
+			long bytes = 0;
+
+			for (CouponView coupon : coupons) {
+				bytes += VIEW_BYTES + stringBytes(coupon.getTitle()) + stringBytes(coupon.getDescription())
+						+ stringBytes(coupon.getImageURL());
+			}
+			this.sizeInBytes = bytes;
+		}
+
+		private static long stringBytes(String value) {
+			return value == null ? 0 : STRING_BYTES + value.length();
+		}
+	}
+
+}
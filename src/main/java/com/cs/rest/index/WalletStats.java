@@ -0,0 +1,61 @@
+package com.cs.rest.index;
+
+/**
+ * The statistics of the 'WalletCache' since the application started, the size
+ * in bytes is an estimate of the memory of the coupons in the wallets.
+ */
+public class WalletStats {
+
+	private final int customers;
+	private final long coupons;
+	private final long sizeInBytes;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long updates;
+	private final double hitRatio;
+
+	public WalletStats(int customers, long coupons, long sizeInBytes, long hits, long misses, long evictions,
+			long updates) {
+		this.customers = customers;
+		this.coupons = coupons;
+		this.sizeInBytes = sizeInBytes;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.updates = updates;
+		this.hitRatio = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	public int getCustomers() {
+		return customers;
+	}
+
+	public long getCoupons() {
+		return coupons;
+	}
+
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getUpdates() {
+		return updates;
+	}
+
+	public double getHitRatio() {
+		return hitRatio;
+	}
+}
@@ -0,0 +1,34 @@
+package com.cs.rest.page;
+
+/**
+ * The orders that the coupon listings can be sorted by, every order ends with
+ * the id of the coupon so the order of the coupons with the same value is
+ * stable between the pages.
+ */
+public enum CouponSort {
+
+	ID("id"), END_DATE("endDate"), PRICE("price");
+
+	private final String name;
+
+	private CouponSort(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name - the name of the sort as given in the request.
+	 * @return the sort of the name given, or null if there is no such sort.
+	 */
+	public static CouponSort of(String name) {
+		for (CouponSort sort : values()) {
+			if (sort.name.equalsIgnoreCase(name)) {
+				return sort;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,26 @@
+package com.cs.rest.page;
+
+import java.util.List;
+
+/**
+ * One page of a listing, 'next' is the opaque token of the page after it or
+ * null if that is the last page.
+ */
+public class KeysetPage<T> {
+
+	private final List<T> items;
+	private final String next;
+
+	public KeysetPage(List<T> items, String next) {
+		this.items = items;
+		this.next = next;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public String getNext() {
+		return next;
+	}
+}
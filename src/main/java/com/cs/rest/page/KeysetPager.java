@@ -0,0 +1,256 @@
+package com.cs.rest.page;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import com.cs.repository.CompanyRepository;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.CustomerRepository;
+import com.cs.repository.view.CompanyView;
+import com.cs.repository.view.CouponView;
+import com.cs.repository.view.CustomerView;
+import com.cs.rest.ex.InvalidPageException;
+
+/**
+ * This class reads the listings of the system page by page with keyset
+ * pagination: every page starts right after the sort value and the id of the
+ * last item of the page before it, so reading a page costs the same at the
+ * start and at the end of a listing, with no OFFSET and no count.
+ *
+ * the size of a page is at most 'cs.page.max-size', which is also the cap of
+ * the listings that are not paged. the items are read as views (see
+ * 'CouponView'), the listings only serialize them.
+ */
+@Component
+public class KeysetPager {
+
+	private static final Date FIRST_END_DATE = Date.valueOf("0001-01-01");
+
+	/*
+	 * The names of the listings, every listing has its own tokens.
+	 */
+	private static final String COUPONS = "coupons";
+	private static final String COMPANY_COUPONS = "companyCoupons";
+	private static final String CUSTOMER_COUPONS = "customerCoupons";
+	private static final String CUSTOMERS = "customers";
+	private static final String COMPANIES = "companies";
+
+	private CouponRepository couponRepository;
+	private CustomerRepository customerRepository;
+	private CompanyRepository companyRepository;
+
+	private final int maxSize;
+
+	@Autowired
+	public KeysetPager(CouponRepository couponRepository, CustomerRepository customerRepository,
+			CompanyRepository companyRepository, @Value("${cs.page.max-size:1000}") int maxSize) {
+		this.couponRepository = couponRepository;
+		this.customerRepository = customerRepository;
+		this.companyRepository = companyRepository;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param companyId - the id of the company, or 0 for the coupons of all the
+	 *                  companies.
+	 * @param sort      - the name of the sort (see @CouponSort).
+	 * @param next      - the token of the page, or null for the first page.
+	 * @param size      - the requested size of the page.
+	 * @return the page of the coupons.
+	 * @throws InvalidPageException - in case the sort or the token is not valid.
+	 */
+	public KeysetPage<CouponView> findCoupons(long companyId, String sort, String next, int size)
+			throws InvalidPageException {
+
+		if (companyId == 0) {
+			return findCoupons(COUPONS, sort, next, size, new CouponQueries(couponRepository::findPageById,
+					couponRepository::findPageByNullEndDate, couponRepository::findPageByEndDate,
+					couponRepository::findPageByPrice));
+		}
+
+		return findCoupons(COMPANY_COUPONS, sort, next, size, new CouponQueries(
+				(afterId, pageable) -> couponRepository.findCompanyPageById(companyId, afterId, pageable),
+				(afterId, pageable) -> couponRepository.findCompanyPageByNullEndDate(companyId, afterId, pageable),
+				(afterEndDate, afterId, pageable) -> couponRepository.findCompanyPageByEndDate(companyId,
+						afterEndDate, afterId, pageable),
+				(afterPrice, afterId, pageable) -> couponRepository.findCompanyPageByPrice(companyId, afterPrice,
+						afterId, pageable)));
+	}
+
+	/**
+	 * @param customerId - the id of the customer.
+	 * @param sort       - the name of the sort (see @CouponSort).
+	 * @param next       - the token of the page, or null for the first page.
+	 * @param size       - the requested size of the page.
+	 * @return the page of the coupons that the customer purchased.
+	 * @throws InvalidPageException - in case the sort or the token is not valid.
+	 */
+	public KeysetPage<CouponView> findCustomerCoupons(long customerId, String sort, String next, int size)
+			throws InvalidPageException {
+
+		return findCoupons(CUSTOMER_COUPONS, sort, next, size, new CouponQueries(
+				(afterId, pageable) -> couponRepository.findCustomerPageById(customerId, afterId, pageable),
+				(afterId, pageable) -> couponRepository.findCustomerPageByNullEndDate(customerId, afterId, pageable),
+				(afterEndDate, afterId, pageable) -> couponRepository.findCustomerPageByEndDate(customerId,
+						afterEndDate, afterId, pageable),
+				(afterPrice, afterId, pageable) -> couponRepository.findCustomerPageByPrice(customerId, afterPrice,
+						afterId, pageable)));
+	}
+
+	public KeysetPage<CustomerView> findCustomers(String next, int size) throws InvalidPageException {
+		PageCursor cursor = PageCursor.decode(next, CUSTOMERS);
+		List<CustomerView> customers = customerRepository.findPageById(cursor == null ? 0 : cursor.getLastId(),
+				PageRequest.of(0, pageSize(size) + 1));
+
+		return page(customers, size, customer -> new PageCursor(CUSTOMERS, "", customer.getId()));
+	}
+
+	public KeysetPage<CompanyView> findCompanies(String next, int size) throws InvalidPageException {
+		PageCursor cursor = PageCursor.decode(next, COMPANIES);
+		List<CompanyView> companies = companyRepository.findPageById(cursor == null ? 0 : cursor.getLastId(),
+				PageRequest.of(0, pageSize(size) + 1));
+
+		return page(companies, size, company -> new PageCursor(COMPANIES, "", company.getId()));
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	private int pageSize(int size) {
+		return Math.max(1, Math.min(size, maxSize));
+	}
+
+	/**
+	 * This function will read the page of a listing of coupons, the token of the
+	 * page is valid only for the listing and the sort it was made by.
+	 *
+	 * in the 'endDate' sort the coupons without an end date come first, a token
+	 * with an empty value is still among them.
+	 */
+	private KeysetPage<CouponView> findCoupons(String listing, String sort, String next, int size,
+			CouponQueries queries) throws InvalidPageException {
+
+		CouponSort couponSort = parseSort(sort);
+		String cursorSort = listing + "." + couponSort.getName();
+		PageCursor cursor = PageCursor.decode(next, cursorSort);
+		int limit = pageSize(size) + 1;
+		Pageable pageable = PageRequest.of(0, limit);
+		List<CouponView> coupons;
+
+		try {
+			switch (couponSort) {
+			case END_DATE:
+				if (cursor == null || cursor.getValue().isEmpty()) {
+					coupons = new ArrayList<>(queries.byNullEndDate.find(cursor == null ? 0 : cursor.getLastId(),
+							pageable));
+
+					if (coupons.size() < limit) {
+						coupons.addAll(queries.byEndDate.find(FIRST_END_DATE, 0, PageRequest.of(0, limit - coupons.size())));
+					}
+				} else {
+					coupons = queries.byEndDate.find(new Date(Long.parseLong(cursor.getValue())), cursor.getLastId(),
+							pageable);
+				}
+				break;
+			case PRICE:
+				coupons = queries.byPrice.find(cursor == null ? -Double.MAX_VALUE : Double.parseDouble(cursor.getValue()),
+						cursor == null ? 0 : cursor.getLastId(), pageable);
+				break;
+			default:
+				coupons = queries.byId.find(cursor == null ? 0 : cursor.getLastId(), pageable);
+			}
+		} catch (NumberFormatException e) {
+			throw invalidToken();
+		}
+
+		return page(coupons, size,
+				coupon -> new PageCursor(cursorSort, sortValue(couponSort, coupon), coupon.getId()));
+	}
+
+	/**
+	 * This function will cut the extra item that was read in order to know if
+	 * there is a next page, and make the token of the next page from the last
+	 * item of that page.
+	 */
+	private <T> KeysetPage<T> page(List<T> items, int size, Function<T, PageCursor> cursorOf) {
+		int pageSize = pageSize(size);
+
+		if (items.size() <= pageSize) {
+			return new KeysetPage<>(items, null);
+		}
+
+		List<T> pageItems = items.subList(0, pageSize);
+		return new KeysetPage<>(pageItems, cursorOf.apply(pageItems.get(pageSize - 1)).encode());
+	}
+
+	private static String sortValue(CouponSort sort, CouponView coupon) {
+		switch (sort) {
+		case END_DATE:
+			return coupon.getEndDate() == null ? "" : Long.toString(coupon.getEndDate().getTime());
+		case PRICE:
+			return Double.toString(coupon.getPrice());
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * @param sort - the name of the sort as given in the request.
+	 * @return the sort of the name given.
+	 * @throws InvalidPageException - in case there is no such sort.
+	 */
+	public static CouponSort parseSort(String sort) throws InvalidPageException {
+		CouponSort couponSort = CouponSort.of(sort);
+
+		if (couponSort == null) {
+			throw new InvalidPageException(String.format("Unable to sort by '%s', the coupons can be sorted by"
+					+ " 'id', 'endDate' or 'price'.", sort));
+		}
+		return couponSort;
+	}
+
+	private static InvalidPageException invalidToken() {
+		return new InvalidPageException("The page token is not valid for that listing, please start from the first page.");
+	}
+
+	@FunctionalInterface
+	private interface IdQuery {
+
+		List<CouponView> find(long afterId, Pageable pageable);
+	}
+
+	@FunctionalInterface
+	private interface ValueQuery<V> {
+
+		List<CouponView> find(V afterValue, long afterId, Pageable pageable);
+	}
+
+	/**
+	 * The queries of the pages of a listing of coupons, one for every sort.
+	 */
+	private static class CouponQueries {
+
+		private final IdQuery byId;
+		private final IdQuery byNullEndDate;
+		private final ValueQuery<Date> byEndDate;
+		private final ValueQuery<Double> byPrice;
+
+		private CouponQueries(IdQuery byId, IdQuery byNullEndDate, ValueQuery<Date> byEndDate,
+				ValueQuery<Double> byPrice) {
+			this.byId = byId;
+			this.byNullEndDate = byNullEndDate;
+			this.byEndDate = byEndDate;
+			this.byPrice = byPrice;
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.cs.rest.page;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.cs.rest.ex.InvalidPageException;
+
+/**
+ * The position after the last item of a page: the name of the sort, the value
+ * of the sort and the id of that item. the client gets it as an opaque url
+ * safe token and sends it back in order to get the next page.
+ */
+class PageCursor {
+
+	private final String sort;
+	private final String value;
+	private final long lastId;
+
+	PageCursor(String sort, String value, long lastId) {
+		this.sort = sort;
+		this.value = value;
+		this.lastId = lastId;
+	}
+
+	String getValue() {
+		return value;
+	}
+
+	long getLastId() {
+		return lastId;
+	}
+
+	String encode() {
+		String plain = String.join(":", sort, value, Long.toString(lastId));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param token - the token of the next page, or null for the first page.
+	 * @param sort  - the name of the sort of the request.
+	 * @return the cursor of the token, or null for the first page.
+	 * @throws InvalidPageException - in case the token is not valid or was made
+	 *                              for another sort.
+	 */
+	static PageCursor decode(String token, String sort) throws InvalidPageException {
+		if (token == null || token.isEmpty()) {
+			return null;
+		}
+
+		try {
+			String plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			String[] parts = plain.split(":", 3);
+
+			if (parts.length == 3 && parts[0].equals(sort)) {
+				return new PageCursor(parts[0], parts[1], Long.parseLong(parts[2]));
+			}
+		} catch (IllegalArgumentException e) {
+			// handled below.
+		}
+
+		throw new InvalidPageException("The page token is not valid for that listing, please start from the first page.");
+	}
+}
@@ -0,0 +1,24 @@
+package com.cs.rest.purchase;
+
+/**
+ * A purchase of one coupon by one customer, as given to the
+ * 'PurchaseBatchExecutor'.
+ */
+public class CouponPurchase {
+
+	private final long customerId;
+	private final long couponId;
+
+	public CouponPurchase(long customerId, long couponId) {
+		this.customerId = customerId;
+		this.couponId = couponId;
+	}
+
+	public long getCustomerId() {
+		return customerId;
+	}
+
+	public long getCouponId() {
+		return couponId;
+	}
+}
@@ -0,0 +1,56 @@
+package com.cs.rest.purchase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a histogram of positive values with buckets of powers of 2,
+ * the bucket 'n' counts the values up to 2^n that are above 2^(n-1). recording
+ * a value is lock free.
+ */
+public class Histogram {
+
+	private final LongAdder[] buckets = new LongAdder[64];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	public Histogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long value) {
+		long positive = Math.max(value, 1);
+		buckets[64 - Long.numberOfLeadingZeros(positive - 1)].increment();
+		count.increment();
+		sum.add(positive);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMean() {
+		long total = count.sum();
+		return total == 0 ? 0 : sum.sum() / total;
+	}
+
+	/**
+	 * @return the counts of the buckets that are not empty, by the upper bound of
+	 *         every bucket.
+	 */
+	public Map<Long, Long> getBuckets() {
+		Map<Long, Long> snapshot = new LinkedHashMap<>();
+
+		for (int i = 0; i < buckets.length; i++) {
+			long bucketCount = buckets[i].sum();
+
+			if (bucketCount > 0) {
+				snapshot.put(i == buckets.length - 1 ? Long.MAX_VALUE : 1L << i, bucketCount);
+			}
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,579 @@
+package com.cs.rest.purchase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.OwnedCouponIndex;
+
+/**
+ * This class is the inventory of the "hot" coupons, coupons that the admin
+ * expects many customers to purchase at the same time (a flash sale).
+ *
+ * the remaining amount of a hot coupon is held in a 'StripedCounter', so a
+ * purchase is admitted in memory without touching the 'coupon' row that all the
+ * purchases of that coupon would wait on. every admitted purchase is appended
+ * to a journal file before the customer gets the answer, and the journal is
+ * written to the 'coupon' and 'customer_coupon' tables in batches every
+ * 'cs.coupon.hot.flush-interval-millis'. on startup the journal is replayed,
+ * the replay is safe to repeat because a purchase that is already in
+ * 'customer_coupon' is not counted again.
+ *
+ * the journal is split to 'cs.coupon.hot.stripes' stripes with a lock and a
+ * segment file each, and every thread appends to the stripe of its own, so the
+ * purchases do not wait on one lock. the flush opens a new segment for every
+ * stripe that has purchases, swaps it in under the lock of the stripe and
+ * writes the old segment to the database outside of it, then deletes it. the
+ * purchases that could not be written because the database is not available
+ * are kept in a retry file for the next flush, and a purchase that the database
+ * refuses (its customer or coupon was deleted, or there is no amount left) is
+ * moved to a dead letter file and given back to the stock, so it does not block
+ * the others.
+ *
+ * the journal is written to the page cache on every purchase and forced to the
+ * disk on every flush, so it survives a crash of the application. the hot
+ * coupons themselves are not kept over a restart, they go back to the regular
+ * purchase until the admin marks them again.
+ */
+@Component
+public class HotCouponInventory {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HotCouponInventory.class);
+
+	private static final int RECORD_SIZE = 8 + 8;
+
+	private CouponRepository couponRepository;
+	private OwnedCouponIndex ownedCouponIndex;
+	private TransactionTemplate transactionTemplate;
+
+	private final int stripes;
+	private final Path path;
+	private final Path retryPath;
+	private final Path deadLetterPath;
+
+	private final Map<Long, HotCoupon> hotCoupons = new ConcurrentHashMap<>();
+	private final Set<String> pendingPurchases = ConcurrentHashMap.newKeySet();
+
+	private final JournalStripe[] journals;
+	private final AtomicLong segmentSequence = new AtomicLong(System.currentTimeMillis());
+	private List<long[]> retries = new ArrayList<>();
+
+	@Autowired
+	public HotCouponInventory(CouponRepository couponRepository, OwnedCouponIndex ownedCouponIndex,
+			PlatformTransactionManager transactionManager,
+			@Value("${cs.coupon.hot.stripes:16}") int stripes,
+			@Value("${cs.coupon.hot.journal.path:hot-purchases.journal}") String path) {
+		this.couponRepository = couponRepository;
+		this.ownedCouponIndex = ownedCouponIndex;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.stripes = stripes;
+		this.path = Paths.get(path).toAbsolutePath();
+		this.retryPath = Paths.get(this.path + ".retry");
+		this.deadLetterPath = Paths.get(this.path + ".dead");
+		this.journals = new JournalStripe[stripes];
+
+		for (int i = 0; i < stripes; i++) {
+			journals[i] = new JournalStripe(i);
+		}
+	}
+
+	/**
+	 * Write the purchases left in the journal by the last run to the database and
+	 * open a new segment for every stripe.
+	 */
+	@PostConstruct
+	public synchronized void onPostConstruct() throws IOException {
+		List<Path> files = new ArrayList<>();
+		List<long[]> purchases = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.getParent(),
+				path.getFileName() + "*")) {
+			for (Path file : stream) {
+				if (!file.equals(deadLetterPath)) {
+					files.add(file);
+					purchases.addAll(readRecords(file));
+				}
+			}
+		}
+
+		if (!purchases.isEmpty()) {
+			retries = writeIsolated(purchases);
+			saveRetries();
+			LOGGER.info("Replayed {} hot coupon purchases from '{}', {} are left for the next flush.",
+					purchases.size(), path, retries.size());
+		}
+
+		for (Path file : files) {
+			if (!file.equals(retryPath)) {
+				Files.delete(file);
+			}
+		}
+
+		for (JournalStripe journal : journals) {
+			journal.segment = nextSegment(journal.index);
+			journal.channel = open(journal.segment);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void onPreDestroy() throws IOException {
+		flush();
+
+		for (JournalStripe journal : journals) {
+			synchronized (journal) {
+				journal.channel.close();
+
+				if (journal.purchases.isEmpty()) {
+					Files.deleteIfExists(journal.segment);
+				}
+			}
+		}
+	}
+
+	public boolean isHot(long couponId) {
+		return hotCoupons.containsKey(couponId);
+	}
+
+	/**
+	 * This function will load the remaining amount of the coupon to the memory
+	 * and mark the coupon as hot.
+	 *
+	 * the amount is read (without a lock, so the mark does not wait for the
+	 * purchases of the sale) before the coupon is marked, so until the counter
+	 * holds the amount the purchases go on in the regular way and none is
+	 * refused as out of stock. a regular purchase that is written after the
+	 * amount was read is caught by the conditional decrement of the flush (see
+	 * 'write').
+	 *
+	 * @param couponId - the id of the coupon.
+	 * @throws NoCouponFoundException - in case the coupon does not exist.
+	 */
+	public synchronized void markHot(long couponId) throws NoCouponFoundException {
+		if (isHot(couponId)) {
+			return;
+		}
+
+		Integer amount = couponRepository.findAmount(couponId);
+
+		if (amount == null) {
+			throw new NoCouponFoundException("Coupon not found. Unable to find coupon with the data given");
+		}
+
+		hotCoupons.put(couponId, new HotCoupon(new StripedCounter(stripes, amount)));
+	}
+
+	/**
+	 * This function will return the coupon to the regular purchase, after all the
+	 * purchases that were admitted in memory are written to the database. the
+	 * purchases of the coupon wait for this function to finish.
+	 *
+	 * @param couponId - the id of the coupon.
+	 */
+	public synchronized void unmarkHot(long couponId) {
+		HotCoupon hotCoupon = hotCoupons.get(couponId);
+
+		if (hotCoupon == null) {
+			return;
+		}
+
+		hotCoupon.gate.writeLock().lock();
+
+		try {
+			hotCoupon.closed = true;
+			flush();
+			hotCoupons.remove(couponId);
+		} finally {
+			hotCoupon.gate.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * This function will admit a purchase of a hot coupon.
+	 *
+	 * @param customerId - the id of the customer.
+	 * @param couponId   - the id of the coupon.
+	 * @return the status of the purchase, or null in case the coupon is not hot
+	 *         (anymore) and has to be purchased in the regular way.
+	 */
+	public PurchaseStatus purchase(long customerId, long couponId) {
+		HotCoupon hotCoupon = hotCoupons.get(couponId);
+
+		if (hotCoupon == null) {
+			return null;
+		}
+
+		String key = customerId + ":" + couponId;
+
+		if (ownedCouponIndex.isOwned(customerId, couponId) || !pendingPurchases.add(key)) {
+			return PurchaseStatus.ALREADY_PURCHASED;
+		}
+
+		if (!hotCoupon.counter.tryDecrement()) {
+			pendingPurchases.remove(key);
+			return PurchaseStatus.OUT_OF_STOCK;
+		}
+
+		hotCoupon.gate.readLock().lock();
+
+		try {
+			if (hotCoupon.closed) {
+				hotCoupon.counter.increment();
+				pendingPurchases.remove(key);
+				return null;
+			}
+
+			JournalStripe journal = journals[(int) (Thread.currentThread().getId() % stripes)];
+
+			synchronized (journal) {
+				try {
+					ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+					record.putLong(customerId).putLong(couponId).flip();
+					journal.channel.write(record);
+				} catch (IOException e) {
+					hotCoupon.counter.increment();
+					pendingPurchases.remove(key);
+					throw new UncheckedIOException(e);
+				}
+
+				journal.purchases.add(new long[] { customerId, couponId });
+				journal.dirty = true;
+			}
+
+			hotCoupon.pending.incrementAndGet();
+		} finally {
+			hotCoupon.gate.readLock().unlock();
+		}
+
+		return PurchaseStatus.PURCHASED;
+	}
+
+	/**
+	 * This function will write the admitted purchases to the database, it runs by
+	 * the scheduler every 'cs.coupon.hot.flush-interval-millis'. the segments of
+	 * the stripes are swapped for new ones first, so the purchases go on while
+	 * the old segments are written.
+	 */
+	@Scheduled(fixedDelayString = "${cs.coupon.hot.flush-interval-millis:100}")
+	public synchronized void flush() {
+		long start = System.currentTimeMillis();
+		List<long[]> batch = new ArrayList<>(retries);
+		List<Path> segments = new ArrayList<>();
+
+		for (JournalStripe journal : journals) {
+			if (!journal.dirty) {
+				continue;
+			}
+
+			try {
+				Path segment = nextSegment(journal.index);
+				FileChannel channel = open(segment);
+				FileChannel oldChannel;
+
+				synchronized (journal) {
+					oldChannel = journal.channel;
+					segments.add(journal.segment);
+					batch.addAll(journal.purchases);
+
+					journal.channel = channel;
+					journal.segment = segment;
+					journal.purchases = new ArrayList<>();
+					journal.dirty = false;
+				}
+
+				oldChannel.force(true);
+				oldChannel.close();
+			} catch (IOException e) {
+				LOGGER.error("Unable to open a new segment of the hot coupon journal.", e);
+			}
+		}
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		retries = writeIsolated(batch);
+
+		try {
+			saveRetries();
+
+			for (Path segment : segments) {
+				Files.deleteIfExists(segment);
+			}
+		} catch (IOException e) {
+			LOGGER.error("Unable to save the hot coupon purchases to retry, the segments are kept.", e);
+		}
+
+		LOGGER.debug("Wrote {} hot coupon purchases in {} ms, {} are left for the next flush.",
+				batch.size() - retries.size(), System.currentTimeMillis() - start, retries.size());
+	}
+
+	/**
+	 * Keep the amount of a hot coupon that is changed by its company, and drop the
+	 * coupons that are removed.
+	 */
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		HotCoupon hotCoupon = hotCoupons.get(event.getCouponId());
+
+		if (hotCoupon == null) {
+			return;
+		}
+
+		if (event.isRemoved()) {
+			hotCoupons.remove(event.getCouponId());
+		} else if (event.getType() == CouponChangedEvent.Type.SAVED) {
+			hotCoupon.counter.reset(event.getCoupon().getAmount() - hotCoupon.pending.get());
+		}
+	}
+
+	/**
+	 * This function will write the purchases given in one transaction, and in case
+	 * it fails write them one by one, so a purchase that the database refuses does
+	 * not fail the others. the refused purchases are moved to the dead letter
+	 * file, the one by one writes stop at the first failure that is not a refusal
+	 * (the database is not available).
+	 *
+	 * @return the purchases that are left to write in the next flush.
+	 */
+	private List<long[]> writeIsolated(List<long[]> purchases) {
+		try {
+			write(purchases);
+			purchases.forEach(this::onWritten);
+			return new ArrayList<>();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Unable to write {} hot coupon purchases together, writing them one by one.",
+					purchases.size(), e);
+		}
+
+		for (int i = 0; i < purchases.size(); i++) {
+			long[] purchase = purchases.get(i);
+
+			try {
+				write(Collections.singletonList(purchase));
+				onWritten(purchase);
+			} catch (DataIntegrityViolationException | RefusedPurchaseException e) {
+				onRefused(purchase, e);
+			} catch (RuntimeException e) {
+				LOGGER.error("Unable to write the hot coupon purchases, they will be written in the next run.", e);
+				return new ArrayList<>(purchases.subList(i, purchases.size()));
+			}
+		}
+		return new ArrayList<>();
+	}
+
+	/**
+	 * This function will add the purchases given to 'customer_coupon' and take
+	 * the amount of the coupons. the pairs that are already there (a replay of
+	 * the journal) are read first and skipped, and the others are inserted with
+	 * a plain insert, so a customer or a coupon that was deleted fails the write
+	 * (and is moved to the dead letter file) instead of being skipped as owned.
+	 *
+	 * @throws RefusedPurchaseException - in case a coupon has not enough amount
+	 *                                  left for its purchases.
+	 */
+	private void write(List<long[]> purchases) {
+		transactionTemplate.execute(status -> {
+			Set<List<Long>> owned = findOwned(purchases);
+			Map<Long, Integer> counts = new HashMap<>();
+
+			for (long[] purchase : purchases) {
+				// the set holds the pairs of the database and the pairs of this batch.
+				if (owned.add(Arrays.asList(purchase[0], purchase[1]))) {
+					couponRepository.insertCustomerLink(purchase[0], purchase[1]);
+					counts.merge(purchase[1], 1, Integer::sum);
+				}
+			}
+
+			for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+				if (couponRepository.decrementAmountBy(entry.getKey(), entry.getValue()) == 0) {
+					throw new RefusedPurchaseException(String.format(
+							"The coupon %d has not %d left in the database.", entry.getKey(), entry.getValue()));
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * @return the pairs of customer id and coupon id of the purchases given that
+	 *         are already in 'customer_coupon'.
+	 */
+	private Set<List<Long>> findOwned(List<long[]> purchases) {
+		Set<Long> customerIds = new HashSet<>();
+		Set<Long> couponIds = new HashSet<>();
+
+		for (long[] purchase : purchases) {
+			customerIds.add(purchase[0]);
+			couponIds.add(purchase[1]);
+		}
+
+		Set<List<Long>> owned = new HashSet<>();
+
+		for (Object[] link : couponRepository.findCustomerLinks(customerIds, couponIds)) {
+			owned.add(Arrays.asList(((Number) link[0]).longValue(), ((Number) link[1]).longValue()));
+		}
+		return owned;
+	}
+
+	private void onWritten(long[] purchase) {
+		pendingPurchases.remove(purchase[0] + ":" + purchase[1]);
+		HotCoupon hotCoupon = hotCoupons.get(purchase[1]);
+
+		if (hotCoupon != null) {
+			hotCoupon.pending.decrementAndGet();
+		}
+	}
+
+	/**
+	 * This function will move a purchase that the database refused to the dead
+	 * letter file and give its amount back to the stock.
+	 */
+	private void onRefused(long[] purchase, RuntimeException cause) {
+		LOGGER.error("The hot coupon purchase of coupon {} by customer {} was refused, moved to '{}'.", purchase[1],
+				purchase[0], deadLetterPath, cause);
+
+		try (FileChannel channel = FileChannel.open(deadLetterPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+			record.putLong(purchase[0]).putLong(purchase[1]).flip();
+			channel.write(record);
+		} catch (IOException e) {
+			LOGGER.error("Unable to write the refused hot coupon purchase to '{}'.", deadLetterPath, e);
+		}
+
+		onWritten(purchase);
+		HotCoupon hotCoupon = hotCoupons.get(purchase[1]);
+
+		if (hotCoupon != null) {
+			hotCoupon.counter.increment();
+		}
+	}
+
+	/**
+	 * This function will replace the retry file with the purchases that are left
+	 * to write, or delete it when there are none.
+	 */
+	private void saveRetries() throws IOException {
+		if (retries.isEmpty()) {
+			Files.deleteIfExists(retryPath);
+			return;
+		}
+
+		Path tempPath = Paths.get(retryPath + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * retries.size());
+
+			for (long[] purchase : retries) {
+				buffer.putLong(purchase[0]).putLong(purchase[1]);
+			}
+
+			buffer.flip();
+			channel.write(buffer);
+			channel.force(true);
+		}
+
+		Files.move(tempPath, retryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Path nextSegment(int stripe) {
+		return Paths.get(String.format("%s.%d.%d", path, stripe, segmentSequence.incrementAndGet()));
+	}
+
+	private static FileChannel open(Path segment) throws IOException {
+		return FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * @return the purchases of the journal file, a torn record at the end of the
+	 *         file is skipped.
+	 */
+	private static List<long[]> readRecords(Path file) throws IOException {
+		List<long[]> purchases = new ArrayList<>();
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+
+		while (buffer.remaining() >= RECORD_SIZE) {
+			purchases.add(new long[] { buffer.getLong(), buffer.getLong() });
+		}
+		return purchases;
+	}
+
+	/**
+	 * A stripe of the journal, guarded by its own monitor.
+	 */
+	private static class JournalStripe {
+
+		private final int index;
+		private FileChannel channel;
+		private Path segment;
+		private List<long[]> purchases = new ArrayList<>();
+		private volatile boolean dirty;
+
+		private JournalStripe(int index) {
+			this.index = index;
+		}
+	}
+
+	private static class HotCoupon {
+
+		private final StripedCounter counter;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final ReadWriteLock gate = new ReentrantReadWriteLock();
+		private volatile boolean closed;
+
+		private HotCoupon(StripedCounter counter) {
+			this.counter = counter;
+		}
+	}
+
+	/**
+	 * A purchase that the database refuses, that writing it again will not help.
+	 */
+	private static class RefusedPurchaseException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private RefusedPurchaseException(String message) {
+			super(message);
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.cs.rest.purchase;
+
+import java.util.Map;
+
+/**
+ * The statistics of the 'PurchasePipeline', the batch sizes are in purchases
+ * and the queueing delays are in microseconds, both by the upper bound of every
+ * bucket.
+ */
+public class PipelineStats {
+
+	private final boolean enabled;
+	private final long batches;
+	private final long purchases;
+	private final long averageBatchSize;
+	private final long averageQueueMicros;
+	private final Map<Long, Long> batchSizes;
+	private final Map<Long, Long> queueMicros;
+
+	public PipelineStats(boolean enabled, Histogram batchSizes, Histogram queueMicros) {
+		this.enabled = enabled;
+		this.batches = batchSizes.getCount();
+		this.purchases = queueMicros.getCount();
+		this.averageBatchSize = batchSizes.getMean();
+		this.averageQueueMicros = queueMicros.getMean();
+		this.batchSizes = batchSizes.getBuckets();
+		this.queueMicros = queueMicros.getBuckets();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getPurchases() {
+		return purchases;
+	}
+
+	public long getAverageBatchSize() {
+		return averageBatchSize;
+	}
+
+	public long getAverageQueueMicros() {
+		return averageQueueMicros;
+	}
+
+	public Map<Long, Long> getBatchSizes() {
+		return batchSizes;
+	}
+
+	public Map<Long, Long> getQueueMicros() {
+		return queueMicros;
+	}
+}
@@ -0,0 +1,165 @@
+package com.cs.rest.purchase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * This class writes a list of purchases to the database in one transaction
+ * with a constant number of batched statements, whatever the number of
+ * purchases is. it is shared by the single purchase, the 'PurchasePipeline'
+ * and the checkout of the cart.
+ *
+ * the purchases are written in the order of their coupon ids, so two batches
+ * that run at the same time always lock the 'coupon' rows in the same order.
+ * every purchase first takes one from the amount of the coupon (only if there
+ * is one left), which also locks the row of the coupon until the commit, and
+ * then the 'customer_coupon' rows that already exist are read so only the new
+ * rows are inserted. the amount of the purchases that the customer already had
+ * is given back before the commit. the insert is a plain one, so a customer
+ * that was deleted fails the batch instead of being silently ignored.
+ */
+@Component
+public class PurchaseBatchExecutor {
+
+	private static final String DECREMENT_SQL = "UPDATE coupon SET amount = amount - 1 WHERE id = ? AND amount > 0";
+	private static final String INCREMENT_SQL = "UPDATE coupon SET amount = amount + 1 WHERE id = ?";
+	private static final String INSERT_SQL = "INSERT INTO customer_coupon (customer_id, coupon_id) VALUES (?, ?) "
+			+ "ON DUPLICATE KEY UPDATE customer_id = customer_id";
+	private static final String OWNED_SQL = "SELECT customer_id, coupon_id FROM customer_coupon "
+			+ "WHERE customer_id IN (:customerIds) AND coupon_id IN (:couponIds)";
+	private static final String EXISTS_SQL = "SELECT id FROM coupon WHERE id IN (:couponIds)";
+
+	private JdbcTemplate jdbcTemplate;
+	private NamedParameterJdbcTemplate namedJdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	public PurchaseBatchExecutor(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * This function will write the purchases given in one transaction.
+	 *
+	 * @param purchases - the purchases to write.
+	 * @return the status of every purchase, in the order of the list given.
+	 */
+	public List<PurchaseStatus> execute(List<CouponPurchase> purchases) {
+		if (purchases.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<Integer> order = new ArrayList<>(purchases.size());
+
+		for (int i = 0; i < purchases.size(); i++) {
+			order.add(i);
+		}
+		order.sort(Comparator.comparingLong(i -> purchases.get(i).getCouponId()));
+
+		PurchaseStatus[] statuses = transactionTemplate.execute(status -> write(purchases, order));
+
+		return Arrays.asList(statuses);
+	}
+
+	private PurchaseStatus[] write(List<CouponPurchase> purchases, List<Integer> order) {
+		PurchaseStatus[] statuses = new PurchaseStatus[purchases.size()];
+
+		int[] decremented = jdbcTemplate.batchUpdate(DECREMENT_SQL, order.stream()
+				.map(i -> new Object[] { purchases.get(i).getCouponId() })
+				.collect(Collectors.toList()));
+
+		List<Integer> taken = new ArrayList<>();
+		Set<Long> missedCouponIds = new HashSet<>();
+
+		for (int j = 0; j < order.size(); j++) {
+			if (decremented[j] == 0) {
+				missedCouponIds.add(purchases.get(order.get(j)).getCouponId());
+			} else {
+				taken.add(order.get(j));
+			}
+		}
+
+		Set<List<Long>> owned = findOwned(purchases, taken);
+		List<Integer> inserted = new ArrayList<>(taken.size());
+		List<Object[]> givenBack = new ArrayList<>();
+
+		for (int i : taken) {
+			// the set holds the pairs of the database and the pairs of this batch.
+			if (owned.add(Arrays.asList(purchases.get(i).getCustomerId(), purchases.get(i).getCouponId()))) {
+				statuses[i] = PurchaseStatus.PURCHASED;
+				inserted.add(i);
+			} else {
+				statuses[i] = PurchaseStatus.ALREADY_PURCHASED;
+				givenBack.add(new Object[] { purchases.get(i).getCouponId() });
+			}
+		}
+
+		if (!inserted.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_SQL, inserted.stream()
+					.map(i -> new Object[] { purchases.get(i).getCustomerId(), purchases.get(i).getCouponId() })
+					.collect(Collectors.toList()));
+		}
+
+		if (!givenBack.isEmpty()) {
+			jdbcTemplate.batchUpdate(INCREMENT_SQL, givenBack);
+		}
+
+		if (!missedCouponIds.isEmpty()) {
+			Set<Long> existingIds = new HashSet<>(namedJdbcTemplate.queryForList(EXISTS_SQL,
+					new MapSqlParameterSource("couponIds", missedCouponIds), Long.class));
+
+			for (int i = 0; i < statuses.length; i++) {
+				if (statuses[i] == null) {
+					statuses[i] = existingIds.contains(purchases.get(i).getCouponId()) ? PurchaseStatus.OUT_OF_STOCK
+							: PurchaseStatus.NOT_FOUND;
+				}
+			}
+		}
+
+		return statuses;
+	}
+
+	/**
+	 * This function will return the pairs of customer id and coupon id of the
+	 * purchases given that are already in 'customer_coupon'. the rows of the
+	 * coupons are locked by the decrement, so no other purchase can add such a
+	 * pair until the commit.
+	 *
+	 * @param purchases - the purchases of the batch.
+	 * @param taken     - the indexes of the purchases that took a coupon.
+	 * @return the pairs that exist, as lists of customer id and coupon id.
+	 */
+	private Set<List<Long>> findOwned(List<CouponPurchase> purchases, List<Integer> taken) {
+		Set<List<Long>> owned = new HashSet<>();
+
+		if (taken.isEmpty()) {
+			return owned;
+		}
+
+		MapSqlParameterSource parameters = new MapSqlParameterSource()
+				.addValue("customerIds", taken.stream().map(i -> purchases.get(i).getCustomerId()).collect(Collectors.toSet()))
+				.addValue("couponIds", taken.stream().map(i -> purchases.get(i).getCouponId()).collect(Collectors.toSet()));
+
+		namedJdbcTemplate.query(OWNED_SQL, parameters,
+				(RowCallbackHandler) row -> owned.add(Arrays.asList(row.getLong(1), row.getLong(2))));
+		return owned;
+	}
+
+}
@@ -0,0 +1,244 @@
+package com.cs.rest.purchase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class groups the purchases that arrive at the same time into one
+ * transaction (a group commit), enabled by 'cs.purchase.pipeline.enabled'.
+ *
+ * a single thread takes the first purchase from the queue and waits up to
+ * 'cs.purchase.pipeline.window-millis' for more, or until there are
+ * 'cs.purchase.pipeline.max-batch' purchases, and writes them all with the
+ * 'PurchaseBatchExecutor'. every caller waits only for its own purchase (up to
+ * 'cs.purchase.pipeline.timeout-millis'), and gets its own status. when a batch
+ * fails its purchases are written again one by one, so only the purchases that
+ * fail by themselves get the error. when the pipeline is disabled (or stopped)
+ * every purchase is written alone by the caller thread.
+ */
+@Component
+public class PurchasePipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PurchasePipeline.class);
+
+	private PurchaseBatchExecutor batchExecutor;
+
+	private final boolean enabled;
+	private final long windowNanos;
+	private final int maxBatch;
+	private final long timeoutMillis;
+
+	private final BlockingQueue<QueuedPurchase> queue = new LinkedBlockingQueue<>();
+	private final Histogram batchSizes = new Histogram();
+	private final Histogram queueMicros = new Histogram();
+
+	private Thread worker;
+
+	/**
+	 * Guarded by the queue, so no purchase is queued after the worker was told to
+	 * stop.
+	 */
+	private boolean running;
+
+	@Autowired
+	public PurchasePipeline(PurchaseBatchExecutor batchExecutor,
+			@Value("${cs.purchase.pipeline.enabled:false}") boolean enabled,
+			@Value("${cs.purchase.pipeline.window-millis:2}") long windowMillis,
+			@Value("${cs.purchase.pipeline.max-batch:256}") int maxBatch,
+			@Value("${cs.purchase.pipeline.timeout-millis:5000}") long timeoutMillis) {
+		this.batchExecutor = batchExecutor;
+		this.enabled = enabled;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.maxBatch = maxBatch;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Start the thread of the pipeline.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		if (!enabled) {
+			return;
+		}
+
+		synchronized (queue) {
+			running = true;
+		}
+
+		worker = new Thread(this::run, "purchase-pipeline");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Stop the thread of the pipeline after the purchases in the queue are
+	 * written, the purchases that are left (if the thread died) are failed.
+	 */
+	@PreDestroy
+	public void onPreDestroy() throws InterruptedException {
+		if (worker == null) {
+			return;
+		}
+
+		synchronized (queue) {
+			running = false;
+		}
+
+		worker.interrupt();
+		worker.join();
+
+		List<QueuedPurchase> left = new ArrayList<>();
+		queue.drainTo(left);
+
+		for (QueuedPurchase queued : left) {
+			queued.future.completeExceptionally(new IllegalStateException("The purchase pipeline is stopped."));
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * This function will purchase the coupon for the customer, and wait until
+	 * the purchase is written to the database.
+	 *
+	 * the purchase is queued under the same lock that stops the worker, so it is
+	 * either written by the worker or by the caller thread.
+	 *
+	 * @param customerId - the id of the customer.
+	 * @param couponId   - the id of the coupon.
+	 * @return the status of the purchase.
+	 */
+	public PurchaseStatus purchase(long customerId, long couponId) {
+		CouponPurchase purchase = new CouponPurchase(customerId, couponId);
+		QueuedPurchase queued = new QueuedPurchase(purchase);
+
+		synchronized (queue) {
+			if (running) {
+				queue.add(queued);
+			} else {
+				queued = null;
+			}
+		}
+
+		if (queued == null) {
+			return batchExecutor.execute(Collections.singletonList(purchase)).get(0);
+		}
+
+		try {
+			return queued.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the purchase.", e);
+		} catch (TimeoutException e) {
+			throw new IllegalStateException("The purchase was not written in " + timeoutMillis + " ms.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public PipelineStats getStats() {
+		return new PipelineStats(enabled, batchSizes, queueMicros);
+	}
+
+	private void run() {
+		List<QueuedPurchase> batch = new ArrayList<>(maxBatch);
+
+		while (isRunning() || !queue.isEmpty()) {
+			try {
+				QueuedPurchase first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+				if (first == null) {
+					continue;
+				}
+
+				batch.add(first);
+				long deadline = System.nanoTime() + windowNanos;
+
+				while (batch.size() < maxBatch) {
+					QueuedPurchase next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				queue.drainTo(batch, maxBatch - batch.size());
+			}
+
+			if (!batch.isEmpty()) {
+				write(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private boolean isRunning() {
+		synchronized (queue) {
+			return running;
+		}
+	}
+
+	private void write(List<QueuedPurchase> batch) {
+		long start = System.nanoTime();
+		List<CouponPurchase> purchases = new ArrayList<>(batch.size());
+
+		for (QueuedPurchase queued : batch) {
+			purchases.add(queued.purchase);
+			queueMicros.record(TimeUnit.NANOSECONDS.toMicros(start - queued.enqueuedNanos));
+		}
+		batchSizes.record(batch.size());
+
+		try {
+			List<PurchaseStatus> statuses = batchExecutor.execute(purchases);
+
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).future.complete(statuses.get(i));
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Unable to write a batch of {} purchases, writing them one by one.", batch.size(), e);
+
+			for (QueuedPurchase queued : batch) {
+				try {
+					queued.future.complete(batchExecutor.execute(Collections.singletonList(queued.purchase)).get(0));
+				} catch (RuntimeException purchaseException) {
+					queued.future.completeExceptionally(purchaseException);
+				}
+			}
+		}
+	}
+
+	private static class QueuedPurchase {
+
+		private final CouponPurchase purchase;
+		private final long enqueuedNanos = System.nanoTime();
+		private final CompletableFuture<PurchaseStatus> future = new CompletableFuture<>();
+
+		private QueuedPurchase(CouponPurchase purchase) {
+			this.purchase = purchase;
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.cs.rest.purchase;
+
+/**
+ * The result of the purchase of one coupon of a cart (see
+ * 'CustomerService.checkout').
+ */
+public class PurchaseResult {
+
+	private final long couponId;
+	private final PurchaseStatus status;
+
+	public PurchaseResult(long couponId, PurchaseStatus status) {
+		this.couponId = couponId;
+		this.status = status;
+	}
+
+	public long getCouponId() {
+		return couponId;
+	}
+
+	public PurchaseStatus getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,13 @@
+package com.cs.rest.purchase;
+
+/**
+ * The result of a single purchase of a coupon by a customer.
+ */
+public enum PurchaseStatus {
+
+	PURCHASED, NOT_FOUND, EXPIRED, OUT_OF_STOCK, ALREADY_PURCHASED;
+
+	public boolean isPurchased() {
+		return this == PURCHASED;
+	}
+}
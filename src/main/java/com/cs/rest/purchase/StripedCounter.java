@@ -0,0 +1,74 @@
+package com.cs.rest.purchase;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a counter of the remaining amount of a coupon that is split
+ * between a few stripes, every thread takes from the stripe of its own first
+ * so concurrent purchases of the same coupon do not all fight on one value.
+ *
+ * the stripes are spread in the array by 'PADDING' longs, so two stripes are
+ * never on the same cache line.
+ */
+class StripedCounter {
+
+	private static final int PADDING = 8;
+
+	private final int stripes;
+	private final AtomicLongArray values;
+
+	StripedCounter(int stripes, long amount) {
+		this.stripes = stripes;
+		this.values = new AtomicLongArray(stripes * PADDING);
+		reset(amount);
+	}
+
+	/**
+	 * This function will take one from the counter if it is above 0.
+	 *
+	 * @return true if one was taken, false if the counter is 0.
+	 */
+	boolean tryDecrement() {
+		int first = (int) (Thread.currentThread().getId() % stripes);
+
+		for (int i = 0; i < stripes; i++) {
+			int index = ((first + i) % stripes) * PADDING;
+			long value;
+
+			while ((value = values.get(index)) > 0) {
+				if (values.compareAndSet(index, value, value - 1)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	void increment() {
+		values.incrementAndGet((int) (Thread.currentThread().getId() % stripes) * PADDING);
+	}
+
+	long sum() {
+		long sum = 0;
+
+		for (int i = 0; i < stripes; i++) {
+			sum += values.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * This function will split the amount given between the stripes, it is not
+	 * atomic with 'tryDecrement' and it is used only when the amount of the
+	 * coupon is set by its company.
+	 *
+	 * @param amount - the new amount of the counter.
+	 */
+	void reset(long amount) {
+		long value = Math.max(amount, 0);
+
+		for (int i = 0; i < stripes; i++) {
+			values.set(i * PADDING, value / stripes + (i < value % stripes ? 1 : 0));
+		}
+	}
+}
@@ -1,9 +0,0 @@
-package com.cs.rest.service;
-
-/**
- * This class is in order to make a generic type of service to implement on all
- * the services in the application. in particular on 'ClientSession'.
- */
-public abstract class AbsService {
-	/* Empty */
-}
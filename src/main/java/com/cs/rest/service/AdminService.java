@@ -1,40 +1,72 @@
 package com.cs.rest.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import com.cs.entity.Company;
 import com.cs.entity.Coupon;
 import com.cs.entity.Customer;
+import com.cs.repository.view.CompanyView;
+import com.cs.repository.view.CouponView;
+import com.cs.repository.view.CustomerView;
+import com.cs.rest.PurgeStats;
+import com.cs.rest.SessionStats;
+import com.cs.rest.archive.ArchivedCoupon;
+import com.cs.rest.export.ExportFormat;
+import com.cs.rest.export.ExportTable;
+import com.cs.rest.ex.EmailAlreadyExistsException;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.CacheStats;
+import com.cs.rest.index.LookupStats;
+import com.cs.rest.index.OwnedCouponStats;
+import com.cs.rest.index.WalletStats;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.purchase.PipelineStats;
 
 public interface AdminService {
 
+	Customer addCustomer(Customer customer) throws EmailAlreadyExistsException;
+
 	Customer saveCustomer(Customer customer);
 
 	void deleteCustomer(long customerId);
 
-	List<Customer> findAllCustomers();
+	KeysetPage<CustomerView> findCustomerPage(String next, int size) throws InvalidPageException;
 
 	Customer findCustomerById(long customerId);
 
-	List<Coupon> findCustomerCoupons(long customerId);
+	boolean customerEmailExists(String email);
+
+	KeysetPage<CouponView> findCustomerCouponPage(long customerId, String sort, String next, int size)
+			throws InvalidPageException;
+
+	Company addCompany(Company company) throws EmailAlreadyExistsException;
 
 	Company saveCompany(Company company);
 
 	void deleteCompany(long companyId);
 
-	List<Company> findAllCompanies();
+	KeysetPage<CompanyView> findCompanyPage(String next, int size) throws InvalidPageException;
 
 	Company findCompanyById(long companyId);
 
-	List<Coupon> findCompanyCoupons(long companyId);
+	boolean companyEmailExists(String email);
 
-	Coupon saveCoupon(Coupon coupon, long companyId);
+	KeysetPage<CouponView> findCompanyCouponPage(long companyId, String sort, String next, int size)
+			throws InvalidPageException;
+
+	Coupon saveCoupon(Coupon coupon, long companyId) throws IllegalCouponException;
 
 	void deleteCoupon(long couponId);
 
-	List<Coupon> findAllCoupons();
+	KeysetPage<CouponView> findAllCouponPage(String sort, String next, int size) throws InvalidPageException;
+
+	CouponView findCouponById(long couponId);
 
-	Coupon findCouponById(long couponId);
+	boolean couponTitleExists(String title);
 
 	/**
 	 * That function will return the id of the company that associated to that
@@ -45,4 +77,42 @@ public interface AdminService {
 	 */
 	long getCompanyIdFromCoupon(long couponId);
 
+	/*
+	 * The operations of the admin on the background parts of the system, and
+	 * their statistics for monitoring.
+	 */
+
+	void markHotCoupon(long couponId) throws NoCouponFoundException;
+
+	void unmarkHotCoupon(long couponId);
+
+	List<ArchivedCoupon> findArchivedCompanyCoupons(long companyId) throws IOException;
+
+	List<ArchivedCoupon> findArchivedCustomerCoupons(long customerId) throws IOException;
+
+	/**
+	 * This function will write all the rows of the table given to the stream,
+	 * while they are read from the database (see @BulkExporter).
+	 * 
+	 * @param table  - the table to export.
+	 * @param format - the format of the rows.
+	 * @param out    - the stream to write to.
+	 * @throws IOException - if the stream could not be written.
+	 */
+	void exportTable(ExportTable table, ExportFormat format, OutputStream out) throws IOException;
+
+	PurgeStats getPurgeStats();
+
+	PipelineStats getPipelineStats();
+
+	SessionStats getSessionStats();
+
+	OwnedCouponStats getOwnedCouponStats();
+
+	CacheStats getCouponCacheStats();
+
+	LookupStats getLookupStats();
+
+	WalletStats getWalletStats();
+
 }
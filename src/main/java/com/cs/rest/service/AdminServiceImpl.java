@@ -1,10 +1,13 @@
 package com.cs.rest.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import com.cs.entity.Company;
@@ -13,80 +16,239 @@ import com.cs.entity.Customer;
 import com.cs.repository.CompanyRepository;
 import com.cs.repository.CouponRepository;
 import com.cs.repository.CustomerRepository;
+import com.cs.repository.view.CompanyView;
+import com.cs.repository.view.CouponView;
+import com.cs.repository.view.CustomerView;
+import com.cs.rest.CouponCleaner;
+import com.cs.rest.PurgeStats;
+import com.cs.rest.SessionStats;
+import com.cs.rest.SessionStore;
+import com.cs.rest.archive.ArchivedCoupon;
+import com.cs.rest.archive.CouponArchive;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.ex.EmailAlreadyExistsException;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.export.BulkExporter;
+import com.cs.rest.export.ExportFormat;
+import com.cs.rest.export.ExportTable;
+import com.cs.rest.index.CacheStats;
+import com.cs.rest.index.CouponCache;
+import com.cs.rest.index.CouponExpiryIndex;
+import com.cs.rest.index.CouponTitleIndex;
+import com.cs.rest.index.EmailIndex;
+import com.cs.rest.index.LookupStats;
+import com.cs.rest.index.OwnedCouponIndex;
+import com.cs.rest.index.OwnedCouponStats;
+import com.cs.rest.index.RequestLookups;
+import com.cs.rest.index.WalletCache;
+import com.cs.rest.index.WalletStats;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.page.KeysetPager;
+import com.cs.rest.purchase.HotCouponInventory;
+import com.cs.rest.purchase.PipelineStats;
+import com.cs.rest.purchase.PurchasePipeline;
 
 @Service
-@Scope("prototype")
-public class AdminServiceImpl extends AbsService implements AdminService {
+public class AdminServiceImpl implements AdminService {
 
 	private CompanyRepository companyRepository;
 	private CouponRepository couponRepository;
 	private CustomerRepository customerRepository;
+	private CouponExpiryIndex couponExpiryIndex;
+	private CouponCache couponCache;
+	private CouponTitleIndex couponTitleIndex;
+	private OwnedCouponIndex ownedCouponIndex;
+	private EmailIndex emailIndex;
+	private RequestLookups requestLookups;
+	private WalletCache walletCache;
+	private KeysetPager keysetPager;
+	private SessionStore sessionStore;
+	private CouponCleaner couponCleaner;
+	private CouponArchive couponArchive;
+	private HotCouponInventory hotCouponInventory;
+	private PurchasePipeline purchasePipeline;
+	private BulkExporter bulkExporter;
+	private ApplicationEventPublisher eventPublisher;
 
 	@Autowired
 	public AdminServiceImpl(CompanyRepository companyRepository, CouponRepository couponRepository,
-			CustomerRepository customerRepository) {
+			CustomerRepository customerRepository, CouponExpiryIndex couponExpiryIndex, CouponCache couponCache,
+			CouponTitleIndex couponTitleIndex, OwnedCouponIndex ownedCouponIndex, EmailIndex emailIndex,
+			RequestLookups requestLookups, WalletCache walletCache, KeysetPager keysetPager,
+			SessionStore sessionStore, CouponCleaner couponCleaner, CouponArchive couponArchive,
+			HotCouponInventory hotCouponInventory, PurchasePipeline purchasePipeline, BulkExporter bulkExporter,
+			ApplicationEventPublisher eventPublisher) {
 		this.companyRepository = companyRepository;
 		this.couponRepository = couponRepository;
 		this.customerRepository = customerRepository;
+		this.couponExpiryIndex = couponExpiryIndex;
+		this.couponCache = couponCache;
+		this.couponTitleIndex = couponTitleIndex;
+		this.ownedCouponIndex = ownedCouponIndex;
+		this.emailIndex = emailIndex;
+		this.requestLookups = requestLookups;
+		this.walletCache = walletCache;
+		this.keysetPager = keysetPager;
+		this.sessionStore = sessionStore;
+		this.couponCleaner = couponCleaner;
+		this.couponArchive = couponArchive;
+		this.hotCouponInventory = hotCouponInventory;
+		this.purchasePipeline = purchasePipeline;
+		this.bulkExporter = bulkExporter;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * This function will insert the new customer given. the unique index of the
+	 * email refuses a customer that another request inserted with the same email
+	 * after the check of the controller.
+	 */
+	@Override
+	public Customer addCustomer(Customer customer) throws EmailAlreadyExistsException {
+		customer.setId(0);
+
+		try {
+			return saveCustomer(customer);
+		} catch (DataIntegrityViolationException e) {
+			if (ConstraintViolations.isViolationOf(e, "uk_customer_email")) {
+				throw new EmailAlreadyExistsException(
+						String.format("Unable to create new customer, the email '%s' already exists in the system.",
+								customer.getEmail()));
+			}
+			throw e;
+		}
 	}
 
 	@Override
 	public Customer saveCustomer(Customer customer) {
+		if (customer.getId() == 0) {
+			emailIndex.addCustomerEmail(customer.getEmail());
+		}
+
+		requestLookups.forget(RequestLookups.CUSTOMER, customer.getId());
 		return customerRepository.save(customer);
 	}
 
 	@Override
 	public void deleteCustomer(long customerId) {
 		customerRepository.deleteById(customerId);
+		ownedCouponIndex.evict(customerId);
+		walletCache.evict(customerId);
+		requestLookups.forget(RequestLookups.CUSTOMER, customerId);
 	}
 
 	@Override
-	public List<Customer> findAllCustomers() {
-		return customerRepository.findAll();
+	public KeysetPage<CustomerView> findCustomerPage(String next, int size) throws InvalidPageException {
+		return keysetPager.findCustomers(next, size);
 	}
 
 	@Override
 	public Customer findCustomerById(long customerId) {
-		return customerRepository.findById(customerId).orElse(null);
+		return requestLookups.find(RequestLookups.CUSTOMER, customerId,
+				() -> customerRepository.findById(customerId).orElse(null));
+	}
+
+	@Override
+	public boolean customerEmailExists(String email) {
+		return emailIndex.customerEmailExists(email);
+	}
+
+	@Override
+	public KeysetPage<CouponView> findCustomerCouponPage(long customerId, String sort, String next, int size)
+			throws InvalidPageException {
+		return keysetPager.findCustomerCoupons(customerId, sort, next, size);
 	}
 
+	/**
+	 * This function will insert the new company given, see 'addCustomer'.
+	 */
 	@Override
-	public List<Coupon> findCustomerCoupons(long id) {
-		return couponRepository.findAllCouponsByCustomerId(id);
+	public Company addCompany(Company company) throws EmailAlreadyExistsException {
+		company.setId(0);
+
+		try {
+			return saveCompany(company);
+		} catch (DataIntegrityViolationException e) {
+			if (ConstraintViolations.isViolationOf(e, "uk_company_email")) {
+				throw new EmailAlreadyExistsException(
+						String.format("Unable to create new company, the email '%s' already exists in the system.",
+								company.getEmail()));
+			}
+			throw e;
+		}
 	}
 
 	@Override
 	public Company saveCompany(Company company) {
+		if (company.getId() == 0) {
+			emailIndex.addCompanyEmail(company.getEmail());
+		}
+
+		requestLookups.forget(RequestLookups.COMPANY, company.getId());
 		return companyRepository.save(company);
 	}
 
 	@Override
 	public void deleteCompany(long companyId) {
+		List<Coupon> coupons = couponRepository.findAllCouponsByCompanyId(companyId);
+
 		companyRepository.deleteById(companyId);
+		requestLookups.forget(RequestLookups.COMPANY, companyId);
+
+		for (Coupon coupon : coupons) {
+			eventPublisher.publishEvent(CouponChangedEvent.deleted(coupon.getId()));
+		}
 	}
 
 	@Override
-	public List<Company> findAllCompanies() {
-		return companyRepository.findAll();
+	public KeysetPage<CompanyView> findCompanyPage(String next, int size) throws InvalidPageException {
+		return keysetPager.findCompanies(next, size);
 	}
 
 	@Override
 	public Company findCompanyById(long companyId) {
-		return companyRepository.findById(companyId).orElse(null);
+		return requestLookups.find(RequestLookups.COMPANY, companyId,
+				() -> companyRepository.findById(companyId).orElse(null));
 	}
 
 	@Override
-	public List<Coupon> findCompanyCoupons(long id) {
-		return couponRepository.findAllCouponsByCompanyId(id);
+	public boolean companyEmailExists(String email) {
+		return emailIndex.companyEmailExists(email);
 	}
 
 	@Override
-	public Coupon saveCoupon(Coupon coupon, long companyId) {
+	public KeysetPage<CouponView> findCompanyCouponPage(long companyId, String sort, String next, int size)
+			throws InvalidPageException {
+		return keysetPager.findCoupons(companyId, sort, next, size);
+	}
+
+	/**
+	 * This function will save the coupon given to the company given. the unique
+	 * index of the title refuses a coupon that another request saved with the
+	 * same title after the check of the controller.
+	 */
+	@Override
+	public Coupon saveCoupon(Coupon coupon, long companyId) throws IllegalCouponException {
 		Optional<Company> company = companyRepository.findById(companyId);
 
 		if (company.isPresent()) {
 			coupon.setCompany(company.get());
-			couponRepository.save(coupon);
+			Coupon saved;
+
+			try {
+				saved = couponRepository.save(coupon);
+			} catch (DataIntegrityViolationException e) {
+				if (ConstraintViolations.isViolationOf(e, "uk_coupon_title")) {
+					throw new IllegalCouponException(String.format("The title '%s' is alredy exist. "
+							+ "you need to change the title in order to create that coupon.", coupon.getTitle()));
+				}
+				throw e;
+			}
+
+			eventPublisher.publishEvent(CouponChangedEvent.saved(saved));
+			return saved;
 		}
 		return null;
 	}
@@ -94,16 +256,23 @@ public class AdminServiceImpl extends AbsService implements AdminService {
 	@Override
 	public void deleteCoupon(long couponId) {
 		couponRepository.deleteById(couponId);
+		eventPublisher.publishEvent(CouponChangedEvent.deleted(couponId));
+	}
+
+	@Override
+	public KeysetPage<CouponView> findAllCouponPage(String sort, String next, int size) throws InvalidPageException {
+		KeysetPage<CouponView> page = keysetPager.findCoupons(0, sort, next, size);
+		return new KeysetPage<>(couponExpiryIndex.filterExpired(page.getItems(), CouponView::getId), page.getNext());
 	}
 
 	@Override
-	public List<Coupon> findAllCoupons() {
-		return couponRepository.findAll();
+	public CouponView findCouponById(long couponId) {
+		return requestLookups.find(RequestLookups.COUPON, couponId, () -> couponCache.findById(couponId));
 	}
 
 	@Override
-	public Coupon findCouponById(long couponId) {
-		return couponRepository.findById(couponId).orElse(null);
+	public boolean couponTitleExists(String title) {
+		return couponTitleIndex.isTaken(title, 0);
 	}
 
 	public long getCompanyIdFromCoupon(long couponId) {
@@ -116,4 +285,64 @@ public class AdminServiceImpl extends AbsService implements AdminService {
 		return 0;
 	}
 
+	@Override
+	public void markHotCoupon(long couponId) throws NoCouponFoundException {
+		hotCouponInventory.markHot(couponId);
+	}
+
+	@Override
+	public void unmarkHotCoupon(long couponId) {
+		hotCouponInventory.unmarkHot(couponId);
+	}
+
+	@Override
+	public List<ArchivedCoupon> findArchivedCompanyCoupons(long companyId) throws IOException {
+		return couponArchive.findByCompany(companyId);
+	}
+
+	@Override
+	public List<ArchivedCoupon> findArchivedCustomerCoupons(long customerId) throws IOException {
+		return couponArchive.findByCustomer(customerId);
+	}
+
+	@Override
+	public void exportTable(ExportTable table, ExportFormat format, OutputStream out) throws IOException {
+		bulkExporter.export(table, format, out);
+	}
+
+	@Override
+	public PurgeStats getPurgeStats() {
+		return couponCleaner.getStats();
+	}
+
+	@Override
+	public PipelineStats getPipelineStats() {
+		return purchasePipeline.getStats();
+	}
+
+	@Override
+	public SessionStats getSessionStats() {
+		return sessionStore.getStats();
+	}
+
+	@Override
+	public OwnedCouponStats getOwnedCouponStats() {
+		return ownedCouponIndex.getStats();
+	}
+
+	@Override
+	public CacheStats getCouponCacheStats() {
+		return couponCache.getStats();
+	}
+
+	@Override
+	public LookupStats getLookupStats() {
+		return requestLookups.getStats();
+	}
+
+	@Override
+	public WalletStats getWalletStats() {
+		return walletCache.getStats();
+	}
+
 }
@@ -1,31 +1,37 @@
 package com.cs.rest.service;
 
-import java.util.List;
-
 import com.cs.entity.Company;
 import com.cs.entity.Coupon;
-
+import com.cs.repository.view.CouponView;
+import com.cs.rest.ClientSession;
+import com.cs.rest.dashboard.CompanyDashboard;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.page.KeysetPage;
+
+/**
+ * This service is shared by all the companies, every function gets the
+ * 'ClientSession' of the company that asks for it in order to make the service
+ * available only to the correct company that return from the login. see
+ * 'CouponSystem' in 'companyLogin' function.
+ */
 public interface CompanyService {
 
-	Company save(Company company);
+	Company save(ClientSession session, Company company);
+
+	Company findCurrentCompany(ClientSession session);
 
-	Company findCurrentCompany();
+	Coupon save(ClientSession session, Coupon coupon) throws IllegalCouponException;
 
-	Coupon save(Coupon coupon);
+	String findCompanyCouponsETag(ClientSession session);
 
-	List<Coupon> findCompanyCoupons();
+	KeysetPage<CouponView> findCompanyCouponPage(ClientSession session, String sort, String next, int size)
+			throws InvalidPageException;
 
-	List<Coupon> findAllCoupons();
+	CouponView findCouponById(ClientSession session, long couponId);
 
-	Coupon findCouponById(long couponId);
+	boolean couponTitleExists(ClientSession session, String title);
 
-	/**
-	 * This function is use to set the company id in order to make the service
-	 * available only to the correct company that return from the login. see
-	 * 'CouponSystem' in 'companyLogin' function.
-	 * 
-	 * @param id - the id company to set in the service.
-	 */
-	void setCompanyId(long id);
+	CompanyDashboard findDashboard(ClientSession session);
 
 }
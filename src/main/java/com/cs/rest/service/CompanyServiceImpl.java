@@ -1,74 +1,121 @@
 package com.cs.rest.service;
 
-import java.util.List;
-import java.util.Optional;
-
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.annotation.Scope;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import com.cs.entity.Company;
 import com.cs.entity.Coupon;
 import com.cs.repository.CompanyRepository;
 import com.cs.repository.CouponRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.ClientSession;
+import com.cs.rest.dashboard.CompanyDashboard;
+import com.cs.rest.dashboard.SalesAggregates;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.index.CouponCache;
+import com.cs.rest.index.CouponTitleIndex;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.index.RequestLookups;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.page.KeysetPager;
 
 @Service
-@Scope("prototype")
-public class CompanyServiceImpl extends AbsService implements CompanyService {
-
-	private long companyId;
+public class CompanyServiceImpl implements CompanyService {
 
 	private CompanyRepository companyRepository;
 	private CouponRepository couponRepository;
+	private CouponCache couponCache;
+	private CouponTitleIndex couponTitleIndex;
+	private CouponVersions couponVersions;
+	private RequestLookups requestLookups;
+	private SalesAggregates salesAggregates;
+	private KeysetPager keysetPager;
+	private ApplicationEventPublisher eventPublisher;
 
 	@Autowired
 	public CompanyServiceImpl(CompanyRepository companyRepository, CouponRepository couponRepository,
-			ApplicationContext context) {
+			CouponCache couponCache, CouponTitleIndex couponTitleIndex,
+			CouponVersions couponVersions, RequestLookups requestLookups, SalesAggregates salesAggregates,
+			KeysetPager keysetPager, ApplicationEventPublisher eventPublisher) {
 		this.companyRepository = companyRepository;
 		this.couponRepository = couponRepository;
+		this.couponCache = couponCache;
+		this.couponTitleIndex = couponTitleIndex;
+		this.couponVersions = couponVersions;
+		this.requestLookups = requestLookups;
+		this.salesAggregates = salesAggregates;
+		this.keysetPager = keysetPager;
+		this.eventPublisher = eventPublisher;
 	}
 
 	@Override
-	public Company save(Company company) {
+	public Company save(ClientSession session, Company company) {
+		requestLookups.forget(RequestLookups.COMPANY, company.getId());
 		return companyRepository.save(company);
 	}
 
 	@Override
-	public Company findCurrentCompany() {
-		Optional<Company> company = companyRepository.findById(this.companyId);
-		return company.orElse(null);
+	public Company findCurrentCompany(ClientSession session) {
+		return requestLookups.find(RequestLookups.COMPANY, session.getClientId(),
+				() -> companyRepository.findById(session.getClientId()).orElse(null));
 	}
 
+	/**
+	 * This function will save the coupon given to the company of the session, see
+	 * 'AdminServiceImpl.saveCoupon'.
+	 */
 	@Override
-	public Coupon save(Coupon coupon) {
-		Optional<Company> company = companyRepository.findById(this.companyId);
-
-		if (company.isPresent()) {
-			coupon.setCompany(company.get());
-			return couponRepository.save(coupon);
+	public Coupon save(ClientSession session, Coupon coupon) throws IllegalCouponException {
+		Company company = findCurrentCompany(session);
+
+		if (company != null) {
+			coupon.setCompany(company);
+			Coupon saved;
+
+			try {
+				saved = couponRepository.save(coupon);
+			} catch (DataIntegrityViolationException e) {
+				if (ConstraintViolations.isViolationOf(e, "uk_coupon_title")) {
+					throw new IllegalCouponException(String.format("The title '%s' is alredy exist. "
+							+ "you need to change the title in order to create that coupon.", coupon.getTitle()));
+				}
+				throw e;
+			}
+
+			eventPublisher.publishEvent(CouponChangedEvent.saved(saved));
+			return saved;
 		}
 		return null;
 	}
 
 	@Override
-	public List<Coupon> findCompanyCoupons() {
-		return couponRepository.findAllCouponsByCompanyId(this.companyId);
+	public String findCompanyCouponsETag(ClientSession session) {
+		return couponVersions.getCompanyETag(session.getClientId());
 	}
 
 	@Override
-	public Coupon findCouponById(long couponId) {
-		Optional<Coupon> coupon = couponRepository.findById(couponId);
-		return coupon.orElse(null);
+	public KeysetPage<CouponView> findCompanyCouponPage(ClientSession session, String sort, String next, int size)
+			throws InvalidPageException {
+		return keysetPager.findCoupons(session.getClientId(), sort, next, size);
 	}
 
 	@Override
-	public List<Coupon> findAllCoupons() {
-		return couponRepository.findAll();
+	public CouponView findCouponById(ClientSession session, long couponId) {
+		return requestLookups.find(RequestLookups.COUPON, couponId, () -> couponCache.findById(couponId));
 	}
 
-	public void setCompanyId(long companyId) {
-		this.companyId = companyId;
+	@Override
+	public boolean couponTitleExists(ClientSession session, String title) {
+		return couponTitleIndex.isTaken(title, 0);
+	}
+
+	@Override
+	public CompanyDashboard findDashboard(ClientSession session) {
+		return salesAggregates.findDashboard(session.getClientId());
 	}
 
 }
@@ -0,0 +1,33 @@
+package com.cs.rest.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * The checks of the violations of the unique constraints of the entities, for
+ * the saves that lose a race on a unique constraint after the checks of the
+ * controllers passed.
+ */
+final class ConstraintViolations {
+
+	private ConstraintViolations() {
+	}
+
+	/**
+	 * @param e              - the violation that the database refused a save
+	 *                       with.
+	 * @param constraintName - the name of the unique constraint.
+	 * @return true if the violation is of the constraint given.
+	 */
+	static boolean isViolationOf(DataIntegrityViolationException e, String constraintName) {
+		Throwable cause = e.getCause();
+
+		if (!(cause instanceof ConstraintViolationException)) {
+			return false;
+		}
+
+		String violated = ((ConstraintViolationException) cause).getConstraintName();
+		return violated != null && violated.toLowerCase().contains(constraintName);
+	}
+
+}
@@ -4,26 +4,52 @@ import java.util.List;
 
 import com.cs.entity.Coupon;
 import com.cs.entity.Customer;
-
+import com.cs.repository.view.CouponView;
+import com.cs.rest.ClientSession;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.CouponSearch;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.snapshot.CatalogSnapshot;
+import com.cs.rest.purchase.PurchaseResult;
+
+/**
+ * This service is shared by all the customers, every function gets the
+ * 'ClientSession' of the customer that asks for it in order to act only on
+ * behalf of the customer that return from the login. see(@CouponSystem in
+ * 'customerLogin' function).
+ */
 public interface CustomerService {
 
-	Customer save(Customer customer);
+	Customer save(ClientSession session, Customer customer);
+
+	Customer findCurrentCustomer(ClientSession session);
+
+	String findCustomerCouponsETag(ClientSession session);
+
+	List<CouponView> findWallet(ClientSession session);
+
+	KeysetPage<CouponView> findCustomerCouponPage(ClientSession session, String sort, String next, int size)
+			throws InvalidPageException;
+
+	Coupon purchaseCoupon(ClientSession session, long couponId) throws IllegalCouponException, NoCouponFoundException;
+
+	List<PurchaseResult> checkout(ClientSession session, List<Long> couponIds);
+
+	List<Long> findOwnedCouponIds(ClientSession session);
+
+	CatalogSnapshot findAllCouponsSnapshot(ClientSession session);
 
-	Customer findCurrentCustomer();
+	KeysetPage<CouponView> findAllCouponPage(ClientSession session, String sort, String next, int size)
+			throws InvalidPageException;
 
-	List<Coupon> findCustomerCoupons();
+	List<CouponView> searchCoupons(ClientSession session, CouponSearch search);
 
-	Coupon purchaseCoupon(long couponId);
+	List<CouponView> searchCouponText(ClientSession session, String query, int limit);
 
-	List<Coupon> findAllCoupons();
+	List<String> autocompleteTitles(ClientSession session, String prefix, int limit);
 
-	/**
-	 * This function is use to set the customer id in order to make the service
-	 * available only to the correct customer that return from the login.
-	 * see(@CouponSystem in 'customerLogin' function).
-	 * 
-	 * @param id - the id customer to set in the service.
-	 */
-	Coupon findCouponById(long couponId);
+	CouponView findCouponById(ClientSession session, long couponId);
 
 }
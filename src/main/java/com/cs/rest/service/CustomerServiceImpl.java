@@ -1,80 +1,352 @@
 package com.cs.rest.service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.cs.entity.Coupon;
 import com.cs.entity.Customer;
 import com.cs.repository.CouponRepository;
 import com.cs.repository.CustomerRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.ClientSession;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.CouponCache;
+import com.cs.rest.index.CouponExpiryIndex;
+import com.cs.rest.index.CouponSearch;
+import com.cs.rest.index.CouponSearchIndex;
+import com.cs.rest.index.CouponTextIndex;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.index.OwnedCouponIndex;
+import com.cs.rest.index.RequestLookups;
+import com.cs.rest.index.WalletCache;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.page.KeysetPager;
+import com.cs.rest.purchase.CouponPurchase;
+import com.cs.rest.purchase.HotCouponInventory;
+import com.cs.rest.purchase.PurchaseBatchExecutor;
+import com.cs.rest.purchase.PurchasePipeline;
+import com.cs.rest.purchase.PurchaseResult;
+import com.cs.rest.purchase.PurchaseStatus;
+import com.cs.rest.snapshot.CatalogSnapshot;
+import com.cs.rest.snapshot.CatalogSnapshots;
 
 @Service
-@Scope("prototype")
-public class CustomerServiceImpl extends AbsService implements CustomerService {
-
-	private long customerId;
+public class CustomerServiceImpl implements CustomerService {
 
 	private CustomerRepository customerRepository;
 	private CouponRepository couponRepository;
+	private CouponExpiryIndex couponExpiryIndex;
+	private CouponCache couponCache;
+	private CouponSearchIndex couponSearchIndex;
+	private CouponTextIndex couponTextIndex;
+	private CouponVersions couponVersions;
+	private CatalogSnapshots catalogSnapshots;
+	private OwnedCouponIndex ownedCouponIndex;
+	private RequestLookups requestLookups;
+	private WalletCache walletCache;
+	private KeysetPager keysetPager;
+	private HotCouponInventory hotCouponInventory;
+	private PurchasePipeline purchasePipeline;
+	private PurchaseBatchExecutor purchaseBatchExecutor;
+	private ApplicationEventPublisher eventPublisher;
 
 	@Autowired
-	public CustomerServiceImpl(CustomerRepository customerRepository, CouponRepository couponRepository) {
+	public CustomerServiceImpl(CustomerRepository customerRepository, CouponRepository couponRepository,
+			CouponExpiryIndex couponExpiryIndex, CouponCache couponCache, CouponSearchIndex couponSearchIndex,
+			CouponTextIndex couponTextIndex, CouponVersions couponVersions, CatalogSnapshots catalogSnapshots,
+			OwnedCouponIndex ownedCouponIndex, RequestLookups requestLookups, WalletCache walletCache,
+			KeysetPager keysetPager, HotCouponInventory hotCouponInventory, PurchasePipeline purchasePipeline,
+			PurchaseBatchExecutor purchaseBatchExecutor, ApplicationEventPublisher eventPublisher) {
 		this.customerRepository = customerRepository;
 		this.couponRepository = couponRepository;
+		this.couponExpiryIndex = couponExpiryIndex;
+		this.couponCache = couponCache;
+		this.couponSearchIndex = couponSearchIndex;
+		this.couponTextIndex = couponTextIndex;
+		this.couponVersions = couponVersions;
+		this.catalogSnapshots = catalogSnapshots;
+		this.ownedCouponIndex = ownedCouponIndex;
+		this.requestLookups = requestLookups;
+		this.walletCache = walletCache;
+		this.keysetPager = keysetPager;
+		this.hotCouponInventory = hotCouponInventory;
+		this.purchasePipeline = purchasePipeline;
+		this.purchaseBatchExecutor = purchaseBatchExecutor;
+		this.eventPublisher = eventPublisher;
 	}
 
 	@Override
-	public Customer save(Customer customer) {
+	public Customer save(ClientSession session, Customer customer) {
+		requestLookups.forget(RequestLookups.CUSTOMER, customer.getId());
 		return customerRepository.save(customer);
 	}
 
 	@Override
-	public Customer findCurrentCustomer() {
-		Optional<Customer> customer = customerRepository.findById(this.customerId);
-		return customer.orElse(null);
+	public Customer findCurrentCustomer(ClientSession session) {
+		return requestLookups.find(RequestLookups.CUSTOMER, session.getClientId(),
+				() -> customerRepository.findById(session.getClientId()).orElse(null));
+	}
+
+	@Override
+	public String findCustomerCouponsETag(ClientSession session) {
+		return couponVersions.getCustomerETag(session.getClientId());
 	}
 
 	@Override
-	public List<Coupon> findCustomerCoupons() {
-		return couponRepository.findAllCouponsByCustomerId(this.customerId);
+	public List<CouponView> findWallet(ClientSession session) {
+		return walletCache.findWallet(session.getClientId());
 	}
 
 	@Override
-	public Coupon purchaseCoupon(long couponId) {
-		
-		Optional<Customer> customerOp = customerRepository.findById(this.customerId);
-		
-		Optional<Coupon> couponOp = couponRepository.findById(couponId);
-
-		if (customerOp.isPresent() && couponOp.isPresent()) {
-			Coupon coupon = couponOp.get();
-			Customer customer = customerOp.get();
-
-			customer.addCoupon(coupon);
-			coupon.setAmount(coupon.getAmount() - 1);
-			customerRepository.save(customer);
-			return coupon;
+	public KeysetPage<CouponView> findCustomerCouponPage(ClientSession session, String sort, String next, int size)
+			throws InvalidPageException {
+		return keysetPager.findCustomerCoupons(session.getClientId(), sort, next, size);
+	}
+
+	/**
+	 * This function will purchase the coupon for the customer of the session.
+	 *
+	 * the purchase is written by the 'PurchasePipeline', in one transaction with
+	 * the other purchases that arrive at the same time (see
+	 * 'PurchaseBatchExecutor'), so the stock can never go below 0 under
+	 * concurrent purchases and a failed purchase never takes from the stock. the
+	 * coupon itself is loaded only to return it, or in order to find the reason
+	 * of a failure. a coupon that the customer already owns is refused by the
+	 * 'OwnedCouponIndex' without reaching the database.
+	 *
+	 * a coupon that is marked as hot is purchased in memory instead (see
+	 * 'HotCouponInventory'), and written to the database a moment later.
+	 *
+	 * @param session  - the session of the customer.
+	 * @param couponId - the id of the coupon to purchase.
+	 * @return the coupon purchased.
+	 * @throws NoCouponFoundException - in case the coupon does not exist.
+	 * @throws IllegalCouponException - in case the coupon is expired, out of
+	 *                                stock or already purchased by the customer.
+	 */
+	@Override
+	public Coupon purchaseCoupon(ClientSession session, long couponId)
+			throws IllegalCouponException, NoCouponFoundException {
+
+		PurchaseStatus status = PurchaseStatus.EXPIRED;
+
+		if (ownedCouponIndex.isOwned(session.getClientId(), couponId)) {
+			status = PurchaseStatus.ALREADY_PURCHASED;
+		} else if (!couponExpiryIndex.isExpired(couponId, System.currentTimeMillis())) {
+			status = hotCouponInventory.purchase(session.getClientId(), couponId);
+
+			if (status == null) {
+				status = purchasePipeline.purchase(session.getClientId(), couponId);
+			}
+		}
+
+		if (!status.isPurchased()) {
+			throw purchaseFailed(status, couponId);
+		}
+
+		Coupon coupon = findExistingCoupon(couponId);
+		eventPublisher.publishEvent(CouponChangedEvent.purchased(coupon, session.getClientId()));
+		return coupon;
+	}
+
+	/**
+	 * This function will purchase all the coupons of the cart given for the
+	 * customer of the session.
+	 *
+	 * the expired and the owned coupons are checked in memory, and all the
+	 * coupons that are not hot are written in one transaction by the
+	 * 'PurchaseBatchExecutor', so the checkout costs the same number of queries
+	 * for any size of cart. the hot coupons are admitted only after the
+	 * transaction is committed, so a checkout that fails on the database does not
+	 * leave purchases admitted in memory. a coupon that cannot be purchased does
+	 * not fail the others, its reason is returned in its result.
+	 *
+	 * @param session   - the session of the customer.
+	 * @param couponIds - the ids of the coupons in the cart.
+	 * @return the result of every coupon, in the order of the cart.
+	 */
+	@Override
+	public List<PurchaseResult> checkout(ClientSession session, List<Long> couponIds) {
+		long customerId = session.getClientId();
+		long nowMillis = System.currentTimeMillis();
+
+		PurchaseStatus[] statuses = new PurchaseStatus[couponIds.size()];
+		List<CouponPurchase> purchases = new ArrayList<>();
+		List<Integer> purchaseIndexes = new ArrayList<>();
+		List<Integer> hotIndexes = new ArrayList<>();
+
+		for (int i = 0; i < couponIds.size(); i++) {
+			long couponId = couponIds.get(i);
+
+			if (couponExpiryIndex.isExpired(couponId, nowMillis)) {
+				statuses[i] = PurchaseStatus.EXPIRED;
+				continue;
+			}
+
+			if (ownedCouponIndex.isOwned(customerId, couponId)) {
+				statuses[i] = PurchaseStatus.ALREADY_PURCHASED;
+				continue;
+			}
+
+			if (hotCouponInventory.isHot(couponId)) {
+				hotIndexes.add(i);
+			} else {
+				purchases.add(new CouponPurchase(customerId, couponId));
+				purchaseIndexes.add(i);
+			}
+		}
+
+		write(purchases, purchaseIndexes, statuses);
+
+		purchases.clear();
+		purchaseIndexes.clear();
+
+		for (int i : hotIndexes) {
+			statuses[i] = hotCouponInventory.purchase(customerId, couponIds.get(i));
+
+			// the coupon was unmarked during the checkout.
+			if (statuses[i] == null) {
+				purchases.add(new CouponPurchase(customerId, couponIds.get(i)));
+				purchaseIndexes.add(i);
+			}
+		}
+
+		write(purchases, purchaseIndexes, statuses);
+
+		List<PurchaseResult> results = new ArrayList<>(couponIds.size());
+		List<Long> purchasedIds = new ArrayList<>();
+
+		for (int i = 0; i < couponIds.size(); i++) {
+			results.add(new PurchaseResult(couponIds.get(i), statuses[i]));
+
+			if (statuses[i].isPurchased()) {
+				purchasedIds.add(couponIds.get(i));
+			}
+		}
+
+		for (Coupon coupon : couponRepository.findAllById(purchasedIds)) {
+			eventPublisher.publishEvent(CouponChangedEvent.purchased(coupon, customerId));
 		}
-		return null;
+
+		return results;
+	}
+
+	@Override
+	public List<Long> findOwnedCouponIds(ClientSession session) {
+		return ownedCouponIndex.findOwnedIds(session.getClientId());
+	}
+
+	@Override
+	public CatalogSnapshot findAllCouponsSnapshot(ClientSession session) {
+		return catalogSnapshots.findCurrent();
+	}
+
+	@Override
+	public KeysetPage<CouponView> findAllCouponPage(ClientSession session, String sort, String next, int size)
+			throws InvalidPageException {
+		KeysetPage<CouponView> page = keysetPager.findCoupons(0, sort, next, size);
+		return new KeysetPage<>(couponExpiryIndex.filterExpired(page.getItems(), CouponView::getId), page.getNext());
 	}
 
+	/**
+	 * This function will search the coupons that are not expired by the filters
+	 * given, in the 'CouponSearchIndex', and read the coupons found from the
+	 * 'CouponCache'. the limit is at most the maximum size of a page.
+	 *
+	 * @param session - the session of the customer.
+	 * @param search  - the filters, the sort and the limit of the search.
+	 * @return the coupons found, in the order of the search.
+	 */
 	@Override
-	public List<Coupon> findAllCoupons() {
-		return couponRepository.findAll();
+	public List<CouponView> searchCoupons(ClientSession session, CouponSearch search) {
+		CouponSearch capped = new CouponSearch(search.getCategory(), search.getMinPrice(), search.getMaxPrice(),
+				search.getEndAfter(), search.getEndBefore(), search.getSort(),
+				Math.min(search.getLimit(), keysetPager.getMaxSize()));
+
+		return couponCache.findAllById(couponSearchIndex.search(capped, System.currentTimeMillis()));
 	}
 
+	/**
+	 * This function will search the coupons that are not expired by the words of
+	 * their title and description, in the 'CouponTextIndex'.
+	 *
+	 * @param session - the session of the customer.
+	 * @param query   - the words to search, the last one may be the start of a
+	 *                word.
+	 * @param limit   - the maximum number of coupons to return, at most the
+	 *                maximum size of a page.
+	 * @return the coupons found, the best match first.
+	 */
 	@Override
-	public Coupon findCouponById(long couponId) {
-		Optional<Coupon> coupon = couponRepository.findById(couponId);
-		return coupon.orElse(null);
+	public List<CouponView> searchCouponText(ClientSession session, String query, int limit) {
+		long nowMillis = System.currentTimeMillis();
+
+		return couponCache.findAllById(couponTextIndex.search(query, Math.min(limit, keysetPager.getMaxSize()),
+				couponId -> !couponExpiryIndex.isExpired(couponId, nowMillis)));
+	}
+
+	@Override
+	public List<String> autocompleteTitles(ClientSession session, String prefix, int limit) {
+		long nowMillis = System.currentTimeMillis();
+
+		return couponTextIndex.autocomplete(prefix, Math.min(limit, keysetPager.getMaxSize()),
+				couponId -> !couponExpiryIndex.isExpired(couponId, nowMillis));
+	}
+
+	@Override
+	public CouponView findCouponById(ClientSession session, long couponId) {
+		return requestLookups.find(RequestLookups.COUPON, couponId, () -> couponCache.findById(couponId));
+	}
+
+	/**
+	 * This function will write the purchases given and set their statuses.
+	 *
+	 * @param purchases - the purchases to write.
+	 * @param indexes   - the index in the cart of every purchase.
+	 * @param statuses  - the statuses of the cart.
+	 */
+	private void write(List<CouponPurchase> purchases, List<Integer> indexes, PurchaseStatus[] statuses) {
+		List<PurchaseStatus> written = purchaseBatchExecutor.execute(purchases);
+
+		for (int j = 0; j < written.size(); j++) {
+			statuses[indexes.get(j)] = written.get(j);
+		}
+	}
+
+	/**
+	 * @param status   - the status of the purchase that failed.
+	 * @param couponId - the id of the coupon.
+	 * @return the exception that describes the failure to the customer.
+	 * @throws NoCouponFoundException - in case the coupon does not exist.
+	 */
+	private IllegalCouponException purchaseFailed(PurchaseStatus status, long couponId)
+			throws NoCouponFoundException {
+
+		String title = findExistingCoupon(couponId).getTitle();
+
+		switch (status) {
+		case EXPIRED:
+			return new IllegalCouponException(String.format("Unable to purchase coupon '%s'."
+					+ " coupon expired.", title));
+		case ALREADY_PURCHASED:
+			return new IllegalCouponException(String.format("Unable to purchase coupon '%s'."
+					+ " coupon already purchased, duplicate are not allowed.", title));
+		default:
+			return new IllegalCouponException(String.format("Unable to purchase coupon '%s'."
+					+ " coupon out of stack.", title));
+		}
 	}
 
-	public void setCustomerId(long customerId) {
-		this.customerId = customerId;
+	private Coupon findExistingCoupon(long couponId) throws NoCouponFoundException {
+		return couponRepository.findById(couponId).orElseThrow(() -> new NoCouponFoundException(
+				"Coupon not found. Unable to find coupon with the data given"));
 	}
 
 }
@@ -0,0 +1,50 @@
+package com.cs.rest.snapshot;
+
+/**
+ * The catalog serialized to JSON once, as plain and as gzip bytes, with the
+ * ETag of the catalog that it was read at. the arrays are never changed after
+ * the snapshot is made, so all the requests share them.
+ */
+public class CatalogSnapshot {
+
+	private final String eTag;
+	private final int size;
+	private final byte[] json;
+	private final byte[] gzip;
+
+	CatalogSnapshot(String eTag, int size, byte[] json, byte[] gzip) {
+		this.eTag = eTag;
+		this.size = size;
+		this.json = json;
+		this.gzip = gzip;
+	}
+
+	/**
+	 * @param gzipped - true for the ETag of the gzip bytes.
+	 * @return the ETag of the bytes, the plain and the gzip bytes have a different
+	 *         ETag since they are different representations.
+	 */
+	public String getETag(boolean gzipped) {
+		return gzipped ? eTag.substring(0, eTag.length() - 1) + "-gzip\"" : eTag;
+	}
+
+	String getCatalogETag() {
+		return eTag;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public byte[] getJson() {
+		return json;
+	}
+
+	public byte[] getGzip() {
+		return gzip;
+	}
+}
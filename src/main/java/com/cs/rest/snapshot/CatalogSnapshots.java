@@ -0,0 +1,185 @@
+package com.cs.rest.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cs.repository.view.CouponView;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.ex.InvalidPageException;
+import com.cs.rest.index.CouponExpiryIndex;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.page.KeysetPager;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class keeps the catalog (the coupons that are not expired, up to the
+ * maximum size of a page) as a 'CatalogSnapshot' of bytes that is serialized
+ * and compressed once, and written as is to every request of the catalog.
+ *
+ * the snapshot is built on startup, and then rebuilt only in the background:
+ * a 'CouponChangedEvent' starts a rebuild, the events that arrive during a
+ * rebuild are joined to one more rebuild, and every rebuild schedules the next
+ * one at the next end date of a coupon, since an expiry has no event. a
+ * request always gets the last snapshot built, with the ETag that the snapshot
+ * was built at, so a request never waits for a rebuild and the ETag always
+ * matches the bytes.
+ */
+@Component
+public class CatalogSnapshots {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CatalogSnapshots.class);
+
+	private KeysetPager keysetPager;
+	private CouponExpiryIndex couponExpiryIndex;
+	private CouponVersions couponVersions;
+	private ObjectMapper objectMapper;
+
+	private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "catalog-snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+	private volatile CatalogSnapshot snapshot;
+	private ScheduledFuture<?> expiryRebuild;
+
+	@Autowired
+	public CatalogSnapshots(KeysetPager keysetPager, CouponExpiryIndex couponExpiryIndex,
+			CouponVersions couponVersions, ObjectMapper objectMapper) {
+		this.keysetPager = keysetPager;
+		this.couponExpiryIndex = couponExpiryIndex;
+		this.couponVersions = couponVersions;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Build the first snapshot of the catalog.
+	 */
+	@PostConstruct
+	public void onPostConstruct() {
+		rebuild();
+	}
+
+	@PreDestroy
+	public void onPreDestroy() {
+		rebuilder.shutdownNow();
+	}
+
+	@EventListener
+	public void onCouponChanged(CouponChangedEvent event) {
+		if (rebuildQueued.compareAndSet(false, true)) {
+			rebuilder.execute(() -> {
+				rebuildQueued.set(false);
+				rebuildQuietly();
+			});
+		}
+	}
+
+	/**
+	 * @return the last snapshot of the catalog that was built.
+	 */
+	public CatalogSnapshot findCurrent() {
+		return snapshot;
+	}
+
+	private void rebuildQuietly() {
+		try {
+			rebuild();
+		} catch (RuntimeException e) {
+			LOGGER.error("Unable to rebuild the catalog snapshot.", e);
+		}
+	}
+
+	/**
+	 * This function will build the snapshot of the catalog, unless the last
+	 * snapshot is already at the ETag of the catalog, and schedule the rebuild
+	 * of the next expiry. it runs on startup and then on the thread of the
+	 * rebuilds only. the ETag is read before the coupons, so the snapshot is
+	 * never older than its ETag.
+	 */
+	private void rebuild() {
+		long nowMillis = System.currentTimeMillis();
+		scheduleExpiryRebuild(nowMillis);
+
+		String eTag = couponVersions.getCatalogETag();
+		CatalogSnapshot current = snapshot;
+
+		if (current != null && current.getCatalogETag().equals(eTag)) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		List<CouponView> coupons;
+
+		try {
+			coupons = couponExpiryIndex.filterExpired(
+					keysetPager.findCoupons(0, "id", null, Integer.MAX_VALUE).getItems(), CouponView::getId);
+		} catch (InvalidPageException e) {
+			throw new IllegalStateException(e);
+		}
+
+		byte[] json;
+
+		try {
+			json = objectMapper.writeValueAsBytes(coupons);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+
+		CatalogSnapshot built = new CatalogSnapshot(eTag, coupons.size(), json, gzip(json));
+		snapshot = built;
+
+		LOGGER.debug("Built the catalog snapshot of {} coupons ({} bytes, {} gzipped) in {} us.", coupons.size(),
+				json.length, built.getGzip().length, (System.nanoTime() - start) / 1000);
+	}
+
+	/**
+	 * This function will schedule a rebuild right after the next end date of a
+	 * coupon (a coupon is expired once its end date is before the current
+	 * time), instead of the rebuild that was scheduled before.
+	 */
+	private void scheduleExpiryRebuild(long nowMillis) {
+		if (expiryRebuild != null) {
+			expiryRebuild.cancel(false);
+			expiryRebuild = null;
+		}
+
+		long nextEndMillis = couponExpiryIndex.findNextEndMillisAfter(nowMillis);
+
+		if (nextEndMillis != Long.MAX_VALUE) {
+			expiryRebuild = rebuilder.schedule(this::rebuildQuietly, nextEndMillis + 1 - nowMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static byte[] gzip(byte[] bytes) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+}
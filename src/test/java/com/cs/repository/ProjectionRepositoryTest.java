@@ -0,0 +1,139 @@
+package com.cs.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.cs.entity.Company;
+import com.cs.entity.Coupon;
+import com.cs.entity.Customer;
+import com.cs.repository.view.CompanyView;
+import com.cs.repository.view.CouponView;
+import com.cs.repository.view.CustomerView;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class ProjectionRepositoryTest {
+
+	@Autowired
+	private TestEntityManager testEntityManager;
+
+	@Autowired
+	private CouponRepository couponRepository;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private CompanyRepository companyRepository;
+
+	private Company company;
+	private Customer customer;
+	private List<Coupon> coupons = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		company = new Company();
+		company.setName("pizza place");
+		company.setEmail("pizza@place.com");
+		company.setPassword("1234");
+		testEntityManager.persist(company);
+
+		customer = new Customer();
+		customer.setName("dana");
+		customer.setEmail("dana@mail.com");
+		customer.setPassword("1234");
+		testEntityManager.persist(customer);
+
+		coupons.add(coupon("pizza", 30, Date.valueOf("2030-01-02")));
+		coupons.add(coupon("pasta", 10, null));
+		coupons.add(coupon("salad", 20, Date.valueOf("2030-01-01")));
+
+		couponRepository.insertCustomerLink(customer.getId(), coupons.get(0).getId());
+		couponRepository.insertCustomerLink(customer.getId(), coupons.get(2).getId());
+		testEntityManager.flush();
+		testEntityManager.clear();
+	}
+
+	@Test
+	public void readsTheCouponsAsViewsWithTheFieldsOfTheEntity() {
+		List<CouponView> views = couponRepository.findPageById(0, PageRequest.of(0, 10));
+
+		assertEquals(ids(coupons), ids(views));
+		CouponView pizza = views.get(0);
+		assertEquals("pizza", pizza.getTitle());
+		assertEquals("the pizza", pizza.getDescription());
+		assertEquals(Date.valueOf("2030-01-02"), pizza.getEndDate());
+		assertEquals(30, pizza.getPrice(), 0);
+		assertEquals(5, pizza.getAmount());
+		assertEquals(company.getId(), pizza.getCompanyId());
+	}
+
+	@Test
+	public void pagesTheCouponsByEveryOrder() {
+		assertEquals(Arrays.asList(coupons.get(1).getId(), coupons.get(2).getId()),
+				ids(couponRepository.findPageByPrice(-Double.MAX_VALUE, 0, PageRequest.of(0, 2))));
+		assertEquals(Collections.singletonList(coupons.get(1).getId()),
+				ids(couponRepository.findPageByNullEndDate(0, PageRequest.of(0, 10))));
+		assertEquals(Arrays.asList(coupons.get(2).getId(), coupons.get(0).getId()),
+				ids(couponRepository.findPageByEndDate(Date.valueOf("0001-01-01"), 0, PageRequest.of(0, 10))));
+		assertEquals(Collections.singletonList(coupons.get(0).getId()),
+				ids(couponRepository.findPageByEndDate(Date.valueOf("2030-01-01"), coupons.get(2).getId(),
+						PageRequest.of(0, 10))));
+	}
+
+	@Test
+	public void pagesTheCouponsOfACompanyAndOfACustomer() {
+		assertEquals(ids(coupons), ids(couponRepository.findCompanyPageById(company.getId(), 0,
+				PageRequest.of(0, 10))));
+		assertEquals(Arrays.asList(coupons.get(2).getId(), coupons.get(0).getId()),
+				ids(couponRepository.findCustomerPageByPrice(customer.getId(), -Double.MAX_VALUE, 0,
+						PageRequest.of(0, 10))));
+		assertEquals(Collections.emptyList(),
+				couponRepository.findCustomerPageByNullEndDate(customer.getId(), 0, PageRequest.of(0, 10)));
+	}
+
+	@Test
+	public void readsTheCustomersAndTheCompaniesAsViews() {
+		List<CustomerView> customers = customerRepository.findPageById(0, PageRequest.of(0, 10));
+		List<CompanyView> companies = companyRepository.findPageById(0, PageRequest.of(0, 10));
+
+		assertEquals("dana@mail.com", customers.get(0).getEmail());
+		assertEquals("pizza place", companies.get(0).getName());
+		assertEquals(Collections.emptyList(), companyRepository.findPageById(company.getId(), PageRequest.of(0, 10)));
+	}
+
+	private Coupon coupon(String title, double price, Date endDate) {
+		Coupon coupon = new Coupon();
+		coupon.setTitle(title);
+		coupon.setDescription("the " + title);
+		coupon.setPrice(price);
+		coupon.setAmount(5);
+		coupon.setEndDate(endDate);
+		coupon.setCompany(company);
+		return testEntityManager.persist(coupon);
+	}
+
+	private static List<Long> ids(List<?> items) {
+		List<Long> ids = new ArrayList<>();
+
+		for (Object item : items) {
+			ids.add(item instanceof Coupon ? ((Coupon) item).getId() : ((CouponView) item).getId());
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.cs.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.cs.repository.CouponRepository;
+import com.cs.rest.archive.CouponArchive;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.index.CouponExpiryIndex;
+
+public class CouponCleanerTest {
+
+	private CouponRepository couponRepository;
+	private CouponExpiryIndex couponExpiryIndex;
+	private ApplicationEventPublisher eventPublisher;
+	private CouponCleaner couponCleaner;
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		couponExpiryIndex = mock(CouponExpiryIndex.class);
+		eventPublisher = mock(ApplicationEventPublisher.class);
+
+		CouponArchive couponArchive = mock(CouponArchive.class);
+		couponCleaner = new CouponCleaner(couponRepository, couponExpiryIndex, couponArchive, eventPublisher,
+				mock(PlatformTransactionManager.class), 2, 0);
+	}
+
+	@Test
+	public void purgesTheExpiredCouponsInChunks() {
+		when(couponRepository.findOldestEndDateBefore(any(Date.class))).thenReturn(new Date(0));
+		when(couponRepository.findExpiredCouponIds(any(Date.class), any(Pageable.class)))
+				.thenReturn(Arrays.asList(1L, 2L), Collections.singletonList(3L));
+
+		couponCleaner.purgeAll();
+
+		verify(couponRepository).deleteCustomerLinksByCouponIds(Arrays.asList(1L, 2L));
+		verify(couponRepository).deleteAllByIdIn(Arrays.asList(1L, 2L));
+		verify(couponRepository).deleteCustomerLinksByCouponIds(Collections.singletonList(3L));
+		verify(couponRepository).deleteAllByIdIn(Collections.singletonList(3L));
+		verify(eventPublisher, times(3)).publishEvent(any(CouponChangedEvent.class));
+
+		assertEquals(3, couponCleaner.getStats().getLastPurged());
+		assertEquals(3, couponCleaner.getStats().getTotalPurged());
+	}
+
+	@Test
+	public void stopsAfterAnEmptyChunk() {
+		when(couponRepository.findOldestEndDateBefore(any(Date.class))).thenReturn(new Date(0));
+		when(couponRepository.findExpiredCouponIds(any(Date.class), any(Pageable.class)))
+				.thenReturn(Arrays.asList(1L, 2L), Collections.emptyList());
+
+		couponCleaner.purgeAll();
+
+		verify(couponRepository, times(2)).findExpiredCouponIds(any(Date.class), any(Pageable.class));
+		verify(couponRepository, times(1)).deleteAllByIdIn(anyCollection());
+		assertEquals(2, couponCleaner.getStats().getTotalPurged());
+	}
+
+	@Test
+	public void purgesTheCouponsThatTheIndexFoundDue() {
+		when(couponExpiryIndex.findNextEndMillis()).thenReturn(0L);
+		when(couponExpiryIndex.findExpiredIds(anyLong(), anyInt())).thenReturn(Collections.singletonList(5L));
+
+		couponCleaner.purgeDue();
+
+		verify(couponRepository).deleteAllByIdIn(Collections.singletonList(5L));
+		verify(couponRepository, never()).findExpiredCouponIds(any(Date.class), any(Pageable.class));
+	}
+
+	@Test
+	public void doesNotTouchTheDatabaseWhenNoCouponIsDue() {
+		when(couponExpiryIndex.findNextEndMillis()).thenReturn(Long.MAX_VALUE);
+
+		couponCleaner.purgeDue();
+
+		verifyZeroInteractions(couponRepository);
+	}
+
+	@Test
+	public void doesNotDeleteWhenNoCouponIsExpired() {
+		couponCleaner.purgeAll();
+
+		verify(couponRepository, never()).findExpiredCouponIds(any(Date.class), any(Pageable.class));
+		verify(couponRepository, never()).deleteAllByIdIn(anyCollection());
+	}
+
+}
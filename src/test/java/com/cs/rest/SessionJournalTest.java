@@ -0,0 +1,112 @@
+package com.cs.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionJournalTest {
+
+	/**
+	 * The magic number, and the size of a record of a token of one character.
+	 */
+	private static final int HEADER_LENGTH = 4;
+	private static final int RECORD_LENGTH = 23 + 1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path path;
+
+	@Before
+	public void setUp() {
+		path = folder.getRoot().toPath().resolve("sessions.journal");
+	}
+
+	@Test
+	public void replaysTheLastRecordOfEveryOpenSession() throws IOException {
+		ClientSession first = new ClientSession(ClientType.COMPANY, 3);
+		ClientSession second = new ClientSession(ClientType.CUSTOMER, 5);
+
+		SessionJournal journal = open(new SessionStore());
+		journal.opened("a", first);
+		journal.opened("b", second);
+		first.setLastAccessedMillis(first.getLastAccessedMillis() + 1_000);
+		journal.touched("a", first);
+		journal.closed("b");
+		journal.onPreDestroy();
+
+		Map<String, SessionJournal.Record> records = SessionJournal.replay(path);
+
+		assertEquals(1, records.size());
+		SessionJournal.Record record = records.get("a");
+		assertNotNull(record);
+		assertEquals(ClientType.COMPANY.ordinal(), record.getClientType());
+		assertEquals(3, record.getClientId());
+		assertEquals(first.getLastAccessedMillis(), record.getMillis());
+	}
+
+	@Test
+	public void restoresTheSessionsOnStartup() throws IOException {
+		SessionJournal journal = open(new SessionStore());
+		journal.opened("a", new ClientSession(ClientType.ADMIN, 1));
+		journal.onPreDestroy();
+
+		SessionStore sessionStore = new SessionStore();
+		open(sessionStore).onPreDestroy();
+
+		ClientSession session = sessionStore.get("a");
+		assertNotNull(session);
+		assertEquals(ClientType.ADMIN, session.getClientType());
+		assertEquals(1, session.getClientId());
+	}
+
+	@Test
+	public void stopsAtATornRecord() throws IOException {
+		SessionJournal journal = open(new SessionStore());
+		journal.opened("a", new ClientSession(ClientType.CUSTOMER, 1));
+		journal.opened("b", new ClientSession(ClientType.CUSTOMER, 2));
+		journal.onPreDestroy();
+
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			long clientIdPosition = HEADER_LENGTH + RECORD_LENGTH + 4;
+			file.seek(clientIdPosition);
+			file.writeLong(99);
+		}
+
+		Map<String, SessionJournal.Record> records = SessionJournal.replay(path);
+
+		assertTrue(records.containsKey("a"));
+		assertFalse(records.containsKey("b"));
+	}
+
+	@Test
+	public void ignoresFilesWithoutTheMagicNumber() throws IOException {
+		ByteBuffer file = ByteBuffer.allocate(64);
+		file.put((byte) 1).put((byte) 1).put("a".getBytes(StandardCharsets.UTF_8));
+		file.put((byte) ClientType.CUSTOMER.ordinal()).putLong(8).putLong(1_000L);
+		Files.write(path, file.array());
+
+		assertTrue(SessionJournal.replay(path).isEmpty());
+	}
+
+	private SessionJournal open(SessionStore sessionStore) throws IOException {
+		SessionJournal journal = new SessionJournal(sessionStore, true, path.toString(), 4096, 0);
+		journal.onPostConstruct();
+		return journal;
+	}
+
+}
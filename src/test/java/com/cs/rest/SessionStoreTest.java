@@ -0,0 +1,72 @@
+package com.cs.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SessionStoreTest {
+
+	private static final long NOW = 1_000_000_000L;
+
+	private final SessionStore sessionStore = new SessionStore();
+
+	@Test
+	public void keepsSessionsUntilTheirBucketIsDue() {
+		sessionStore.put("token", session(NOW));
+
+		assertEquals(0, sessionStore.evictExpired(NOW + SessionStore.SESSION_LENGTH_MILLIS - 1));
+		assertEquals(1, sessionStore.size());
+	}
+
+	@Test
+	public void evictsSessionsOnceTheirBucketIsDue() {
+		sessionStore.put("first", session(NOW));
+		sessionStore.put("second", session(NOW + 500));
+		sessionStore.put("third", session(NOW + 10_000));
+
+		assertEquals(2, sessionStore.evictExpired(NOW + SessionStore.SESSION_LENGTH_MILLIS + 2_000));
+		assertEquals(1, sessionStore.size());
+		assertEquals(2, sessionStore.getStats().getEvictions());
+	}
+
+	@Test
+	public void movesAccessedSessionsToTheBucketOfTheirNewDeadline() {
+		ClientSession session = session(NOW);
+		sessionStore.put("token", session);
+		session.setLastAccessedMillis(NOW + 60_000);
+
+		assertEquals(0, sessionStore.evictExpired(NOW + SessionStore.SESSION_LENGTH_MILLIS + 2_000));
+		assertEquals(1, sessionStore.size());
+
+		assertEquals(1, sessionStore.evictExpired(NOW + 60_000 + SessionStore.SESSION_LENGTH_MILLIS + 2_000));
+		assertEquals(0, sessionStore.size());
+	}
+
+	@Test
+	public void skipsSessionsThatWereRemoved() {
+		sessionStore.put("token", session(NOW));
+		sessionStore.remove("token");
+
+		assertEquals(0, sessionStore.evictExpired(NOW + SessionStore.SESSION_LENGTH_MILLIS + 2_000));
+	}
+
+	@Test
+	public void doesNotReturnExpiredSessions() {
+		ClientSession live = new ClientSession(ClientType.CUSTOMER, 1);
+		sessionStore.put("live", live);
+		sessionStore.put("expired", session(System.currentTimeMillis() - SessionStore.SESSION_LENGTH_MILLIS));
+
+		assertSame(live, sessionStore.get("live"));
+		assertNull(sessionStore.get("expired"));
+		assertNull(sessionStore.get("unknown"));
+	}
+
+	private static ClientSession session(long lastAccessedMillis) {
+		ClientSession session = new ClientSession(ClientType.CUSTOMER, 1);
+		session.setLastAccessedMillis(lastAccessedMillis);
+		return session;
+	}
+
+}
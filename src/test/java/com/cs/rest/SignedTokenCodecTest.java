@@ -0,0 +1,67 @@
+package com.cs.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Test;
+
+public class SignedTokenCodecTest {
+
+	private final SignedTokenCodec codec = new SignedTokenCodec("the-secret");
+
+	@Test
+	public void decodesTheTokensItEncoded() {
+		SignedTokenCodec.Claims claims = codec.decode(codec.encode("company", 42, 1_600_000_000_000L));
+
+		assertNotNull(claims);
+		assertEquals("company", claims.getClientType());
+		assertEquals(42, claims.getClientId());
+		assertEquals(1_600_000_000_000L, claims.getExpiryMillis());
+	}
+
+	@Test
+	public void acceptsTokensOfAnotherNodeWithTheSameSecret() {
+		String token = new SignedTokenCodec("the-secret").encode("admin", 1, 1_600_000_000_000L);
+
+		assertNotNull(codec.decode(token));
+	}
+
+	@Test
+	public void rejectsTokensSignedWithAnotherSecret() {
+		String token = new SignedTokenCodec("another-secret").encode("admin", 1, 1_600_000_000_000L);
+
+		assertNull(codec.decode(token));
+	}
+
+	@Test
+	public void rejectsTokensWithAChangedPayload() {
+		String token = codec.encode("customer", 7, 1_600_000_000_000L);
+		String signature = token.substring(token.indexOf('.'));
+		String payload = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString("admin:7:1600000000000".getBytes(StandardCharsets.UTF_8));
+
+		assertNull(codec.decode(payload + signature));
+	}
+
+	@Test
+	public void rejectsMalformedTokens() {
+		assertNull(codec.decode(""));
+		assertNull(codec.decode("no-dot"));
+		assertNull(codec.decode(".signature"));
+		assertNull(codec.decode("payload."));
+		assertNull(codec.decode("not base64!.not base64!"));
+	}
+
+	@Test
+	public void rejectsSignedPayloadsWithoutThreeParts() {
+		SignedTokenCodec other = new SignedTokenCodec("the-secret");
+		String token = other.encode("customer:7", 7, 1_600_000_000_000L);
+
+		assertNull(codec.decode(token));
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.cs.rest.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.cs.entity.Company;
+import com.cs.entity.Coupon;
+
+public class CouponArchiveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+	private CouponArchive couponArchive;
+
+	@Before
+	public void setUp() {
+		directory = folder.getRoot().toPath().resolve("archive");
+		couponArchive = new CouponArchive(true, directory.toString());
+	}
+
+	@Test
+	public void findsTheArchivedCouponsOfACompany() throws IOException {
+		couponArchive.archive(Arrays.asList(coupon(1, 10), coupon(2, 20)), links());
+		couponArchive.archive(Collections.singletonList(coupon(3, 10)), links());
+
+		List<ArchivedCoupon> coupons = couponArchive.findByCompany(10);
+
+		assertEquals(Arrays.asList(1L, 3L), ids(coupons));
+		ArchivedCoupon coupon = coupons.get(0);
+		assertEquals("coupon1", coupon.getTitle());
+		assertNull(coupon.getDescription());
+		assertEquals(new Date(1_000), coupon.getEndDate());
+		assertEquals(9.5, coupon.getPrice(), 0);
+	}
+
+	@Test
+	public void findsTheArchivedCouponsOfACustomer() throws IOException {
+		couponArchive.archive(Arrays.asList(coupon(1, 10), coupon(2, 20)), links(1, 100, 2, 100, 2, 200));
+		couponArchive.archive(Collections.singletonList(coupon(3, 10)), links(3, 200));
+
+		assertEquals(Arrays.asList(1L, 2L), ids(couponArchive.findByCustomer(100)));
+		assertEquals(Arrays.asList(2L, 3L), ids(couponArchive.findByCustomer(200)));
+		assertTrue(couponArchive.findByCustomer(300).isEmpty());
+	}
+
+	@Test
+	public void returnsACouponThatWasArchivedTwiceOnce() throws IOException {
+		couponArchive.archive(Collections.singletonList(coupon(1, 10)), links(1, 100));
+		couponArchive.archive(Collections.singletonList(coupon(1, 10)), links(1, 100));
+
+		assertEquals(Collections.singletonList(1L), ids(couponArchive.findByCompany(10)));
+		assertEquals(Collections.singletonList(1L), ids(couponArchive.findByCustomer(100)));
+	}
+
+	@Test
+	public void writesNothingWhenDisabled() throws IOException {
+		new CouponArchive(false, directory.toString()).archive(Collections.singletonList(coupon(1, 10)), links());
+
+		assertTrue(Files.notExists(directory));
+		assertTrue(couponArchive.findByCompany(10).isEmpty());
+	}
+
+	private static Coupon coupon(long id, long companyId) {
+		Company company = new Company();
+		company.setId(companyId);
+
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		coupon.setCompany(company);
+		coupon.setTitle("coupon" + id);
+		coupon.setEndDate(new Date(1_000));
+		coupon.setPrice(9.5);
+		return coupon;
+	}
+
+	/**
+	 * @param pairs - the pairs of coupon id and customer id.
+	 */
+	private static List<Object[]> links(long... pairs) {
+		List<Object[]> links = new ArrayList<>();
+
+		for (int i = 0; i < pairs.length; i += 2) {
+			links.add(new Object[] { pairs[i], pairs[i + 1] });
+		}
+		return links;
+	}
+
+	private static List<Long> ids(List<ArchivedCoupon> coupons) {
+		List<Long> ids = new ArrayList<>();
+
+		for (ArchivedCoupon coupon : coupons) {
+			ids.add(coupon.getId());
+		}
+		return ids;
+	}
+
+}
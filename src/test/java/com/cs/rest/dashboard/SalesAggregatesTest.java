@@ -0,0 +1,174 @@
+package com.cs.rest.dashboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Company;
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.purchase.HotCouponInventory;
+
+public class SalesAggregatesTest {
+
+	private static final long COMPANY_ID = 1;
+
+	private CouponRepository couponRepository;
+	private HotCouponInventory hotCouponInventory;
+	private SalesAggregates salesAggregates;
+
+	private final List<Object[]> salesFields = new ArrayList<>();
+	private final List<Object[]> soldUnits = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		hotCouponInventory = mock(HotCouponInventory.class);
+		when(couponRepository.findAllSalesFields()).thenReturn(salesFields);
+		when(couponRepository.countAllSoldUnits()).thenReturn(soldUnits);
+
+		salesAggregates = new SalesAggregates(couponRepository, hotCouponInventory);
+	}
+
+	@Test
+	public void loadsTheSalesOnStartup() {
+		inDatabase(10, "pizza", 5, 3);
+		salesAggregates.onPostConstruct();
+
+		CouponSales sales = salesAggregates.findDashboard(COMPANY_ID).getCoupons().get(0);
+		assertEquals(10, sales.getId());
+		assertEquals(3, sales.getUnitsSold());
+		assertEquals(5, sales.getRemaining());
+	}
+
+	@Test
+	public void fixesTheSalesThatDifferFromTheDatabase() {
+		inDatabase(10, "pizza", 5, 3);
+		inDatabase(11, "burger", 2, 0);
+		salesAggregates.onPostConstruct();
+
+		salesFields.clear();
+		soldUnits.clear();
+		inDatabase(10, "pizza", 4, 4);
+		inDatabase(12, "sushi", 9, 0);
+
+		salesAggregates.reconcile();
+
+		verify(hotCouponInventory).flush();
+		CompanyDashboard dashboard = salesAggregates.findDashboard(COMPANY_ID);
+		assertEquals(2, dashboard.getCoupons().size());
+		assertEquals(10, dashboard.getCoupons().get(0).getId());
+		assertEquals(4, dashboard.getCoupons().get(0).getUnitsSold());
+		assertEquals(4, dashboard.getCoupons().get(0).getRemaining());
+		assertEquals(12, dashboard.getCoupons().get(1).getId());
+	}
+
+	@Test
+	public void keepsTheCouponsThatHadAnEventDuringTheReconciliation() {
+		inDatabase(10, "pizza", 5, 3);
+		salesAggregates.onPostConstruct();
+
+		when(couponRepository.countAllSoldUnits()).thenAnswer(invocation -> {
+			salesAggregates.onCouponChanged(CouponChangedEvent.purchased(coupon(10, "pizza", 5), 7));
+			return soldUnits;
+		});
+
+		salesAggregates.reconcile();
+
+		CouponSales sales = salesAggregates.findDashboard(COMPANY_ID).getCoupons().get(0);
+		assertEquals(4, sales.getUnitsSold());
+		assertEquals(4, sales.getRemaining());
+	}
+
+	@Test
+	public void reconcilesTheCouponsOfEarlierEvents() {
+		inDatabase(10, "pizza", 5, 3);
+		salesAggregates.onPostConstruct();
+		salesAggregates.onCouponChanged(CouponChangedEvent.saved(coupon(10, "pizza", 50)));
+
+		salesAggregates.reconcile();
+
+		CouponSales sales = salesAggregates.findDashboard(COMPANY_ID).getCoupons().get(0);
+		assertEquals(5, sales.getRemaining());
+	}
+
+	@Test
+	public void countsTheRevenueAtThePriceOfEveryPurchase() {
+		inDatabase(10, "pizza", 5, 3);
+		salesAggregates.onPostConstruct();
+
+		salesAggregates.onCouponChanged(CouponChangedEvent.purchased(coupon(10, "pizza", 5), 7));
+		Coupon expensive = coupon(10, "pizza", 4);
+		expensive.setPrice(50.0);
+		salesAggregates.onCouponChanged(CouponChangedEvent.saved(expensive));
+		salesAggregates.onCouponChanged(CouponChangedEvent.purchased(expensive, 8));
+
+		CompanyDashboard dashboard = salesAggregates.findDashboard(COMPANY_ID);
+		assertEquals(90.0, dashboard.getCoupons().get(0).getRevenue(), 0);
+		assertEquals(90.0, dashboard.getRevenue(), 0);
+		assertEquals(5, dashboard.getUnitsSold());
+	}
+
+	@Test
+	public void keepsTheRevenueAndAddsTheMissedUnitsOnReconciliation() {
+		inDatabase(10, "pizza", 5, 3);
+		salesAggregates.onPostConstruct();
+		Coupon expensive = coupon(10, "pizza", 5);
+		expensive.setPrice(50.0);
+		salesAggregates.onCouponChanged(CouponChangedEvent.saved(expensive));
+
+		salesFields.clear();
+		soldUnits.clear();
+		salesFields.add(new Object[] { 10L, COMPANY_ID, "pizza", 1, 50.0, 4 });
+		soldUnits.add(new Object[] { 10L, 4L });
+
+		salesAggregates.reconcile();
+
+		CouponSales sales = salesAggregates.findDashboard(COMPANY_ID).getCoupons().get(0);
+		assertEquals(4, sales.getUnitsSold());
+		assertEquals(80.0, sales.getRevenue(), 0);
+	}
+
+	@Test
+	public void removesTheCouponsThatAreNotInTheDatabase() {
+		inDatabase(10, "pizza", 5, 3);
+		salesAggregates.onPostConstruct();
+		salesFields.clear();
+
+		salesAggregates.reconcile();
+
+		assertTrue(salesAggregates.findDashboard(COMPANY_ID).getCoupons().isEmpty());
+	}
+
+	private void inDatabase(long couponId, String title, int remaining, long unitsSold) {
+		salesFields.add(new Object[] { couponId, COMPANY_ID, title, 1, 10.0, remaining });
+
+		if (unitsSold > 0) {
+			soldUnits.add(new Object[] { couponId, unitsSold });
+		}
+	}
+
+	private static Coupon coupon(long id, String title, int amount) {
+		Company company = new Company();
+		company.setId(COMPANY_ID);
+
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		coupon.setTitle(title);
+		coupon.setCategory(1);
+		coupon.setPrice(10.0);
+		coupon.setAmount(amount);
+		coupon.setCompany(company);
+		return coupon;
+	}
+
+}
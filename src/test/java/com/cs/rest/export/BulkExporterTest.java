@@ -0,0 +1,108 @@
+package com.cs.rest.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BulkExporterTest {
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private JdbcTemplate jdbcTemplate;
+	private BulkExporter bulkExporter;
+
+	@Before
+	public void setUp() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:exports" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE customer (id BIGINT PRIMARY KEY, name VARCHAR(50), email VARCHAR(50),"
+				+ " password VARCHAR(50))");
+		jdbcTemplate.execute("CREATE TABLE coupon (id BIGINT PRIMARY KEY, title VARCHAR(50), description VARCHAR(50),"
+				+ " start_date DATE, end_date DATE, price DOUBLE, amount INT, category INT, image_url VARCHAR(50))");
+
+		bulkExporter = new BulkExporter(dataSource, new ObjectMapper(), 2);
+	}
+
+	@Test
+	public void writesTheRowsAsCsvByTheOrderOfTheirId() throws IOException {
+		customer(2, "dana", "dana@mail.com");
+		customer(1, "gal, \"the\" king", "gal@mail.com");
+
+		assertEquals("id,name,email,password\r\n"
+				+ "1,\"gal, \"\"the\"\" king\",gal@mail.com,1234\r\n"
+				+ "2,dana,dana@mail.com,1234\r\n", export(ExportTable.CUSTOMERS, ExportFormat.CSV));
+	}
+
+	@Test
+	public void writesTheRowsAsJsonWithTheFieldsOfTheListing() throws IOException {
+		jdbcTemplate.update("INSERT INTO coupon VALUES (1, 'pizza', NULL, DATE '2030-01-01', NULL, 9.5, 3, 2, 'a.png')");
+
+		assertEquals("[{\"id\":1,\"title\":\"pizza\",\"description\":null,\"startDate\":\"2030-01-01\","
+				+ "\"endDate\":null,\"price\":9.5,\"amount\":3,\"category\":2,\"imageURL\":\"a.png\"}]",
+				export(ExportTable.COUPONS, ExportFormat.JSON));
+	}
+
+	@Test
+	public void writesOneObjectPerLineAsNdjson() throws IOException {
+		customer(1, "dana", "dana@mail.com");
+		customer(2, "gal", "gal@mail.com");
+
+		assertEquals("{\"id\":1,\"name\":\"dana\",\"email\":\"dana@mail.com\",\"password\":\"1234\"}\n"
+				+ "{\"id\":2,\"name\":\"gal\",\"email\":\"gal@mail.com\",\"password\":\"1234\"}\n",
+				export(ExportTable.CUSTOMERS, ExportFormat.NDJSON));
+	}
+
+	@Test
+	public void writesAnEmptyArrayForAnEmptyTable() throws IOException {
+		assertEquals("[]", export(ExportTable.CUSTOMERS, ExportFormat.JSON));
+	}
+
+	@Test
+	public void stopsWithTheErrorOfTheStream() {
+		for (long id = 1; id <= 5; id++) {
+			customer(id, "customer" + id, id + "@mail.com");
+		}
+
+		IOException closed = new IOException("closed");
+		OutputStream out = new FilterOutputStream(new ByteArrayOutputStream()) {
+
+			@Override
+			public void flush() throws IOException {
+				throw closed;
+			}
+		};
+
+		try {
+			bulkExporter.export(ExportTable.CUSTOMERS, ExportFormat.CSV, out);
+			fail("The export should fail.");
+		} catch (IOException e) {
+			assertSame(closed, e);
+		}
+	}
+
+	private String export(ExportTable table, ExportFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		bulkExporter.export(table, format, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void customer(long id, String name, String email) {
+		jdbcTemplate.update("INSERT INTO customer VALUES (?, ?, ?, '1234')", id, name, email);
+	}
+
+}
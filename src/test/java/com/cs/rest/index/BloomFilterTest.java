@@ -0,0 +1,52 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	@Test
+	public void containsEveryStringThatWasPut() {
+		BloomFilter filter = new BloomFilter(1_000, 0.01);
+
+		for (int i = 0; i < 1_000; i++) {
+			filter.put("customer" + i + "@mail.com");
+		}
+
+		for (int i = 0; i < 1_000; i++) {
+			assertTrue(filter.mightContain("customer" + i + "@mail.com"));
+		}
+		assertEquals(1_000, filter.getSize());
+	}
+
+	@Test
+	public void keepsTheFalsePositiveRateItWasMadeFor() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+		for (int i = 0; i < 10_000; i++) {
+			filter.put("company" + i + "@mail.com");
+		}
+
+		int falsePositives = 0;
+
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain("customer" + i + "@mail.com")) {
+				falsePositives++;
+			}
+		}
+
+		assertTrue("false positive rate " + falsePositives / 100_000.0, falsePositives < 2_000);
+	}
+
+	@Test
+	public void isMadeForAtLeastOneString() {
+		BloomFilter filter = new BloomFilter(0, 0.01);
+		filter.put("admin@admin.com");
+
+		assertEquals(1, filter.getCapacity());
+		assertTrue(filter.mightContain("admin@admin.com"));
+	}
+
+}
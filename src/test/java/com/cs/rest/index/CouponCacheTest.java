@@ -0,0 +1,135 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Company;
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class CouponCacheTest {
+
+	private CouponRepository couponRepository;
+	private CouponCache couponCache;
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findById(anyLong()))
+				.thenAnswer(invocation -> Optional.of(coupon(invocation.getArgument(0))));
+
+		couponCache = new CouponCache(couponRepository, 10, 60_000);
+	}
+
+	@Test
+	public void readsACouponOnce() {
+		CouponView coupon = couponCache.findById(1);
+
+		assertEquals("coupon1", coupon.getTitle());
+		assertEquals(3, coupon.getCompanyId());
+		assertEquals(coupon, couponCache.findById(1));
+		verify(couponRepository, times(1)).findById(1L);
+	}
+
+	@Test
+	public void returnsNullForCouponsThatDoNotExist() {
+		when(couponRepository.findById(5L)).thenReturn(Optional.empty());
+
+		assertNull(couponCache.findById(5));
+	}
+
+	@Test
+	public void invalidatesOnlyTheCouponThatChanged() {
+		couponCache.findById(1);
+		couponCache.findById(2);
+
+		couponCache.onCouponChanged(CouponChangedEvent.deleted(1));
+		couponCache.findById(1);
+		couponCache.findById(2);
+
+		verify(couponRepository, times(2)).findById(1L);
+		verify(couponRepository, times(1)).findById(2L);
+	}
+
+	@Test
+	public void doesNotKeepALoadThatAChangeOfTheCouponOvertook() {
+		when(couponRepository.findById(1L)).thenAnswer(invocation -> {
+			couponCache.onCouponChanged(CouponChangedEvent.deleted(1));
+			return Optional.of(coupon(1));
+		});
+
+		couponCache.findById(1);
+		couponCache.findById(1);
+
+		verify(couponRepository, times(2)).findById(1L);
+	}
+
+	@Test
+	public void readsTheMissingCouponsTogetherInTheOrderOfTheIds() {
+		couponCache.findById(2);
+		when(couponRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+			List<Coupon> coupons = new ArrayList<>();
+
+			for (Long couponId : invocation.<Iterable<Long>>getArgument(0)) {
+				if (couponId != 9) {
+					coupons.add(coupon(couponId));
+				}
+			}
+			return coupons;
+		});
+
+		List<CouponView> coupons = couponCache.findAllById(Arrays.asList(3L, 9L, 2L, 1L));
+
+		assertEquals(Arrays.asList(3L, 2L, 1L), ids(coupons));
+		assertEquals(Arrays.asList(3L, 2L, 1L), ids(couponCache.findAllById(Arrays.asList(3L, 2L, 1L))));
+		verify(couponRepository, times(1)).findAllById(anyIterable());
+	}
+
+	@Test
+	public void staysUnderTheMaximumSize() {
+		for (long couponId = 1; couponId <= 25; couponId++) {
+			couponCache.findById(couponId);
+		}
+
+		assertTrue(couponCache.getStats().getSize() <= 10);
+		assertTrue(couponCache.getStats().getEvictions() > 0);
+	}
+
+	private static Coupon coupon(long id) {
+		Company company = new Company();
+		company.setId(3);
+
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		coupon.setTitle("coupon" + id);
+		coupon.setCompany(company);
+		return coupon;
+	}
+
+	private static List<Long> ids(List<CouponView> coupons) {
+		List<Long> ids = new ArrayList<>();
+
+		for (CouponView coupon : coupons) {
+			ids.add(coupon.getId());
+		}
+		return ids;
+	}
+
+}
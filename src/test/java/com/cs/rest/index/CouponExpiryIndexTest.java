@@ -0,0 +1,76 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class CouponExpiryIndexTest {
+
+	private CouponExpiryIndex couponExpiryIndex;
+
+	@Before
+	public void setUp() {
+		CouponRepository couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findAllEndDates()).thenReturn(Arrays.asList(
+				new Object[] { 1L, new Date(3_000) },
+				new Object[] { 2L, new Date(1_000) },
+				new Object[] { 3L, new Date(2_000) },
+				new Object[] { 4L, null }));
+
+		couponExpiryIndex = new CouponExpiryIndex(couponRepository);
+		couponExpiryIndex.onPostConstruct();
+	}
+
+	@Test
+	public void findsTheExpiredCouponsTheEarliestFirst() {
+		assertEquals(Arrays.asList(2L, 3L, 1L), couponExpiryIndex.findExpiredIds(10_000, 10));
+		assertEquals(Arrays.asList(2L, 3L), couponExpiryIndex.findExpiredIds(10_000, 2));
+		assertEquals(Collections.singletonList(2L), couponExpiryIndex.findExpiredIds(2_000, 10));
+		assertEquals(1_000, couponExpiryIndex.findNextEndMillis());
+		assertEquals(2_000, couponExpiryIndex.findNextEndMillisAfter(1_000));
+		assertEquals(Long.MAX_VALUE, couponExpiryIndex.findNextEndMillisAfter(3_000));
+	}
+
+	@Test
+	public void checksTheExpiryOfACoupon() {
+		assertTrue(couponExpiryIndex.isExpired(2, 1_001));
+		assertFalse(couponExpiryIndex.isExpired(2, 1_000));
+		assertFalse(couponExpiryIndex.isExpired(4, Long.MAX_VALUE));
+		assertFalse(couponExpiryIndex.isExpired(5, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void movesSavedCouponsToTheirNewEndDate() {
+		Coupon coupon = new Coupon();
+		coupon.setId(2);
+		coupon.setEndDate(new Date(5_000));
+
+		couponExpiryIndex.onCouponChanged(CouponChangedEvent.saved(coupon));
+
+		assertEquals(Arrays.asList(3L, 1L, 2L), couponExpiryIndex.findExpiredIds(10_000, 10));
+		assertEquals(2_000, couponExpiryIndex.findNextEndMillis());
+	}
+
+	@Test
+	public void dropsRemovedCoupons() {
+		couponExpiryIndex.onCouponChanged(CouponChangedEvent.expired(2));
+		couponExpiryIndex.onCouponChanged(CouponChangedEvent.deleted(3));
+
+		assertEquals(Collections.singletonList(1L), couponExpiryIndex.findExpiredIds(10_000, 10));
+		assertFalse(couponExpiryIndex.isExpired(2, 10_000));
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CouponIdBitmapTest {
+
+	/**
+	 * The most ids that a chunk keeps in a sorted array.
+	 */
+	private static final int ARRAY_MAX = 4096;
+
+	@Test
+	public void keepsIdsOfDifferentChunksApart() {
+		CouponIdBitmap bitmap = new CouponIdBitmap();
+		bitmap.add(5);
+		bitmap.add(65536 + 5);
+		bitmap.add(5);
+
+		assertTrue(bitmap.contains(5));
+		assertTrue(bitmap.contains(65536 + 5));
+		assertFalse(bitmap.contains(6));
+		assertEquals(2, bitmap.getCardinality());
+	}
+
+	@Test
+	public void switchesToABitsetAbove4096Ids() {
+		CouponIdBitmap bitmap = new CouponIdBitmap();
+
+		for (long id = ARRAY_MAX * 2; id > 0; id -= 2) {
+			bitmap.add(id);
+		}
+
+		assertEquals(ARRAY_MAX, bitmap.getCardinality());
+		long arraySize = bitmap.getSizeInBytes();
+
+		bitmap.add(1);
+		bitmap.add(3);
+
+		assertEquals(ARRAY_MAX + 2, bitmap.getCardinality());
+		assertEquals(arraySize, bitmap.getSizeInBytes());
+		assertTrue(bitmap.contains(1));
+		assertTrue(bitmap.contains(3));
+		assertTrue(bitmap.contains(ARRAY_MAX * 2));
+		assertFalse(bitmap.contains(5));
+
+		bitmap.add(5);
+		assertEquals(arraySize, bitmap.getSizeInBytes());
+	}
+
+	@Test
+	public void listsTheIdsInOrderBeforeAndAfterTheSwitch() {
+		CouponIdBitmap bitmap = new CouponIdBitmap();
+		List<Long> expected = new ArrayList<>();
+
+		for (long id = 1; id <= ARRAY_MAX + 1; id++) {
+			bitmap.add(ARRAY_MAX + 2 - id);
+			expected.add(id);
+		}
+		bitmap.add(65536 * 3);
+		expected.add(65536L * 3);
+
+		List<Long> ids = new ArrayList<>();
+		bitmap.forEach(ids::add);
+
+		assertEquals(expected, ids);
+	}
+
+	@Test
+	public void removesIdsFromArraysAndBitsets() {
+		CouponIdBitmap bitmap = new CouponIdBitmap();
+
+		for (long id = 0; id <= ARRAY_MAX; id++) {
+			bitmap.add(id);
+		}
+		bitmap.add(65536 + 1);
+
+		bitmap.remove(10);
+		bitmap.remove(65536 + 1);
+		bitmap.remove(65536 + 2);
+
+		assertFalse(bitmap.contains(10));
+		assertFalse(bitmap.contains(65536 + 1));
+		assertEquals(ARRAY_MAX, bitmap.getCardinality());
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.page.CouponSort;
+
+public class CouponSearchIndexTest {
+
+	private static final long NOW = 10_000;
+
+	private List<Object[]> rows;
+	private CouponSearchIndex couponSearchIndex;
+
+	@Before
+	public void setUp() {
+		rows = new ArrayList<>();
+		row(1, 1, 30, 20_000);
+		row(2, 1, 10, 30_000);
+		row(3, 2, 20, 40_000);
+		row(4, 1, 20, 5_000);
+		rowWithoutEndDate(5, 2, 5);
+	}
+
+	@Test
+	public void findsTheCouponsOfACategoryInTheOrderOfTheSort() {
+		load();
+
+		assertEquals(Arrays.asList(1L, 2L), search(1, null, null, null, CouponSort.ID, 10));
+		assertEquals(Arrays.asList(2L, 1L), search(1, null, null, null, CouponSort.PRICE, 10));
+		assertEquals(Arrays.asList(3L, 5L), search(2, null, null, null, CouponSort.END_DATE, 10));
+	}
+
+	@Test
+	public void combinesThePriceAndTheEndDateFilters() {
+		load();
+
+		assertEquals(Arrays.asList(5L, 2L, 3L), search(null, null, 20.0, null, CouponSort.PRICE, 10));
+		assertEquals(Collections.singletonList(1L), search(null, 15.0, null, 35_000L, CouponSort.ID, 10));
+	}
+
+	@Test
+	public void leavesTheExpiredCouponsOut() {
+		load();
+
+		assertEquals(Arrays.asList(1L, 2L, 3L, 5L), search(null, null, null, null, CouponSort.ID, 10));
+	}
+
+	@Test
+	public void stopsAtTheLimit() {
+		load();
+
+		assertEquals(Arrays.asList(1L, 2L), search(null, null, null, null, CouponSort.ID, 2));
+		assertEquals(Collections.singletonList(5L), search(null, null, null, null, CouponSort.PRICE, 1));
+	}
+
+	@Test
+	public void findsTheMatchesOfRangesWiderThanTheCount() {
+		rows.clear();
+
+		for (long id = 1; id <= 500; id++) {
+			row(id, (int) (id % 2), id, 20_000 + id);
+		}
+		load();
+
+		assertEquals(Arrays.asList(3L, 5L), search(1, 2.0, 400.0, null, CouponSort.ID, 2));
+		assertEquals(Arrays.asList(397L, 399L), search(1, null, 400.0, null, CouponSort.END_DATE, 200).subList(198,
+				200));
+	}
+
+	@Test
+	public void followsTheChangesOfTheCoupons() {
+		load();
+
+		Coupon coupon = new Coupon();
+		coupon.setId(1);
+		coupon.setCategory(2);
+		coupon.setPrice(1);
+		coupon.setEndDate(new Date(50_000));
+		couponSearchIndex.onCouponChanged(CouponChangedEvent.saved(coupon));
+		couponSearchIndex.onCouponChanged(CouponChangedEvent.deleted(3));
+
+		assertEquals(Collections.singletonList(2L), search(1, null, null, null, CouponSort.ID, 10));
+		assertEquals(Arrays.asList(1L, 5L), search(2, null, null, null, CouponSort.PRICE, 10));
+	}
+
+	private void row(long id, int category, double price, long endMillis) {
+		rows.add(new Object[] { id, category, price, new Date(endMillis) });
+	}
+
+	private void rowWithoutEndDate(long id, int category, double price) {
+		rows.add(new Object[] { id, category, price, null });
+	}
+
+	private void load() {
+		CouponRepository couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findAllSearchFields()).thenReturn(rows);
+
+		couponSearchIndex = new CouponSearchIndex(couponRepository);
+		couponSearchIndex.onPostConstruct();
+	}
+
+	private List<Long> search(Integer category, Double minPrice, Double maxPrice, Long endBefore, CouponSort sort,
+			int limit) {
+		return couponSearchIndex.search(new CouponSearch(category, minPrice, maxPrice, null,
+				endBefore == null ? null : new Date(endBefore), sort, limit), NOW);
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.cs.rest.index;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.cs.repository.CouponRepository;
+
+/**
+ * The benchmark of the searches of the 'CouponTextIndex' that their last word
+ * is a short prefix of many words, run it by its main function from the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CouponTextIndexBenchmark {
+
+	private static final String[] WORDS = { "pizza", "pasta", "coffee", "cola", "cookie", "concert", "cinema",
+			"spa", "sushi", "steak", "salad", "surf", "ski", "hotel", "horse", "holiday" };
+
+	@Param({ "10000", "100000" })
+	public int coupons;
+
+	private CouponTextIndex couponTextIndex;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		List<Object[]> rows = new ArrayList<>(coupons);
+
+		for (long id = 1; id <= coupons; id++) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			// every coupon has a few words of its own, so the prefixes have many words.
+			rows.add(new Object[] { id, word + " " + word.substring(0, 2) + random.nextInt(1000),
+					WORDS[random.nextInt(WORDS.length)] + " co" + random.nextInt(5000) });
+		}
+
+		CouponRepository couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findAllTexts()).thenReturn(rows);
+
+		couponTextIndex = new CouponTextIndex(couponRepository);
+		couponTextIndex.onPostConstruct();
+	}
+
+	@Benchmark
+	public List<Long> searchPrefix() {
+		return couponTextIndex.search("co", 20, id -> true);
+	}
+
+	@Benchmark
+	public List<Long> searchWordAndPrefix() {
+		return couponTextIndex.search("pizza co", 20, id -> true);
+	}
+
+	@Benchmark
+	public List<String> autocomplete() {
+		return couponTextIndex.autocomplete("co", 10, id -> true);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(CouponTextIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
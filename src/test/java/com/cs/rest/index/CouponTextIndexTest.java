@@ -0,0 +1,81 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class CouponTextIndexTest {
+
+	private CouponTextIndex couponTextIndex;
+
+	@Before
+	public void setUp() {
+		CouponRepository couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findAllTexts()).thenReturn(Arrays.asList(
+				new Object[] { 1L, "Pizza Party", "a family pizza with cola" },
+				new Object[] { 2L, "Coffee Break", "coffee and a cookie" },
+				new Object[] { 3L, "Cola Pack", "six cans of cola, pizza not included" },
+				new Object[] { 4L, "Concert Night", null }));
+
+		couponTextIndex = new CouponTextIndex(couponRepository);
+		couponTextIndex.onPostConstruct();
+	}
+
+	@Test
+	public void findsTheCouponsWithAllTheWordsTheTitleFirst() {
+		assertEquals(Arrays.asList(1L, 3L), couponTextIndex.search("pizza", 10, id -> true));
+		assertEquals(Arrays.asList(3L, 1L), couponTextIndex.search("Cola, PIZZA", 10, id -> true));
+		assertTrue(couponTextIndex.search("pizza coffee", 10, id -> true).isEmpty());
+	}
+
+	@Test
+	public void matchesTheLastWordAsAPrefix() {
+		assertEquals(Arrays.asList(2L, 3L, 4L, 1L), couponTextIndex.search("co", 10, id -> true));
+		assertEquals(Arrays.asList(1L, 3L), couponTextIndex.search("pizza co", 10, id -> true));
+		assertEquals(Collections.singletonList(2L), couponTextIndex.search("coo", 10, id -> true));
+	}
+
+	@Test
+	public void matchesAShortLastWordOnlyAsAWord() {
+		assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(couponTextIndex.search("a", 10, id -> true)));
+		assertTrue(couponTextIndex.search("c", 10, id -> true).isEmpty());
+	}
+
+	@Test
+	public void appliesTheFilterAndTheLimit() {
+		assertEquals(Collections.singletonList(3L), couponTextIndex.search("pizza", 10, id -> id != 1));
+		assertEquals(1, couponTextIndex.search("co", 1, id -> true).size());
+	}
+
+	@Test
+	public void followsTheChangesOfTheCoupons() {
+		Coupon coupon = new Coupon();
+		coupon.setId(4);
+		coupon.setTitle("Pizza Concert");
+		couponTextIndex.onCouponChanged(CouponChangedEvent.saved(coupon));
+		couponTextIndex.onCouponChanged(CouponChangedEvent.deleted(1));
+
+		assertEquals(Arrays.asList(4L, 3L), couponTextIndex.search("pizza", 10, id -> true));
+		assertTrue(couponTextIndex.search("party", 10, id -> true).isEmpty());
+	}
+
+	@Test
+	public void completesTheTitlesThatStartWithThePrefixFirst() {
+		assertEquals(Arrays.asList("Coffee Break", "Cola Pack", "Concert Night"),
+				couponTextIndex.autocomplete("co", 10, id -> true));
+		assertEquals(Collections.singletonList("Pizza Party"), couponTextIndex.autocomplete("par", 10, id -> true));
+	}
+
+}
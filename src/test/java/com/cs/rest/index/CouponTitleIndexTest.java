@@ -0,0 +1,86 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class CouponTitleIndexTest {
+
+	private CouponTitleIndex couponTitleIndex;
+
+	@Before
+	public void setUp() {
+		CouponRepository couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findAllTitles()).thenReturn(Arrays.asList(
+				new Object[] { 1L, "Pizza  Deal" },
+				new Object[] { 2L, "pasta" },
+				new Object[] { 3L, null }));
+
+		couponTitleIndex = new CouponTitleIndex(couponRepository);
+		couponTitleIndex.onPostConstruct();
+	}
+
+	@Test
+	public void findsTheTitlesByCaseAndSpaces() {
+		assertTrue(couponTitleIndex.isTaken(" pizza deal ", 0));
+		assertTrue(couponTitleIndex.isTaken("PASTA", 0));
+		assertFalse(couponTitleIndex.isTaken("pizza", 0));
+		assertFalse(couponTitleIndex.isTaken(null, 0));
+	}
+
+	@Test
+	public void doesNotCountTheTitleOfTheSameCoupon() {
+		assertFalse(couponTitleIndex.isTaken("pasta", 2));
+		assertTrue(couponTitleIndex.isTaken("pasta", 1));
+	}
+
+	@Test
+	public void movesARenamedCouponToItsNewTitle() {
+		couponTitleIndex.onCouponChanged(CouponChangedEvent.saved(coupon(2, "salad")));
+
+		assertFalse(couponTitleIndex.isTaken("pasta", 0));
+		assertTrue(couponTitleIndex.isTaken("salad", 0));
+	}
+
+	@Test
+	public void freesTheTitlesOfRemovedCoupons() {
+		couponTitleIndex.onCouponChanged(CouponChangedEvent.deleted(1));
+		couponTitleIndex.onCouponChanged(CouponChangedEvent.expired(2));
+
+		assertFalse(couponTitleIndex.isTaken("pizza deal", 0));
+		assertFalse(couponTitleIndex.isTaken("pasta", 0));
+	}
+
+	@Test
+	public void keepsTheTitleOfTheCouponThatTookItLast() {
+		couponTitleIndex.onCouponChanged(CouponChangedEvent.saved(coupon(4, "pasta")));
+		couponTitleIndex.onCouponChanged(CouponChangedEvent.deleted(2));
+
+		assertTrue(couponTitleIndex.isTaken("pasta", 0));
+	}
+
+	@Test
+	public void ignoresThePurchases() {
+		couponTitleIndex.onCouponChanged(CouponChangedEvent.purchased(coupon(2, "other"), 7));
+
+		assertTrue(couponTitleIndex.isTaken("pasta", 0));
+	}
+
+	private static Coupon coupon(long id, String title) {
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		coupon.setTitle(title);
+		return coupon;
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Company;
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class CouponVersionsTest {
+
+	private CouponExpiryIndex couponExpiryIndex;
+	private CouponVersions couponVersions;
+
+	@Before
+	public void setUp() {
+		CouponRepository couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findAllCompanyIds())
+				.thenReturn(Collections.singletonList(new Object[] { 1L, 10L }));
+		couponExpiryIndex = mock(CouponExpiryIndex.class);
+
+		couponVersions = new CouponVersions(couponRepository, couponExpiryIndex);
+		couponVersions.onPostConstruct();
+	}
+
+	@Test
+	public void changesTheCustomerETagOnlyOnThePurchasesOfTheCustomer() {
+		String first = couponVersions.getCustomerETag(100);
+		String other = couponVersions.getCustomerETag(200);
+
+		couponVersions.onCouponChanged(CouponChangedEvent.purchased(coupon(1, 10), 100));
+
+		assertNotEquals(first, couponVersions.getCustomerETag(100));
+		assertEquals(other, couponVersions.getCustomerETag(200));
+	}
+
+	@Test
+	public void changesEveryCustomerETagWhenACouponIsSavedOrRemoved() {
+		String saved = couponVersions.getCustomerETag(100);
+		couponVersions.onCouponChanged(CouponChangedEvent.saved(coupon(1, 10)));
+		String removed = couponVersions.getCustomerETag(100);
+		couponVersions.onCouponChanged(CouponChangedEvent.expired(1));
+
+		assertNotEquals(saved, removed);
+		assertNotEquals(removed, couponVersions.getCustomerETag(100));
+	}
+
+	@Test
+	public void changesTheCompanyETagOnTheChangesOfItsCoupons() {
+		String first = couponVersions.getCompanyETag(10);
+		String other = couponVersions.getCompanyETag(20);
+
+		// the company of a deleted coupon is known from the startup.
+		couponVersions.onCouponChanged(CouponChangedEvent.deleted(1));
+		String deleted = couponVersions.getCompanyETag(10);
+		couponVersions.onCouponChanged(CouponChangedEvent.purchased(coupon(2, 10), 100));
+
+		assertNotEquals(first, deleted);
+		assertNotEquals(deleted, couponVersions.getCompanyETag(10));
+		assertEquals(other, couponVersions.getCompanyETag(20));
+	}
+
+	@Test
+	public void changesTheCatalogETagWhenACouponExpires() {
+		String first = couponVersions.getCatalogETag();
+		when(couponExpiryIndex.findLastEndMillisBefore(anyLong())).thenReturn(1_000L);
+
+		assertNotEquals(first, couponVersions.getCatalogETag());
+	}
+
+	@Test
+	public void matchesTheIfNoneMatchHeader() {
+		assertTrue(CouponVersions.matches("\"a\", W/\"b\"", "\"b\""));
+		assertTrue(CouponVersions.matches("*", "\"b\""));
+		assertFalse(CouponVersions.matches("\"a\"", "\"b\""));
+		assertFalse(CouponVersions.matches(null, "\"b\""));
+	}
+
+	private static Coupon coupon(long id, long companyId) {
+		Company company = new Company();
+		company.setId(companyId);
+
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		coupon.setCompany(company);
+		return coupon;
+	}
+
+}
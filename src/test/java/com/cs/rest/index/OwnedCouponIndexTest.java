@@ -0,0 +1,96 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class OwnedCouponIndexTest {
+
+	private CouponRepository couponRepository;
+	private OwnedCouponIndex ownedCouponIndex;
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		when(couponRepository.findCouponIdsByCustomerId(1)).thenReturn(Arrays.asList(3L, 5L));
+		when(couponRepository.findCouponIdsByCustomerId(2)).thenReturn(Collections.singletonList(5L));
+
+		ownedCouponIndex = new OwnedCouponIndex(couponRepository, 2);
+	}
+
+	@Test
+	public void loadsTheCouponsOfACustomerOnce() {
+		assertTrue(ownedCouponIndex.isOwned(1, 3));
+		assertFalse(ownedCouponIndex.isOwned(1, 4));
+		assertEquals(Arrays.asList(3L, 5L), ownedCouponIndex.findOwnedIds(1));
+
+		verify(couponRepository, times(1)).findCouponIdsByCustomerId(1);
+	}
+
+	@Test
+	public void addsPurchasedCoupons() {
+		ownedCouponIndex.isOwned(1, 3);
+
+		ownedCouponIndex.onCouponChanged(CouponChangedEvent.purchased(coupon(4), 1));
+
+		assertTrue(ownedCouponIndex.isOwned(1, 4));
+		assertFalse(ownedCouponIndex.isOwned(2, 4));
+	}
+
+	@Test
+	public void dropsRemovedCouponsFromEveryCustomer() {
+		ownedCouponIndex.isOwned(1, 3);
+		ownedCouponIndex.isOwned(2, 5);
+
+		ownedCouponIndex.onCouponChanged(CouponChangedEvent.deleted(5));
+
+		assertFalse(ownedCouponIndex.isOwned(1, 5));
+		assertFalse(ownedCouponIndex.isOwned(2, 5));
+		assertEquals(Collections.singletonList(3L), ownedCouponIndex.findOwnedIds(1));
+		assertEquals(Collections.emptyList(), ownedCouponIndex.findOwnedIds(2));
+	}
+
+	@Test
+	public void skipsRemovedCouponsOfCustomersLoadedAfterTheRemoval() {
+		ownedCouponIndex.onCouponChanged(CouponChangedEvent.expired(3));
+
+		assertEquals(Collections.singletonList(5L), ownedCouponIndex.findOwnedIds(1));
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsedCustomer() {
+		when(couponRepository.findCouponIdsByCustomerId(3)).thenReturn(Collections.emptyList());
+		ownedCouponIndex.isOwned(1, 3);
+		ownedCouponIndex.isOwned(2, 5);
+		ownedCouponIndex.isOwned(1, 3);
+
+		ownedCouponIndex.isOwned(3, 5);
+		ownedCouponIndex.isOwned(1, 3);
+		ownedCouponIndex.isOwned(2, 5);
+
+		verify(couponRepository, times(1)).findCouponIdsByCustomerId(1);
+		verify(couponRepository, times(2)).findCouponIdsByCustomerId(2);
+		assertEquals(2, ownedCouponIndex.getStats().getCustomers());
+	}
+
+	private static Coupon coupon(long id) {
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		return coupon;
+	}
+
+}
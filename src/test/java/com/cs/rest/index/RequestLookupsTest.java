@@ -0,0 +1,100 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.cs.entity.Coupon;
+import com.cs.rest.event.CouponChangedEvent;
+
+public class RequestLookupsTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private RequestLookups requestLookups;
+	private ServletRequestAttributes request;
+
+	@Before
+	public void setUp() {
+		requestLookups = new RequestLookups();
+		request = new ServletRequestAttributes(new MockHttpServletRequest());
+		RequestContextHolder.setRequestAttributes(request);
+	}
+
+	@After
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void findsEveryEntityOncePerRequest() {
+		assertEquals("coupon1", requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1")));
+		assertEquals("coupon1", requestLookups.find(RequestLookups.COUPON, 1, () -> load("other")));
+		assertEquals("company1", requestLookups.find(RequestLookups.COMPANY, 1, () -> load("company1")));
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void remembersTheEntitiesThatWereNotFound() {
+		assertNull(requestLookups.find(RequestLookups.CUSTOMER, 1, () -> load(null)));
+		assertNull(requestLookups.find(RequestLookups.CUSTOMER, 1, () -> load("customer1")));
+
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void readsAgainTheEntitiesThatWereForgotten() {
+		requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1"));
+		requestLookups.find(RequestLookups.CUSTOMER, 7, () -> load("customer7"));
+
+		requestLookups.forget(RequestLookups.COUPON, 1);
+		assertEquals("saved", requestLookups.find(RequestLookups.COUPON, 1, () -> load("saved")));
+
+		Coupon coupon = new Coupon();
+		coupon.setId(1);
+		requestLookups.onCouponChanged(CouponChangedEvent.purchased(coupon, 7));
+
+		assertEquals("purchased", requestLookups.find(RequestLookups.COUPON, 1, () -> load("purchased")));
+		assertEquals("buyer", requestLookups.find(RequestLookups.CUSTOMER, 7, () -> load("buyer")));
+	}
+
+	@Test
+	public void remembersNothingOutsideOfARequest() {
+		RequestContextHolder.resetRequestAttributes();
+
+		requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1"));
+		requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1"));
+		requestLookups.forget(RequestLookups.COUPON, 1);
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void countsTheLookupsAvoidedWhenTheRequestCompletes() {
+		requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1"));
+		requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1"));
+		requestLookups.find(RequestLookups.COUPON, 1, () -> load("coupon1"));
+		request.requestCompleted();
+
+		LookupStats stats = requestLookups.getStats();
+
+		assertEquals(1, stats.getRequests());
+		assertEquals(3, stats.getLookups());
+		assertEquals(2, stats.getAvoided());
+	}
+
+	private String load(String entity) {
+		loads.incrementAndGet();
+		return entity;
+	}
+
+}
@@ -0,0 +1,209 @@
+package com.cs.rest.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.page.KeysetPager;
+
+public class WalletCacheTest {
+
+	private static final long CUSTOMER_ID = 1;
+	private static final long OTHER_CUSTOMER_ID = 2;
+
+	private CouponRepository couponRepository;
+	private KeysetPager keysetPager;
+	private WalletCache walletCache;
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		keysetPager = mock(KeysetPager.class);
+		when(keysetPager.getMaxSize()).thenReturn(3);
+		walletCache = new WalletCache(couponRepository, keysetPager, 100, 60_000);
+	}
+
+	@Test
+	public void loadsAWalletOnce() {
+		load(CUSTOMER_ID, 10, 30);
+
+		assertEquals(ids(10, 30), ids(walletCache.findWallet(CUSTOMER_ID)));
+		assertEquals(ids(10, 30), ids(walletCache.findWallet(CUSTOMER_ID)));
+
+		verify(couponRepository, times(1)).findCustomerPageById(eq(CUSTOMER_ID), eq(0L), any(Pageable.class));
+		assertEquals(1, walletCache.getStats().getHits());
+	}
+
+	@Test
+	public void addsPurchasedCouponsInTheOrderOfTheirIds() {
+		load(CUSTOMER_ID, 10, 30);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		walletCache.onCouponChanged(CouponChangedEvent.purchased(coupon(20, "new"), CUSTOMER_ID));
+
+		assertEquals(ids(10, 20, 30), ids(walletCache.findWallet(CUSTOMER_ID)));
+		verify(couponRepository, times(1)).findCustomerPageById(eq(CUSTOMER_ID), eq(0L), any(Pageable.class));
+	}
+
+	@Test
+	public void replacesSavedCouponsInAllTheWallets() {
+		load(CUSTOMER_ID, 10, 30);
+		load(OTHER_CUSTOMER_ID, 30);
+		walletCache.findWallet(CUSTOMER_ID);
+		walletCache.findWallet(OTHER_CUSTOMER_ID);
+
+		walletCache.onCouponChanged(CouponChangedEvent.saved(coupon(30, "changed")));
+
+		assertEquals("changed", walletCache.findWallet(CUSTOMER_ID).get(1).getTitle());
+		assertEquals("changed", walletCache.findWallet(OTHER_CUSTOMER_ID).get(0).getTitle());
+	}
+
+	@Test
+	public void doesNotRewriteTheOtherWalletsOnAPurchase() {
+		load(CUSTOMER_ID, 10, 30);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		walletCache.onCouponChanged(CouponChangedEvent.purchased(coupon(30, "stock"), OTHER_CUSTOMER_ID));
+
+		assertEquals("coupon30", walletCache.findWallet(CUSTOMER_ID).get(1).getTitle());
+		assertEquals(0, walletCache.getStats().getUpdates());
+	}
+
+	@Test
+	public void keepsALoadThatRacedWithTheEventsOfOthers() {
+		loadDuring(CUSTOMER_ID, CouponChangedEvent.purchased(coupon(30, "new"), OTHER_CUSTOMER_ID), 10);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		load(CUSTOMER_ID, 20);
+		loadDuring(OTHER_CUSTOMER_ID, CouponChangedEvent.saved(coupon(30, "changed")), 10);
+		walletCache.findWallet(OTHER_CUSTOMER_ID);
+
+		assertEquals(ids(10), ids(walletCache.findWallet(CUSTOMER_ID)));
+		assertEquals(ids(10), ids(walletCache.findWallet(OTHER_CUSTOMER_ID)));
+		verify(couponRepository, times(1)).findCustomerPageById(eq(OTHER_CUSTOMER_ID), eq(0L), any(Pageable.class));
+	}
+
+	@Test
+	public void dropsALoadThatRacedWithAPurchaseOfItsCustomer() {
+		loadDuring(CUSTOMER_ID, CouponChangedEvent.purchased(coupon(30, "new"), CUSTOMER_ID), 10);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		load(CUSTOMER_ID, 10, 30);
+
+		assertEquals(ids(10, 30), ids(walletCache.findWallet(CUSTOMER_ID)));
+	}
+
+	@Test
+	public void dropsALoadThatRacedWithASaveOfItsCoupons() {
+		loadDuring(CUSTOMER_ID, CouponChangedEvent.saved(coupon(10, "changed")), 10);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		load(CUSTOMER_ID, 10);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		verify(couponRepository, times(2)).findCustomerPageById(eq(CUSTOMER_ID), eq(0L), any(Pageable.class));
+	}
+
+	@Test
+	public void removesDeletedCouponsFromAllTheWallets() {
+		load(CUSTOMER_ID, 10, 30);
+		load(OTHER_CUSTOMER_ID, 30);
+		walletCache.findWallet(CUSTOMER_ID);
+		walletCache.findWallet(OTHER_CUSTOMER_ID);
+
+		walletCache.onCouponChanged(CouponChangedEvent.deleted(30));
+
+		assertEquals(ids(10), ids(walletCache.findWallet(CUSTOMER_ID)));
+		assertEquals(ids(), ids(walletCache.findWallet(OTHER_CUSTOMER_ID)));
+		assertEquals(2, walletCache.getStats().getMisses());
+	}
+
+	@Test
+	public void dropsWalletsThatGrowAboveAPage() {
+		load(CUSTOMER_ID, 10, 20, 30);
+		walletCache.findWallet(CUSTOMER_ID);
+
+		walletCache.onCouponChanged(CouponChangedEvent.purchased(coupon(40, "new"), CUSTOMER_ID));
+		walletCache.findWallet(CUSTOMER_ID);
+
+		verify(couponRepository, times(2)).findCustomerPageById(eq(CUSTOMER_ID), eq(0L), any(Pageable.class));
+	}
+
+	@Test
+	public void doesNotKeepWalletsBiggerThanAPage() {
+		load(CUSTOMER_ID, 10, 20, 30, 40);
+
+		assertEquals(ids(10, 20, 30), ids(walletCache.findWallet(CUSTOMER_ID)));
+		walletCache.findWallet(CUSTOMER_ID);
+
+		verify(couponRepository, times(2)).findCustomerPageById(anyLong(), eq(0L), any(Pageable.class));
+	}
+
+	private void load(long customerId, long... couponIds) {
+		List<CouponView> coupons = new ArrayList<>();
+
+		for (long couponId : couponIds) {
+			coupons.add(CouponView.of(coupon(couponId, "coupon" + couponId)));
+		}
+		when(couponRepository.findCustomerPageById(eq(customerId), eq(0L), any(Pageable.class))).thenReturn(coupons);
+	}
+
+	/**
+	 * This function will load the wallet given, and publish the event given
+	 * while the wallet is read.
+	 */
+	private void loadDuring(long customerId, CouponChangedEvent event, long... couponIds) {
+		List<CouponView> coupons = new ArrayList<>();
+
+		for (long couponId : couponIds) {
+			coupons.add(CouponView.of(coupon(couponId, "coupon" + couponId)));
+		}
+		when(couponRepository.findCustomerPageById(eq(customerId), eq(0L), any(Pageable.class)))
+				.thenAnswer(invocation -> {
+					walletCache.onCouponChanged(event);
+					return coupons;
+				});
+	}
+
+	private static Coupon coupon(long id, String title) {
+		Coupon coupon = new Coupon();
+		coupon.setId(id);
+		coupon.setTitle(title);
+		return coupon;
+	}
+
+	private static List<Long> ids(long... ids) {
+		List<Long> list = new ArrayList<>();
+
+		for (long id : ids) {
+			list.add(id);
+		}
+		return list;
+	}
+
+	private static List<Long> ids(List<CouponView> coupons) {
+		List<Long> list = new ArrayList<>();
+
+		for (CouponView coupon : coupons) {
+			list.add(coupon.getId());
+		}
+		return list;
+	}
+
+}
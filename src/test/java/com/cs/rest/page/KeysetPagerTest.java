@@ -0,0 +1,98 @@
+package com.cs.rest.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.cs.repository.CompanyRepository;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.CustomerRepository;
+import com.cs.repository.view.CouponView;
+import com.cs.rest.ex.InvalidPageException;
+
+public class KeysetPagerTest {
+
+	private CouponRepository couponRepository;
+	private KeysetPager keysetPager;
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		keysetPager = new KeysetPager(couponRepository, mock(CustomerRepository.class), mock(CompanyRepository.class),
+				100);
+	}
+
+	@Test
+	public void readsOneExtraCouponToKnowIfThereIsANextPage() throws InvalidPageException {
+		when(couponRepository.findPageById(0, PageRequest.of(0, 3)))
+				.thenReturn(Arrays.asList(coupon(1, null), coupon(2, null), coupon(3, null)));
+		when(couponRepository.findPageById(2, PageRequest.of(0, 3)))
+				.thenReturn(Collections.singletonList(coupon(3, null)));
+
+		KeysetPage<CouponView> first = keysetPager.findCoupons(0, "id", null, 2);
+		KeysetPage<CouponView> second = keysetPager.findCoupons(0, "id", first.getNext(), 2);
+
+		assertEquals(2, first.getItems().size());
+		assertEquals(3, second.getItems().get(0).getId());
+		assertNull(second.getNext());
+	}
+
+	@Test
+	public void listsTheCouponsWithoutAnEndDateFirst() throws InvalidPageException {
+		when(couponRepository.findPageByNullEndDate(0, PageRequest.of(0, 3)))
+				.thenReturn(Collections.singletonList(coupon(5, null)));
+		when(couponRepository.findPageByEndDate(any(Date.class), eq(0L), eq(PageRequest.of(0, 2))))
+				.thenReturn(Arrays.asList(coupon(1, new Date(1_000)), coupon(2, new Date(2_000))));
+		when(couponRepository.findPageByEndDate(new Date(1_000), 1, PageRequest.of(0, 3)))
+				.thenReturn(Collections.singletonList(coupon(2, new Date(2_000))));
+
+		KeysetPage<CouponView> first = keysetPager.findCoupons(0, "endDate", null, 2);
+		KeysetPage<CouponView> second = keysetPager.findCoupons(0, "endDate", first.getNext(), 2);
+
+		assertEquals(5, first.getItems().get(0).getId());
+		assertEquals(1, first.getItems().get(1).getId());
+		assertEquals(2, second.getItems().get(0).getId());
+		assertNull(second.getNext());
+	}
+
+	@Test(expected = InvalidPageException.class)
+	public void refusesTheTokenOfAnotherListing() throws InvalidPageException {
+		when(couponRepository.findPageById(anyLong(), any(Pageable.class)))
+				.thenReturn(Arrays.asList(coupon(1, null), coupon(2, null)));
+		String next = keysetPager.findCoupons(0, "id", null, 1).getNext();
+
+		keysetPager.findCustomerCoupons(1, "id", next, 1);
+	}
+
+	@Test(expected = InvalidPageException.class)
+	public void refusesTheTokenOfAnotherSort() throws InvalidPageException {
+		when(couponRepository.findPageById(anyLong(), any(Pageable.class)))
+				.thenReturn(Arrays.asList(coupon(1, null), coupon(2, null)));
+		String next = keysetPager.findCoupons(0, "id", null, 1).getNext();
+
+		keysetPager.findCoupons(0, "price", next, 1);
+	}
+
+	@Test(expected = InvalidPageException.class)
+	public void refusesUnknownSorts() throws InvalidPageException {
+		keysetPager.findCoupons(0, "title", null, 1);
+	}
+
+	private static CouponView coupon(long id, Date endDate) {
+		return new CouponView(id, "coupon" + id, null, null, endDate, 1, 1, 1, null, 1);
+	}
+
+}
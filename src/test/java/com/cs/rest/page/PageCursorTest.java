@@ -0,0 +1,63 @@
+package com.cs.rest.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Test;
+
+import com.cs.rest.ex.InvalidPageException;
+
+public class PageCursorTest {
+
+	@Test
+	public void decodesTheTokenItEncoded() throws InvalidPageException {
+		PageCursor cursor = PageCursor.decode(new PageCursor("price", "19.9", 42).encode(), "price");
+
+		assertEquals("19.9", cursor.getValue());
+		assertEquals(42, cursor.getLastId());
+	}
+
+	@Test
+	public void keepsTheEndDateMillis() throws InvalidPageException {
+		PageCursor cursor = PageCursor.decode(new PageCursor("end", "1577871000000", 7).encode(), "end");
+
+		assertEquals("1577871000000", cursor.getValue());
+		assertEquals(7, cursor.getLastId());
+	}
+
+	@Test
+	public void keepsEmptyValues() throws InvalidPageException {
+		PageCursor cursor = PageCursor.decode(new PageCursor("end", "", 3).encode(), "end");
+
+		assertEquals("", cursor.getValue());
+		assertEquals(3, cursor.getLastId());
+	}
+
+	@Test
+	public void startsFromTheFirstPageWithoutAToken() throws InvalidPageException {
+		assertNull(PageCursor.decode(null, "id"));
+		assertNull(PageCursor.decode("", "id"));
+	}
+
+	@Test(expected = InvalidPageException.class)
+	public void rejectsTokensOfAnotherSort() throws InvalidPageException {
+		PageCursor.decode(new PageCursor("price", "19.9", 42).encode(), "id");
+	}
+
+	@Test(expected = InvalidPageException.class)
+	public void rejectsTokensThatAreNotBase64() throws InvalidPageException {
+		PageCursor.decode("not a token!", "id");
+	}
+
+	@Test(expected = InvalidPageException.class)
+	public void rejectsTokensWithoutAnId() throws InvalidPageException {
+		String token = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString("id:5:last".getBytes(StandardCharsets.UTF_8));
+
+		PageCursor.decode(token, "id");
+	}
+
+}
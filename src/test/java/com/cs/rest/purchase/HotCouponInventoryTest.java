@@ -0,0 +1,193 @@
+package com.cs.rest.purchase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.cs.repository.CouponRepository;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.OwnedCouponIndex;
+
+public class HotCouponInventoryTest {
+
+	private static final long COUPON_ID = 7;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CouponRepository couponRepository;
+	private Path path;
+	private HotCouponInventory inventory;
+
+	@Before
+	public void setUp() throws IOException {
+		couponRepository = mock(CouponRepository.class);
+		when(couponRepository.insertCustomerLink(anyLong(), anyLong())).thenReturn(1);
+		when(couponRepository.decrementAmountBy(anyLong(), anyInt())).thenReturn(1);
+
+		path = folder.getRoot().toPath().resolve("hot-purchases.journal");
+		inventory = newInventory();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		inventory.onPreDestroy();
+	}
+
+	@Test
+	public void admitsPurchasesUpToTheAmount() throws NoCouponFoundException {
+		markHot(2);
+
+		assertEquals(PurchaseStatus.PURCHASED, inventory.purchase(1, COUPON_ID));
+		assertEquals(PurchaseStatus.ALREADY_PURCHASED, inventory.purchase(1, COUPON_ID));
+		assertEquals(PurchaseStatus.PURCHASED, inventory.purchase(2, COUPON_ID));
+		assertEquals(PurchaseStatus.OUT_OF_STOCK, inventory.purchase(3, COUPON_ID));
+	}
+
+	@Test
+	public void leavesCouponsThatAreNotHotToTheRegularPurchase() {
+		assertNull(inventory.purchase(1, COUPON_ID));
+	}
+
+	@Test(expected = NoCouponFoundException.class)
+	public void refusesToMarkCouponsThatDoNotExist() throws NoCouponFoundException {
+		when(couponRepository.findAmount(COUPON_ID)).thenReturn(null);
+
+		try {
+			inventory.markHot(COUPON_ID);
+		} finally {
+			assertFalse(inventory.isHot(COUPON_ID));
+		}
+	}
+
+	@Test
+	public void leavesPurchasesToTheRegularPurchaseUntilTheAmountIsRead() throws NoCouponFoundException {
+		when(couponRepository.findAmount(COUPON_ID)).thenAnswer(invocation -> {
+			assertFalse(inventory.isHot(COUPON_ID));
+			assertNull(inventory.purchase(1, COUPON_ID));
+			return 3;
+		});
+
+		inventory.markHot(COUPON_ID);
+
+		assertEquals(PurchaseStatus.PURCHASED, inventory.purchase(1, COUPON_ID));
+	}
+
+	@Test
+	public void writesTheAdmittedPurchasesOnFlush() throws NoCouponFoundException {
+		markHot(5);
+		inventory.purchase(1, COUPON_ID);
+		inventory.purchase(2, COUPON_ID);
+
+		inventory.flush();
+
+		verify(couponRepository).insertCustomerLink(1, COUPON_ID);
+		verify(couponRepository).insertCustomerLink(2, COUPON_ID);
+		verify(couponRepository).decrementAmountBy(COUPON_ID, 2);
+	}
+
+	@Test
+	public void givesRefusedPurchasesBackToTheStock() throws NoCouponFoundException {
+		when(couponRepository.decrementAmountBy(anyLong(), anyInt())).thenReturn(0);
+		markHot(1);
+		inventory.purchase(1, COUPON_ID);
+
+		inventory.flush();
+
+		assertTrue(Files.exists(folder.getRoot().toPath().resolve("hot-purchases.journal.dead")));
+		assertEquals(PurchaseStatus.PURCHASED, inventory.purchase(2, COUPON_ID));
+	}
+
+	@Test
+	public void skipsPurchasesThatAreAlreadyWritten() throws NoCouponFoundException {
+		when(couponRepository.findCustomerLinks(anyCollection(), anyCollection()))
+				.thenReturn(Collections.singletonList(new Object[] { 1L, COUPON_ID }));
+		markHot(5);
+		inventory.purchase(1, COUPON_ID);
+		inventory.purchase(2, COUPON_ID);
+
+		inventory.flush();
+
+		verify(couponRepository, never()).insertCustomerLink(1, COUPON_ID);
+		verify(couponRepository).insertCustomerLink(2, COUPON_ID);
+		verify(couponRepository).decrementAmountBy(COUPON_ID, 1);
+	}
+
+	@Test
+	public void movesPurchasesOfDeletedCustomersToTheDeadLetterFile() throws NoCouponFoundException {
+		doThrow(new DataIntegrityViolationException("fk_customer")).when(couponRepository).insertCustomerLink(2,
+				COUPON_ID);
+		markHot(2);
+		inventory.purchase(1, COUPON_ID);
+		inventory.purchase(2, COUPON_ID);
+
+		inventory.flush();
+
+		verify(couponRepository).decrementAmountBy(COUPON_ID, 1);
+		assertTrue(Files.exists(folder.getRoot().toPath().resolve("hot-purchases.journal.dead")));
+		assertEquals(PurchaseStatus.PURCHASED, inventory.purchase(3, COUPON_ID));
+	}
+
+	@Test
+	public void replaysTheJournalOfTheLastRun() throws IOException {
+		inventory.onPreDestroy();
+
+		ByteBuffer record = ByteBuffer.allocate(16);
+		record.putLong(4).putLong(COUPON_ID);
+		Files.write(folder.getRoot().toPath().resolve("hot-purchases.journal.0.1"), record.array());
+
+		inventory = newInventory();
+
+		verify(couponRepository).insertCustomerLink(4, COUPON_ID);
+		verify(couponRepository).decrementAmountBy(COUPON_ID, 1);
+	}
+
+	@Test
+	public void writesThePurchasesBeforeTheCouponIsUnmarked() throws NoCouponFoundException {
+		markHot(5);
+		inventory.purchase(1, COUPON_ID);
+
+		inventory.unmarkHot(COUPON_ID);
+
+		verify(couponRepository).insertCustomerLink(1, COUPON_ID);
+		assertFalse(inventory.isHot(COUPON_ID));
+		assertNull(inventory.purchase(2, COUPON_ID));
+		verify(couponRepository, never()).insertCustomerLink(2, COUPON_ID);
+	}
+
+	private HotCouponInventory newInventory() throws IOException {
+		HotCouponInventory hotCouponInventory = new HotCouponInventory(couponRepository,
+				mock(OwnedCouponIndex.class), mock(PlatformTransactionManager.class), 4, path.toString());
+		hotCouponInventory.onPostConstruct();
+		return hotCouponInventory;
+	}
+
+	private void markHot(int amount) throws NoCouponFoundException {
+		when(couponRepository.findAmount(COUPON_ID)).thenReturn(amount);
+		inventory.markHot(COUPON_ID);
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.cs.rest.purchase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class PurchaseBatchExecutorTest {
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private JdbcTemplate jdbcTemplate;
+	private PurchaseBatchExecutor batchExecutor;
+
+	@Before
+	public void setUp() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:purchases"
+				+ DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE customer (id BIGINT PRIMARY KEY)");
+		jdbcTemplate.execute("CREATE TABLE coupon (id BIGINT PRIMARY KEY, amount INT NOT NULL)");
+		jdbcTemplate.execute("CREATE TABLE customer_coupon (customer_id BIGINT NOT NULL, coupon_id BIGINT NOT NULL,"
+				+ " PRIMARY KEY (customer_id, coupon_id), FOREIGN KEY (customer_id) REFERENCES customer (id),"
+				+ " FOREIGN KEY (coupon_id) REFERENCES coupon (id))");
+
+		for (long customerId = 1; customerId <= 100; customerId++) {
+			jdbcTemplate.update("INSERT INTO customer (id) VALUES (?)", customerId);
+		}
+
+		batchExecutor = new PurchaseBatchExecutor(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+	}
+
+	@Test
+	public void takesOneFromTheStock() {
+		coupon(1, 2);
+
+		assertEquals(Collections.singletonList(PurchaseStatus.PURCHASED), purchase(1, 1));
+		assertEquals(1, amount(1));
+		assertTrue(owns(1, 1));
+	}
+
+	@Test
+	public void refusesCouponsThatAreOutOfStock() {
+		coupon(1, 0);
+
+		assertEquals(Collections.singletonList(PurchaseStatus.OUT_OF_STOCK), purchase(1, 1));
+		assertEquals(0, amount(1));
+		assertFalse(owns(1, 1));
+	}
+
+	@Test
+	public void refusesCouponsThatDoNotExist() {
+		assertEquals(Collections.singletonList(PurchaseStatus.NOT_FOUND), purchase(1, 1));
+	}
+
+	@Test
+	public void givesTheStockBackForCouponsThatAreAlreadyOwned() {
+		coupon(1, 5);
+		purchase(1, 1);
+
+		assertEquals(Collections.singletonList(PurchaseStatus.ALREADY_PURCHASED), purchase(1, 1));
+		assertEquals(4, amount(1));
+	}
+
+	@Test
+	public void givesEveryPurchaseOfABatchItsOwnStatusInOrder() {
+		coupon(1, 1);
+		coupon(2, 5);
+
+		List<PurchaseStatus> statuses = batchExecutor.execute(Arrays.asList(new CouponPurchase(1, 2),
+				new CouponPurchase(1, 1), new CouponPurchase(2, 1), new CouponPurchase(1, 2), new CouponPurchase(1, 3)));
+
+		assertEquals(Arrays.asList(PurchaseStatus.PURCHASED, PurchaseStatus.PURCHASED, PurchaseStatus.OUT_OF_STOCK,
+				PurchaseStatus.ALREADY_PURCHASED, PurchaseStatus.NOT_FOUND), statuses);
+		assertEquals(0, amount(1));
+		assertEquals(4, amount(2));
+	}
+
+	@Test
+	public void neverSellsMoreThanTheStockUnderConcurrentPurchases() throws Exception {
+		coupon(1, 10);
+		ExecutorService buyers = Executors.newFixedThreadPool(16);
+		List<Future<List<PurchaseStatus>>> results = new ArrayList<>();
+
+		try {
+			for (long customerId = 1; customerId <= 50; customerId++) {
+				long buyer = customerId;
+				results.add(buyers.submit(() -> purchase(buyer, 1)));
+			}
+
+			int purchased = 0;
+
+			for (Future<List<PurchaseStatus>> result : results) {
+				PurchaseStatus status = result.get().get(0);
+
+				if (status.isPurchased()) {
+					purchased++;
+				} else {
+					assertEquals(PurchaseStatus.OUT_OF_STOCK, status);
+				}
+			}
+
+			assertEquals(10, purchased);
+			assertEquals(0, amount(1));
+		} finally {
+			buyers.shutdownNow();
+		}
+	}
+
+	private List<PurchaseStatus> purchase(long customerId, long couponId) {
+		return batchExecutor.execute(Arrays.asList(new CouponPurchase(customerId, couponId)));
+	}
+
+	private void coupon(long id, int amount) {
+		jdbcTemplate.update("INSERT INTO coupon (id, amount) VALUES (?, ?)", id, amount);
+	}
+
+	private int amount(long couponId) {
+		return jdbcTemplate.queryForObject("SELECT amount FROM coupon WHERE id = ?", Integer.class, couponId);
+	}
+
+	private boolean owns(long customerId, long couponId) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer_coupon WHERE customer_id = ? AND coupon_id = ?",
+				Integer.class, customerId, couponId) == 1;
+	}
+
+}
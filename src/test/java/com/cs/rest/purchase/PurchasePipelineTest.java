@@ -0,0 +1,144 @@
+package com.cs.rest.purchase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PurchasePipelineTest {
+
+	private PurchaseBatchExecutor batchExecutor;
+	private PurchasePipeline pipeline;
+	private ExecutorService callers;
+
+	@Before
+	public void setUp() {
+		batchExecutor = mock(PurchaseBatchExecutor.class);
+		callers = Executors.newFixedThreadPool(8);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		callers.shutdownNow();
+
+		if (pipeline != null) {
+			pipeline.onPreDestroy();
+		}
+	}
+
+	@Test
+	public void writesOnTheCallerThreadWhenDisabled() {
+		when(batchExecutor.execute(anyList())).thenAnswer(invocation -> statuses(invocation.getArgument(0)));
+		pipeline = new PurchasePipeline(batchExecutor, false, 2, 256, 5000);
+		pipeline.onPostConstruct();
+
+		assertEquals(PurchaseStatus.PURCHASED, pipeline.purchase(1, 2));
+		assertEquals(PurchaseStatus.OUT_OF_STOCK, pipeline.purchase(1, 3));
+		assertEquals(0, pipeline.getStats().getBatches());
+	}
+
+	@Test
+	public void groupsConcurrentPurchasesAndGivesEveryCallerItsOwnStatus() throws Exception {
+		when(batchExecutor.execute(anyList())).thenAnswer(invocation -> statuses(invocation.getArgument(0)));
+		pipeline = new PurchasePipeline(batchExecutor, true, 50, 256, 5000);
+		pipeline.onPostConstruct();
+
+		List<Future<PurchaseStatus>> results = purchaseConcurrently(16);
+
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(i % 2 == 0 ? PurchaseStatus.PURCHASED : PurchaseStatus.OUT_OF_STOCK, results.get(i).get());
+		}
+
+		PipelineStats stats = pipeline.getStats();
+		assertEquals(16, stats.getPurchases());
+		assertTrue(stats.getBatches() < 16);
+	}
+
+	@Test
+	public void writesAFailedBatchOneByOne() throws Exception {
+		when(batchExecutor.execute(anyList())).thenAnswer(invocation -> {
+			List<CouponPurchase> purchases = invocation.getArgument(0);
+
+			if (purchases.size() > 1 || purchases.get(0).getCouponId() == 3) {
+				throw new IllegalStateException("The batch failed.");
+			}
+			return statuses(purchases);
+		});
+		pipeline = new PurchasePipeline(batchExecutor, true, 50, 256, 5000);
+		pipeline.onPostConstruct();
+
+		List<Future<PurchaseStatus>> results = purchaseConcurrently(6);
+
+		for (int i = 0; i < results.size(); i++) {
+			if (i == 3) {
+				try {
+					results.get(i).get();
+					fail("The purchase of coupon 3 should fail by itself.");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof IllegalStateException);
+				}
+			} else {
+				assertEquals(i % 2 == 0 ? PurchaseStatus.PURCHASED : PurchaseStatus.OUT_OF_STOCK,
+						results.get(i).get());
+			}
+		}
+	}
+
+	@Test
+	public void writesOnTheCallerThreadOnceStopped() throws InterruptedException {
+		when(batchExecutor.execute(anyList())).thenAnswer(invocation -> statuses(invocation.getArgument(0)));
+		pipeline = new PurchasePipeline(batchExecutor, true, 2, 256, 5000);
+		pipeline.onPostConstruct();
+		pipeline.onPreDestroy();
+
+		assertEquals(PurchaseStatus.PURCHASED, pipeline.purchase(1, 4));
+	}
+
+	/**
+	 * This function will purchase the coupons 0 to count - 1 from threads that
+	 * start together.
+	 */
+	private List<Future<PurchaseStatus>> purchaseConcurrently(int count) {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<PurchaseStatus>> results = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			long couponId = i;
+			results.add(callers.submit(() -> {
+				start.await();
+				return pipeline.purchase(1, couponId);
+			}));
+		}
+
+		start.countDown();
+		return results;
+	}
+
+	/**
+	 * @return PURCHASED for the coupons with an even id and OUT_OF_STOCK for the
+	 *         others, in the order of the purchases.
+	 */
+	private static List<PurchaseStatus> statuses(List<CouponPurchase> purchases) {
+		List<PurchaseStatus> statuses = new ArrayList<>();
+
+		for (CouponPurchase purchase : purchases) {
+			statuses.add(purchase.getCouponId() % 2 == 0 ? PurchaseStatus.PURCHASED : PurchaseStatus.OUT_OF_STOCK);
+		}
+		return statuses;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.cs.rest.purchase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StripedCounterTest {
+
+	@Test
+	public void splitsTheAmountBetweenTheStripes() {
+		StripedCounter counter = new StripedCounter(4, 10);
+
+		assertEquals(10, counter.sum());
+
+		counter.reset(-3);
+		assertEquals(0, counter.sum());
+	}
+
+	@Test
+	public void takesFromTheOtherStripesWhenItsOwnIsEmpty() {
+		StripedCounter counter = new StripedCounter(8, 3);
+
+		assertTrue(counter.tryDecrement());
+		assertTrue(counter.tryDecrement());
+		assertTrue(counter.tryDecrement());
+		assertFalse(counter.tryDecrement());
+		assertEquals(0, counter.sum());
+
+		counter.increment();
+		assertTrue(counter.tryDecrement());
+	}
+
+	@Test
+	public void neverGoesBelowZeroUnderContention() throws InterruptedException {
+		StripedCounter counter = new StripedCounter(4, 1_000);
+		AtomicInteger taken = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < 500; j++) {
+					if (counter.tryDecrement()) {
+						taken.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1_000, taken.get());
+		assertEquals(0, counter.sum());
+	}
+
+}
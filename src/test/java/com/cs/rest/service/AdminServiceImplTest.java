@@ -0,0 +1,128 @@
+package com.cs.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.cs.entity.Company;
+import com.cs.entity.Coupon;
+import com.cs.entity.Customer;
+import com.cs.repository.CompanyRepository;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.CustomerRepository;
+import com.cs.rest.CouponCleaner;
+import com.cs.rest.SessionStore;
+import com.cs.rest.archive.CouponArchive;
+import com.cs.rest.ex.EmailAlreadyExistsException;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.export.BulkExporter;
+import com.cs.rest.index.CouponCache;
+import com.cs.rest.index.CouponExpiryIndex;
+import com.cs.rest.index.CouponTitleIndex;
+import com.cs.rest.index.EmailIndex;
+import com.cs.rest.index.OwnedCouponIndex;
+import com.cs.rest.index.RequestLookups;
+import com.cs.rest.index.WalletCache;
+import com.cs.rest.page.KeysetPager;
+import com.cs.rest.purchase.HotCouponInventory;
+import com.cs.rest.purchase.PurchasePipeline;
+
+public class AdminServiceImplTest {
+
+	private CompanyRepository companyRepository;
+	private CouponRepository couponRepository;
+	private CustomerRepository customerRepository;
+	private EmailIndex emailIndex;
+	private AdminServiceImpl adminService;
+
+	@Before
+	public void setUp() {
+		companyRepository = mock(CompanyRepository.class);
+		couponRepository = mock(CouponRepository.class);
+		customerRepository = mock(CustomerRepository.class);
+		emailIndex = mock(EmailIndex.class);
+
+		adminService = new AdminServiceImpl(companyRepository, couponRepository, customerRepository,
+				mock(CouponExpiryIndex.class), mock(CouponCache.class), mock(CouponTitleIndex.class),
+				mock(OwnedCouponIndex.class), emailIndex, mock(RequestLookups.class), mock(WalletCache.class),
+				mock(KeysetPager.class), mock(SessionStore.class), mock(CouponCleaner.class),
+				mock(CouponArchive.class), mock(HotCouponInventory.class), mock(PurchasePipeline.class),
+				mock(BulkExporter.class), mock(ApplicationEventPublisher.class));
+	}
+
+	@Test
+	public void insertsANewCustomerAndAddsItsEmail() throws EmailAlreadyExistsException {
+		Customer customer = customer(5);
+		when(customerRepository.save(customer)).thenReturn(customer);
+
+		assertSame(customer, adminService.addCustomer(customer));
+		assertEquals(0, customer.getId());
+		verify(emailIndex).addCustomerEmail("dana@mail.com");
+	}
+
+	@Test(expected = EmailAlreadyExistsException.class)
+	public void refusesACustomerThatLostTheRaceOnTheEmail() throws EmailAlreadyExistsException {
+		Customer customer = customer(0);
+		when(customerRepository.save(customer)).thenThrow(violationOf("UK_CUSTOMER_EMAIL_INDEX_2"));
+
+		adminService.addCustomer(customer);
+	}
+
+	@Test
+	public void keepsTheOtherViolationsOfACustomer() throws EmailAlreadyExistsException {
+		Customer customer = customer(0);
+		DataIntegrityViolationException violation = violationOf("fk_other");
+		when(customerRepository.save(customer)).thenThrow(violation);
+
+		try {
+			adminService.addCustomer(customer);
+			fail("The insert should fail.");
+		} catch (DataIntegrityViolationException e) {
+			assertSame(violation, e);
+		}
+	}
+
+	@Test(expected = EmailAlreadyExistsException.class)
+	public void refusesACompanyThatLostTheRaceOnTheEmail() throws EmailAlreadyExistsException {
+		Company company = new Company();
+		company.setEmail("pizza@place.com");
+		when(companyRepository.save(company)).thenThrow(violationOf("uk_company_email"));
+
+		adminService.addCompany(company);
+	}
+
+	@Test(expected = IllegalCouponException.class)
+	public void refusesACouponThatLostTheRaceOnTheTitle() throws IllegalCouponException {
+		Coupon coupon = new Coupon();
+		coupon.setTitle("pizza");
+		when(companyRepository.findById(10L)).thenReturn(Optional.of(new Company()));
+		when(couponRepository.save(coupon)).thenThrow(violationOf("uk_coupon_title"));
+
+		adminService.saveCoupon(coupon, 10);
+	}
+
+	private static Customer customer(long id) {
+		Customer customer = new Customer();
+		customer.setId(id);
+		customer.setEmail("dana@mail.com");
+		return customer;
+	}
+
+	private static DataIntegrityViolationException violationOf(String constraintName) {
+		return new DataIntegrityViolationException("could not execute statement",
+				new ConstraintViolationException("duplicate", new SQLException("duplicate"), constraintName));
+	}
+
+}
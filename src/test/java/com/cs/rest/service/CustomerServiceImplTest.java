@@ -0,0 +1,198 @@
+package com.cs.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.cs.entity.Coupon;
+import com.cs.repository.CouponRepository;
+import com.cs.repository.CustomerRepository;
+import com.cs.rest.ClientSession;
+import com.cs.rest.ClientType;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.ex.IllegalCouponException;
+import com.cs.rest.ex.NoCouponFoundException;
+import com.cs.rest.index.CouponCache;
+import com.cs.rest.index.CouponExpiryIndex;
+import com.cs.rest.index.CouponSearchIndex;
+import com.cs.rest.index.CouponTextIndex;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.index.OwnedCouponIndex;
+import com.cs.rest.index.RequestLookups;
+import com.cs.rest.index.WalletCache;
+import com.cs.rest.page.KeysetPager;
+import com.cs.rest.purchase.CouponPurchase;
+import com.cs.rest.purchase.HotCouponInventory;
+import com.cs.rest.purchase.PurchaseBatchExecutor;
+import com.cs.rest.purchase.PurchasePipeline;
+import com.cs.rest.purchase.PurchaseResult;
+import com.cs.rest.purchase.PurchaseStatus;
+import com.cs.rest.snapshot.CatalogSnapshots;
+
+public class CustomerServiceImplTest {
+
+	private static final long CUSTOMER_ID = 1;
+	private static final long COUPON_ID = 7;
+
+	private final ClientSession session = new ClientSession(ClientType.CUSTOMER, CUSTOMER_ID);
+
+	private CouponRepository couponRepository;
+	private CouponExpiryIndex couponExpiryIndex;
+	private OwnedCouponIndex ownedCouponIndex;
+	private HotCouponInventory hotCouponInventory;
+	private PurchasePipeline purchasePipeline;
+	private PurchaseBatchExecutor purchaseBatchExecutor;
+	private ApplicationEventPublisher eventPublisher;
+	private CustomerServiceImpl customerService;
+
+	private Coupon coupon;
+
+	@Before
+	public void setUp() {
+		couponRepository = mock(CouponRepository.class);
+		couponExpiryIndex = mock(CouponExpiryIndex.class);
+		ownedCouponIndex = mock(OwnedCouponIndex.class);
+		hotCouponInventory = mock(HotCouponInventory.class);
+		purchasePipeline = mock(PurchasePipeline.class);
+		purchaseBatchExecutor = mock(PurchaseBatchExecutor.class);
+		eventPublisher = mock(ApplicationEventPublisher.class);
+
+		customerService = new CustomerServiceImpl(mock(CustomerRepository.class), couponRepository,
+				couponExpiryIndex, mock(CouponCache.class), mock(CouponSearchIndex.class),
+				mock(CouponTextIndex.class), mock(CouponVersions.class), mock(CatalogSnapshots.class),
+				ownedCouponIndex, mock(RequestLookups.class), mock(WalletCache.class), mock(KeysetPager.class),
+				hotCouponInventory, purchasePipeline, purchaseBatchExecutor, eventPublisher);
+
+		coupon = new Coupon();
+		coupon.setId(COUPON_ID);
+		coupon.setTitle("pizza");
+		when(couponRepository.findById(COUPON_ID)).thenReturn(Optional.of(coupon));
+	}
+
+	@Test
+	public void purchasesTheCouponAndPublishesThePurchase() throws Exception {
+		when(purchasePipeline.purchase(CUSTOMER_ID, COUPON_ID)).thenReturn(PurchaseStatus.PURCHASED);
+
+		assertSame(coupon, customerService.purchaseCoupon(session, COUPON_ID));
+		verify(eventPublisher).publishEvent(any(CouponChangedEvent.class));
+	}
+
+	@Test(expected = IllegalCouponException.class)
+	public void refusesCouponsThatAreOutOfStock() throws Exception {
+		when(purchasePipeline.purchase(CUSTOMER_ID, COUPON_ID)).thenReturn(PurchaseStatus.OUT_OF_STOCK);
+
+		customerService.purchaseCoupon(session, COUPON_ID);
+	}
+
+	@Test(expected = NoCouponFoundException.class)
+	public void refusesCouponsThatDoNotExist() throws Exception {
+		when(purchasePipeline.purchase(CUSTOMER_ID, 8)).thenReturn(PurchaseStatus.NOT_FOUND);
+		when(couponRepository.findById(8L)).thenReturn(Optional.empty());
+
+		customerService.purchaseCoupon(session, 8);
+	}
+
+	@Test
+	public void refusesOwnedCouponsWithoutWritingThem() throws Exception {
+		when(ownedCouponIndex.isOwned(CUSTOMER_ID, COUPON_ID)).thenReturn(true);
+
+		assertPurchaseFails();
+		verify(purchasePipeline, never()).purchase(anyLong(), anyLong());
+	}
+
+	@Test
+	public void refusesExpiredCouponsWithoutWritingThem() throws Exception {
+		when(couponExpiryIndex.isExpired(anyLong(), anyLong())).thenReturn(true);
+
+		assertPurchaseFails();
+		verify(purchasePipeline, never()).purchase(anyLong(), anyLong());
+	}
+
+	@Test
+	public void purchasesHotCouponsInMemory() throws Exception {
+		when(hotCouponInventory.purchase(CUSTOMER_ID, COUPON_ID)).thenReturn(PurchaseStatus.PURCHASED);
+
+		customerService.purchaseCoupon(session, COUPON_ID);
+
+		verify(purchasePipeline, never()).purchase(anyLong(), anyLong());
+	}
+
+	@Test
+	public void checksOutTheCartInItsOrder() {
+		when(couponExpiryIndex.isExpired(eq(9L), anyLong())).thenReturn(true);
+		when(hotCouponInventory.isHot(8)).thenReturn(true);
+		when(hotCouponInventory.purchase(CUSTOMER_ID, 8)).thenReturn(PurchaseStatus.OUT_OF_STOCK);
+		when(purchaseBatchExecutor.execute(anyList())).thenAnswer(invocation -> purchased(invocation.getArgument(0)));
+		when(couponRepository.findAllById(Collections.singletonList(COUPON_ID)))
+				.thenReturn(Collections.singletonList(coupon));
+
+		List<PurchaseResult> results = customerService.checkout(session, Arrays.asList(8L, COUPON_ID, 9L));
+
+		assertEquals(PurchaseStatus.OUT_OF_STOCK, results.get(0).getStatus());
+		assertEquals(PurchaseStatus.PURCHASED, results.get(1).getStatus());
+		assertEquals(PurchaseStatus.EXPIRED, results.get(2).getStatus());
+		verify(eventPublisher).publishEvent(any(CouponChangedEvent.class));
+	}
+
+	@Test
+	public void admitsNoHotCouponWhenTheCheckoutFailsOnTheDatabase() {
+		when(hotCouponInventory.isHot(8)).thenReturn(true);
+		when(purchaseBatchExecutor.execute(anyList())).thenThrow(new IllegalStateException("database down"));
+
+		try {
+			customerService.checkout(session, Arrays.asList(8L, COUPON_ID));
+			fail("The checkout should fail.");
+		} catch (IllegalStateException e) {
+			verify(hotCouponInventory, never()).purchase(anyLong(), anyLong());
+		}
+	}
+
+	@Test
+	public void writesCouponsThatStopBeingHotDuringTheCheckout() {
+		when(hotCouponInventory.isHot(COUPON_ID)).thenReturn(true);
+		when(purchaseBatchExecutor.execute(anyList())).thenAnswer(invocation -> purchased(invocation.getArgument(0)));
+
+		List<PurchaseResult> results = customerService.checkout(session, Collections.singletonList(COUPON_ID));
+
+		assertEquals(PurchaseStatus.PURCHASED, results.get(0).getStatus());
+		verify(hotCouponInventory).purchase(CUSTOMER_ID, COUPON_ID);
+	}
+
+	private static List<PurchaseStatus> purchased(List<CouponPurchase> purchases) {
+		List<PurchaseStatus> statuses = new ArrayList<>();
+
+		for (CouponPurchase purchase : purchases) {
+			assertEquals(CUSTOMER_ID, purchase.getCustomerId());
+			statuses.add(PurchaseStatus.PURCHASED);
+		}
+		return statuses;
+	}
+
+	private void assertPurchaseFails() throws NoCouponFoundException {
+		try {
+			customerService.purchaseCoupon(session, COUPON_ID);
+			throw new AssertionError("The purchase should fail.");
+		} catch (IllegalCouponException e) {
+			verify(eventPublisher, never()).publishEvent(any(CouponChangedEvent.class));
+		}
+	}
+
+}
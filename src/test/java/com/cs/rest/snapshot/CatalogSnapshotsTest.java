@@ -0,0 +1,124 @@
+package com.cs.rest.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.repository.view.CouponView;
+import com.cs.rest.event.CouponChangedEvent;
+import com.cs.rest.index.CouponExpiryIndex;
+import com.cs.rest.index.CouponVersions;
+import com.cs.rest.page.KeysetPage;
+import com.cs.rest.page.KeysetPager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CatalogSnapshotsTest {
+
+	private KeysetPager keysetPager;
+	private CouponExpiryIndex couponExpiryIndex;
+	private CouponVersions couponVersions;
+	private CatalogSnapshots catalogSnapshots;
+
+	@Before
+	public void setUp() throws Exception {
+		keysetPager = mock(KeysetPager.class);
+		couponExpiryIndex = mock(CouponExpiryIndex.class);
+		couponVersions = mock(CouponVersions.class);
+
+		when(couponExpiryIndex.findNextEndMillisAfter(anyLong())).thenReturn(Long.MAX_VALUE);
+		when(couponExpiryIndex.filterExpired(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+		when(couponVersions.getCatalogETag()).thenReturn("\"1\"");
+		coupons(coupon(1));
+
+		catalogSnapshots = new CatalogSnapshots(keysetPager, couponExpiryIndex, couponVersions, new ObjectMapper());
+		catalogSnapshots.onPostConstruct();
+	}
+
+	@After
+	public void tearDown() {
+		catalogSnapshots.onPreDestroy();
+	}
+
+	@Test
+	public void servesTheLastSnapshotWithItsOwnETagUntilTheRebuild() throws Exception {
+		CatalogSnapshot first = catalogSnapshots.findCurrent();
+		CountDownLatch rebuilding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		when(couponVersions.getCatalogETag()).thenReturn("\"2\"");
+		when(keysetPager.findCoupons(0, "id", null, Integer.MAX_VALUE)).thenAnswer(invocation -> {
+			rebuilding.countDown();
+			release.await();
+			return new KeysetPage<>(Arrays.asList(coupon(1), coupon(2)), null);
+		});
+		catalogSnapshots.onCouponChanged(CouponChangedEvent.deleted(3));
+		rebuilding.await();
+
+		assertSame(first, catalogSnapshots.findCurrent());
+		assertEquals("\"1\"", catalogSnapshots.findCurrent().getETag(false));
+
+		release.countDown();
+		verify(keysetPager, timeout(5_000).times(2)).findCoupons(0, "id", null, Integer.MAX_VALUE);
+
+		while (catalogSnapshots.findCurrent() == first) {
+			Thread.sleep(1);
+		}
+		assertEquals("\"2\"", catalogSnapshots.findCurrent().getETag(false));
+		assertEquals(2, catalogSnapshots.findCurrent().getSize());
+	}
+
+	@Test
+	public void writesTheCouponsAsJson() {
+		CatalogSnapshot snapshot = catalogSnapshots.findCurrent();
+
+		assertEquals("\"1-gzip\"", snapshot.getETag(true));
+		assertEquals('[', new String(snapshot.getJson(), StandardCharsets.UTF_8).charAt(0));
+	}
+
+	@Test
+	public void rebuildsTheSnapshotAfterTheNextExpiryWithoutAnEvent() throws Exception {
+		catalogSnapshots.onPreDestroy();
+		when(couponExpiryIndex.findNextEndMillisAfter(anyLong()))
+				.thenAnswer(invocation -> (long) invocation.getArgument(0) + 20).thenReturn(Long.MAX_VALUE);
+		catalogSnapshots = new CatalogSnapshots(keysetPager, couponExpiryIndex, couponVersions, new ObjectMapper());
+		catalogSnapshots.onPostConstruct();
+
+		when(couponVersions.getCatalogETag()).thenReturn("\"expired\"");
+		coupons();
+
+		verify(keysetPager, timeout(5_000).times(3)).findCoupons(anyLong(), anyString(), isNull(), anyInt());
+
+		while (!catalogSnapshots.findCurrent().isEmpty()) {
+			Thread.sleep(1);
+		}
+		assertEquals("\"expired\"", catalogSnapshots.findCurrent().getETag(false));
+	}
+
+	private void coupons(CouponView... coupons) throws Exception {
+		List<CouponView> items = Arrays.asList(coupons);
+		when(keysetPager.findCoupons(0, "id", null, Integer.MAX_VALUE))
+				.thenReturn(new KeysetPage<>(items, null));
+	}
+
+	private static CouponView coupon(long id) {
+		return new CouponView(id, "coupon" + id, null, null, null, 10, 1, 1, null, 10);
+	}
+
+}